@@ -19,6 +19,7 @@
 package org.apache.brooklyn.camp.brooklyn.spi.dsl.methods;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
 import com.google.common.base.*;
 import com.google.common.collect.ImmutableList;
@@ -26,9 +27,11 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.Callables;
 import com.thoughtworks.xstream.annotations.XStreamConverter;
+import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.Group;
 import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.mgmt.EntityManager;
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.objs.BrooklynObject;
@@ -46,6 +49,7 @@ import org.apache.brooklyn.core.entity.EntityPredicates;
 import org.apache.brooklyn.core.location.Locations;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.mgmt.internal.AppGroupTraverser;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.sensor.DependentConfiguration;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.util.JavaGroovyEquivalents;
@@ -64,8 +68,10 @@ import org.apache.brooklyn.util.text.Strings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -83,6 +89,10 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
     private final DslComponent scopeComponent;
     private final Scope scope;
 
+    /** Entities previously found by this component; created on demand, and not persisted */
+    @JsonIgnore
+    private transient volatile ResolvedEntityMemo resolvedEntityMemo;
+
     /**
      * Checks the type of {@code componentId} to create the right kind of {@link DslComponent}
      * (based on whether the componentId is already resolved. Accepts either a {@link String} or a 
@@ -216,7 +226,7 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
 
     @Override @JsonIgnore
     public final Maybe<Entity> getImmediately() {
-        return new EntityInScopeFinder(scopeComponent, scope, componentId, componentIdSupplier).getImmediately();
+        return new EntityInScopeFinder(scopeComponent, scope, componentId, componentIdSupplier, getResolvedEntityMemo()).getImmediately();
     }
 
     @Override
@@ -224,21 +234,91 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
         return TaskBuilder.<Entity>builder()
                 .displayName(toString())
                 .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
-                .body(new EntityInScopeFinder(scopeComponent, scope, componentId, componentIdSupplier))
+                .body(new EntityInScopeFinder(scopeComponent, scope, componentId, componentIdSupplier, getResolvedEntityMemo()))
                 .build();
     }
+
+    private ResolvedEntityMemo getResolvedEntityMemo() {
+        ResolvedEntityMemo result = resolvedEntityMemo;
+        if (result == null) {
+            // a race here just means one memo is discarded
+            result = new ResolvedEntityMemo();
+            resolvedEntityMemo = result;
+        }
+        return result;
+    }
+
+    /**
+     * Remembers the entity found for each base entity and component id, for as long as the topology of managed
+     * entities is unchanged (see {@link EntityManagerInternal#getTopologyChangeCount()}), so that config which
+     * refers to another entity can be read repeatedly without searching for that entity each time.
+     * <p>
+     * All entries are dropped as soon as the topology changes, and entities found are only weakly referenced,
+     * so that a DSL object shared by many entities (e.g. in a cluster's member spec) does not keep unmanaged
+     * entities in memory.
+     */
+    protected static class ResolvedEntityMemo {
+        private volatile Resolved resolved;
+
+        private static class Resolved {
+            final long topologyChangeCount;
+            final Map<List<String>, Maybe<WeakReference<Entity>>> entities = new ConcurrentHashMap<>();
+            Resolved(long topologyChangeCount) {
+                this.topologyChangeCount = topologyChangeCount;
+            }
+        }
+
+        protected Maybe<Entity> get(Entity base, String componentId, Supplier<Maybe<Entity>> resolver) {
+            if (base == null || !Entities.isManaged(base)) return resolver.get();
+            EntityManager entityManager = ((EntityInternal)base).getManagementContext().getEntityManager();
+            long count = (entityManager instanceof EntityManagerInternal) ? ((EntityManagerInternal)entityManager).getTopologyChangeCount() : -1;
+            if (count < 0) return resolver.get();
+
+            Resolved current = resolved;
+            if (current == null || current.topologyChangeCount != count) {
+                // a race here just means some results are discarded
+                current = new Resolved(count);
+                resolved = current;
+            }
+
+            List<String> key = ImmutableList.of(base.getId(), componentId);
+            Maybe<WeakReference<Entity>> last = current.entities.get(key);
+            if (last != null) {
+                if (last.isAbsent()) return Maybe.castAbsent(last);
+                Entity entity = last.get().get();
+                if (entity != null) return Maybe.of(entity);
+            }
+
+            // remember against the count from before resolving, so that any concurrent change causes it to be resolved again
+            Maybe<Entity> result = resolver.get();
+            current.entities.put(key, result.isPresent() ? Maybe.of(new WeakReference<>(result.get())) : Maybe.castAbsent(result));
+            return result;
+        }
+
+        @VisibleForTesting
+        protected int size() {
+            Resolved current = resolved;
+            return current == null ? 0 : current.entities.size();
+        }
+    }
     
     protected static class EntityInScopeFinder implements Callable<Entity>, ImmediateSupplier<Entity> {
         protected final DslComponent scopeComponent;
         protected final Scope scope;
         protected final String componentId;
         protected final DeferredSupplier<?> componentIdSupplier;
+        protected final ResolvedEntityMemo memo;
 
         public EntityInScopeFinder(DslComponent scopeComponent, Scope scope, String componentId, DeferredSupplier<?> componentIdSupplier) {
+            this(scopeComponent, scope, componentId, componentIdSupplier, null);
+        }
+
+        public EntityInScopeFinder(DslComponent scopeComponent, Scope scope, String componentId, DeferredSupplier<?> componentIdSupplier, ResolvedEntityMemo memo) {
             this.scopeComponent = scopeComponent;
             this.scope = scope;
             this.componentId = componentId;
             this.componentIdSupplier = componentIdSupplier;
+            this.memo = memo;
         }
 
         @Override @JsonIgnore
@@ -317,9 +397,12 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                     nonAppMatch = result;
                 }
 
-                List<Entity> allMatches = managementContext().getEntityManager().getEntities().stream()
-                        .filter(EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, componentId))
-                        .collect(Collectors.toList());
+                EntityManager entityManager = managementContext().getEntityManager();
+                List<Entity> allMatches = (entityManager instanceof EntityManagerInternal)
+                        ? MutableList.copyOf(((EntityManagerInternal)entityManager).findEntitiesWithPlanId(componentId))
+                        : entityManager.getEntities().stream()
+                                .filter(EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, componentId))
+                                .collect(Collectors.toList());
 
                 List<Entity> appMatches = allMatches.stream().filter(this::test).collect(Collectors.toList());
 
@@ -380,16 +463,23 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 this.acceptableEntity = acceptableEntityProducer.apply(entity);
             }
 
+            /**
+             * Returns the acceptable entities matching the given test which are nearest the base entity, in the order found,
+             * or an empty list if there are none. By default progressively expands across application boundaries,
+             * as per {@link AppGroupTraverser}; subclasses can search only in the direction of their scope.
+             */
+            List<Entity> findFirstGroupOfMatches(java.util.function.Predicate<Entity> test) {
+                return AppGroupTraverser.findFirstGroupOfMatches(entity, true, test.and(acceptableEntity));
+            }
+
             @Override
             Maybe<Entity> resolve() {
-                // TODO inefficient when looking at descendants or ancestors, as it also traverses in the other direction,
-                // and compares against a pre-determined set. ideally the traversal is more scope- or direction- aware.
+                Maybe<Entity> result = resolveUsingIndex();
+                if (result != null) return result;
 
-                List<Entity> firstGroupOfMatches = AppGroupTraverser.findFirstGroupOfMatches(entity, true,
-                        Predicates.and(EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, componentId), acceptableEntity::test)::apply);
+                List<Entity> firstGroupOfMatches = findFirstGroupOfMatches(EntityPredicates.configEqualTo(BrooklynCampConstants.PLAN_ID, componentId)::apply);
                 if (firstGroupOfMatches.isEmpty()) {
-                    firstGroupOfMatches = AppGroupTraverser.findFirstGroupOfMatches(entity, true,
-                            Predicates.and(EntityPredicates.idEqualTo(componentId), acceptableEntity::test)::apply);
+                    firstGroupOfMatches = findFirstGroupOfMatches(EntityPredicates.idEqualTo(componentId)::apply);
                 }
                 if (!firstGroupOfMatches.isEmpty()) {
                     return Maybe.of(firstGroupOfMatches.get(0));
@@ -400,6 +490,132 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 return Maybe.absent(new NoSuchElementException("No entity matching id '" + componentId+"'"+
                         (scope==Scope.GLOBAL ? " near entity " : " in scope "+scope+" of ")+entity));
             }
+
+            /**
+             * Looks up managed entities with the component id as their plan id (or failing that as their id) using the
+             * entity manager's indexes, searching the application only to choose between several matches.
+             * Returns null if nothing managed matches, so that the caller can search, in case an entity not yet managed matches.
+             */
+            Maybe<Entity> resolveUsingIndex() {
+                if (!Entities.isManaged(entity)) return null;
+                EntityManager entityManager = ((EntityInternal)entity).getManagementContext().getEntityManager();
+                if (!(entityManager instanceof EntityManagerInternal)) return null;
+
+                List<Entity> matches = ((EntityManagerInternal)entityManager).findEntitiesWithPlanId(componentId).stream()
+                        .filter(this::isCandidate)
+                        .collect(Collectors.toList());
+                if (matches.size() == 1) {
+                    return Maybe.of(matches.get(0));
+                }
+                if (matches.size() > 1) {
+                    Set<Entity> candidates = MutableSet.copyOf(matches);
+                    List<Entity> firstGroupOfMatches = findFirstGroupOfMatches(candidates::contains);
+                    if (!firstGroupOfMatches.isEmpty()) {
+                        return Maybe.of(firstGroupOfMatches.get(0));
+                    }
+                }
+
+                Entity match = entityManager.getEntity(componentId);
+                if (match != null && isCandidate(match)) {
+                    return Maybe.of(match);
+                }
+                return null;
+            }
+
+            /** whether the given entity is acceptable and would be reached when searching from the base entity */
+            boolean isCandidate(Entity candidate) {
+                String appId = entity.getApplicationId();
+                return appId != null && appId.equals(candidate.getApplicationId()) && test(candidate);
+            }
+        }
+
+        static class DescendantEntityResolver extends AcceptableEntityResolver {
+            public DescendantEntityResolver() {
+                super(entity -> ee -> !entity.equals(ee) && isAncestor(entity, ee));
+            }
+
+            @Override
+            List<Entity> findFirstGroupOfMatches(java.util.function.Predicate<Entity> test) {
+                // as AppGroupTraverser: each group goes down as far as (and including) any nested applications,
+                // and the next group continues below those
+                Collection<Entity> bounds = entity.getChildren();
+                while (!bounds.isEmpty()) {
+                    List<Entity> group = MutableList.of();
+                    List<Entity> nextBounds = MutableList.of();
+                    for (Entity bound : bounds) {
+                        addDescendants(bound, true, group, nextBounds);
+                    }
+                    List<Entity> matches = group.stream().filter(test).collect(Collectors.toList());
+                    if (!matches.isEmpty()) return matches;
+                    bounds = nextBounds;
+                }
+                return ImmutableList.of();
+            }
+
+            private static void addDescendants(Entity node, boolean isFirst, List<Entity> group, List<Entity> nextBounds) {
+                group.add(node);
+                if (!isFirst && node instanceof Application) {
+                    nextBounds.add(node);
+                } else {
+                    node.getChildren().forEach(child -> addDescendants(child, false, group, nextBounds));
+                }
+            }
+        }
+
+        static class AncestorEntityResolver extends AcceptableEntityResolver {
+            public AncestorEntityResolver() {
+                super(entity -> ee -> !entity.equals(ee) && isAncestor(ee, entity));
+            }
+
+            @Override
+            List<Entity> findFirstGroupOfMatches(java.util.function.Predicate<Entity> test) {
+                // as AppGroupTraverser: each group goes up as far as (and including) the next application,
+                // and is ordered from the top down
+                Entity bound = entity.getParent();
+                while (bound != null) {
+                    LinkedList<Entity> group = new LinkedList<>();
+                    Entity ancestor = bound;
+                    group.addFirst(ancestor);
+                    while (!(ancestor instanceof Application) && ancestor.getParent() != null) {
+                        ancestor = ancestor.getParent();
+                        group.addFirst(ancestor);
+                    }
+                    List<Entity> matches = group.stream().filter(test).collect(Collectors.toList());
+                    if (!matches.isEmpty()) return matches;
+                    bound = ancestor.getParent();
+                }
+                return ImmutableList.of();
+            }
+        }
+
+        static class ChildEntityResolver extends AcceptableEntityResolver {
+            public ChildEntityResolver() {
+                super(entity -> ee -> entity.equals(ee.getParent()));
+            }
+
+            @Override
+            List<Entity> findFirstGroupOfMatches(java.util.function.Predicate<Entity> test) {
+                return entity.getChildren().stream().filter(test).collect(Collectors.toList());
+            }
+        }
+
+        static class SiblingEntityResolver extends AcceptableEntityResolver {
+            public SiblingEntityResolver() {
+                super(entity -> ee -> !entity.equals(ee) && entity.getParent().equals(ee.getParent()));
+            }
+
+            @Override
+            List<Entity> findFirstGroupOfMatches(java.util.function.Predicate<Entity> test) {
+                return entity.getParent().getChildren().stream().filter(test.and(acceptableEntity)).collect(Collectors.toList());
+            }
+        }
+
+        /** whether {@code ancestor} is {@code entity} or one of its ancestors */
+        static boolean isAncestor(Entity ancestor, Entity entity) {
+            for (Entity e = entity; e != null; e = e.getParent()) {
+                if (ancestor.equals(e)) return true;
+            }
+            return false;
         }
 
         static DslEntityResolver getResolverForScope(Scope scope) {
@@ -446,7 +662,7 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                     });
 
                 case DESCENDANT:
-                    return new AcceptableEntityResolver(entity -> MutableSet.copyOf(Entities.descendantsWithoutSelf(entity))::contains);
+                    return new DescendantEntityResolver();
                 case MEMBERS:
                     return new AcceptableEntityResolver(entity -> MutableSet.copyOf(Entities.descendantsAndMembersWithoutSelf(entity))::contains);
                 case MEMBERS_ONLY:
@@ -456,14 +672,11 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                         return acceptable::contains;
                     });
                 case ANCESTOR:
-                    return new AcceptableEntityResolver(entity -> MutableSet.copyOf(Entities.ancestorsWithoutSelf(entity))::contains);
+                    return new AncestorEntityResolver();
                 case SIBLING:
-                    return new AcceptableEntityResolver(entity -> {
-                        Predicate<Entity> notSelfPredicate = Predicates.not(Predicates.<Entity>equalTo(entity));
-                        return MutableSet.copyOf(Iterables.filter(entity.getParent().getChildren(), notSelfPredicate))::contains;
-                    });
+                    return new SiblingEntityResolver();
                 case CHILD:
-                    return new AcceptableEntityResolver(entity -> MutableSet.copyOf(entity.getChildren())::contains);
+                    return new ChildEntityResolver();
                 default:
                     throw new IllegalStateException("Unexpected scope "+scope);
             }
@@ -523,6 +736,9 @@ public class DslComponent extends BrooklynDslDeferredSupplier<Entity> implements
                 }
             }
 
+            if (memo != null && resolver instanceof AcceptableEntityResolver) {
+                return memo.get(resolver.entity, resolver.componentId, resolver::resolve);
+            }
             return resolver.resolve();
         }
         
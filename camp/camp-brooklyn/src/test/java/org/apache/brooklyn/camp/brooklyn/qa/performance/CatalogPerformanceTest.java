@@ -18,20 +18,27 @@
  */
 package org.apache.brooklyn.camp.brooklyn.qa.performance;
 
+import static org.testng.Assert.assertEquals;
+
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.catalog.CatalogItem;
+import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry.RegisteredTypeKind;
 import org.apache.brooklyn.camp.brooklyn.AbstractYamlTest;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.core.test.policy.TestPolicy;
 import org.apache.brooklyn.core.test.qa.performance.AbstractPerformanceTest;
+import org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry;
+import org.apache.brooklyn.core.typereg.BasicTypeImplementationPlan;
+import org.apache.brooklyn.core.typereg.RegisteredTypes;
 import org.apache.brooklyn.test.performance.PerformanceMeasurer;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.test.performance.PerformanceTestResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import com.google.common.base.Joiner;
@@ -163,6 +170,44 @@ public class CatalogPerformanceTest extends AbstractYamlTest {
         runPerformanceTest("testPeekSameSpecsRepeatedly", null, job, null);
     }
     
+    @DataProvider(name = "numTypes")
+    public Object[][] numTypes() {
+        return new Object[][] { {1000}, {10000}, {50000} };
+    }
+    
+    /** Measures lookups of unversioned names, aliases and exact versions with the given number of types registered. */
+    @Test(groups={"Integration"}, dataProvider="numTypes")
+    public void testGetTypeWithManyTypes(int numTypes) {
+        final int numVersions = 5;
+        final int numNames = numTypes / numVersions;
+        BasicBrooklynTypeRegistry registry = (BasicBrooklynTypeRegistry) mgmt().getTypeRegistry();
+        for (int i = 0; i < numNames; i++) {
+            for (int v = 0; v < numVersions; v++) {
+                registry.addToLocalUnpersistedTypeRegistry(RegisteredTypes.newInstance(RegisteredTypeKind.BEAN, 
+                        "mytype-" + i, "1." + v, new BasicTypeImplementationPlan("ignore", null), 
+                        ImmutableList.of(TestEntity.class), ImmutableList.of("mytype-alias-" + i), ImmutableList.of(), 
+                        null, ImmutableList.of(), null, null, null, null, null), 
+                    false);
+            }
+        }
+        
+        final AtomicInteger counter = new AtomicInteger();
+        Runnable job = new Runnable() {
+            @Override
+            public void run() {
+                int i = counter.getAndIncrement() % numNames;
+                assertEquals(registry.get("mytype-" + i).getVersion(), "1." + (numVersions - 1));
+                assertEquals(registry.get("mytype-alias-" + i).getSymbolicName(), "mytype-" + i);
+                assertEquals(registry.get("mytype-" + i, "1.0").getVersion(), "1.0");
+            }
+        };
+        measure(PerformanceTestDescriptor.create()
+                .summary("CatalogPerformanceTest.testGetTypeWithManyTypes(" + numTypes + ")")
+                .iterations(1000)
+                .minAcceptablePerSecond(10 * AbstractPerformanceTest.PERFORMANCE_EXPECTATION)
+                .job(job));
+    }
+    
     protected void runPerformanceTest(String methodName, Runnable preJob, Runnable job, Runnable postJob) {
         int numIterations = numIterations();
         double minRatePerSec = 10 * AbstractPerformanceTest.PERFORMANCE_EXPECTATION;
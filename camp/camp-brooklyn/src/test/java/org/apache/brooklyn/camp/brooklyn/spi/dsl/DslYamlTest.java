@@ -18,9 +18,11 @@ package org.apache.brooklyn.camp.brooklyn.spi.dsl;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.camp.brooklyn.AbstractYamlTest;
+import org.apache.brooklyn.camp.brooklyn.BrooklynCampConstants;
 import org.apache.brooklyn.camp.brooklyn.spi.dsl.methods.DslTestObjects.DslTestCallable;
 import org.apache.brooklyn.camp.brooklyn.spi.dsl.methods.DslTestObjects.DslTestSupplierWrapper;
 import org.apache.brooklyn.camp.brooklyn.spi.dsl.methods.DslTestObjects.TestDslSupplier;
@@ -133,6 +135,28 @@ public class DslYamlTest extends AbstractYamlTest {
         assertEquals(getConfigEventually(child1, DEST), child2);
     }
 
+    @Test
+    public void testDslSiblingResolvedAgainWhenSiblingsChange() throws Exception {
+        final Entity app = createAndStartApplication(
+                "services:",
+                "- type: " + BasicApplication.class.getName(),
+                "  brooklyn.children:",
+                "  - type: " + BasicEntity.class.getName(),
+                "    id: child",
+                "    brooklyn.config:",
+                "      dest: $brooklyn:sibling(\"another-child\")",
+                "  - type: " + BasicEntity.class.getName(),
+                "    id: another-child");
+        final Entity child1 = Iterables.get(app.getChildren(), 0);
+        final Entity child2 = Iterables.get(app.getChildren(), 1);
+        assertEquals(getConfigEventually(child1, DEST), child2);
+        assertEquals(getConfigEventually(child1, DEST), child2);
+
+        Entities.unmanage(child2);
+        Entity child3 = app.addChild(EntitySpec.create(BasicEntity.class).configure(BrooklynCampConstants.PLAN_ID, "another-child"));
+        assertEquals(getConfigEventually(child1, DEST), child3);
+    }
+
     @Test
     public void testDslDescendant() throws Exception {
         final Entity app = createAndStartApplication(
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.camp.brooklyn.spi.dsl.methods;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Supplier;
+
+public class DslComponentResolvedEntityMemoTest extends BrooklynAppUnitTestSupport {
+
+    @Test
+    public void testRemembersUntilTopologyChanges() throws Exception {
+        Entity base = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        Entity target = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        AtomicInteger resolutions = new AtomicInteger();
+        Supplier<Maybe<Entity>> resolver = () -> {
+            resolutions.incrementAndGet();
+            return Maybe.of(target);
+        };
+
+        DslComponent.ResolvedEntityMemo memo = new DslComponent.ResolvedEntityMemo();
+        assertEquals(memo.get(base, "target", resolver).get(), target);
+        assertEquals(memo.get(base, "target", resolver).get(), target);
+        assertEquals(resolutions.get(), 1);
+
+        app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        assertEquals(memo.get(base, "target", resolver).get(), target);
+        assertEquals(resolutions.get(), 2);
+    }
+
+    @Test
+    public void testDropsEntriesForEarlierTopologies() throws Exception {
+        DslComponent.ResolvedEntityMemo memo = new DslComponent.ResolvedEntityMemo();
+        Entity member1 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        Entity member2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        memo.get(member1, "x", () -> Maybe.of(app));
+        memo.get(member2, "x", () -> Maybe.of(app));
+        assertEquals(memo.size(), 2);
+
+        // the memo must not keep entries (and hence entities) for members which have gone
+        Entities.unmanage(member1);
+        Entities.unmanage(member2);
+        Entity member3 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        memo.get(member3, "x", () -> Maybe.of(app));
+        assertEquals(memo.size(), 1);
+    }
+
+}
@@ -38,7 +38,6 @@ import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
-import com.google.common.base.Optional;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Collections2;
@@ -46,7 +45,6 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Maps;
 import com.google.common.reflect.TypeToken;
 import org.apache.brooklyn.api.catalog.BrooklynCatalog;
 import org.apache.brooklyn.api.catalog.CatalogItem;
@@ -174,9 +172,11 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
      * We assume that no-one is modifying the catalog items (once added) without going through the
      * correct accessor methods here (e.g. no-one calling {@code getCatalogItemDo().getDto().setXyz()}).
      * 
+     * Specs are invalidated when a type they looked up (in this catalog or the type registry) changes;
+     * see {@link SpecCache}.
      * As discussed in https://github.com/apache/brooklyn-server/pull/423 and BROOKLYN-382, there  
      * are things outside of the control of the catalog that a spec depends on - like non-catalog 
-     * locations, type registry, adding bundles, etc. However, because this cache is only used for
+     * locations, adding bundles, etc. However, because this cache is only used for
      * {@link #peekSpec(CatalogItem)}, it is considered good enough.
      * 
      * A longer term improvement is to focus on our YAML parsing, to make that faster and better!
@@ -263,6 +263,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
     }
 
     protected CatalogItemDo<?,?> getCatalogItemDo(String symbolicName, String version) {
+        SpecCache.recordDependency(symbolicName);
         String fixedVersionId = getFixedVersionId(symbolicName, version);
         if (fixedVersionId == null) {
             //no items with symbolicName exist
@@ -356,7 +357,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         manualAdditionsCatalog.deleteEntry(itemDto);
         
         // Ensure the caches are de-populated
-        specCache.invalidate();
+        specCache.invalidate(Collections.singleton(symbolicName));
         getCatalog().deleteEntry(itemDto);
 
         // And indicate to the management context that it should be removed.
@@ -426,6 +427,19 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         }
     }
 
+    /** Removes cached specs which depended on types with any of the given symbolic names or aliases,
+     * for use when types are changed in the type registry. */
+    @Beta
+    public void invalidateSpecsDependingOn(Iterable<String> symbolicNamesOrAliases) {
+        specCache.invalidate(symbolicNamesOrAliases);
+    }
+
+    /** @see SpecCache#getMetrics() */
+    @Beta
+    public Map<String, Long> getSpecCacheMetrics() {
+        return specCache.getMetrics();
+    }
+
     @Override
     public AbstractBrooklynObjectSpec<?, ?> peekSpec(CatalogItem<?, ?> item) {
         if (item == null) return null;
@@ -434,16 +448,11 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         if (loadedItem.getSpecType()==null) return null;
         String itemId = item.getCatalogItemId();
         
-        Optional<AbstractBrooklynObjectSpec<?, ?>> cachedSpec = specCache.getSpec(itemId);
-        if (cachedSpec.isPresent()) {
-            return cachedSpec.get();
-        } else {
-            @SuppressWarnings({ "rawtypes", "unchecked" })
-            AbstractBrooklynObjectSpec<?, ?> spec = internalCreateSpecLegacy(mgmt, (CatalogItem)loadedItem, MutableSet.<String>of(), true);
-            if (spec != null) {
-                specCache.addSpec(itemId, spec);
-                return spec;
-            }
+        @SuppressWarnings({ "rawtypes", "unchecked" })
+        AbstractBrooklynObjectSpec<?, ?> spec = specCache.getOrCreate(itemId, item.getSymbolicName(),
+            () -> internalCreateSpecLegacy(mgmt, (CatalogItem)loadedItem, MutableSet.<String>of(), true));
+        if (spec != null) {
+            return spec;
         }
 
         throw new IllegalStateException("No known mechanism to create instance of "+item);
@@ -2240,8 +2249,8 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
             return existingDto;
         }
 
-        // Clear spec cache (in-case overwriting existing)
-        specCache.invalidate();
+        // Clear dependent specs from cache (in-case overwriting existing)
+        specCache.invalidate(Collections.singleton(itemDto.getSymbolicName()));
         
         if (manualAdditionsCatalog==null) loadManualAdditionsCatalog();
         manualAdditionsCatalog.addEntry(itemDto);
@@ -2285,8 +2294,8 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
 
     @Override @Deprecated /** @deprecated see super */
     public void addItem(CatalogItem<?,?> item) {
-        // Clear spec-cache (in-case overwriting)
-        specCache.invalidate();
+        // Clear dependent specs from cache (in-case overwriting)
+        specCache.invalidate(Collections.singleton(item.getSymbolicName()));
         
         //assume forceUpdate for backwards compatibility
         log.debug("Adding manual catalog item to "+mgmt+": "+item);
@@ -2303,7 +2312,7 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
     }
     
     private void addCatalogLegacyItemsOnRebind(Iterable<? extends CatalogItem<?,?>> items, boolean failOnLoadError) {
-        specCache.invalidate();
+        specCache.invalidate(Iterables.transform(items, CatalogItem::getSymbolicName));
         
         log.debug("Adding manual catalog items to "+mgmt+": "+items);
         checkNotNull(items, "item");
@@ -2342,8 +2351,8 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         manualAdditionsClasses.registerClass(type);
         CatalogItem<?, ?> result = manualAdditionsCatalog.classpath.addCatalogEntry(type);
         
-        // Clear spec-cache (in-case overwriting)
-        specCache.invalidate();
+        // Clear dependent specs from cache (in-case overwriting)
+        specCache.invalidate(Collections.singleton(result.getSymbolicName()));
         
         return result;
     }
@@ -2495,28 +2504,6 @@ public class BasicBrooklynCatalog implements BrooklynCatalog {
         };
     }
 
-    private static class SpecCache {
-        private final Map<String, AbstractBrooklynObjectSpec<?,?>> cache = Collections.synchronizedMap(
-                Maps.<String, AbstractBrooklynObjectSpec<?,?>>newLinkedHashMap());
-
-        /**
-         * Whenever anything in the catalog is modified, the entire cache should be invalidated. 
-         * This is because items in the cache can refer to each other, which can impact the Spec
-         * created for a given catalog item.
-         */
-        public void invalidate() {
-            cache.clear();
-        }
-        
-        public Optional<AbstractBrooklynObjectSpec<?,?>> getSpec(String itemId) {
-            return Optional.<AbstractBrooklynObjectSpec<?,?>>fromNullable(cache.get(itemId));
-        }
-        
-        public void addSpec(String itemId, AbstractBrooklynObjectSpec<?,?> spec) {
-            cache.put(itemId, spec);
-        }
-    }
-    
     private Object uninstallingEmptyLock = new Object();
     public void uninstallEmptyWrapperBundles() {
         log.debug("Uninstalling empty wrapper bundles");
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.catalog.internal;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.apache.brooklyn.api.internal.AbstractBrooklynObjectSpec;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Optional;
+
+/**
+ * Bounded cache of specs created for catalog items, used by {@link BasicBrooklynCatalog#peekSpec(org.apache.brooklyn.api.catalog.CatalogItem)}.
+ * <p>
+ * While a spec is being created (see {@link #getOrCreate(String, String, Callable)}), the names of all types looked up
+ * in the catalog or type registry are recorded (see {@link #recordDependency(String)}), including those looked up by nested specs.
+ * When a type is added, changed or removed, {@link #invalidate(Iterable)} removes only the specs which looked up
+ * that type's symbolic name or one of its aliases. A spec created while a lookup was made which could depend on all types
+ * (see {@link #recordDependencyOnAll()}), or while any invalidation occurred, is not cached.
+ * <p>
+ * The least recently used specs are evicted when the cache exceeds its maximum size,
+ * set with the system property {@value #SPEC_CACHE_SIZE_PROPERTY}.
+ */
+@Beta
+public class SpecCache {
+
+    public static final String SPEC_CACHE_SIZE_PROPERTY = "brooklyn.catalog.spec.cache.size";
+    
+    private static final int DEFAULT_MAX_SIZE = Integer.getInteger(SPEC_CACHE_SIZE_PROPERTY, 1000);
+    
+    /** marker recorded for lookups which could depend on any type */
+    private static final String ANY_TYPE = "*";
+
+    private static final ThreadLocal<Deque<Set<String>>> dependenciesBeingRecorded = new ThreadLocal<Deque<Set<String>>>() {
+        @Override protected Deque<Set<String>> initialValue() { return new ArrayDeque<>(); }
+    };
+
+    /** Records, for any specs currently being created in this thread, that they depend on types with the given symbolic name or alias. */
+    public static void recordDependency(String symbolicNameOrAlias) {
+        if (symbolicNameOrAlias==null) return;
+        for (Set<String> dependencies: dependenciesBeingRecorded.get()) {
+            dependencies.add(symbolicNameOrAlias);
+        }
+    }
+    
+    /** Records, for any specs currently being created in this thread, that they may depend on any type, so should not be cached. */
+    public static void recordDependencyOnAll() {
+        recordDependency(ANY_TYPE);
+    }
+
+    private static class Entry {
+        final AbstractBrooklynObjectSpec<?,?> spec;
+        final Set<String> dependencies;
+        Entry(AbstractBrooklynObjectSpec<?,?> spec, Set<String> dependencies) {
+            this.spec = spec;
+            this.dependencies = dependencies;
+        }
+    }
+    
+    private final int maxSize;
+    private final Map<String, Entry> cache;
+    private final Map<String, Set<String>> itemIdsByDependency = MutableMap.of();
+    /** incremented on every invalidation, so that specs being created concurrently are not cached */
+    private long invalidationCount = 0;
+    
+    private long hits, misses, evictions, invalidations;
+    
+    public SpecCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+    
+    public SpecCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= SpecCache.this.maxSize) return false;
+                evictions++;
+                removeDependencies(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /** Removes all specs. */
+    public synchronized void invalidate() {
+        invalidationCount++;
+        invalidations += cache.size();
+        cache.clear();
+        itemIdsByDependency.clear();
+    }
+    
+    /** Removes the specs which depended on any of the given symbolic names or aliases. */
+    public synchronized void invalidate(Iterable<String> symbolicNamesOrAliases) {
+        invalidationCount++;
+        for (String name: symbolicNamesOrAliases) {
+            Set<String> itemIds = itemIdsByDependency.remove(name);
+            if (itemIds==null) continue;
+            for (String itemId: itemIds) {
+                Entry entry = cache.remove(itemId);
+                if (entry!=null) {
+                    invalidations++;
+                    removeDependencies(itemId, entry);
+                }
+            }
+        }
+    }
+
+    public synchronized Optional<AbstractBrooklynObjectSpec<?,?>> getSpec(String itemId) {
+        Entry entry = cache.get(itemId);
+        if (entry==null) {
+            misses++;
+            return Optional.absent();
+        }
+        hits++;
+        return Optional.<AbstractBrooklynObjectSpec<?,?>>of(entry.spec);
+    }
+
+    /**
+     * Returns the cached spec for the given item, or creates one by calling the given creator, recording the types it looks up.
+     * The spec is cached if not null, and if nothing it depended on changed while it was being created.
+     */
+    public AbstractBrooklynObjectSpec<?,?> getOrCreate(String itemId, String symbolicName, Callable<? extends AbstractBrooklynObjectSpec<?,?>> creator) {
+        long invalidationCountAtStart;
+        synchronized (this) {
+            Entry entry = cache.get(itemId);
+            if (entry!=null) {
+                hits++;
+                // anything creating a spec from this one depends on the same types
+                for (String dependency: entry.dependencies) recordDependency(dependency);
+                return entry.spec;
+            }
+            misses++;
+            invalidationCountAtStart = invalidationCount;
+        }
+        Set<String> dependencies = MutableSet.of(symbolicName);
+        Deque<Set<String>> recording = dependenciesBeingRecorded.get();
+        AbstractBrooklynObjectSpec<?,?> spec;
+        recording.push(dependencies);
+        try {
+            spec = creator.call();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        } finally {
+            recording.pop();
+            if (recording.isEmpty()) dependenciesBeingRecorded.remove();
+        }
+        // nested creations in this thread depend on what this spec depended on
+        for (String dependency: dependencies) recordDependency(dependency);
+        
+        if (spec!=null && !dependencies.contains(ANY_TYPE)) {
+            synchronized (this) {
+                if (invalidationCount == invalidationCountAtStart) {
+                    addSpec(itemId, spec, dependencies);
+                }
+            }
+        }
+        return spec;
+    }
+
+    private void addSpec(String itemId, AbstractBrooklynObjectSpec<?,?> spec, Set<String> dependencies) {
+        Entry old = cache.put(itemId, new Entry(spec, Collections.unmodifiableSet(dependencies)));
+        if (old!=null) removeDependencies(itemId, old);
+        for (String dependency: dependencies) {
+            itemIdsByDependency.computeIfAbsent(dependency, k -> MutableSet.of()).add(itemId);
+        }
+    }
+    
+    private void removeDependencies(String itemId, Entry entry) {
+        for (String dependency: entry.dependencies) {
+            Set<String> itemIds = itemIdsByDependency.get(dependency);
+            if (itemIds!=null) {
+                itemIds.remove(itemId);
+                if (itemIds.isEmpty()) itemIdsByDependency.remove(dependency);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+    
+    /** Returns the numbers of hits, misses, evictions (due to size) and invalidations (due to changed types), and the current size. */
+    public synchronized Map<String, Long> getMetrics() {
+        return MutableMap.of("hits", hits, "misses", misses, "evictions", evictions, "invalidations", invalidations, "size", (long) cache.size());
+    }
+}
@@ -1172,6 +1172,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
         @Override
         protected <T> void onConfigChanged(ConfigKey<T> key, Object val) {
             getManagementSupport().getEntityChangeListener().onConfigChanged(key);
+            AbstractEntity.this.onConfigChanged(key, val);
         }
 
         @Override
@@ -1881,6 +1882,13 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
         getManagementSupport().getEntityChangeListener().onTagsChanged();
     }
 
+    /**
+     * Invoked when config is set on this entity (including before it is managed).
+     * Subclasses can override to react to reconfiguration, e.g. of which entities they track.
+     */
+    protected void onConfigChanged(ConfigKey<?> key, Object val) {
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public RelationSupportInternal<Entity> relations() {
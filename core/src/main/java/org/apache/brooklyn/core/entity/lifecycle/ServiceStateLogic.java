@@ -20,9 +20,13 @@ package org.apache.brooklyn.core.entity.lifecycle;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import java.util.stream.Collectors;
@@ -65,6 +69,8 @@ import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.collections.QuorumCheck;
 import org.apache.brooklyn.util.collections.QuorumCheck.QuorumChecks;
+import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.core.task.ValueResolver;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -596,6 +602,16 @@ public class ServiceStateLogic {
             "enricher.service_state.children_and_members.ignore_entities.service_state_values",
             "Service states of children (including null) which indicate they should be ignored when looking at children service states; anything apart from RUNNING not in this list will be treated as not healthy (by default just ON_FIRE will mean not healthy)",
             MutableSet.<Lifecycle>builder().addAll(Lifecycle.values()).add(null).remove(Lifecycle.RUNNING).remove(Lifecycle.ON_FIRE).build().asUnmodifiable());
+        public static final ConfigKey<Duration> PUBLISH_MIN_PERIOD = ConfigKeys.newDurationConfigKey("enricher.service_state.children_and_members.publish.min_period",
+            "Minimum time between updates to the derived indicators, so that a burst of changes in children and members is published as a single update "
+            + "(defaults to publishing every change immediately)", null);
+
+        /** How each producer counts towards the quorum checks, updated as their sensors change; access synchronized on this */
+        private final ProducerCounts counts = new ProducerCounts();
+
+        /** Time of the last publish, and whether a deferred publish is pending, when {@link #PUBLISH_MIN_PERIOD} is set; access synchronized on counts */
+        private long lastPublishTime = 0;
+        private boolean publishPending = false;
 
         protected String getKeyForMapSensor() {
             return Preconditions.checkNotNull(super.getUniqueTag());
@@ -632,7 +648,8 @@ public class ServiceStateLogic {
         final static Set<ConfigKey<?>> RECONFIGURABLE_KEYS = ImmutableSet.<ConfigKey<?>>of(
             UP_QUORUM_CHECK, RUNNING_QUORUM_CHECK,
             DERIVE_SERVICE_NOT_UP, DERIVE_SERVICE_NOT_UP,
-            IGNORE_ENTITIES_WITH_SERVICE_UP_NULL, IGNORE_ENTITIES_WITH_THESE_SERVICE_STATES);
+            IGNORE_ENTITIES_WITH_SERVICE_UP_NULL, IGNORE_ENTITIES_WITH_THESE_SERVICE_STATES,
+            PUBLISH_MIN_PERIOD);
 
         @Override
         protected <T> void doReconfigureConfig(ConfigKey<T> key, T val) {
@@ -646,6 +663,10 @@ public class ServiceStateLogic {
         @Override
         protected void onChanged() {
             super.onChanged();
+            synchronized (counts) {
+                // config affecting how producers are counted may have changed
+                counts.stale = true;
+            }
             if (entity != null && isRunning())
                 onUpdated();
         }
@@ -656,6 +677,80 @@ public class ServiceStateLogic {
             return SOURCE_SENSORS;
         }
 
+        @Override
+        protected void onProducerAdded(Entity producer) {
+            super.onProducerAdded(producer);
+            synchronized (counts) {
+                ProducerStatus status = counts.producers.get(producer);
+                if (status==null) {
+                    status = new ProducerStatus(counts.nextOrder++);
+                    counts.producers.put(producer, status);
+                }
+                // as per super, take the current value where we don't yet know one
+                if (status.up==null) status.up = coerce(initialValue(producer, SERVICE_UP), Boolean.class);
+                if (status.state==null) status.state = coerce(initialValue(producer, SERVICE_STATE_ACTUAL), Lifecycle.class);
+                updateCounts(producer, status);
+            }
+        }
+
+        private Object initialValue(Entity producer, AttributeSensor<?> sensor) {
+            Object result = producer.getAttribute(sensor);
+            return result != null ? result : defaultMemberValue;
+        }
+
+        @Override
+        protected void onProducerRemoved(Entity producer) {
+            synchronized (counts) {
+                ProducerStatus status = counts.producers.remove(producer);
+                if (status!=null) counts.uncount(status);
+            }
+            super.onProducerRemoved(producer);
+        }
+
+        @Override
+        public void onEvent(SensorEvent<Object> event) {
+            Entity producer = event.getSource();
+            if (entityFilter.apply(producer)) {
+                synchronized (counts) {
+                    ProducerStatus status = counts.producers.get(producer);
+                    if (status!=null) {
+                        if (SERVICE_UP.getName().equals(event.getSensor().getName())) {
+                            status.up = coerce(event.getValue(), Boolean.class);
+                        } else {
+                            status.state = coerce(event.getValue(), Lifecycle.class);
+                        }
+                        updateCounts(producer, status);
+                    }
+                    // else not yet added or recently removed; will be initialized if added
+                }
+            }
+            super.onEvent(event);
+        }
+
+        private static <T> T coerce(Object value, Class<T> type) {
+            return value==null ? null : TypeCoercions.coerce(value, type);
+        }
+
+        /** Re-counts the given producer after a change to it; caller must hold the lock on counts */
+        private void updateCounts(Entity producer, ProducerStatus status) {
+            if (counts.stale) {
+                // will be re-counted in full when next needed
+                return;
+            }
+            counts.uncount(status);
+            counts.count(producer, status);
+        }
+
+        /** Re-counts all producers if config affecting the counts has changed; caller must hold the lock on counts */
+        private void refreshCountsIfStale() {
+            if (counts.stale) {
+                counts.reset(getConfig(IGNORE_ENTITIES_WITH_SERVICE_UP_NULL), getConfig(IGNORE_ENTITIES_WITH_THESE_SERVICE_STATES));
+                for (Map.Entry<Entity, ProducerStatus> producer: counts.producers.entrySet()) {
+                    counts.count(producer.getKey(), producer.getValue());
+                }
+            }
+        }
+
         @Override
         public void onUpdated() {
             if (entity==null || !Entities.isManagedActive(entity)) {
@@ -665,6 +760,51 @@ public class ServiceStateLogic {
                 return;
             }
 
+            Duration minPeriod = getConfig(PUBLISH_MIN_PERIOD);
+            if (minPeriod!=null && minPeriod.isPositive()) {
+                synchronized (counts) {
+                    if (publishPending) {
+                        // the pending publish will include this change
+                        return;
+                    }
+                    long delay = lastPublishTime + minPeriod.toMilliseconds() - System.currentTimeMillis();
+                    if (delay > 0) {
+                        publishPending = true;
+                        schedulePublish(Duration.millis(delay));
+                        return;
+                    }
+                    lastPublishTime = System.currentTimeMillis();
+                }
+            }
+
+            publish();
+        }
+
+        protected void schedulePublish(Duration delay) {
+            Callable<Task<?>> taskFactory = () -> Tasks.builder()
+                    .dynamic(false)
+                    .displayName("Publishing service indicators from children and members")
+                    .body(new Runnable() {
+                        @Override
+                        public void run() {
+                            synchronized (counts) {
+                                publishPending = false;
+                                lastPublishTime = System.currentTimeMillis();
+                            }
+                            if (entity!=null && Entities.isManagedActive(entity)) {
+                                publish();
+                            }
+                        }})
+                    .build();
+            getExecutionContext().submit(ScheduledTask.builder(taskFactory)
+                    .displayName("scheduled:[Publishing service indicators]")
+                    .delay(delay)
+                    .maxIterations(1)
+                    .tagTransient()
+                    .build());
+        }
+
+        protected void publish() {
             // override superclass to publish multiple sensors
             if (getConfig(DERIVE_SERVICE_PROBLEMS)) {
                 updateMapSensor(SERVICE_PROBLEMS, computeServiceProblems());
@@ -676,70 +816,69 @@ public class ServiceStateLogic {
         }
 
         protected Object computeServiceNotUp() {
-            Map<Entity, Boolean> values = getValues(SERVICE_UP);
-            List<Entity> violators = MutableList.of();
-            boolean ignoreNull = getConfig(IGNORE_ENTITIES_WITH_SERVICE_UP_NULL);
-            Set<Lifecycle> ignoreStates = getConfig(IGNORE_ENTITIES_WITH_THESE_SERVICE_STATES);
-            int entries=0;
-            int numUp=0;
-            for (Map.Entry<Entity, Boolean> state: values.entrySet()) {
-                if (ignoreNull && state.getValue()==null)
-                    continue;
-                entries++;
-                Lifecycle entityState = state.getKey().getAttribute(SERVICE_STATE_ACTUAL);
-
-                if (Boolean.TRUE.equals(state.getValue())) numUp++;
-                else if (!ignoreStates.contains(entityState)) {
-                    violators.add(state.getKey());
-                }
+            int numUp, entries, numViolators;
+            boolean empty;
+            Entity firstViolator;
+            synchronized (counts) {
+                refreshCountsIfStale();
+                numUp = counts.numUp;
+                entries = counts.numUpEntries;
+                numViolators = counts.notUp.size();
+                empty = counts.producers.isEmpty();
+                firstViolator = numViolators > 0 ? counts.notUp.firstEntry().getValue() : null;
             }
 
             QuorumCheck qc = getConfig(UP_QUORUM_CHECK);
             if (qc!=null) {
-                if (qc.isQuorate(numUp, violators.size()+numUp))
+                if (qc.isQuorate(numUp, numViolators+numUp))
                     // quorate
                     return null;
 
-                if (values.isEmpty()) return "No entities present";
+                if (empty) return "No entities present";
                 if (entries==0) return "No entities publishing service up";
-                if (violators.isEmpty()) return "Not enough entities";
+                if (numViolators==0) return "Not enough entities";
             } else {
-                if (violators.isEmpty())
+                if (numViolators==0)
                     return null;
             }
 
-            if (violators.size()==1) return violators.get(0)+" is not up";
-            if (violators.size()==entries) return "None of the entities are up";
-            return violators.size()+" entities are not up, including "+violators.get(0);
+            if (numViolators==1) return firstViolator+" is not up";
+            if (numViolators==entries) return "None of the entities are up";
+            return numViolators+" entities are not up, including "+firstViolator;
         }
 
         protected Object computeServiceProblems() {
-            Map<Entity, Lifecycle> values = getValues(SERVICE_STATE_ACTUAL);
-            int numRunning=0;
-            Map<Entity,String> onesNotHealthy=MutableMap.of();
-            Set<Lifecycle> ignoreStates = getConfig(IGNORE_ENTITIES_WITH_THESE_SERVICE_STATES);
-            for (Map.Entry<Entity,Lifecycle> state: values.entrySet()) {
-                if (state.getValue()==Lifecycle.RUNNING) numRunning++;
-                else if (!ignoreStates.contains(state.getValue()))
-                    onesNotHealthy.put(state.getKey(), ""+state.getValue());
+            int numRunning;
+            Map<Entity,String> onesNotHealthy;
+            int numNotHealthy;
+            synchronized (counts) {
+                refreshCountsIfStale();
+                numRunning = counts.numRunning;
+                numNotHealthy = counts.notHealthy.size();
+                // only the first few are reported
+                onesNotHealthy = MutableMap.of();
+                for (Entity e: counts.notHealthy.values()) {
+                    if (onesNotHealthy.size() >= (numNotHealthy > 3 ? 1 : 3)) break;
+                    onesNotHealthy.put(e, ""+counts.producers.get(e).state);
+                }
             }
 
             QuorumCheck qc = getConfig(RUNNING_QUORUM_CHECK);
             if (qc!=null) {
-                if (qc.isQuorate(numRunning, onesNotHealthy.size()+numRunning))
+                if (qc.isQuorate(numRunning, numNotHealthy+numRunning))
                     // quorate
                     return null;
 
-                if (onesNotHealthy.isEmpty())
+                if (numNotHealthy==0)
                     return "Not enough entities running to be quorate";
             } else {
-                if (onesNotHealthy.isEmpty())
+                if (numNotHealthy==0)
                     return null;
             }
 
-            return "Required entit"+Strings.ies(onesNotHealthy.size())+" not healthy: "+
-                (onesNotHealthy.size()>3
-                        ? nameOfEntity(onesNotHealthy.keySet().iterator().next())+" ("+onesNotHealthy.values().iterator().next()+") and "+(onesNotHealthy.size()-1)+" others"
+            return "Required entit"+Strings.ies(numNotHealthy)+" not healthy: "+
+                (numNotHealthy>3
+                        ? nameOfEntity(onesNotHealthy.keySet().iterator().next())+" ("+onesNotHealthy.values().iterator().next()+") and "+(numNotHealthy-1)+" others"
                         : onesNotHealthy.entrySet().stream().map(entry -> nameOfEntity(entry.getKey())+" ("+entry.getValue()+")").collect(Collectors.joining(", ")));
         }
 
@@ -756,6 +895,11 @@ public class ServiceStateLogic {
         }
 
         protected void updateMapSensor(AttributeSensor<Map<String, Object>> sensor, Object value) {
+            Map<String, Object> current = entity.getAttribute(sensor);
+            if (current!=null && (value!=null ? value.equals(current.get(getKeyForMapSensor())) : !current.containsKey(getKeyForMapSensor()))) {
+                // unchanged; skip the (synchronized) modify and its copy of the map
+                return;
+            }
             if (log.isTraceEnabled()) log.trace("{} updating map sensor {} with {}", new Object[] { this, sensor, value });
 
             if (value!=null) {
@@ -770,6 +914,78 @@ public class ServiceStateLogic {
         protected Object compute() {
             return null;
         }
+
+        /** How a producer's last known values count towards the quorum checks */
+        private static class ProducerStatus {
+            /** order in which the producer was added, used to report violators consistently */
+            final long order;
+            Boolean up;
+            Lifecycle state;
+            boolean countedForUp, countedUp, countedNotUp, countedRunning, countedNotHealthy;
+
+            ProducerStatus(long order) {
+                this.order = order;
+            }
+        }
+
+        /**
+         * Counts of producers by how they contribute to the quorum checks, maintained as producers change
+         * so that each change does not require re-examining every child and member.
+         */
+        private static class ProducerCounts {
+            final Map<Entity, ProducerStatus> producers = new LinkedHashMap<Entity, ProducerStatus>();
+            final NavigableMap<Long, Entity> notUp = new TreeMap<Long, Entity>();
+            final NavigableMap<Long, Entity> notHealthy = new TreeMap<Long, Entity>();
+            int numUpEntries, numUp, numRunning;
+            long nextOrder;
+
+            /** whether the config used for counting may have changed, so all producers must be re-counted */
+            boolean stale = true;
+            boolean ignoreNull;
+            Set<Lifecycle> ignoreStates;
+
+            void reset(boolean ignoreNull, Set<Lifecycle> ignoreStates) {
+                this.ignoreNull = ignoreNull;
+                this.ignoreStates = ignoreStates;
+                for (ProducerStatus status: producers.values()) {
+                    status.countedForUp = status.countedUp = status.countedNotUp = status.countedRunning = status.countedNotHealthy = false;
+                }
+                notUp.clear();
+                notHealthy.clear();
+                numUpEntries = numUp = numRunning = 0;
+                stale = false;
+            }
+
+            void count(Entity producer, ProducerStatus status) {
+                if (!(ignoreNull && status.up==null)) {
+                    status.countedForUp = true;
+                    numUpEntries++;
+                    if (Boolean.TRUE.equals(status.up)) {
+                        status.countedUp = true;
+                        numUp++;
+                    } else if (!ignoreStates.contains(producer.getAttribute(SERVICE_STATE_ACTUAL))) {
+                        status.countedNotUp = true;
+                        notUp.put(status.order, producer);
+                    }
+                }
+                if (status.state==Lifecycle.RUNNING) {
+                    status.countedRunning = true;
+                    numRunning++;
+                } else if (!ignoreStates.contains(status.state)) {
+                    status.countedNotHealthy = true;
+                    notHealthy.put(status.order, producer);
+                }
+            }
+
+            void uncount(ProducerStatus status) {
+                if (status.countedForUp) numUpEntries--;
+                if (status.countedUp) numUp--;
+                if (status.countedNotUp) notUp.remove(status.order);
+                if (status.countedRunning) numRunning--;
+                if (status.countedNotHealthy) notHealthy.remove(status.order);
+                status.countedForUp = status.countedUp = status.countedNotUp = status.countedRunning = status.countedNotHealthy = false;
+            }
+        }
     }
 
     public static class ComputeServiceIndicatorsFromChildrenAndMembersSpec extends ExtensibleEnricherSpec<ComputeServiceIndicatorsFromChildrenAndMembers,ComputeServiceIndicatorsFromChildrenAndMembersSpec> {
@@ -21,18 +21,25 @@ package org.apache.brooklyn.core.feed;
 import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.MoreObjects;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.sensor.Sensor;
@@ -45,6 +52,7 @@ import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.predicates.DslPredicates;
+import org.apache.brooklyn.util.core.task.BasicExecutionContext;
 import org.apache.brooklyn.util.core.task.DynamicSequentialTask;
 import org.apache.brooklyn.util.core.task.DynamicTasks;
 import org.apache.brooklyn.util.core.task.ScheduledTask;
@@ -133,6 +141,15 @@ public class Poller<V> {
         }
     }
 
+    /**
+     * A poll job which issues its request asynchronously: {@link #call()} returns a future for the result,
+     * or null if this poll should be skipped (e.g. because a previous request is still outstanding).
+     * The poll task completes as soon as the request is issued, and the handler is called when the future completes,
+     * so slow endpoints do not hold a thread from the execution manager for the duration of each request.
+     */
+    @Beta
+    public interface AsyncPollJob<V> extends Callable<ListenableFuture<V>> {}
+
     private static class PollJob<V> {
         final PollHandler<? super V> handler;
         final Duration pollPeriod;
@@ -159,6 +176,7 @@ public class Poller<V> {
             this.job = job;
             wrappedJob = new Runnable() {
                 @Override
+                @SuppressWarnings("unchecked")
                 public void run() {
                     try {
                         if (pollCondition!=null) {
@@ -171,25 +189,66 @@ public class Poller<V> {
                                 }
                             }
                         }
-                        V val = job.call();
-                        if (handler.checkSuccess(val)) {
-                            handler.onSuccess(val);
-                        } else {
-                            handler.onFailure(val);
+                        if (job instanceof AsyncPollJob) {
+                            ListenableFuture<V> future = ((AsyncPollJob<V>) job).call();
+                            if (future != null) {
+                                Futures.addCallback(future, new FutureCallback<V>() {
+                                    @Override
+                                    public void onSuccess(V val) {
+                                        try {
+                                            handleResult(val);
+                                        } catch (Exception e) {
+                                            handleException(e);
+                                        }
+                                    }
+                                    @Override
+                                    public void onFailure(Throwable t) {
+                                        handleException(t instanceof Exception ? (Exception) t : new Exception(t));
+                                    }
+                                }, completionExecutor());
+                            }
+                            return;
                         }
-                        loggedPreviousException = false;
+                        handleResult((V) job.call());
                     } catch (Exception e) {
-                        if (loggedPreviousException) {
-                            if (log.isTraceEnabled()) log.trace("PollJob for {}, repeated consecutive failures, handling {} using {}", job, e, handler);
-                        } else {
-                            if (log.isDebugEnabled()) log.debug("PollJob for {}, repeated consecutive failures, handling {} using {}", job, e, handler);
-                            loggedPreviousException = true;
-                        }
-                        handler.onException(e);
+                        handleException(e);
                     }
                 }
             };
         }
+
+        private void handleResult(V val) {
+            if (handler.checkSuccess(val)) {
+                handler.onSuccess(val);
+            } else {
+                handler.onFailure(val);
+            }
+            loggedPreviousException = false;
+        }
+
+        private void handleException(Exception e) {
+            if (loggedPreviousException) {
+                if (log.isTraceEnabled()) log.trace("PollJob for {}, repeated consecutive failures, handling {} using {}", job, e, handler);
+            } else {
+                if (log.isDebugEnabled()) log.debug("PollJob for {}, repeated consecutive failures, handling {} using {}", job, e, handler);
+                loggedPreviousException = true;
+            }
+            handler.onException(e);
+        }
+
+        /** Handlers for async jobs are run in the execution context of the poll (i.e. the entity's), as for synchronous jobs. */
+        private static Executor completionExecutor() {
+            final ExecutionContext context = BasicExecutionContext.getCurrentExecutionContext();
+            if (context == null) return MoreExecutors.directExecutor();
+            return r -> {
+                try {
+                    context.execute(r);
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    log.debug("Unable to handle result of poll job (context no longer available?): "+e);
+                }
+            };
+        }
     }
 
     public Poller(Entity entity, AbstractEntityAdjunct adjunct, boolean onlyIfServiceUp) {
@@ -1208,6 +1208,9 @@ public class HighAvailabilityManagerImpl implements HighAvailabilityManager {
             "history", nodeStateHistory));
         
         result.putAll(managementContext.getRebindManager().getMetrics());
+        if (managementContext.isRunning() && managementContext.getExecutionManager() instanceof BasicExecutionManager) {
+            result.put("execution", ((BasicExecutionManager) managementContext.getExecutionManager()).getMetrics());
+        }
         result.put("managementStatePersistence", 
             MutableMap.of("read", managementStateReadPersistenceMetrics, "write", managementStateWritePersistenceMetrics));
         
@@ -21,8 +21,13 @@ package org.apache.brooklyn.core.mgmt.internal;
 import org.apache.brooklyn.api.mgmt.Scratchpad;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class BasicScratchpad implements Scratchpad {
+    private static final Logger log = LoggerFactory.getLogger(BasicScratchpad.class);
+
     private final ConfigBag storage = ConfigBag.newInstance();
 
     @Override
@@ -40,4 +45,18 @@ public class BasicScratchpad implements Scratchpad {
         return storage.containsKey(key);
     }
 
+    /** Closes any {@link AutoCloseable} values, e.g. resources shared by the users of a management context, when it is terminated. */
+    public void terminate() {
+        for (Object value : storage.getAllConfig().values()) {
+            if (value instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) value).close();
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    log.warn("Error closing "+value+" when terminating management context (continuing)", e);
+                }
+            }
+        }
+    }
+
 }
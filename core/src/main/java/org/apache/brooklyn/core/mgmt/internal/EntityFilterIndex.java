@@ -0,0 +1,325 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.SingleThreadedScheduler;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Filters registered against the managed entities of a {@link LocalEntityManager}, typically by dynamic groups,
+ * so that each is told incrementally of the entities it matches rather than being told of every entity
+ * or scanning the entities itself.
+ * <p>
+ * Filters are registered against an application, or against all entities. Each change to a managed entity
+ * (managed, unmanaged, or a change to its tags or plan id) is handled by one task for the entity's application,
+ * in order, which evaluates the filters registered against that application and tells each listener only of
+ * the entities it matches (or no longer matches). When a filter is registered, its initial matches are found
+ * by one pass over the application's entities, shared with all other filters registered in the meantime,
+ * as happens when many groups are managed together on rebind or promotion.
+ * <p>
+ * Listeners are called in order for each registration, in a task of their own, so one slow listener does not
+ * hold up the others.
+ */
+@Beta
+public class EntityFilterIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(EntityFilterIndex.class);
+
+    /** Key in {@link #scopes} for filters against all entities; application ids are never empty. */
+    private static final String ALL_APPLICATIONS = "";
+
+    /** Told of the entities matched by a registered filter; see {@link EntityFilterIndex}. */
+    public interface Listener {
+        /** The entities matching when the filter was registered; others previously matched may no longer match. */
+        void onInitialMatches(Collection<Entity> matches);
+        /** A managed entity which was not previously matched now matches, on being managed or after it changed. */
+        void onEntityMatched(Entity entity);
+        /** An entity previously matched no longer matches after it changed. */
+        void onEntityNoLongerMatched(Entity entity);
+        /** An entity previously matched has been unmanaged. */
+        void onEntityUnmanaged(Entity entity);
+    }
+
+    public static class Registration {
+        private final String applicationId;
+        private final Predicate<? super Entity> filter;
+        private final Listener listener;
+        /** entities last reported as matched to the listener, updated only from the tasks for the scope */
+        private final Set<Entity> matched = Sets.newConcurrentHashSet();
+        private volatile boolean active = true;
+
+        private Registration(@Nullable String applicationId, Predicate<? super Entity> filter, Listener listener) {
+            this.applicationId = applicationId;
+            this.filter = checkNotNull(filter, "filter");
+            this.listener = checkNotNull(listener, "listener");
+        }
+
+        /** the application whose entities are filtered, or null for all entities */
+        @Nullable
+        public String getApplicationId() {
+            return applicationId;
+        }
+
+        @Override
+        public String toString() {
+            return "entity-filter["+listener+"]";
+        }
+    }
+
+    /** The registrations against an application (or all entities), whose changes are handled in order. */
+    private static class Scope {
+        private final String applicationId;
+        private final Set<Registration> registrations = Sets.newCopyOnWriteArraySet();
+        private final Queue<Registration> awaitingInitialMatches = new ConcurrentLinkedQueue<>();
+
+        private Scope(@Nullable String applicationId) {
+            this.applicationId = applicationId;
+        }
+
+        @Override
+        public String toString() {
+            return "entity-filter-index["+(applicationId==null ? "all" : applicationId)+"]";
+        }
+    }
+
+    private final LocalManagementContext managementContext;
+    private final LocalEntityManager entityManager;
+    private final ConcurrentMap<String, Scope> scopes = Maps.newConcurrentMap();
+
+    private final AtomicLong changesHandled = new AtomicLong();
+    private final AtomicLong filterEvaluations = new AtomicLong();
+    private final AtomicLong initialMatchPasses = new AtomicLong();
+    private final AtomicLong notifications = new AtomicLong();
+
+    EntityFilterIndex(LocalManagementContext managementContext, LocalEntityManager entityManager) {
+        this.managementContext = checkNotNull(managementContext, "managementContext");
+        this.entityManager = checkNotNull(entityManager, "entityManager");
+    }
+
+    /**
+     * Registers a filter against the entities in the given application, or all entities if null.
+     * The listener is told of the initial matches once found, and of subsequent changes.
+     */
+    public Registration register(@Nullable String applicationId, Predicate<? super Entity> filter, Listener listener) {
+        Registration registration = new Registration(applicationId, filter, listener);
+        getExecutionManager().setTaskSchedulerForTag(registration, SingleThreadedScheduler.class);
+        Scope scope = scopes.compute(scopeKey(applicationId), (key, existing) -> {
+            Scope result = (existing != null) ? existing : newScope(applicationId);
+            result.registrations.add(registration);
+            return result;
+        });
+        scope.awaitingInitialMatches.add(registration);
+        submit(scope, "finding initial matches of entity filters", () -> findInitialMatches(scope));
+        return registration;
+    }
+
+    public void unregister(Registration registration) {
+        registration.active = false;
+        scopes.computeIfPresent(scopeKey(registration.applicationId), (key, scope) -> {
+            scope.registrations.remove(registration);
+            if (!scope.registrations.isEmpty()) return scope;
+            getExecutionManager().clearTaskSchedulerForTag(scope);
+            return null;
+        });
+        getExecutionManager().clearTaskSchedulerForTag(registration);
+        registration.matched.clear();
+    }
+
+    /** Counts of work done, for tests and diagnostics. */
+    public Map<String, Object> getMetrics() {
+        return ImmutableMap.<String, Object>of(
+                "changesHandled", changesHandled.get(),
+                "filterEvaluations", filterEvaluations.get(),
+                "initialMatchPasses", initialMatchPasses.get(),
+                "notifications", notifications.get());
+    }
+
+    void onEntityManaged(Entity entity) {
+        onEntityChanged(entity);
+    }
+
+    void onEntityChanged(Entity entity) {
+        for (Scope scope : getScopesFor(entity)) {
+            submit(scope, "entity changed", () -> {
+                changesHandled.incrementAndGet();
+                for (Registration registration : scope.registrations) {
+                    if (!registration.active) continue;
+                    Boolean matches = evaluate(registration, entity);
+                    if (matches == null) continue;
+                    if (matches) {
+                        if (registration.matched.add(entity)) notify(registration, "onEntityMatched("+entity+")", () -> registration.listener.onEntityMatched(entity));
+                    } else if (registration.matched.remove(entity)) {
+                        notify(registration, "onEntityNoLongerMatched("+entity+")", () -> registration.listener.onEntityNoLongerMatched(entity));
+                    }
+                }
+            });
+        }
+    }
+
+    void onEntityUnmanaged(Entity entity) {
+        for (Scope scope : getScopesFor(entity)) {
+            submit(scope, "entity unmanaged", () -> {
+                changesHandled.incrementAndGet();
+                for (Registration registration : scope.registrations) {
+                    if (registration.active && registration.matched.remove(entity)) {
+                        notify(registration, "onEntityUnmanaged("+entity+")", () -> registration.listener.onEntityUnmanaged(entity));
+                    }
+                }
+            });
+        }
+    }
+
+    private Collection<Scope> getScopesFor(Entity entity) {
+        if (scopes.isEmpty()) return ImmutableSet.of();
+        String applicationId = entity.getApplicationId();
+        if (applicationId == null) {
+            // can happen if parent is cleared when unmanaging an entity not yet fully managed; tell everyone, to be safe
+            return MutableList.copyOf(scopes.values());
+        }
+        Set<Scope> result = MutableSet.of();
+        Scope scope = scopes.get(applicationId);
+        if (scope != null) result.add(scope);
+        scope = scopes.get(ALL_APPLICATIONS);
+        if (scope != null) result.add(scope);
+        return result;
+    }
+
+    /** finds the initial matches of all registrations awaiting them in the scope, in one pass over its entities */
+    private void findInitialMatches(Scope scope) {
+        List<Registration> pending = MutableList.of();
+        Registration next;
+        while ((next = scope.awaitingInitialMatches.poll()) != null) {
+            if (next.active) pending.add(next);
+        }
+        if (pending.isEmpty()) {
+            // already done, along with an earlier registration
+            return;
+        }
+        initialMatchPasses.incrementAndGet();
+
+        Collection<Entity> entities = (scope.applicationId == null)
+                ? entityManager.getEntities()
+                : entityManager.getEntitiesInApplication(scope.applicationId);
+        Map<Registration, Set<Entity>> matches = MutableMap.of();
+        for (Registration registration : pending) {
+            matches.put(registration, MutableSet.<Entity>of());
+        }
+        for (Entity entity : entities) {
+            for (Registration registration : pending) {
+                Set<Entity> matchesOfRegistration = matches.get(registration);
+                if (matchesOfRegistration == null) continue;
+                Boolean match = evaluate(registration, entity);
+                if (match == null) {
+                    // error already reported; don't give it partial matches
+                    matches.remove(registration);
+                } else if (match) {
+                    matchesOfRegistration.add(entity);
+                }
+            }
+        }
+
+        for (Map.Entry<Registration, Set<Entity>> entry : matches.entrySet()) {
+            Registration registration = entry.getKey();
+            Collection<Entity> matchesOfRegistration = ImmutableSet.copyOf(entry.getValue());
+            registration.matched.clear();
+            registration.matched.addAll(matchesOfRegistration);
+            notify(registration, "onInitialMatches", () -> registration.listener.onInitialMatches(matchesOfRegistration));
+        }
+    }
+
+    /** true or false if the filter matches, or null if it failed */
+    private Boolean evaluate(Registration registration, Entity entity) {
+        filterEvaluations.incrementAndGet();
+        try {
+            return registration.filter.apply(entity);
+        } catch (Throwable t) {
+            Exceptions.propagateIfFatal(t);
+            onError(registration, "Error applying filter of "+registration.listener+" to "+entity, t);
+            return null;
+        }
+    }
+
+    private void notify(Registration registration, String description, Runnable call) {
+        notifications.incrementAndGet();
+        getExecutionManager().submit(MutableMap.of("tag", registration, "displayName", description), () -> {
+            if (!registration.active) return;
+            try {
+                call.run();
+            } catch (Throwable t) {
+                Exceptions.propagateIfFatal(t);
+                onError(registration, "Error notifying "+registration.listener+" of "+description, t);
+            }
+        });
+    }
+
+    private void onError(Registration registration, String msg, Throwable t) {
+        if (!managementContext.isRunning() || !registration.active) {
+            log.debug(msg+" (no longer active): "+t);
+        } else {
+            log.warn(msg+": "+t, t);
+        }
+    }
+
+    private void submit(Scope scope, String description, Runnable job) {
+        getExecutionManager().submit(MutableMap.of("tag", scope, "displayName", description), job);
+    }
+
+    private Scope newScope(@Nullable String applicationId) {
+        Scope result = new Scope(applicationId);
+        getExecutionManager().setTaskSchedulerForTag(result, SingleThreadedScheduler.class);
+        return result;
+    }
+
+    private BasicExecutionManager getExecutionManager() {
+        ExecutionManager result = managementContext.getExecutionManager();
+        return (BasicExecutionManager) result;
+    }
+
+    private static String scopeKey(@Nullable String applicationId) {
+        return (applicationId == null) ? ALL_APPLICATIONS : applicationId;
+    }
+}
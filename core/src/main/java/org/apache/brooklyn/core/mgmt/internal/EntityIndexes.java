@@ -0,0 +1,260 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.core.entity.BrooklynConfigKeys;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * Secondary indexes over the managed entities of a {@link LocalEntityManager}, so that entities can be found
+ * by application, type, catalog item, tag or plan id without scanning every managed entity.
+ * <p>
+ * The keys an entity is indexed under are recorded when it is added, so it can be removed even if (for example)
+ * its parent has since been cleared. Callers should re-check the property they are querying on, as an entity
+ * whose tags or config change is only re-indexed when {@link #update(Entity)} is called.
+ */
+class EntityIndexes {
+
+    private static final Logger log = LoggerFactory.getLogger(EntityIndexes.class);
+
+    private final ConcurrentMap<String, Set<Entity>> byApplicationId = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Set<Entity>> byTypeName = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Set<Entity>> byCatalogItemId = Maps.newConcurrentMap();
+    private final ConcurrentMap<Object, Set<Entity>> byTag = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Set<Entity>> byPlanId = Maps.newConcurrentMap();
+
+    /** Entities whose plan id is not (yet) a plain string, e.g. a DSL expression; these are candidates for every plan id query */
+    private final Set<Entity> withUnresolvedPlanId = Sets.newConcurrentHashSet();
+
+    /** The keys each entity is currently indexed under, by entity id; access to this is synchronized on itself */
+    private final Map<String, IndexKeys> keysByEntityId = Maps.newHashMap();
+
+    private static class IndexKeys {
+        final Entity proxy;
+        final String applicationId;
+        final Set<String> typeNames;
+        final String catalogItemId;
+        final Set<Object> tags;
+        final Object planId;
+
+        IndexKeys(Entity proxy, Entity real) {
+            this.proxy = proxy;
+            this.applicationId = proxy.getApplicationId();
+            this.typeNames = typeNames(proxy, real);
+            this.catalogItemId = proxy.getCatalogItemId();
+            this.tags = tags(proxy);
+            this.planId = planId(real);
+        }
+    }
+
+    /** Indexes the given entity, replacing any entries previously indexed under its id. */
+    void add(Entity proxy, Entity real) {
+        IndexKeys keys = new IndexKeys(proxy, real);
+        synchronized (keysByEntityId) {
+            IndexKeys old = keysByEntityId.put(proxy.getId(), keys);
+            if (old != null) unindex(old);
+            index(keys);
+        }
+    }
+
+    /** Re-indexes the given entity if it is indexed, e.g. when its tags or plan id have changed. */
+    void update(Entity real) {
+        IndexKeys old;
+        synchronized (keysByEntityId) {
+            old = keysByEntityId.get(real.getId());
+        }
+        if (old == null) return;
+        // compute the new keys without holding the lock, as that calls in to the entity
+        IndexKeys keys = new IndexKeys(old.proxy, real);
+        synchronized (keysByEntityId) {
+            if (keysByEntityId.get(real.getId()) != old) {
+                // concurrently removed or re-added; whoever did that has indexed the current state
+                return;
+            }
+            keysByEntityId.put(real.getId(), keys);
+            reindex(old, keys);
+        }
+    }
+
+    void remove(String entityId) {
+        synchronized (keysByEntityId) {
+            IndexKeys old = keysByEntityId.remove(entityId);
+            if (old != null) unindex(old);
+        }
+    }
+
+    Collection<Entity> getByApplicationId(String applicationId) {
+        return get(byApplicationId, applicationId);
+    }
+
+    Collection<Entity> getByTypeName(String typeName) {
+        return get(byTypeName, typeName);
+    }
+
+    Collection<Entity> getByCatalogItemId(String catalogItemId) {
+        return get(byCatalogItemId, catalogItemId);
+    }
+
+    Collection<Entity> getByTag(Object tag) {
+        return get(byTag, tag);
+    }
+
+    /** Returns the entities whose plan id is the given value, and those whose plan id is not a plain string */
+    Collection<Entity> getCandidatesByPlanId(String planId) {
+        Collection<Entity> result = get(byPlanId, planId);
+        if (withUnresolvedPlanId.isEmpty()) return result;
+        return ImmutableList.copyOf(MutableSet.<Entity>copyOf(result).putAll(withUnresolvedPlanId));
+    }
+
+    private void index(IndexKeys keys) {
+        put(byApplicationId, keys.applicationId, keys.proxy);
+        for (String typeName : keys.typeNames) {
+            put(byTypeName, typeName, keys.proxy);
+        }
+        put(byCatalogItemId, keys.catalogItemId, keys.proxy);
+        for (Object tag : keys.tags) {
+            put(byTag, tag, keys.proxy);
+        }
+        if (keys.planId instanceof String) {
+            put(byPlanId, (String) keys.planId, keys.proxy);
+        } else if (keys.planId != null) {
+            withUnresolvedPlanId.add(keys.proxy);
+        }
+    }
+
+    private void unindex(IndexKeys keys) {
+        remove(byApplicationId, keys.applicationId, keys.proxy);
+        for (String typeName : keys.typeNames) {
+            remove(byTypeName, typeName, keys.proxy);
+        }
+        remove(byCatalogItemId, keys.catalogItemId, keys.proxy);
+        for (Object tag : keys.tags) {
+            remove(byTag, tag, keys.proxy);
+        }
+        if (keys.planId instanceof String) {
+            remove(byPlanId, (String) keys.planId, keys.proxy);
+        } else if (keys.planId != null) {
+            withUnresolvedPlanId.remove(keys.proxy);
+        }
+    }
+
+    /** Changes only the entries whose keys differ, so the entity keeps its position in the others */
+    private void reindex(IndexKeys old, IndexKeys keys) {
+        if (!Objects.equal(old.applicationId, keys.applicationId)) {
+            remove(byApplicationId, old.applicationId, old.proxy);
+            put(byApplicationId, keys.applicationId, keys.proxy);
+        }
+        if (!Objects.equal(old.catalogItemId, keys.catalogItemId)) {
+            remove(byCatalogItemId, old.catalogItemId, old.proxy);
+            put(byCatalogItemId, keys.catalogItemId, keys.proxy);
+        }
+        for (Object tag : Sets.difference(old.tags, keys.tags)) {
+            remove(byTag, tag, old.proxy);
+        }
+        for (Object tag : Sets.difference(keys.tags, old.tags)) {
+            put(byTag, tag, keys.proxy);
+        }
+        if (!Objects.equal(old.planId, keys.planId)) {
+            if (old.planId instanceof String) {
+                remove(byPlanId, (String) old.planId, old.proxy);
+            } else if (old.planId != null) {
+                withUnresolvedPlanId.remove(old.proxy);
+            }
+            if (keys.planId instanceof String) {
+                put(byPlanId, (String) keys.planId, keys.proxy);
+            } else if (keys.planId != null) {
+                withUnresolvedPlanId.add(keys.proxy);
+            }
+        }
+        // types do not change
+    }
+
+    private static <K> void put(ConcurrentMap<K, Set<Entity>> index, @Nullable K key, Entity entity) {
+        if (key == null) return;
+        // ordered by when entities were indexed, so parents come before their children, as when walking the tree
+        index.computeIfAbsent(key, k -> Collections.synchronizedSet(Sets.newLinkedHashSet())).add(entity);
+    }
+
+    private static <K> void remove(ConcurrentMap<K, Set<Entity>> index, @Nullable K key, Entity entity) {
+        if (key == null) return;
+        index.computeIfPresent(key, (k, entities) -> {
+            entities.remove(entity);
+            return entities.isEmpty() ? null : entities;
+        });
+    }
+
+    private static <K> Collection<Entity> get(ConcurrentMap<K, Set<Entity>> index, @Nullable K key) {
+        if (key == null) return ImmutableList.of();
+        Set<Entity> result = index.get(key);
+        if (result == null) return ImmutableList.of();
+        synchronized (result) {
+            return ImmutableList.copyOf(result);
+        }
+    }
+
+    /** Names of all interfaces of the proxy, and all classes and interfaces of the real entity */
+    private static Set<String> typeNames(Entity proxy, Entity real) {
+        Set<String> result = MutableSet.of();
+        for (Class<?> type : TypeToken.of(proxy.getClass()).getTypes().interfaces().rawTypes()) {
+            result.add(type.getName());
+        }
+        if (real != null && real != proxy) {
+            for (Class<?> type : TypeToken.of(real.getClass()).getTypes().rawTypes()) {
+                result.add(type.getName());
+            }
+        }
+        return result;
+    }
+
+    private static Set<Object> tags(Entity entity) {
+        try {
+            return ImmutableSet.copyOf(entity.tags().getTags());
+        } catch (Exception e) {
+            // tags must be hashable to be indexed; if not, callers will not find this entity by tag
+            Exceptions.propagateIfFatal(e);
+            log.debug("Unable to index tags of "+entity+" (ignoring): "+e);
+            return ImmutableSet.of();
+        }
+    }
+
+    private static Object planId(Entity real) {
+        if (!(real instanceof EntityInternal)) return null;
+        return ((EntityInternal) real).config().getLocalRaw(BrooklynConfigKeys.PLAN_ID).orNull();
+    }
+}
@@ -30,6 +30,7 @@ import java.util.stream.Collectors;
 import org.apache.brooklyn.api.effector.Effector;
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.EntityManager;
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.SubscriptionContext;
@@ -42,6 +43,7 @@ import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.entity.AbstractEntity;
+import org.apache.brooklyn.core.entity.BrooklynConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
@@ -590,6 +592,7 @@ public class EntityManagementSupport {
         @Override
         public void onChildrenChanged() {
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            onTopologyChanged();
         }
         @Override
         public void onLocationsChanged() {
@@ -598,10 +601,12 @@ public class EntityManagementSupport {
         @Override
         public void onTagsChanged() {
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            onIndexedPropertiesChanged();
         }
         @Override
         public void onMembersChanged() {
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            onTopologyChanged();
         }
         @Override
         public void onPolicyAdded(Policy policy) {
@@ -642,6 +647,21 @@ public class EntityManagementSupport {
         @Override
         public void onConfigChanged(ConfigKey<?> key) {
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            if (BrooklynConfigKeys.PLAN_ID.getName().equals(key.getName())) {
+                onIndexedPropertiesChanged();
+            }
+        }
+        private void onTopologyChanged() {
+            EntityManager entityManager = getManagementContext().getEntityManager();
+            if (entityManager instanceof LocalEntityManager) {
+                ((LocalEntityManager)entityManager).onTopologyChanged(entity);
+            }
+        }
+        private void onIndexedPropertiesChanged() {
+            EntityManager entityManager = getManagementContext().getEntityManager();
+            if (entityManager instanceof LocalEntityManager) {
+                ((LocalEntityManager)entityManager).onIndexedPropertiesChanged(entity);
+            }
         }
         @Override
         public void onEffectorStarting(Effector<?> effector, Object parameters) {
@@ -18,6 +18,8 @@
  */
 package org.apache.brooklyn.core.mgmt.internal;
 
+import java.util.Collection;
+
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
@@ -34,6 +36,37 @@ public interface EntityManagerInternal extends EntityManager, BrooklynObjectMana
 
     public Iterable<String> getEntityIds();
     
+    /**
+     * As {@link #getEntitiesInApplication(Application)}, but given the application id.
+     * Like the other lookups below, this uses an index of the managed entities rather than scanning them all.
+     */
+    @Beta
+    Collection<Entity> getEntitiesInApplication(String applicationId);
+
+    /** returns the managed entities which are instances of the given type, either the interface or the implementation class */
+    @Beta
+    Collection<Entity> findEntitiesOfType(Class<?> type);
+
+    /** returns the managed entities with the given catalog item id */
+    @Beta
+    Collection<Entity> findEntitiesWithCatalogItemId(String catalogItemId);
+
+    /** returns the managed entities with the given tag */
+    @Beta
+    Collection<Entity> findEntitiesWithTag(Object tag);
+
+    /** returns the managed entities whose {@link org.apache.brooklyn.core.entity.BrooklynConfigKeys#PLAN_ID} is the given value */
+    @Beta
+    Collection<Entity> findEntitiesWithPlanId(String planId);
+
+    /**
+     * A count which increases whenever an entity is managed or unmanaged, or the children, members or plan id of
+     * a managed entity change; callers can use it to tell when something derived from the topology needs recomputing.
+     * Negative if such changes are not tracked.
+     */
+    @Beta
+    long getTopologyChangeCount();
+    
     /**
      * Same as {@link #createEntity(EntitySpec)}, but takes an optional entity id that will be 
      * used for the entity.
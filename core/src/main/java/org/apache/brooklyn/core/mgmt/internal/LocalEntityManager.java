@@ -23,6 +23,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import java.lang.reflect.Proxy;
 import java.util.*;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
@@ -43,6 +44,7 @@ import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.EnricherSpec;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.entity.AbstractEntity;
+import org.apache.brooklyn.core.entity.BrooklynConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.entity.EntityPredicates;
@@ -120,6 +122,15 @@ public class LocalEntityManager implements EntityManagerInternal {
      * Access to this is always done in a synchronized block (synchronizing on `this`).
      */
     private final ObservableSet<Entity> entities = new ObservableSet<Entity>();
+
+    /** Filters registered against the managed entities, told incrementally of matches */
+    private final EntityFilterIndex filterIndex;
+    
+    /** Secondary indexes of the managed entities (by application, type, catalog item, tag and plan id) */
+    private final EntityIndexes indexes = new EntityIndexes();
+    
+    /** See {@link #getTopologyChangeCount()} */
+    private final AtomicLong topologyChangeCount = new AtomicLong();
     
     /** Proxies of the managed entities that are applications */
     private final Set<Application> applications = Sets.newConcurrentHashSet();
@@ -137,6 +148,18 @@ public class LocalEntityManager implements EntityManagerInternal {
         
         entityTypes = storage.getMap("entities");
         applicationIds = SetFromLiveMap.create(storage.<String,Boolean>getMap("applications"));
+        
+        filterIndex = new EntityFilterIndex(managementContext, this);
+        entities.addListener(new CollectionChangeListener<Entity>() {
+            @Override
+            public void onItemAdded(Entity item) {
+                filterIndex.onEntityManaged(item);
+            }
+            @Override
+            public void onItemRemoved(Entity item) {
+                filterIndex.onEntityUnmanaged(item);
+            }
+        });
     }
 
     public InternalEntityFactory getEntityFactory() {
@@ -239,8 +262,13 @@ public class LocalEntityManager implements EntityManagerInternal {
     
     @Override
     public Collection<Entity> getEntitiesInApplication(Application application) {
-        Predicate<Entity> predicate = EntityPredicates.applicationIdEqualTo(application.getId());
-        return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), predicate));
+        return getEntitiesInApplication(application.getId());
+    }
+
+    @Override
+    public Collection<Entity> getEntitiesInApplication(String applicationId) {
+        Predicate<Entity> predicate = EntityPredicates.applicationIdEqualTo(applicationId);
+        return ImmutableList.copyOf(Iterables.filter(indexes.getByApplicationId(applicationId), predicate));
     }
 
     @Override
@@ -251,7 +279,55 @@ public class LocalEntityManager implements EntityManagerInternal {
     @Override
     public Collection<Entity> findEntitiesInApplication(Application application, Predicate<? super Entity> filter) {
         Predicate<Entity> predicate = Predicates.and(EntityPredicates.applicationIdEqualTo(application.getId()), filter);
-        return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), predicate));
+        return ImmutableList.copyOf(Iterables.filter(indexes.getByApplicationId(application.getId()), predicate));
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesOfType(Class<?> type) {
+        // the index is by name, so check the type itself in case of same-named types from different bundles
+        return ImmutableList.copyOf(Iterables.filter(indexes.getByTypeName(type.getName()),
+                input -> type.isInstance(input) || type.isInstance(deproxyIfNecessary(input))));
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesWithCatalogItemId(String catalogItemId) {
+        return ImmutableList.copyOf(Iterables.filter(indexes.getByCatalogItemId(catalogItemId),
+                input -> catalogItemId.equals(input.getCatalogItemId())));
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesWithTag(Object tag) {
+        return ImmutableList.copyOf(Iterables.filter(indexes.getByTag(tag), input -> input.tags().containsTag(tag)));
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesWithPlanId(String planId) {
+        return ImmutableList.copyOf(Iterables.filter(indexes.getCandidatesByPlanId(planId),
+                EntityPredicates.configEqualTo(BrooklynConfigKeys.PLAN_ID, planId)));
+    }
+
+    /** Called when an indexed property of a managed entity, such as its tags or plan id, has changed. */
+    void onIndexedPropertiesChanged(Entity entity) {
+        indexes.update(deproxyIfNecessary(entity));
+        topologyChangeCount.incrementAndGet();
+        Entity proxy = entityProxiesById.get(entity.getId());
+        if (proxy != null) filterIndex.onEntityChanged(proxy);
+    }
+
+    /** See {@link EntityFilterIndex} */
+    @Beta
+    public EntityFilterIndex getFilterIndex() {
+        return filterIndex;
+    }
+
+    /** Called when the children or members of a managed entity have changed. */
+    void onTopologyChanged(Entity entity) {
+        topologyChangeCount.incrementAndGet();
+    }
+
+    @Override
+    public long getTopologyChangeCount() {
+        return topologyChangeCount.get();
     }
 
     @Override
@@ -279,7 +355,7 @@ public class LocalEntityManager implements EntityManagerInternal {
                 }
             }
         }
-        for (Entity entity : entityProxiesById.values()) {
+        for (Entity entity : indexes.getByApplicationId(application.getId())) {
             if (predicate.apply(entity)) {
                 result.add(entity);
             }
@@ -653,6 +729,8 @@ public class LocalEntityManager implements EntityManagerInternal {
         entityProxiesById.remove(e.getId());
         entitiesById.remove(e.getId());
         entityModesById.remove(e.getId());
+        indexes.remove(e.getId());
+        topologyChangeCount.incrementAndGet();
     }
     
     private void stopTasks(Entity entity) {
@@ -881,6 +959,8 @@ public class LocalEntityManager implements EntityManagerInternal {
         entityProxiesById.put(e.getId(), proxyE);
         entityTypes.put(e.getId(), realE.getClass().getName());
         entitiesById.put(e.getId(), realE);
+        indexes.add(proxyE, realE);
+        topologyChangeCount.incrementAndGet();
 
         Entity preManaged = preManagedEntitiesById.remove(e.getId());
         if (preManaged==null) {
@@ -955,6 +1035,8 @@ public class LocalEntityManager implements EntityManagerInternal {
 
             entities.remove(proxyE);
             entityProxiesById.remove(e.getId());
+            indexes.remove(e.getId());
+            topologyChangeCount.incrementAndGet();
             ManagementTransitionMode oldMode = entityModesById.remove(e.getId());
             
             Object old = entitiesById.remove(e.getId());
@@ -1024,7 +1106,7 @@ public class LocalEntityManager implements EntityManagerInternal {
         AsyncCollectionChangeAdapter<Entity> wrappedListener = new AsyncCollectionChangeAdapter<Entity>(managementContext.getExecutionManager(), listener);
         entities.removeListener(wrappedListener);
     }
-    
+
     private boolean shouldSkipUnmanagement(Entity e, boolean hasBeenReplaced) {
         if (e==null) {
             log.warn(""+this+" call to unmanage null entity; skipping",  
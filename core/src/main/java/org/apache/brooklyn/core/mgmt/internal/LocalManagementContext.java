@@ -33,6 +33,8 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.Nullable;
+
 import org.apache.brooklyn.api.effector.Effector;
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
@@ -64,6 +66,7 @@ import org.apache.brooklyn.util.core.task.TaskTags;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.http.executor.apacheclient.PooledHttpExecutorImpl;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.CountdownTimer;
 import org.apache.brooklyn.util.time.Duration;
@@ -73,6 +76,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
+import com.google.common.base.Predicate;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 
@@ -243,6 +247,16 @@ public class LocalManagementContext extends AbstractManagementContext {
         getEntityManager().removeEntitySetListener(listener);
     }
 
+    @Override
+    public EntityFilterIndex.Registration addEntityFilter(@Nullable String applicationId, Predicate<? super Entity> filter, EntityFilterIndex.Listener listener) {
+        return getEntityManager().getFilterIndex().register(applicationId, filter, listener);
+    }
+
+    @Override
+    public void removeEntityFilter(EntityFilterIndex.Registration registration) {
+        getEntityManager().getFilterIndex().unregister(registration);
+    }
+
     @Override
     protected void manageIfNecessary(Entity entity, Object context) {
         getEntityManager().manageIfNecessary(entity, context);
@@ -310,7 +324,7 @@ public class LocalManagementContext extends AbstractManagementContext {
         if (!isRunning()) throw new IllegalStateException("Management context no longer running");
 
         if (subscriptions == null) {
-            subscriptions = new LocalSubscriptionManager(getExecutionManager());
+            subscriptions = new LocalSubscriptionManager(getExecutionManager(), configMap);
         }
         return subscriptions;
     }
@@ -320,7 +334,7 @@ public class LocalManagementContext extends AbstractManagementContext {
         if (!isRunning()) throw new IllegalStateException("Management context no longer running");
 
         if (execution == null) {
-            execution = new BasicExecutionManager(getManagementNodeId());
+            execution = new BasicExecutionManager(getManagementNodeId(), configMap);
             gc = new BrooklynGarbageCollector(configMap, execution, getStorage());
         }
         return execution;
@@ -344,6 +358,10 @@ public class LocalManagementContext extends AbstractManagementContext {
             osgiManager.stop();
             osgiManager = null;
         }
+        if (INSTANCES.isEmpty()) {
+            // HTTP connection pools are shared by all management contexts in the JVM
+            PooledHttpExecutorImpl.shutdownConnectionPools();
+        }
 
         log.debug("Terminated management context "+this);
     }
@@ -18,18 +18,19 @@
  */
 package org.apache.brooklyn.core.mgmt.internal;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Multimaps;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.*;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
@@ -53,41 +54,85 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Nullable;
+
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.*;
 
 /**
  * A {@link SubscriptionManager} that stores subscription details locally.
  * 
- * Synchronization model:  methods in this class synch on this object to ensure
- * subscription order and delivery order on publish.
+ * Synchronization model:  subscriptions are held in concurrent indexes, by producer and sensor
+ * (see {@link SubscriptionIndex}) and by subscriber, which lock only the entry being changed;
+ * there is no global monitor. Delivery order on publish is preserved by generating notifications
+ * in the calling thread, and delivering them through a single-threaded scheduler per subscriber.
  * <p>
  * Frequently it will be called by a thread holding a lock on a value
- * (eg {@link AttributeMap}, this synchronized methods here should not
+ * (eg {@link AttributeMap}, so methods here should not
  * call to any value that may require that lock.  
  * In particular notifications of initial value should not look up values.
+ * <p>
+ * By default each event for each subscription is delivered by its own task; with {@link #BATCHED_DELIVERY}
+ * events are queued per subscriber and delivered in batches, optionally conflating attribute changes.
  */
 public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     
     private static final Logger LOG = LoggerFactory.getLogger(LocalSubscriptionManager.class);
 
+    @Beta
+    public static final ConfigKey<Boolean> BATCHED_DELIVERY = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.subscriptions.delivery.batched",
+            "whether events for a subscriber are put in a mailbox and delivered in batches by a single task, "
+            + "rather than submitting a task for each event",
+            false);
+
+    @Beta
+    public static final ConfigKey<Integer> BATCHED_DELIVERY_MAX_BATCH_SIZE = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.subscriptions.delivery.maxBatchSize",
+            "if batched delivery is enabled, the maximum number of events delivered by one task before resubmitting (to let other tasks run)",
+            100);
+
+    @Beta
+    public static final ConfigKey<Boolean> BATCHED_DELIVERY_CONFLATE = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.subscriptions.delivery.conflate",
+            "if batched delivery is enabled, whether a queued attribute change for a subscription is replaced by a newer value "
+            + "for the same entity and sensor, rather than delivering both; can be overridden with the subscription flag 'conflate'",
+            false);
+
     protected final ExecutionManager em;
     
     private final String tostring = "SubscriptionContext("+Identifiers.getBase64IdFromValue(System.identityHashCode(this), 5)+")";
 
     private final AtomicLong totalEventsPublishedCount = new AtomicLong();
     private final AtomicLong totalEventsDeliveredCount = new AtomicLong();
+    private final AtomicLong totalEventsDeliveredInBatchesCount = new AtomicLong();
+    private final AtomicLong totalEventsConflatedCount = new AtomicLong();
+    private final AtomicLong numEventsQueued = new AtomicLong();
+
+    private final boolean batchedDelivery;
+    private final int maxBatchSize;
+    private final boolean conflate;
+    /** mailboxes keyed by subscriber execution manager tag, present only while there are events to deliver; only changed in compute methods */
+    private final ConcurrentMap<Object, Mailbox> mailboxes = new ConcurrentHashMap<Object, Mailbox>();
     
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<String, Subscription> allSubscriptions = new ConcurrentHashMap<String, Subscription>();
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsBySubscriber = new ConcurrentHashMap<Object, Set<Subscription>>();
-    @SuppressWarnings("rawtypes")
-    protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsByToken = new ConcurrentHashMap<Object, Set<Subscription>>();
+    protected final SubscriptionIndex subscriptionsByProducerAndSensor = new SubscriptionIndex();
     
     public LocalSubscriptionManager(ExecutionManager m) {
+        this(m, null);
+    }
+
+    /** Creates a subscription manager configured (e.g. {@link #BATCHED_DELIVERY}) from the given properties, if not null. */
+    public LocalSubscriptionManager(ExecutionManager m, @Nullable StringConfigMap config) {
         this.em = m;
+        this.batchedDelivery = config != null && Boolean.TRUE.equals(config.getConfig(BATCHED_DELIVERY));
+        this.maxBatchSize = config != null ? Math.max(1, config.getConfig(BATCHED_DELIVERY_MAX_BATCH_SIZE)) : BATCHED_DELIVERY_MAX_BATCH_SIZE.getDefaultValue();
+        this.conflate = config != null && Boolean.TRUE.equals(config.getConfig(BATCHED_DELIVERY_CONFLATE));
     }
         
     public long getNumSubscriptions() {
@@ -104,10 +149,25 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     public long getTotalEventsDelivered() {
         return totalEventsDeliveredCount.get();
     }
+
+    /** With {@link #BATCHED_DELIVERY}, the total number of events passed to listeners by batch delivery tasks */
+    public long getTotalEventsDeliveredInBatches() {
+        return totalEventsDeliveredInBatchesCount.get();
+    }
+
+    /** With {@link #BATCHED_DELIVERY_CONFLATE}, the total number of queued events replaced by a newer value before delivery */
+    public long getTotalEventsConflated() {
+        return totalEventsConflatedCount.get();
+    }
+
+    /** With {@link #BATCHED_DELIVERY}, the number of events currently queued for delivery */
+    public long getNumEventsQueued() {
+        return numEventsQueued.get();
+    }
     
     @Override
     @SuppressWarnings("unchecked")
-    protected synchronized <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
+    protected <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
         Entity producer = s.producer;
         if (producer!=null && Entities.isReadOnly(producer)) {
             LOG.trace("Skipping subscription in read only mode {} {}", s, flags);
@@ -134,6 +194,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             s.subscriberExecutionManagerTagSupplied = false;
         }
         s.eventFilter = (Predicate<SensorEvent<T>>) flags.remove("eventFilter");
+        if (flags.containsKey("conflate")) s.conflate = Boolean.TRUE.equals(flags.remove("conflate"));
         boolean notifyOfInitialValue = Boolean.TRUE.equals(flags.remove("notifyOfInitialValue"));
         s.flags = flags;
         
@@ -157,9 +218,13 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         } else {
             lastVal = null;  // won't be used
         }
-        addToMapOfSets(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+        subscriptionsByProducerAndSensor.add(s);
         if (s.subscriber!=null) {
-            addToMapOfSets(subscriptionsBySubscriber, s.subscriber, s);
+            subscriptionsBySubscriber.compute(s.subscriber, (k, subs) -> {
+                if (subs == null) subs = new ConcurrentSkipListSet<Subscription>(SubscriptionIndex.SUBSCRIPTION_ORDER);
+                subs.add(s);
+                return subs;
+            });
         }
         if (!s.subscriberExecutionManagerTagSupplied && s.subscriberExecutionManagerTag!=null) {
             ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
@@ -218,13 +283,8 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     }
 
     @Override
-    public synchronized Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
-        Set<SubscriptionHandle> subscriptions = new LinkedHashSet<SubscriptionHandle>();
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, sensor)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, sensor)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, null)), Collections.emptySet()));
-        subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, null)), Collections.emptySet()));
-        return subscriptions;
+    public Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
+        return new LinkedHashSet<SubscriptionHandle>(subscriptionsByProducerAndSensor.getMatching(source, sensor));
     }
 
     /**
@@ -234,15 +294,19 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
      */
     @Override
     @SuppressWarnings("rawtypes")
-    public synchronized boolean unsubscribe(SubscriptionHandle sh) {
+    public boolean unsubscribe(SubscriptionHandle sh) {
         if (!(sh instanceof Subscription)) throw new IllegalArgumentException("Only subscription handles of type Subscription supported: sh="+sh+"; type="+(sh != null ? sh.getClass().getCanonicalName() : null));
         Subscription s = (Subscription) sh;
         boolean result = allSubscriptions.remove(s.id) != null;
-        boolean b2 = removeFromMapOfCollections(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+        boolean b2 = subscriptionsByProducerAndSensor.remove(s);
         assert result==b2;
         if (s.subscriber!=null) {
-            boolean b3 = removeFromMapOfCollections(subscriptionsBySubscriber, s.subscriber, s);
-            assert b3 == b2;
+            final boolean[] b3 = new boolean[1];
+            subscriptionsBySubscriber.computeIfPresent(s.subscriber, (k, subs) -> {
+                b3[0] = subs.remove(s);
+                return subs.isEmpty() ? null : subs;
+            });
+            assert b3[0] == b2;
         }
 
         // FIXME ALEX - this seems wrong
@@ -267,8 +331,8 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (LOG.isTraceEnabled()) LOG.trace("{} got event {}", this, event);
         totalEventsPublishedCount.incrementAndGet();
         
-        Set<Subscription> subs = (Set<Subscription>) ((Set<?>) getSubscriptionsForEntitySensor(event.getSource(), event.getSensor()));
-        if (groovyTruth(subs)) {
+        List<Subscription> subs = subscriptionsByProducerAndSensor.getMatching(event.getSource(), event.getSensor());
+        if (!subs.isEmpty()) {
             if (LOG.isTraceEnabled()) LOG.trace("sending {}, {} to {}", new Object[] {event.getSensor().getName(), event, join(subs, ",")});
             List<Throwable> errors = MutableList.of();
             for (Subscription s : subs) {
@@ -289,6 +353,11 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         if (s.eventFilter!=null && !s.eventFilter.apply(event))
             return;
         
+        if (batchedDelivery && !isInitialPublicationOfOldValueInCorrectScheduledThread) {
+            enqueuePublishEvent(s, event);
+            return;
+        }
+
         List<Object> tags = getPublishTags(s, event.getSource()).asUnmodifiable();
         
         StringBuilder name = new StringBuilder("sensor ");
@@ -321,8 +390,6 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             "description", description.toString());
         
         boolean isEntityStarting = s.subscriber instanceof Entity && isInitialPublicationOfOldValueInCorrectScheduledThread;
-        // will have entity (and adjunct) execution context from tags, so can skip getting exec context
-        final ExecutionContext ec = BrooklynTaskTags.getExecutionContext(tags);
         Runnable deliverer = new Runnable() {
             @Override
             public String toString() {
@@ -334,53 +401,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             }
             @Override
             public void run() {
-                BasicExecutionContext oldEC = null;
-                boolean setEC;
-                if (ec instanceof BasicExecutionContext) {
-                    oldEC = BasicExecutionContext.setPerThreadExecutionContext((BasicExecutionContext) ec);
-                    final ExecutionContext ec2 = BrooklynTaskTags.getExecutionContext(tags);
-                    if (ec2!=ec) {
-                        BasicExecutionContext.setPerThreadExecutionContext((BasicExecutionContext) ec2);
-                    }
-                    setEC = true;
-                } else {
-                    setEC = false;
-                }
-                try {
-                    
-                    if (isEntityStarting) {
-                        /* don't let sub deliveries start until this is completed;
-                         * this is a pragmatic way to ensure the publish events 
-                         * if submitted during management starting, aren't executed
-                         * until after management is starting.
-                         *   without this we can get deadlocks as this goes to publish,
-                         * has the attribute sensors lock, and waits on the publish lock
-                         * (any of management support, local subs, queueing subs).
-                         * meanwhile the management startup has those three locks,
-                         * then goes to publish and in the process looks up a sensor value.
-                         *   usually this is not an issue because some other task
-                         * does something (eg entity.getExecutionContext()) which
-                         * also has a wait-on-management-support semantics.
-                         */
-                        synchronized (((EntityInternal)s.subscriber).getManagementSupport()) {}
-                    }
-                    int count = s.eventCount.incrementAndGet();
-                    if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, s);
-                    
-                    s.listener.onEvent(event);
-                } catch (Throwable t) {
-                    Exceptions.propagateIfFatal(t);
-                    if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
-                        LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
-                    } else {
-                        LOG.warn("Error processing subscriptions to "+this+": "+t, t);
-                    }
-                    throw Exceptions.propagate(t);
-                } finally {
-                    if (setEC) {
-                        BasicExecutionContext.setPerThreadExecutionContext(oldEC);
-                    }
-                }
+                deliver(s, event, tags, isEntityStarting);
             }};
         if (!isInitialPublicationOfOldValueInCorrectScheduledThread) {
             em.submit(execFlags, deliverer);
@@ -393,6 +414,172 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         }
     }
 
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void deliver(final Subscription s, final SensorEvent<?> event, List<Object> tags, boolean isEntityStarting) {
+        // will have entity (and adjunct) execution context from tags, so can skip getting exec context
+        final ExecutionContext ec = BrooklynTaskTags.getExecutionContext(tags);
+        BasicExecutionContext oldEC = null;
+        boolean setEC;
+        if (ec instanceof BasicExecutionContext) {
+            oldEC = BasicExecutionContext.setPerThreadExecutionContext((BasicExecutionContext) ec);
+            final ExecutionContext ec2 = BrooklynTaskTags.getExecutionContext(tags);
+            if (ec2!=ec) {
+                BasicExecutionContext.setPerThreadExecutionContext((BasicExecutionContext) ec2);
+            }
+            setEC = true;
+        } else {
+            setEC = false;
+        }
+        try {
+
+            if (isEntityStarting) {
+                /* don't let sub deliveries start until this is completed;
+                 * this is a pragmatic way to ensure the publish events 
+                 * if submitted during management starting, aren't executed
+                 * until after management is starting.
+                 *   without this we can get deadlocks as this goes to publish,
+                 * has the attribute sensors lock, and waits on the publish lock
+                 * (any of management support, local subs, queueing subs).
+                 * meanwhile the management startup has those three locks,
+                 * then goes to publish and in the process looks up a sensor value.
+                 *   usually this is not an issue because some other task
+                 * does something (eg entity.getExecutionContext()) which
+                 * also has a wait-on-management-support semantics.
+                 */
+                synchronized (((EntityInternal)s.subscriber).getManagementSupport()) {}
+            }
+            int count = s.eventCount.incrementAndGet();
+            if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, s);
+
+            s.listener.onEvent(event);
+        } catch (Throwable t) {
+            Exceptions.propagateIfFatal(t);
+            if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
+                LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
+            } else {
+                LOG.warn("Error processing subscriptions to "+this+": "+t, t);
+            }
+            throw Exceptions.propagate(t);
+        } finally {
+            if (setEC) {
+                BasicExecutionContext.setPerThreadExecutionContext(oldEC);
+            }
+        }
+    }
+
+    /**
+     * Queued events for a subscriber (i.e. a subscriber execution manager tag), in order.
+     * Not thread-safe; only accessed within compute methods on {@link LocalSubscriptionManager#mailboxes}.
+     */
+    private static class Mailbox {
+        final Deque<QueuedEvent> queue = new ArrayDeque<QueuedEvent>();
+        /** latest queued attribute change for each subscription, entity and sensor, when conflating */
+        final Map<List<Object>, QueuedEvent> conflatable = new HashMap<List<Object>, QueuedEvent>();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static class QueuedEvent {
+        final Subscription subscription;
+        SensorEvent<?> event;
+        final List<Object> conflationKey;
+        QueuedEvent(Subscription subscription, SensorEvent<?> event, List<Object> conflationKey) {
+            this.subscription = subscription;
+            this.event = event;
+            this.conflationKey = conflationKey;
+        }
+    }
+
+    /**
+     * Adds the event to the subscriber's mailbox, submitting a task to drain it if it was empty.
+     * Events in a mailbox are delivered in the order queued, except that with {@link #BATCHED_DELIVERY_CONFLATE}
+     * a newer value replaces a queued value (for the same subscription, entity and sensor) in its position.
+     */
+    @SuppressWarnings("rawtypes")
+    private void enqueuePublishEvent(final Subscription s, final SensorEvent<?> event) {
+        boolean conflateForSubscription = s.conflate != null ? s.conflate : conflate;
+        final List<Object> conflationKey = conflateForSubscription && event.getSensor() instanceof AttributeSensor
+                ? ImmutableList.<Object>of(s.id, event.getSource()==null ? "" : event.getSource().getId(), event.getSensor().getName())
+                : null;
+        final boolean[] newMailbox = new boolean[1];
+        mailboxes.compute(s.subscriberExecutionManagerTag, (tag, mailbox) -> {
+            if (mailbox == null) {
+                mailbox = new Mailbox();
+                newMailbox[0] = true;
+            }
+            QueuedEvent existing = conflationKey == null ? null : mailbox.conflatable.get(conflationKey);
+            if (existing != null) {
+                existing.event = event;
+                totalEventsConflatedCount.incrementAndGet();
+            } else {
+                QueuedEvent queued = new QueuedEvent(s, event, conflationKey);
+                mailbox.queue.add(queued);
+                if (conflationKey != null) mailbox.conflatable.put(conflationKey, queued);
+                numEventsQueued.incrementAndGet();
+            }
+            return mailbox;
+        });
+        if (newMailbox[0]) {
+            submitDrain(s);
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void submitDrain(final Subscription s) {
+        final Object subscriberTag = s.subscriberExecutionManagerTag;
+        List<Object> tags = MutableList.builder()
+            .addAll(s.subscriberExtraExecTags == null ? ImmutableList.of() : s.subscriberExtraExecTags)
+            .add(subscriberTag)
+            .add(BrooklynTaskTags.SENSOR_TAG)
+            .build().asUnmodifiable();
+        em.submit(MutableMap.of("tags", tags,
+                "displayName", "sensor batch delivery",
+                "description", "Sensor events publishing to "+(s.subscriber instanceof Entity ? ((Entity)s.subscriber).getId() : s.subscriber)),
+            new Runnable() {
+                @Override
+                public String toString() {
+                    return "LSM.deliverBatch("+subscriberTag+")";
+                }
+                @Override
+                public void run() {
+                    drain(subscriberTag);
+                }});
+    }
+
+    /**
+     * Delivers up to {@link #BATCHED_DELIVERY_MAX_BATCH_SIZE} events from the mailbox for the given tag,
+     * removing the mailbox if that empties it, otherwise submitting another task to continue.
+     * There is at most one drain task responsible for a mailbox at any time.
+     */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void drain(Object subscriberTag) {
+        final List<QueuedEvent> batch = new ArrayList<QueuedEvent>();
+        Mailbox remaining = mailboxes.computeIfPresent(subscriberTag, (tag, mailbox) -> {
+            while (batch.size() < maxBatchSize && !mailbox.queue.isEmpty()) {
+                QueuedEvent queued = mailbox.queue.poll();
+                if (queued.conflationKey != null) mailbox.conflatable.remove(queued.conflationKey);
+                batch.add(queued);
+            }
+            return mailbox.queue.isEmpty() ? null : mailbox;
+        });
+        numEventsQueued.addAndGet(-batch.size());
+
+        try {
+            for (QueuedEvent queued : batch) {
+                try {
+                    deliver(queued.subscription, queued.event, getPublishTags(queued.subscription, queued.event.getSource()).asUnmodifiable(), false);
+                    totalEventsDeliveredInBatchesCount.incrementAndGet();
+                } catch (Exception e) {
+                    // already logged; continue with the rest of the batch
+                    Exceptions.propagateIfFatal(e);
+                }
+            }
+        } finally {
+            if (remaining != null) {
+                submitDrain(batch.get(batch.size()-1).subscription);
+            }
+        }
+    }
+
     private MutableList<Object> getPublishTags(final Subscription<?> s, final Entity source) {
         return MutableList.builder()
             .addAll(s.subscriberExtraExecTags == null ? ImmutableList.of() : s.subscriberExtraExecTags)
@@ -429,78 +616,4 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     public String toString() {
         return tostring;
     }
-    
-    /**
-     * Copied from LanguageUtils.groovy, to remove dependency.
-     * 
-     * Adds the given value to a collection in the map under the key.
-     * 
-     * A collection (as {@link LinkedHashMap}) will be created if necessary,
-     * synchronized on map for map access/change and set for addition there
-     *
-     * @return the updated set (instance, not copy)
-     * 
-     * @deprecated since 0.5; use {@link HashMultimap}, and {@link Multimaps#synchronizedSetMultimap(com.google.common.collect.SetMultimap)}
-     */
-    @Deprecated
-    private static <K,V> Set<V> addToMapOfSets(Map<K,Set<V>> map, K key, V valueInCollection) {
-        Set<V> coll;
-        synchronized (map) {
-            coll = map.get(key);
-            if (coll==null) {
-                coll = new LinkedHashSet<V>();
-                map.put(key, coll);
-            }
-            if (coll.isEmpty()) {
-                synchronized (coll) {
-                    coll.add(valueInCollection);
-                }
-                //if collection was empty then add to the collection while holding the map lock, to prevent removal
-                return coll;
-            }
-        }
-        synchronized (coll) {
-            if (!coll.isEmpty()) {
-                coll.add(valueInCollection);
-                return coll;
-            }
-        }
-        //if was empty, recurse, because someone else might be removing the collection
-        return addToMapOfSets(map, key, valueInCollection);
-    }
-
-    /**
-     * Copied from LanguageUtils.groovy, to remove dependency.
-     * 
-     * Removes the given value from a collection in the map under the key.
-     *
-     * @return the updated set (instance, not copy)
-     * 
-     * @deprecated since 0.5; use {@link ArrayListMultimap} or {@link HashMultimap}, and {@link Multimaps#synchronizedListMultimap(com.google.common.collect.ListMultimap)} etc
-     */
-    @Deprecated
-    private static <K,V> boolean removeFromMapOfCollections(Map<K,? extends Collection<V>> map, K key, V valueInCollection) {
-        Collection<V> coll;
-        synchronized (map) {
-            coll = map.get(key);
-            if (coll==null) return false;
-        }
-        boolean result;
-        synchronized (coll) {
-            result = coll.remove(valueInCollection);
-        }
-        if (coll.isEmpty()) {
-            synchronized (map) {
-                synchronized (coll) {
-                    if (coll.isEmpty()) {
-                        //only remove from the map if no one is adding to the collection or to the map, and the collection is still in the map
-                        if (map.get(key)==coll) {
-                            map.remove(key);
-                        }
-                    }
-                }
-            }
-        }
-        return result;
-    }
 }
@@ -24,6 +24,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 
+import javax.annotation.Nullable;
+
 import org.apache.brooklyn.api.effector.Effector;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
@@ -42,6 +44,7 @@ import org.apache.brooklyn.util.core.task.TaskTags;
 import org.apache.brooklyn.util.guava.Maybe;
 
 import com.google.common.annotations.Beta;
+import com.google.common.base.Predicate;
 
 public interface ManagementContextInternal extends ManagementContext {
 
@@ -65,6 +68,16 @@ public interface ManagementContextInternal extends ManagementContext {
 
     void removeEntitySetListener(CollectionChangeListener<Entity> listener);
 
+    /**
+     * Registers a filter against the managed entities in the application with the given id (or all entities, if null),
+     * whose listener is told incrementally of the entities it matches; see {@link EntityFilterIndex}.
+     */
+    @Beta
+    EntityFilterIndex.Registration addEntityFilter(@Nullable String applicationId, Predicate<? super Entity> filter, EntityFilterIndex.Listener listener);
+
+    @Beta
+    void removeEntityFilter(EntityFilterIndex.Registration registration);
+
     void terminate();
     
     long getTotalEffectorInvocations();
@@ -120,6 +120,60 @@ public class NonDeploymentEntityManager implements EntityManagerInternal {
         }
     }
 
+    @Override
+    public Collection<Entity> getEntitiesInApplication(String applicationId) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getEntitiesInApplication(applicationId);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesOfType(Class<?> type) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).findEntitiesOfType(type);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesWithCatalogItemId(String catalogItemId) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).findEntitiesWithCatalogItemId(catalogItemId);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesWithTag(Object tag) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).findEntitiesWithTag(tag);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public Collection<Entity> findEntitiesWithPlanId(String planId) {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).findEntitiesWithPlanId(planId);
+        } else {
+            return Collections.emptyList();
+        }
+    }
+
+    @Override
+    public long getTopologyChangeCount() {
+        if (isInitialManagementContextReal()) {
+            return ((EntityManagerInternal)initialManagementContext.getEntityManager()).getTopologyChangeCount();
+        } else {
+            return -1;
+        }
+    }
+
     @Override
     public Entity getEntity(String id) {
         if (isInitialManagementContextReal()) {
@@ -29,6 +29,8 @@ import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Nullable;
+
 import org.apache.brooklyn.api.catalog.BrooklynCatalog;
 import org.apache.brooklyn.api.effector.Effector;
 import org.apache.brooklyn.api.entity.Application;
@@ -431,6 +433,18 @@ public class NonDeploymentManagementContext implements ManagementContextInternal
         initialManagementContext.removeEntitySetListener(listener);
     }
 
+    @Override
+    public EntityFilterIndex.Registration addEntityFilter(@Nullable String applicationId, Predicate<? super Entity> filter, EntityFilterIndex.Listener listener) {
+        checkInitialManagementContextReal();
+        return initialManagementContext.addEntityFilter(applicationId, filter, listener);
+    }
+
+    @Override
+    public void removeEntityFilter(EntityFilterIndex.Registration registration) {
+        checkInitialManagementContextReal();
+        initialManagementContext.removeEntityFilter(registration);
+    }
+
     @Override
     public void terminate() {
         if (isInitialManagementContextReal()) {
@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.mgmt.internal;
 
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
@@ -31,7 +32,11 @@ import org.apache.brooklyn.util.text.Identifiers;
 import com.google.common.base.Predicate;
 
 class Subscription<T> implements SubscriptionHandle {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
     public final String id = Identifiers.makeRandomId(8);
+    /** order in which subscriptions were created, used for ordering in indexes */
+    final long sequence = SEQUENCE.incrementAndGet();
     
     public Object subscriber;
     public Object subscriberExecutionManagerTag;
@@ -45,6 +50,8 @@ class Subscription<T> implements SubscriptionHandle {
     public final AtomicInteger eventCount = new AtomicInteger();
     public Map<String,Object> flags;
     public Predicate<SensorEvent<T>> eventFilter;
+    /** whether queued values should be conflated, if batched delivery is enabled; null to use the manager's default */
+    public Boolean conflate;
 
     public Subscription(Entity producer, Sensor<T> sensor, SensorEventListener<? super T> listener) {
         this.producer = producer;
@@ -0,0 +1,107 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.sensor.Sensor;
+
+/**
+ * Concurrent index of subscriptions by producer entity id then sensor name, with wildcard buckets
+ * for subscriptions to any producer and/or any sensor, used by {@link LocalSubscriptionManager}.
+ * <p>
+ * Lookups do not lock, and are O(matching subscriptions).
+ * Adding and removing lock only the producer's entry (using {@link ConcurrentMap#compute(Object, java.util.function.BiFunction)}),
+ * which is also when empty entries are removed, so there is no global monitor.
+ * Within a bucket, subscriptions are kept in the order they were made.
+ */
+@SuppressWarnings("rawtypes")
+class SubscriptionIndex {
+
+    /** key for the wildcard producer or sensor; cannot clash with an entity id or (non-empty) sensor name */
+    private static final String WILDCARD = "";
+
+    static final Comparator<Subscription> SUBSCRIPTION_ORDER = Comparator.comparingLong(s -> s.sequence);
+
+    private final ConcurrentMap<String, ConcurrentMap<String, Set<Subscription>>> byProducerThenSensor = new ConcurrentHashMap<>();
+
+    private static String producerKey(Entity producer) {
+        return producer == null ? WILDCARD : producer.getId();
+    }
+
+    private static String sensorKey(Sensor<?> sensor) {
+        return sensor == null ? WILDCARD : sensor.getName();
+    }
+
+    public void add(Subscription s) {
+        final String sensorKey = sensorKey(s.sensor);
+        byProducerThenSensor.compute(producerKey(s.producer), (k, bySensor) -> {
+            if (bySensor == null) bySensor = new ConcurrentHashMap<>();
+            bySensor.computeIfAbsent(sensorKey, k2 -> new ConcurrentSkipListSet<>(SUBSCRIPTION_ORDER)).add(s);
+            return bySensor;
+        });
+    }
+
+    /** @return whether the subscription was present */
+    public boolean remove(Subscription s) {
+        final String sensorKey = sensorKey(s.sensor);
+        final boolean[] removed = new boolean[1];
+        byProducerThenSensor.computeIfPresent(producerKey(s.producer), (k, bySensor) -> {
+            Set<Subscription> subs = bySensor.get(sensorKey);
+            if (subs != null) {
+                removed[0] = subs.remove(s);
+                if (subs.isEmpty()) bySensor.remove(sensorKey);
+            }
+            return bySensor.isEmpty() ? null : bySensor;
+        });
+        return removed[0];
+    }
+
+    /**
+     * Subscriptions matching an event from the given producer and sensor: those for the producer and sensor,
+     * then any producer with the sensor, then the producer with any sensor, then any producer and sensor.
+     */
+    public List<Subscription> getMatching(Entity producer, Sensor<?> sensor) {
+        String producerKey = producerKey(producer);
+        String sensorKey = sensorKey(sensor);
+        List<Subscription> result = null;
+        ConcurrentMap<String, Set<Subscription>> forProducer = producerKey.equals(WILDCARD) ? null : byProducerThenSensor.get(producerKey);
+        ConcurrentMap<String, Set<Subscription>> forAnyProducer = byProducerThenSensor.get(WILDCARD);
+        if (forProducer != null && !sensorKey.equals(WILDCARD)) result = addAll(result, forProducer.get(sensorKey));
+        if (forAnyProducer != null && !sensorKey.equals(WILDCARD)) result = addAll(result, forAnyProducer.get(sensorKey));
+        if (forProducer != null) result = addAll(result, forProducer.get(WILDCARD));
+        if (forAnyProducer != null) result = addAll(result, forAnyProducer.get(WILDCARD));
+        return result == null ? Collections.<Subscription>emptyList() : result;
+    }
+
+    private static List<Subscription> addAll(List<Subscription> result, Set<Subscription> subs) {
+        if (subs == null || subs.isEmpty()) return result;
+        if (result == null) result = new ArrayList<>(subs.size());
+        result.addAll(subs);
+        return result;
+    }
+}
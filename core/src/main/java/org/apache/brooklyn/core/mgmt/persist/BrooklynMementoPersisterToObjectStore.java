@@ -25,18 +25,20 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
-import javax.xml.xpath.XPathConstants;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
@@ -79,13 +81,14 @@ import org.apache.brooklyn.util.time.Duration;
 import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.NodeList;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.google.common.io.ByteSource;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -115,6 +118,13 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             "Maximum number of attempts to serialize a memento (e.g. if first attempts fail because of concurrent modifications of an entity)", 
             5);
 
+    @Beta
+    public static final ConfigKey<Boolean> PERSISTER_SKIP_UNCHANGED_WRITES = ConfigKeys.newBooleanConfigKey(
+            "persister.skipUnchangedWrites",
+            "Whether to skip writing a memento in a delta if its serialized form is identical to what this persister last wrote for that object "
+            + "(off by default; only safe where no other process writes to the persisted state)", 
+            false);
+
     private final PersistenceObjectStore objectStore;
     private final MementoSerializer<Object> serializerWithStandardClassLoader;
 
@@ -122,6 +132,11 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
     private ListeningExecutorService executor;
 
+    /** Hash of the content last written by this persister, keyed by path; cleared whenever writes are enabled or disabled. */
+    private final ConcurrentMap<String, HashCode> lastWrittenContentHashes = new ConcurrentHashMap<String, HashCode>();
+    private final boolean skipUnchangedWrites;
+    private final AtomicLong writesSkippedUnchanged = new AtomicLong();
+
     private volatile boolean writesAllowed = false;
     private volatile boolean writesShuttingDown = false;
     private StringConfigMap brooklynProperties;
@@ -156,6 +171,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                 .withBrooklynDeserializingClassRenames()
                 .withClassLoader(classLoader).build();
         this.serializerWithStandardClassLoader = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
+        this.skipUnchangedWrites = Boolean.TRUE.equals(brooklynProperties.getConfig(PERSISTER_SKIP_UNCHANGED_WRITES));
 
         objectStore.createSubPath("entities");
         objectStore.createSubPath("locations");
@@ -230,6 +246,8 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     }
     
     @Override public void enableWriteAccess() {
+        // another node may have written to the store since we last did
+        lastWrittenContentHashes.clear();
         writesAllowed = true;
     }
     
@@ -245,9 +263,20 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         } catch (Exception e) {
             throw Exceptions.propagate(e);
         } finally {
+            lastWrittenContentHashes.clear();
             writesShuttingDown = false;
         }
     }
+
+    /**
+     * Returns the number of memento writes skipped (since the last call) because the serialized memento
+     * was identical to what was last written for that object, and resets the count.
+     * See {@link #PERSISTER_SKIP_UNCHANGED_WRITES}.
+     */
+    @Beta
+    public long getAndResetWritesSkippedUnchanged() {
+        return writesSkippedUnchanged.getAndSet(0);
+    }
     
     @Override 
     public void stop(boolean graceful) {
@@ -364,9 +393,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     LOG.warn("No contents for "+contentsSubpath+" in persistence store; ignoring");
 
                 } else {
-                    String xmlId = (String) XmlUtil.xpathHandlingIllegalChars(contents, "/" + type.toCamelCase() + "/id");
-                    String xmlUrl = getXmlValue(contents, "/" + type.toCamelCase() + "/url").orNull();
-                    String xmlJavaType = getXmlValue(contents, "/" + type.toCamelCase() + "/type").orNull();
+                    Map<String, Object> fields = XmlUtil.readRootChildrenHandlingIllegalChars(contents, RAW_DATA_XML_FIELDS, ImmutableSet.<String>of());
+                    String xmlId = (String) fields.getOrDefault("id", "");
+                    String xmlUrl = Strings.emptyToNull((String) fields.get("url"));
+                    String xmlJavaType = Strings.emptyToNull((String) fields.get("type"));
                     String summary = MutableList.<String>of(contentsSubpath, type.toCamelCase()).appendIfNotNull(xmlId).appendIfNotNull(xmlUrl).appendIfNotNull(xmlJavaType).stream().collect(Collectors.joining(" / "));
 
                     String safeXmlId = Strings.makeValidFilename(xmlId);
@@ -415,33 +445,27 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return result;
     }
 
-    private Maybe<String> getXmlValue(String xml, String path) {
-        try {
-            return Maybe.ofDisallowingNull((String) XmlUtil.xpathHandlingIllegalChars(xml, path));
-        } catch (Exception e) { Exceptions.propagateIfFatal(e); /* otherwise ignore if no url */ }
-        return Maybe.absent();
-    }
+    private static final Set<String> RAW_DATA_XML_FIELDS = ImmutableSet.of("id", "url", "type");
+    private static final Set<String> MANIFEST_XML_FIELDS = ImmutableSet.of("id", "type", "parent", "catalogItemId");
+    private static final Set<String> MANIFEST_XML_STRING_LISTS = ImmutableSet.of("searchPath");
 
-    private static class XPathHelper {
-        private String contents;
-        private String prefix;
+    /** The fields of a memento needed for its manifest, read in a single pass of its xml. */
+    private static class ManifestFields {
+        private final Map<String, Object> fields;
 
-        public XPathHelper(String contents, String prefix) {
-            this.contents = contents;
-            this.prefix = prefix;
+        public ManifestFields(String contents) {
+            this.fields = XmlUtil.readRootChildrenHandlingIllegalChars(contents, MANIFEST_XML_FIELDS, MANIFEST_XML_STRING_LISTS);
         }
 
-        private String get(String innerPath) {
-            return (String) XmlUtil.xpathHandlingIllegalChars(contents, prefix+innerPath);
+        /** as for xpath, returns empty string if absent */
+        private String get(String field) {
+            Object result = fields.get(field);
+            return result == null ? "" : (String) result;
         }
-        private List<String> getStringList(String innerPath) {
-            List<String> result = MutableList.of();
-            final NodeList nodeList =
-                (NodeList) XmlUtil.xpathHandlingIllegalChars(contents, prefix + innerPath + "//string", XPathConstants.NODESET);
-            for(int c = 0 ; c < nodeList.getLength() ; c++) {
-                result.add(nodeList.item(c).getFirstChild().getNodeValue());
-            }
-            return result;
+        @SuppressWarnings("unchecked")
+        private List<String> getStringList(String field) {
+            Object result = fields.get(field);
+            return result == null ? MutableList.<String>of() : (List<String>) result;
         }
     }
 
@@ -458,7 +482,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         Visitor visitor = new Visitor() {
             @Override
             public void visit(BrooklynObjectType type, String objectId, final String contents) throws Exception {
-                XPathHelper x = new XPathHelper(contents, "/"+type.toCamelCase()+"/");
+                ManifestFields x = (type == BrooklynObjectType.CATALOG_ITEM || type == BrooklynObjectType.MANAGED_BUNDLE) ? null : new ManifestFields(contents);
                 switch (type) {
                     case ENTITY:
                         builder.entity(x.get("id"), x.get("type"), Strings.emptyToNull(x.get("parent")),
@@ -901,7 +925,21 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     private void persist(String subPath, Memento memento, PersistenceExceptionHandler exceptionHandler) {
         try {
             checkMementoForProblemsAndWarn(memento);
-            getWriter(getPath(subPath, memento.getId())).put(getSerializerWithStandardClassLoader().toString(memento));
+            String path = getPath(subPath, memento.getId());
+            String content = getSerializerWithStandardClassLoader().toString(memento);
+            HashCode hash = null;
+            if (skipUnchangedWrites) {
+                hash = hash(content);
+                if (hash.equals(lastWrittenContentHashes.get(path))) {
+                    if (LOG.isTraceEnabled()) LOG.trace("Skipping write of unchanged "+memento.getType()+" "+memento.getId());
+                    writesSkippedUnchanged.incrementAndGet();
+                    return;
+                }
+            }
+            // forget the previous hash until the write completes, in case it fails part-way
+            lastWrittenContentHashes.remove(path);
+            getWriter(path).put(content);
+            if (hash!=null) lastWrittenContentHashes.put(path, hash);
 
         } catch (Exception e) {
             exceptionHandler.onPersistMementoFailed(memento, e);
@@ -948,7 +986,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     private void persist(String subPath, BrooklynObjectType type, String id, String content, PersistenceExceptionHandler exceptionHandler) {
         try {
             if (content==null) LOG.warn("Null content for "+type+" "+id);
-            getWriter(getPath(subPath, id)).put(content);
+            String path = getPath(subPath, id);
+            lastWrittenContentHashes.remove(path);
+            getWriter(path).put(content);
+            if (skipUnchangedWrites && content!=null) lastWrittenContentHashes.put(path, hash(content));
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
         }
@@ -956,15 +997,23 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private void persist(String subPath, BrooklynObjectType type, String id, ByteSource content, PersistenceExceptionHandler exceptionHandler) {
         try {
-            getWriter(getPath(subPath, id)).put(content);
+            String path = getPath(subPath, id);
+            lastWrittenContentHashes.remove(path);
+            getWriter(path).put(content);
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
         }
     }
     
+    private static HashCode hash(String content) {
+        return Hashing.sha256().hashUnencodedChars(content);
+    }
+
     private void delete(String subPath, String id, PersistenceExceptionHandler exceptionHandler) {
         try {
-            StoreObjectAccessorWithLock w = getWriter(getPath(subPath, id));
+            String path = getPath(subPath, id);
+            lastWrittenContentHashes.remove(path);
+            StoreObjectAccessorWithLock w = getWriter(path);
             w.delete();
             synchronized (writers) {
                 writers.remove(id);
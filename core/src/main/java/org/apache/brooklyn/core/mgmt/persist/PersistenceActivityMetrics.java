@@ -30,22 +30,44 @@ public class PersistenceActivityMetrics {
     final static int MAX_ERRORS = 200;
     
     long count=0, failureCount=0;
+    long writesDeferred=0, writesSaved=0, writesSkippedUnchanged=0;
     Long lastSuccessTime, lastDuration, lastFailureTime;
+    Map<String,Long> lastPhaseDurations;
     List<Map<String,Object>> errorMessages = MutableList.of();
 
-    public void noteSuccess(Duration duration) {
+    public synchronized void noteSuccess(Duration duration) {
         count++;
         lastSuccessTime = System.currentTimeMillis();
         lastDuration = duration.toMilliseconds();
     }
     
-    public void noteFailure(Duration duration) {
+    public synchronized void noteFailure(Duration duration) {
         count++;
         failureCount++;
         lastFailureTime = System.currentTimeMillis();
         lastDuration = duration!=null ? duration.toMilliseconds() : -1;
     }
 
+    /** records objects whose writes were deferred by debouncing, and writes saved by coalescing changes across periods */
+    public synchronized void noteWritesDebounced(long deferred, long saved) {
+        writesDeferred += deferred;
+        writesSaved += saved;
+    }
+
+    /** records memento writes skipped because the object's serialized form was unchanged since it was last written */
+    public synchronized void noteWritesSkippedUnchanged(long skipped) {
+        writesSkippedUnchanged += skipped;
+    }
+
+    /** records the time taken by each phase of the last operation, for operations (such as rebind) which report phases */
+    public synchronized void notePhaseDurations(Map<String,Duration> durations) {
+        Map<String,Long> result = MutableMap.of();
+        for (Map.Entry<String,Duration> entry : durations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMilliseconds());
+        }
+        lastPhaseDurations = result;
+    }
+
     public void noteError(String error) {
         noteErrorObject(error);
     }
@@ -71,6 +93,10 @@ public class PersistenceActivityMetrics {
         result.put("failureCount", failureCount);
         result.put("lastFailureTimeUtc", lastFailureTime);
         result.put("lastFailureTimeMillisSince", since(lastFailureTime));
+        result.put("writesDeferred", writesDeferred);
+        result.put("writesSaved", writesSaved);
+        result.put("writesSkippedUnchanged", writesSkippedUnchanged);
+        if (lastPhaseDurations!=null) result.put("lastPhaseDurations", MutableMap.copyOf(lastPhaseDurations));
         result.put("errorMessages", MutableList.copyOf(errorMessages));
         return result;
     }
@@ -19,7 +19,10 @@
 package org.apache.brooklyn.core.mgmt.rebind;
 
 import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Semaphore;
@@ -44,11 +47,15 @@ import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.api.typereg.ManagedBundle;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityAdjuncts;
 import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.location.Locations;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
@@ -65,22 +72,25 @@ import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
  * A "simple" implementation that periodically persists all entities/locations/policies that have changed
  * since the last periodic persistence.
- * 
- * TODO A better implementation would look at a per-entity basis. When the entity was modified, then  
- * schedule a write for that entity in X milliseconds time (if not already scheduled). That would
- * prevent hammering the persister when a bunch of entity attributes change (e.g. when the entity
- * has just polled over JMX/http/etc). Such a scheduled-write approach would be similar to the 
- * Nagle buffering algorithm in TCP (see tcp_nodelay).
+ * <p>
+ * Optionally writes can be debounced per object, configured per {@link BrooklynObjectType}
+ * (see {@link #DEBOUNCE_MIN_DELAY} and {@link #DEBOUNCE_MAX_STALENESS}): a changed object is only written
+ * once it has not changed for the minimum delay, or once its oldest unwritten change reaches the maximum staleness.
+ * This prevents hammering the persister when a bunch of entity attributes change (e.g. when the entity
+ * polls over JMX/http/etc), similar to the Nagle buffering algorithm in TCP (see tcp_nodelay).
+ * Forced persistence (e.g. {@link #persistNowSafely()}, or when stopping) writes everything.
  * 
  * @author aled
  *
@@ -94,6 +104,50 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     private static final int INITIAL_LOG_WRITES = 5;
     private static final Duration PERSIST_PLANE_ID_PERIOD = Duration.ONE_HOUR;
 
+    @Beta
+    public static final ConfigKey<Duration> DEBOUNCE_MIN_DELAY = ConfigKeys.newDurationConfigKey(
+            "brooklyn.persistence.debounce.minDelay",
+            "If positive, a changed object is not written until it has not changed for this long (or until it reaches the max staleness); "
+            + "can be set for a specific type by appending the type, e.g. brooklyn.persistence.debounce.minDelay.entity",
+            Duration.ZERO);
+
+    @Beta
+    public static final ConfigKey<Duration> DEBOUNCE_MAX_STALENESS = ConfigKeys.newDurationConfigKey(
+            "brooklyn.persistence.debounce.maxStaleness",
+            "If a min delay is set, the longest a change to an object can remain unwritten while it keeps changing; "
+            + "can be set for a specific type by appending the type, e.g. brooklyn.persistence.debounce.maxStaleness.entity",
+            Duration.seconds(30));
+
+    /** Key for the {@link #DEBOUNCE_MIN_DELAY} of a specific type, e.g. brooklyn.persistence.debounce.minDelay.entity */
+    public static ConfigKey<Duration> debounceMinDelayKey(BrooklynObjectType type) {
+        return ConfigKeys.newDurationConfigKey(DEBOUNCE_MIN_DELAY.getName()+"."+type.toCamelCase(), DEBOUNCE_MIN_DELAY.getDescription());
+    }
+
+    /** Key for the {@link #DEBOUNCE_MAX_STALENESS} of a specific type, e.g. brooklyn.persistence.debounce.maxStaleness.entity */
+    public static ConfigKey<Duration> debounceMaxStalenessKey(BrooklynObjectType type) {
+        return ConfigKeys.newDurationConfigKey(DEBOUNCE_MAX_STALENESS.getName()+"."+type.toCamelCase(), DEBOUNCE_MAX_STALENESS.getDescription());
+    }
+
+    private static class Debounce {
+        final long minDelayNanos, maxStalenessNanos;
+        Debounce(Duration minDelay, Duration maxStaleness) {
+            this.minDelayNanos = minDelay.toNanoseconds();
+            this.maxStalenessNanos = maxStaleness.toNanoseconds();
+        }
+    }
+
+    /** Unwritten changes to an object whose writes are debounced. */
+    private static class PendingChange {
+        final long firstChangeNanos;
+        long lastChangeNanos;
+        /** number of persistence periods in which the object changed, i.e. the writes there would be without debouncing */
+        int periodsChanged = 1;
+        boolean changedThisPeriod = true;
+        PendingChange(long now) {
+            firstChangeNanos = lastChangeNanos = now;
+        }
+    }
+
     private static class DeltaCollector {
         private String planeId;
 
@@ -196,6 +250,10 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         
     private DeltaCollector deltaCollector = new DeltaCollector();
 
+    private final Map<BrooklynObjectType, Debounce> debounceByType = new EnumMap<BrooklynObjectType, Debounce>(BrooklynObjectType.class);
+    /** guarded by this, as for {@link #deltaCollector} */
+    private final Map<BrooklynObject, PendingChange> pendingChanges = Maps.newHashMap();
+
     private enum ListenerState { INIT, RUNNING, STOPPING, STOPPED } 
     private volatile ListenerState state = ListenerState.INIT;
 
@@ -237,6 +295,27 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         this.persistFeedsEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_FEED_PERSISTENCE_PROPERTY);
         this.rePersistReferencedObjectsEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_REFERENCED_OBJECTS_REPERSISTENCE_PROPERTY);
     }
+
+    /** Sets debouncing for each type from {@link #DEBOUNCE_MIN_DELAY} and {@link #DEBOUNCE_MAX_STALENESS}, or their type-specific variants. */
+    public void configureDebounce(StringConfigMap config) {
+        for (BrooklynObjectType type : BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            Duration minDelay = config.getConfig(debounceMinDelayKey(type));
+            if (minDelay == null) minDelay = config.getConfig(DEBOUNCE_MIN_DELAY);
+            Duration maxStaleness = config.getConfig(debounceMaxStalenessKey(type));
+            if (maxStaleness == null) maxStaleness = config.getConfig(DEBOUNCE_MAX_STALENESS);
+            setDebounce(type, minDelay, maxStaleness);
+        }
+    }
+
+    /** Sets debouncing for the given type; a null or non-positive min delay disables it. */
+    public synchronized void setDebounce(BrooklynObjectType type, Duration minDelay, Duration maxStaleness) {
+        if (minDelay == null || !minDelay.isPositive()) {
+            debounceByType.remove(type);
+        } else {
+            if (LOG.isDebugEnabled()) LOG.debug("Persistence of {} debounced with min delay {} and max staleness {}", new Object[] {type, minDelay, maxStaleness});
+            debounceByType.put(type, new Debounce(minDelay, maxStaleness == null ? Duration.PRACTICALLY_FOREVER : maxStaleness));
+        }
+    }
     
     public void start() {
         synchronized (startStopMutex) {
@@ -251,7 +330,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                     return Tasks.<Void>builder().dynamic(false).displayName(TASK_NAME).body(new Callable<Void>() {
                         @Override
                         public Void call() {
-                            persistNowSafely();
+                            persistNowSafely(false, true);
                             return null;
                         }}).build();
                 }
@@ -290,6 +369,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 // Discard all state that was waiting to be persisted
                 synchronized (this) {
                     deltaCollector = new DeltaCollector();
+                    pendingChanges.clear();
                 }
             } finally {
                 state = ListenerState.STOPPED;
@@ -326,7 +406,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
                 if (!deltaCollector.isEmpty()) {
                     if (canTrigger) {
                         // but there is data that needs to be written
-                        persistNowSafely(true);
+                        persistNowSafely(true, false);
                     } else {
                         targetWriteCount = writeCount.get()+1;
                     }
@@ -428,13 +508,13 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     
     @VisibleForTesting
     public boolean persistNowSafely() {
-        return persistNowSafely(false);
+        return persistNowSafely(false, false);
     }
     
-    private boolean persistNowSafely(boolean alreadyHasMutex) {
+    private boolean persistNowSafely(boolean alreadyHasMutex, boolean debounce) {
         Stopwatch timer = Stopwatch.createStarted();
         try {
-            persistNowInternal(alreadyHasMutex);
+            persistNowInternal(alreadyHasMutex, debounce);
             metrics.noteSuccess(Duration.of(timer));
             return true;
         } catch (RuntimeInterruptedException e) {
@@ -459,6 +539,11 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     }
     
     protected void persistNowInternal(boolean alreadyHasMutex) {
+        persistNowInternal(alreadyHasMutex, false);
+    }
+
+    /** @param debounce whether to defer writing objects whose debounce delay has not elapsed (otherwise writes all changes) */
+    protected void persistNowInternal(boolean alreadyHasMutex, boolean debounce) {
         if (!isActive() && state != ListenerState.STOPPING) {
             return;
         }
@@ -479,6 +564,9 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             synchronized (this) {
                 prevDeltaCollector = deltaCollector;
                 deltaCollector = new DeltaCollector();
+                if (!debounceByType.isEmpty()) {
+                    deferDebounced(prevDeltaCollector, deltaCollector, debounce && state != ListenerState.STOPPING);
+                }
             }
             
             if (LOG.isDebugEnabled() && shouldLogCheckpoint()) LOG.debug("Checkpointing delta of memento: "
@@ -552,6 +640,9 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
 
                 // Tell the persister to persist it
                 persister.delta(persisterDelta, exceptionHandler);
+                if (persister instanceof BrooklynMementoPersisterToObjectStore) {
+                    metrics.noteWritesSkippedUnchanged(((BrooklynMementoPersisterToObjectStore)persister).getAndResetWritesSkippedUnchanged());
+                }
             }
         } catch (Exception e) {
             if (isActive()) {
@@ -569,6 +660,36 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
+    /**
+     * Moves changed objects which are not yet due to be written from the previous collector to the next,
+     * unless writing everything; records writes saved (compared with writing every period in which an object changed).
+     * Caller must hold the lock on this.
+     */
+    private void deferDebounced(DeltaCollector prev, DeltaCollector next, boolean deferIfNotDue) {
+        long now = System.nanoTime();
+        long deferred = 0, saved = 0;
+        for (Map.Entry<BrooklynObjectType, Debounce> entry : debounceByType.entrySet()) {
+            Debounce debounce = entry.getValue();
+            Iterator<? extends BrooklynObject> iter = prev.getCollectionOfType(entry.getKey()).iterator();
+            while (iter.hasNext()) {
+                BrooklynObject instance = iter.next();
+                PendingChange change = pendingChanges.get(instance);
+                if (change == null) continue;
+                boolean due = now - change.lastChangeNanos >= debounce.minDelayNanos || now - change.firstChangeNanos >= debounce.maxStalenessNanos;
+                if (due || !deferIfNotDue) {
+                    pendingChanges.remove(instance);
+                    saved += change.periodsChanged - 1;
+                } else {
+                    iter.remove();
+                    next.add(instance);
+                    change.changedThisPeriod = false;
+                    deferred++;
+                }
+            }
+        }
+        metrics.noteWritesDebounced(deferred, saved);
+    }
+
     private void updatePlaneIdIfTimedOut() {
         if (planeIdPersistTimer.isExpired()) {
             deltaCollector.setPlaneId(planeIdSupplier.get());
@@ -641,6 +762,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
     
     private void removeFromCollector(BrooklynObject instance) {
         deltaCollector.remove(instance);
+        pendingChanges.remove(instance);
     }
 
     @Override
@@ -648,9 +770,26 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         if (LOG.isTraceEnabled()) LOG.trace("onChanged: {}", instance);
         if (!isStopped() && !rebindManager.isReadOnly()) {
             deltaCollector.add(instance);
+            if (!debounceByType.isEmpty() && debounceByType.containsKey(BrooklynObjectType.of(instance))) {
+                notePendingChange(instance);
+            }
         }
     }
     
+    private void notePendingChange(BrooklynObject instance) {
+        long now = System.nanoTime();
+        PendingChange change = pendingChanges.get(instance);
+        if (change == null) {
+            pendingChanges.put(instance, new PendingChange(now));
+        } else {
+            change.lastChangeNanos = now;
+            if (!change.changedThisPeriod) {
+                change.changedThisPeriod = true;
+                change.periodsChanged++;
+            }
+        }
+    }
+
     public PersistenceExceptionHandler getExceptionHandler() {
         return exceptionHandler;
     }
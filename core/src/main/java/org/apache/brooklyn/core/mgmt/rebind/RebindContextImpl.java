@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import java.util.function.Supplier;
@@ -47,11 +48,12 @@ import com.google.common.collect.Maps;
 
 public class RebindContextImpl implements RebindContext {
 
-    private final Map<String, Entity> entities = Maps.newLinkedHashMap();
-    private final Map<String, Location> locations = Maps.newLinkedHashMap();
-    private final Map<String, Policy> policies = Maps.newLinkedHashMap();
-    private final Map<String, Enricher> enrichers = Maps.newLinkedHashMap();
-    private final Map<String, Feed> feeds = Maps.newLinkedHashMap();
+    // synchronized as these can be registered and read concurrently when rebinding in parallel
+    private final Map<String, Entity> entities = Collections.synchronizedMap(Maps.newLinkedHashMap());
+    private final Map<String, Location> locations = Collections.synchronizedMap(Maps.newLinkedHashMap());
+    private final Map<String, Policy> policies = Collections.synchronizedMap(Maps.newLinkedHashMap());
+    private final Map<String, Enricher> enrichers = Collections.synchronizedMap(Maps.newLinkedHashMap());
+    private final Map<String, Feed> feeds = Collections.synchronizedMap(Maps.newLinkedHashMap());
     private final Map<String, CatalogItem<?, ?>> catalogItems = Maps.newLinkedHashMap();
     private final Map<String, ManagedBundle> bundles = Maps.newLinkedHashMap();
     
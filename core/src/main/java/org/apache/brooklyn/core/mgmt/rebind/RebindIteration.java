@@ -28,17 +28,24 @@ import static org.apache.brooklyn.core.catalog.internal.CatalogUtils.newClassLoa
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 import com.google.common.annotations.Beta;
 import org.apache.brooklyn.api.catalog.BrooklynCatalog;
 import org.apache.brooklyn.api.catalog.CatalogItem;
 import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
+import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.classloading.BrooklynClassLoadingContext;
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
 import org.apache.brooklyn.api.mgmt.rebind.RebindContext;
@@ -118,6 +125,7 @@ import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
@@ -143,6 +151,12 @@ import com.google.common.collect.Sets;
  * <li> 8. manage the entities
  * </ul>
  * <p>
+ * If {@link RebindManagerImpl#REBIND_PARALLELISM} is more than 1, instantiation in phases 3 and 5 is done concurrently,
+ * and in phases 6 and 7 groups of objects which are independent of each other are processed concurrently
+ * (entities are grouped by their ancestry and group membership, locations by their ancestry;
+ * each group is processed parent-first, as when sequential). The time taken by each phase is recorded,
+ * see {@link #getPhaseDurations()}.
+ * <p>
  * If underlying data-store is changed between first and second manifest read (e.g. to add an
  * entity), then second phase might try to reconstitute an entity that has not been put in
  * the rebindContext. This should not affect normal production usage, because rebind is run
@@ -198,6 +212,11 @@ public abstract class RebindIteration {
      */
     protected int phase = 0;
 
+    /** time taken by each step of {@link #doRun()}, in the order run */
+    protected final Map<String, Duration> phaseDurations = Collections.synchronizedMap(MutableMap.<String, Duration>of());
+
+    protected final int parallelism;
+
     // set in first phase
 
     protected BrooklynMementoRawData mementoRawData;
@@ -236,6 +255,8 @@ public abstract class RebindIteration {
         rebindContext = new RebindContextImpl(managementContext, exceptionHandler, classLoader);
         reflections = new Reflections(classLoader).applyClassRenames(DeserializingClassRenamesProvider.INSTANCE.loadDeserializingMapping());
         instantiator = new BrooklynObjectInstantiator(classLoader, rebindContext, reflections);
+        Integer parallelismConfig = managementContext.getConfig().getConfig(RebindManagerImpl.REBIND_PARALLELISM);
+        parallelism = parallelismConfig == null ? 1 : Math.max(1, parallelismConfig);
 
         if (mode == ManagementNodeState.HOT_STANDBY || mode == ManagementNodeState.HOT_BACKUP) {
             rebindContext.setAllReadOnly();
@@ -258,18 +279,140 @@ public abstract class RebindIteration {
             rebindManager.stopEntityTasksAndCleanUp("before next read-only rebind", Duration.seconds(10), Duration.seconds(20));
         }
 
-        loadManifestFiles();
+        timePhase("loadManifestFiles", this::loadManifestFiles);
         initPlaneId();
-        installBundlesAndRebuildCatalog();
-        instantiateLocationsAndEntities();
-        instantiateMementos();
+        timePhase("installBundlesAndRebuildCatalog", this::installBundlesAndRebuildCatalog);
+        timePhase("instantiateLocationsAndEntities", this::instantiateLocationsAndEntities);
+        timePhase("instantiateMementos", this::instantiateMementos);
         // adjuncts depend on actual mementos; whereas entity works off special memento manifest, 
         // and location, bundles etc just take type and id
-        instantiateAdjuncts(instantiator);
-        reconstructEverything();
-        associateAdjunctsWithEntities();
-        manageTheObjects();
-        finishingUp();
+        timePhase("instantiateAdjuncts", () -> instantiateAdjuncts(instantiator));
+        timePhase("reconstructEverything", this::reconstructEverything);
+        timePhase("associateAdjunctsWithEntities", this::associateAdjunctsWithEntities);
+        timePhase("manageTheObjects", this::manageTheObjects);
+        timePhase("finishingUp", this::finishingUp);
+    }
+
+    protected interface Phase {
+        void run() throws Exception;
+    }
+
+    protected void timePhase(String name, Phase phase) throws Exception {
+        Stopwatch phaseTimer = Stopwatch.createStarted();
+        try {
+            phase.run();
+        } finally {
+            phaseDurations.put(name, Duration.of(phaseTimer));
+        }
+    }
+
+    /** Time taken by each phase of this iteration which has run, in the order run. */
+    public Map<String, Duration> getPhaseDurations() {
+        synchronized (phaseDurations) {
+            return ImmutableMap.copyOf(phaseDurations);
+        }
+    }
+
+    /**
+     * Runs the given jobs, concurrently if {@link #parallelism} allows, otherwise in order in the calling thread;
+     * returns when all have completed, rethrowing the first failure (jobs are expected to report errors
+     * to the {@link #exceptionHandler}, so failure here is normally due to fail-fast).
+     */
+    protected void runJobs(String description, List<Runnable> jobs) {
+        if (parallelism <= 1 || jobs.size() <= 1) {
+            for (Runnable job : jobs) {
+                job.run();
+            }
+            return;
+        }
+        if (LOG.isTraceEnabled()) LOG.trace("RebindManager {}: {} jobs across {} threads", new Object[] {description, jobs.size(), parallelism});
+        final Queue<Runnable> queue = new ConcurrentLinkedQueue<Runnable>(jobs);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        // run as tasks in the server execution context, so that jobs have the task, entitlement and
+        // management context tags of the rebind, as they would when run in the calling thread
+        List<Task<Void>> workers = MutableList.of();
+        for (int i = 0; i < Math.min(parallelism, jobs.size()); i++) {
+            workers.add(managementContext.getServerExecutionContext().submit(Tasks.<Void>builder()
+                    .displayName("rebind: " + description)
+                    .dynamic(false)
+                    .tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                    .body(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            RebindTracker.setRebinding();
+                            try {
+                                Runnable job;
+                                while (!Thread.currentThread().isInterrupted() && (job = queue.poll()) != null) {
+                                    try {
+                                        job.run();
+                                    } catch (Throwable t) {
+                                        error.compareAndSet(null, t);
+                                    }
+                                }
+                            } finally {
+                                RebindTracker.reset();
+                            }
+                            return null;
+                        }
+                    })
+                    .build()));
+        }
+        for (Task<Void> worker : workers) {
+            try {
+                worker.get();
+            } catch (ExecutionException e) {
+                error.compareAndSet(null, e.getCause());
+            } catch (InterruptedException e) {
+                for (Task<Void> w : workers) w.cancel(true);
+                throw Exceptions.propagate(e);
+            }
+        }
+        if (error.get() != null) {
+            throw Exceptions.propagate(error.get());
+        }
+    }
+
+    /**
+     * Partitions the given nodes into groups which do not depend on each other: nodes linked by parent
+     * or by any of the additional links (ids of other nodes) are in the same group.
+     * Each group is in parent-first order; groups are in the order of their first node.
+     */
+    protected <T extends TreeNode> Collection<List<T>> groupDependent(Map<String, T> nodes, @Nullable Function<? super T, ? extends Iterable<String>> otherLinks) {
+        Map<String, String> unions = MutableMap.of();
+        for (T node : nodes.values()) {
+            if (node.getParent() != null && nodes.containsKey(node.getParent())) {
+                union(unions, node.getId(), node.getParent());
+            }
+            if (otherLinks != null) {
+                for (String link : otherLinks.apply(node)) {
+                    if (nodes.containsKey(link)) union(unions, node.getId(), link);
+                }
+            }
+        }
+        Map<String, List<T>> groups = MutableMap.of();
+        for (T node : sortParentFirst(nodes).values()) {
+            groups.computeIfAbsent(findUnion(unions, node.getId()), k -> MutableList.<T>of()).add(node);
+        }
+        return groups.values();
+    }
+
+    private static void union(Map<String, String> unions, String id1, String id2) {
+        String root1 = findUnion(unions, id1);
+        String root2 = findUnion(unions, id2);
+        if (!root1.equals(root2)) unions.put(root1, root2);
+    }
+
+    private static String findUnion(Map<String, String> unions, String id) {
+        String root = id;
+        while (unions.containsKey(root)) {
+            root = unions.get(root);
+        }
+        while (!id.equals(root)) {
+            String next = unions.get(id);
+            unions.put(id, root);
+            id = next;
+        }
+        return root;
     }
 
     protected abstract void loadManifestFiles() throws Exception;
@@ -297,10 +440,13 @@ public abstract class RebindIteration {
             exceptionHandler.onDone();
 
             rebindMetrics.noteSuccess(Duration.of(timer));
+            rebindMetrics.notePhaseDurations(getPhaseDurations());
+            logRebindingDebug("RebindManager phase durations ({} thread{}): {}", parallelism, Strings.s(parallelism), getPhaseDurations());
             noteErrors(exceptionHandler, null);
 
         } catch (Exception e) {
             rebindMetrics.noteFailure(Duration.of(timer));
+            rebindMetrics.notePhaseDurations(getPhaseDurations());
 
             Exceptions.propagateIfFatal(e);
             noteErrors(exceptionHandler, e);
@@ -458,36 +604,43 @@ public abstract class RebindIteration {
 
         // Instantiate locations
         logRebindingDebug("RebindManager instantiating locations: {}", mementoManifest.getLocationIdToType().keySet());
+        List<Runnable> jobs = MutableList.of();
         for (Map.Entry<String, String> entry : mementoManifest.getLocationIdToType().entrySet()) {
             String locId = entry.getKey();
             String locType = entry.getValue();
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
+            jobs.add(() -> {
+                if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating location {}", locId);
 
-            try {
-                Location location = instantiator.newLocation(locId, locType);
-                rebindContext.registerLocation(locId, location);
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locType, e);
-            }
+                try {
+                    Location location = instantiator.newLocation(locId, locType);
+                    rebindContext.registerLocation(locId, location);
+                } catch (Exception e) {
+                    exceptionHandler.onCreateFailed(BrooklynObjectType.LOCATION, locId, locType, e);
+                }
+            });
         }
+        runJobs("instantiating locations", jobs);
 
         // Instantiate entities
         logRebindingDebug("RebindManager instantiating entities: {}", mementoManifest.getEntityIdToManifest().keySet());
+        jobs = MutableList.of();
         for (Map.Entry<String, EntityMementoManifest> entry : mementoManifest.getEntityIdToManifest().entrySet()) {
             String entityId = entry.getKey();
             EntityMementoManifest entityManifest = entry.getValue();
+            jobs.add(() -> {
+                if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
 
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
-
-            try {
-                Entity entity = instantiator.newEntity(entityManifest);
-                ((EntityInternal) entity).getManagementSupport().setReadOnly(rebindContext.isReadOnly(entity));
-                rebindContext.registerEntity(entityId, entity);
+                try {
+                    Entity entity = instantiator.newEntity(entityManifest);
+                    ((EntityInternal) entity).getManagementSupport().setReadOnly(rebindContext.isReadOnly(entity));
+                    rebindContext.registerEntity(entityId, entity);
 
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
-            }
+                } catch (Exception e) {
+                    exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
+                }
+            });
         }
+        runJobs("instantiating entities", jobs);
     }
 
     // creation of adjuncts can be called from different threads; it should be rare however, so easiest to synchronize
@@ -532,19 +685,23 @@ public abstract class RebindIteration {
         // Instantiate policies
         if (rebindManager.persistPoliciesEnabled) {
             logRebindingDebug("RebindManager instantiating policies: {}", memento.getPolicyIds());
+            List<Runnable> jobs = MutableList.of();
             for (PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
-                logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
+                jobs.add(() -> {
+                    logRebindingDebug("RebindManager instantiating policy {}", policyMemento);
 
-                try {
-                    Policy policy = instantiator.newPolicy(policyMemento);
+                    try {
+                        Policy policy = instantiator.newPolicy(policyMemento);
 
-                    EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(policy.getId()) , policy);
+                        EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(policy.getId()) , policy);
 
-                    rebindContext.registerPolicy(policyMemento.getId(), policy);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e);
-                }
+                        rebindContext.registerPolicy(policyMemento.getId(), policy);
+                    } catch (Exception e) {
+                        exceptionHandler.onCreateFailed(BrooklynObjectType.POLICY, policyMemento.getId(), policyMemento.getType(), e);
+                    }
+                });
             }
+            runJobs("instantiating policies", jobs);
         } else {
             logRebindingDebug("Not rebinding policies; feature disabled: {}", memento.getPolicyIds());
         }
@@ -552,17 +709,21 @@ public abstract class RebindIteration {
         // Instantiate enrichers
         if (rebindManager.persistEnrichersEnabled) {
             logRebindingDebug("RebindManager instantiating enrichers: {}", memento.getEnricherIds());
+            List<Runnable> jobs = MutableList.of();
             for (EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
-                logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
+                jobs.add(() -> {
+                    logRebindingDebug("RebindManager instantiating enricher {}", enricherMemento);
 
-                try {
-                    Enricher enricher = instantiator.newEnricher(enricherMemento);
-                    EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(enricher.getId()) , enricher);
-                    rebindContext.registerEnricher(enricherMemento.getId(), enricher);
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e);
-                }
+                    try {
+                        Enricher enricher = instantiator.newEnricher(enricherMemento);
+                        EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(enricher.getId()) , enricher);
+                        rebindContext.registerEnricher(enricherMemento.getId(), enricher);
+                    } catch (Exception e) {
+                        exceptionHandler.onCreateFailed(BrooklynObjectType.ENRICHER, enricherMemento.getId(), enricherMemento.getType(), e);
+                    }
+                });
             }
+            runJobs("instantiating enrichers", jobs);
         } else {
             logRebindingDebug("Not rebinding enrichers; feature disabled: {}", memento.getEnricherIds());
         }
@@ -571,18 +732,22 @@ public abstract class RebindIteration {
         // Instantiate feeds
         if (rebindManager.persistFeedsEnabled) {
             logRebindingDebug("RebindManager instantiating feeds: {}", memento.getFeedIds());
+            List<Runnable> jobs = MutableList.of();
             for (FeedMemento feedMemento : memento.getFeedMementos().values()) {
-                if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
+                jobs.add(() -> {
+                    if (LOG.isDebugEnabled()) LOG.debug("RebindManager instantiating feed {}", feedMemento);
 
-                try {
-                    Feed feed = instantiator.newFeed(feedMemento);
-                    EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(feed.getId()) , feed);
-                    rebindContext.registerFeed(feedMemento.getId(), feed);
-                    // started during associateAdjunctsWithEntities by RebindAdjuncts
-                } catch (Exception e) {
-                    exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e);
-                }
+                    try {
+                        Feed feed = instantiator.newFeed(feedMemento);
+                        EntityAdjunctProxyImpl.resetDelegate( adjunctProxies.remove(feed.getId()) , feed);
+                        rebindContext.registerFeed(feedMemento.getId(), feed);
+                        // started during associateAdjunctsWithEntities by RebindAdjuncts
+                    } catch (Exception e) {
+                        exceptionHandler.onCreateFailed(BrooklynObjectType.FEED, feedMemento.getId(), feedMemento.getType(), e);
+                    }
+                });
             }
+            runJobs("instantiating feeds", jobs);
         } else {
             logRebindingDebug("Not rebinding feeds; feature disabled: {}", memento.getFeedIds());
         }
@@ -609,140 +774,160 @@ public abstract class RebindIteration {
 
         // Reconstruct locations
         logRebindingDebug("RebindManager reconstructing locations");
-        for (LocationMemento locMemento : sortParentFirst(memento.getLocationMementos()).values()) {
-            Location location = rebindContext.getLocation(locMemento.getId());
-            logRebindingDebug("RebindManager reconstructing location {}", locMemento);
-            if (location == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
-            } else {
-                try {
-                    ((LocationInternal) location).getRebindSupport().reconstruct(rebindContext, locMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, location, e);
+        List<Runnable> jobs = MutableList.of();
+        for (List<LocationMemento> group : groupDependent(memento.getLocationMementos(), null)) {
+            jobs.add(() -> {
+                for (LocationMemento locMemento : group) {
+                    Location location = rebindContext.getLocation(locMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing location {}", locMemento);
+                    if (location == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.LOCATION, locMemento.getId());
+                    } else {
+                        try {
+                            ((LocationInternal) location).getRebindSupport().reconstruct(rebindContext, locMemento);
+                        } catch (Exception e) {
+                            exceptionHandler.onRebindFailed(BrooklynObjectType.LOCATION, location, e);
+                        }
+                    }
                 }
-            }
+            });
         }
+        runJobs("reconstructing locations", jobs);
 
         // Reconstruct policies
         if (rebindManager.persistPoliciesEnabled) {
             logRebindingDebug("RebindManager reconstructing policies");
+            jobs = MutableList.of();
             for (PolicyMemento policyMemento : memento.getPolicyMementos().values()) {
-                Policy policy = rebindContext.getPolicy(policyMemento.getId());
-                logRebindingDebug("RebindManager reconstructing policy {}", policyMemento);
+                jobs.add(() -> {
+                    Policy policy = rebindContext.getPolicy(policyMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing policy {}", policyMemento);
 
-                if (policy == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.POLICY, policyMemento.getId());
-                } else {
-                    try {
-                        policy.getRebindSupport().reconstruct(rebindContext, policyMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.POLICY, policy, e);
-                        rebindContext.unregisterPolicy(policy);
+                    if (policy == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.POLICY, policyMemento.getId());
+                    } else {
+                        try {
+                            policy.getRebindSupport().reconstruct(rebindContext, policyMemento);
+                        } catch (Exception e) {
+                            exceptionHandler.onRebindFailed(BrooklynObjectType.POLICY, policy, e);
+                            rebindContext.unregisterPolicy(policy);
+                        }
                     }
-                }
+                });
             }
+            runJobs("reconstructing policies", jobs);
         }
 
         // Reconstruct enrichers
         if (rebindManager.persistEnrichersEnabled) {
             logRebindingDebug("RebindManager reconstructing enrichers");
+            jobs = MutableList.of();
             for (EnricherMemento enricherMemento : memento.getEnricherMementos().values()) {
-                Enricher enricher = rebindContext.getEnricher(enricherMemento.getId());
-                logRebindingDebug("RebindManager reconstructing enricher {}", enricherMemento);
+                jobs.add(() -> {
+                    Enricher enricher = rebindContext.getEnricher(enricherMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing enricher {}", enricherMemento);
 
-                if (enricher == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.ENRICHER, enricherMemento.getId());
-                } else {
-                    try {
-                        enricher.getRebindSupport().reconstruct(rebindContext, enricherMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.ENRICHER, enricher, e);
-                        rebindContext.unregisterEnricher(enricher);
+                    if (enricher == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.ENRICHER, enricherMemento.getId());
+                    } else {
+                        try {
+                            enricher.getRebindSupport().reconstruct(rebindContext, enricherMemento);
+                        } catch (Exception e) {
+                            exceptionHandler.onRebindFailed(BrooklynObjectType.ENRICHER, enricher, e);
+                            rebindContext.unregisterEnricher(enricher);
+                        }
                     }
-                }
+                });
             }
+            runJobs("reconstructing enrichers", jobs);
         }
 
         // Reconstruct feeds
         if (rebindManager.persistFeedsEnabled) {
             logRebindingDebug("RebindManager reconstructing feeds");
+            jobs = MutableList.of();
             for (FeedMemento feedMemento : memento.getFeedMementos().values()) {
-                Feed feed = rebindContext.getFeed(feedMemento.getId());
-                logRebindingDebug("RebindManager reconstructing feed {}", feedMemento);
+                jobs.add(() -> {
+                    Feed feed = rebindContext.getFeed(feedMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing feed {}", feedMemento);
 
-                if (feed == null) {
-                    // usually because of creation-failure, when not using fail-fast
-                    exceptionHandler.onNotFound(BrooklynObjectType.FEED, feedMemento.getId());
-                } else {
-                    try {
-                        feed.getRebindSupport().reconstruct(rebindContext, feedMemento);
-                    } catch (Exception e) {
-                        exceptionHandler.onRebindFailed(BrooklynObjectType.FEED, feed, e);
-                        rebindContext.unregisterFeed(feed);
+                    if (feed == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.FEED, feedMemento.getId());
+                    } else {
+                        try {
+                            feed.getRebindSupport().reconstruct(rebindContext, feedMemento);
+                        } catch (Exception e) {
+                            exceptionHandler.onRebindFailed(BrooklynObjectType.FEED, feed, e);
+                            rebindContext.unregisterFeed(feed);
+                        }
                     }
-                }
-
+                });
             }
+            runJobs("reconstructing feeds", jobs);
         }
 
         // Reconstruct entities
         logRebindingDebug("RebindManager reconstructing entities");
-        for (EntityMemento entityMemento : sortParentFirst(memento.getEntityMementos()).values()) {
-            Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
-            logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
-
-            if (entity == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
-            } else {
-                try {
-                    entityMemento.injectTypeClass(entity.getClass());
-                    ((EntityInternal) entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
+        jobs = MutableList.of();
+        for (List<EntityMemento> group : groupDependentEntities()) {
+            jobs.add(() -> {
+                for (EntityMemento entityMemento : group) {
+                    Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
+                    logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
+
+                    if (entity == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
+                    } else {
+                        try {
+                            entityMemento.injectTypeClass(entity.getClass());
+                            ((EntityInternal) entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
+                        } catch (Exception e) {
+                            exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
+                        }
+                    }
                 }
-            }
+            });
         }
+        runJobs("reconstructing entities", jobs);
+    }
+
+    /** entities grouped by ancestry and group membership, as reconstructing adds children and members */
+    protected Collection<List<EntityMemento>> groupDependentEntities() {
+        return groupDependent(memento.getEntityMementos(), EntityMemento::getMembers);
     }
 
     protected void associateAdjunctsWithEntities() {
         checkEnteringPhase(7);
 
         logRebindingDebug("RebindManager associating adjuncts to entities");
-        for (EntityMemento entityMemento : sortParentFirst(memento.getEntityMementos()).values()) {
-            Entity entity = rebindContext.getEntity(entityMemento.getId());
-            logRebindingDebug("RebindManager associating adjuncts to entity {}", entityMemento);
-
-            if (entity == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
-            } else {
-                // Must execute in entity's context, so policy.setEntity can resolve config (BROOKLYN-549).
-                Runnable body = new Runnable() {
-                    public void run() {
-                        try {
-                            entityMemento.injectTypeClass(entity.getClass());
-                            // TODO these call to the entity which in turn sets the entity on the underlying feeds and enrichers;
-                            // that is taken as the cue to start, but it should not be. start should be a separate call.
-                            ((EntityInternal) entity).getRebindSupport().addPolicies(rebindContext, entityMemento);
-                            ((EntityInternal) entity).getRebindSupport().addEnrichers(rebindContext, entityMemento);
-                            ((EntityInternal) entity).getRebindSupport().addFeeds(rebindContext, entityMemento);
-                        } catch (Exception e) {
-                            exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
-                        }
+        List<Runnable> jobs = MutableList.of();
+        for (List<EntityMemento> group : groupDependentEntities()) {
+            jobs.add(() -> {
+                for (EntityMemento entityMemento : group) {
+                    Entity entity = rebindContext.getEntity(entityMemento.getId());
+                    logRebindingDebug("RebindManager associating adjuncts to entity {}", entityMemento);
+
+                    if (entity == null) {
+                        // usually because of creation-failure, when not using fail-fast
+                        exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
+                    } else {
+                        // Must execute in entity's context, so policy.setEntity can resolve config (BROOKLYN-549).
+                        ((EntityInternal) entity).getExecutionContext().get(Tasks.<Void>builder()
+                                .displayName("Rebind adjuncts for " + entity.getId())
+                                .tag(BrooklynTaskTags.ENTITY_INITIALIZATION)
+                                .dynamic(false)
+                                .body(new RebindAdjuncts(entityMemento, entity, rebindContext, exceptionHandler))
+                                .build());
                     }
-                };
-                ((EntityInternal) entity).getExecutionContext().get(Tasks.<Void>builder()
-                        .displayName("Rebind adjuncts for " + entity.getId())
-                        .tag(BrooklynTaskTags.ENTITY_INITIALIZATION)
-                        .dynamic(false)
-                        .body(new RebindAdjuncts(entityMemento, entity, rebindContext, exceptionHandler))
-                        .build());
-            }
+                }
+            });
         }
+        runJobs("associating adjuncts to entities", jobs);
     }
 
     protected static class RebindAdjuncts implements Runnable {
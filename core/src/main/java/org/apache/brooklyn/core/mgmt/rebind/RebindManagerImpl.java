@@ -118,6 +118,13 @@ public class RebindManagerImpl implements RebindManager {
                 + "then linear regression to allow max 5% at 100 items and above", 
                 QuorumChecks.newLinearRange("[[0,-2],[10,8],[100,95],[200,190]]"));
 
+    @Beta
+    public static final ConfigKey<Integer> REBIND_PARALLELISM =
+        ConfigKeys.newIntegerConfigKey("rebind.parallelism",
+                "Maximum number of threads to use when rebinding, to instantiate objects and to reconstruct "
+                + "independent groups of objects (such as different applications) concurrently; "
+                + "1 (the default) rebinds sequentially", 1);
+
     public static final Logger LOG = LoggerFactory.getLogger(RebindManagerImpl.class);
 
     private final ManagementContextInternal managementContext;
@@ -270,6 +277,7 @@ public class RebindManagerImpl implements RebindManager {
                 exceptionHandler,
                 persistMetrics,
                 periodicPersistPeriod);
+        this.persistenceRealChangeListener.configureDebounce(managementContext.getConfig());
         this.persistencePublicChangeListener = new SafeChangeListener(persistenceRealChangeListener);
         
         if (persistenceRunning) {
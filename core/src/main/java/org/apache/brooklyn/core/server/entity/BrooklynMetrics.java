@@ -50,6 +50,12 @@ public interface BrooklynMetrics extends Entity {
     public static final AttributeSensor<Long> TOTAL_EVENTS_DELIVERED = new BasicAttributeSensor<Long>(
             Long.class, "brooklyn.metrics.totalEventsDelivered", "Total number of events delivered (counting an event multiple times if more than one subscriber)");
     
+    public static final AttributeSensor<Long> TOTAL_EVENTS_CONFLATED = new BasicAttributeSensor<Long>(
+            Long.class, "brooklyn.metrics.totalEventsConflated", "Total number of queued events replaced by a newer value before delivery (if batched delivery with conflation is enabled)");
+
+    public static final AttributeSensor<Long> NUM_EVENTS_QUEUED = new BasicAttributeSensor<Long>(
+            Long.class, "brooklyn.metrics.numEventsQueued", "Number of events currently queued for delivery (if batched delivery is enabled)");
+
     public static final AttributeSensor<Long> NUM_SUBSCRIPTIONS = new BasicAttributeSensor<Long>(
             Long.class, "brooklyn.metrics.numSubscriptions", "Current number of event subscriptions");
 }
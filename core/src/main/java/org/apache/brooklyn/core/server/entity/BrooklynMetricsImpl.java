@@ -81,6 +81,8 @@ public class BrooklynMetricsImpl extends AbstractEntity implements BrooklynMetri
         if (subsManager != null) {
             sensors().set(TOTAL_EVENTS_PUBLISHED, subsManager.getTotalEventsPublished());
             sensors().set(TOTAL_EVENTS_DELIVERED, subsManager.getTotalEventsDelivered());
+            sensors().set(TOTAL_EVENTS_CONFLATED, subsManager.getTotalEventsConflated());
+            sensors().set(NUM_EVENTS_QUEUED, subsManager.getNumEventsQueued());
             sensors().set(NUM_SUBSCRIPTIONS, subsManager.getNumSubscriptions());
         }
     }
@@ -40,11 +40,13 @@ import org.apache.brooklyn.api.typereg.RegisteredTypeLoadingContext;
 import org.apache.brooklyn.core.catalog.internal.BasicBrooklynCatalog;
 import org.apache.brooklyn.core.catalog.internal.CatalogItemBuilder;
 import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
+import org.apache.brooklyn.core.catalog.internal.SpecCache;
 import org.apache.brooklyn.core.mgmt.ha.OsgiManager;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.core.typereg.BundleUpgradeParser.CatalogUpgrades;
 import org.apache.brooklyn.core.typereg.RegisteredTypes.RegisteredTypeNameThenBestFirstComparator;
 import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.concurrent.Locks;
@@ -64,7 +66,9 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.SetMultimap;
 
 public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
 
@@ -83,6 +87,27 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
      */
     private ReadWriteLock localRegistryLock = new ReentrantReadWriteLock();
 
+    /*
+     * Secondary indexes over localRegisteredTypesAndContainingBundles, so that lookups by name, alias,
+     * java super-type or containing bundle do not need to scan and sort all types.
+     * All are keyed to symbolic names, recomputed for a symbolic name whenever any of its types change
+     * (see reindexLocalTypes), and guarded by localRegistryLock as for the map above.
+     */
+    private final Map<String,Set<String>> localIdsBySymbolicName = MutableMap.of();
+    /** all types for a symbolic name (across versions and bundles), best version first */
+    private final Map<String,List<RegisteredType>> localTypesBySymbolicNameBestFirst = MutableMap.of();
+    private final SetMultimap<String,String> localSymbolicNamesByAlias = LinkedHashMultimap.create();
+    /** keyed by every java class among the (transitive) super-types */
+    private final SetMultimap<Class<?>,String> localSymbolicNamesBySuperTypeClass = LinkedHashMultimap.create();
+    /** the classes each symbolic name is currently recorded against in {@link #localSymbolicNamesBySuperTypeClass},
+     * so that it can be removed exactly even if the super-types of its types have since changed */
+    private final Map<String,Set<Class<?>>> localSuperTypeClassesBySymbolicName = MutableMap.of();
+    /** set when the super-types of a type already registered change (as when it is validated and replaced), which also changes
+     * the super-types of any types depending on it; the super-type index is then rebuilt in full before it is next used */
+    private volatile boolean localSuperTypeIndexStale = false;
+    /** keyed by {@link VersionedName#toOsgiString()} of the containing bundle */
+    private final SetMultimap<String,String> localSymbolicNamesByContainingBundle = LinkedHashMultimap.create();
+
     private CatalogUpgrades catalogUpgrades;
 
     public BasicBrooklynTypeRegistry(ManagementContext mgmt) {
@@ -95,14 +120,78 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
     }
     
     private Iterable<RegisteredType> getAllWithoutCatalog(Predicate<? super RegisteredType> filter) {
-        // TODO optimisation? make indexes and look up?
+        Maybe<VersionedName> bundle = RegisteredTypePredicates.getContainingBundleRequired(filter);
+        if (bundle.isPresent()) {
+            return getLocalWithSymbolicNames(() -> localSymbolicNamesByContainingBundle.get(bundle.get().toOsgiString()), filter);
+        }
+        Maybe<Class<?>> superType = RegisteredTypePredicates.getSubtypeOfClassRequired(filter);
         Ordering<RegisteredType> typeOrder = Ordering.from(RegisteredTypeNameThenBestFirstComparator.INSTANCE);
+        if (superType.isPresent() && isSuperTypeIndexCurrent()) {
+            // sorted as the types would be by the scan below
+            return typeOrder.sortedCopy(getLocalWithSymbolicNames(() -> {
+                Set<String> names = MutableSet.of();
+                for (Class<?> c: localSymbolicNamesBySuperTypeClass.keySet()) {
+                    if (superType.get().isAssignableFrom(c)) names.addAll(localSymbolicNamesBySuperTypeClass.get(c));
+                }
+                return names;
+            }, filter));
+        }
+        
         return withOptionalReadLock(() -> localRegisteredTypesAndContainingBundles.values().stream().
                 flatMap(m -> {
                     return typeOrder.sortedCopy(m.values()).stream();
                 }).filter(filter::apply).collect(Collectors.toList()));
     }
 
+    /** true if the super-type index reflects the current super-types of all local types, rebuilding it if needed;
+     * false if it might be stale but cannot be rebuilt now (because this thread holds the read lock, or another thread
+     * holds either lock), in which case callers should scan all types */
+    private boolean isSuperTypeIndexCurrent() {
+        if (!localSuperTypeIndexStale) return true;
+        if (!localRegistryLock.writeLock().tryLock()) return false;
+        try {
+            // changes are only made under the write lock, so none can be missed here
+            for (String symbolicName: MutableSet.copyOf(localTypesBySymbolicNameBestFirst.keySet())) {
+                reindexSuperTypeClasses(symbolicName, localTypesBySymbolicNameBestFirst.get(symbolicName));
+            }
+            localSuperTypeIndexStale = false;
+            return true;
+        } finally {
+            localRegistryLock.writeLock().unlock();
+        }
+    }
+
+    /** returns the local types (best version first for each name) having any of the symbolic names supplied, 
+     * filtered by the given filter; the names are supplied by a callable run under the read lock, 
+     * typically looking at the indexes */
+    private List<RegisteredType> getLocalWithSymbolicNames(Callable<? extends Iterable<String>> symbolicNames, Predicate<? super RegisteredType> filter) {
+        return withOptionalReadLock(() -> {
+            List<RegisteredType> result = MutableList.of();
+            for (String symbolicName: symbolicNames.call()) {
+                List<RegisteredType> types = localTypesBySymbolicNameBestFirst.get(symbolicName);
+                if (types!=null) {
+                    for (RegisteredType t: types) {
+                        if (filter.apply(t)) result.add(t);
+                    }
+                }
+            }
+            return result;
+        });
+    }
+
+    /** as {@link #getMatching(Predicate)} with the additional filter that the symbolic name is as given, but using the index */
+    private Iterable<RegisteredType> getMatchingWithSymbolicName(String symbolicName, Predicate<? super RegisteredType> filter) {
+        List<RegisteredType> result = getLocalWithSymbolicNames(() -> Collections.singleton(symbolicName), filter);
+        return addLegacyCatalogItems(result, Predicates.and(RegisteredTypePredicates.symbolicName(symbolicName), filter));
+    }
+
+    /** as {@link #getMatching(Predicate)} with the additional filter that an alias is as given, but using the index */
+    private Iterable<RegisteredType> getMatchingWithAlias(String alias, Predicate<? super RegisteredType> filter) {
+        Predicate<RegisteredType> aliasAndFilter = Predicates.and(RegisteredTypePredicates.alias(alias), filter);
+        List<RegisteredType> result = getLocalWithSymbolicNames(() -> localSymbolicNamesByAlias.get(alias), aliasAndFilter);
+        return addLegacyCatalogItems(result, aliasAndFilter);
+    }
+
     private Maybe<RegisteredType> getExactWithoutLegacyCatalog(String symbolicName, String version, RegisteredTypeLoadingContext constraint) {
         RegisteredType item = withOptionalReadLock(
             ()-> getBestValue(localRegisteredTypesAndContainingBundles.get(symbolicName+":"+version)) );
@@ -129,13 +218,19 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         return m.get( Ordering.from(VersionedNameStringComparator.INSTANCE).min(m.keySet()) );
     }
 
-    @SuppressWarnings("deprecation")
     @Override
     public Iterable<RegisteredType> getMatching(Predicate<? super RegisteredType> filter) {
+        // we can't tell which types a general filter would match after a change
+        SpecCache.recordDependencyOnAll();
+        return addLegacyCatalogItems(getAllWithoutCatalog(filter), filter);
+    }
+
+    @SuppressWarnings("deprecation")
+    private Iterable<RegisteredType> addLegacyCatalogItems(Iterable<RegisteredType> localTypes, Predicate<? super RegisteredType> filter) {
         Set<RegisteredType> result = MutableSet.of();
         // keep name record also so we can remove legacy items that are superseded
         Set<String> typeNamesFound = MutableSet.of();
-        for (RegisteredType rt: getAllWithoutCatalog(filter)) {
+        for (RegisteredType rt: localTypes) {
             result.add(rt);
             typeNamesFound.add(rt.getId());
         }
@@ -164,6 +259,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
         if (context==null) context = RegisteredTypeLoadingContexts.any();
         String version = versionFinal;
         if (Strings.isBlank(version)) version = BrooklynCatalog.DEFAULT_VERSION;
+        SpecCache.recordDependency(symbolicNameOrAliasIfNoVersion);
 
         if (!BrooklynCatalog.DEFAULT_VERSION.equals(version)) {
             // normal code path when version is supplied
@@ -182,15 +278,13 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
             versionCheck = RegisteredTypePredicates.versionOsgi(version);
         }
         
-        Iterable<RegisteredType> types = getMatching(Predicates.and(
-            RegisteredTypePredicates.symbolicName(symbolicNameOrAliasIfNoVersion),
+        Iterable<RegisteredType> types = getMatchingWithSymbolicName(symbolicNameOrAliasIfNoVersion, Predicates.and(
             versionCheck,
             RegisteredTypePredicates.satisfies(context)));
         
         if (Iterables.isEmpty(types)) {
             // look for alias if no exact symbolic name match AND no version is specified
-            types = getMatching(Predicates.and(
-                RegisteredTypePredicates.alias(symbolicNameOrAliasIfNoVersion),
+            types = getMatchingWithAlias(symbolicNameOrAliasIfNoVersion, Predicates.and(
                 versionCheck,
                 RegisteredTypePredicates.satisfies(context) ) );
             // if there are multiple symbolic names then throw?
@@ -443,6 +537,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                 if (knownMatchingTypesByBundles==null) {
                     knownMatchingTypesByBundles = MutableMap.of();
                     localRegisteredTypesAndContainingBundles.put(type.getId(), knownMatchingTypesByBundles);
+                    localIdsBySymbolicName.computeIfAbsent(type.getSymbolicName(), k -> MutableSet.of()).add(type.getId());
                 }
 
                 Set<String> oldContainingBundlesToRemove = MutableSet.of();
@@ -502,6 +597,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                     knownMatchingTypesByBundles.remove(oldContainingBundle);
                 }
                 RegisteredType prev = knownMatchingTypesByBundles.put(type.getContainingBundle(), type);
+                reindexLocalTypes(type.getSymbolicName());
                 if (prev==null || type.getKind()!=RegisteredTypeKind.UNRESOLVED) {
                     log.debug(msg.get()+(prev!=null ? "; replacing "+prev.getKind()+" "+prev : ""));
                 } else {
@@ -510,6 +606,92 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
             });
     }
 
+    /** caller must hold the write lock; updates indexes after the given ID has been removed from the local registry */
+    private void removeFromLocalIndexes(String symbolicName, String id) {
+        Set<String> ids = localIdsBySymbolicName.get(symbolicName);
+        if (ids!=null) {
+            ids.remove(id);
+            if (ids.isEmpty()) localIdsBySymbolicName.remove(symbolicName);
+        }
+        reindexLocalTypes(symbolicName);
+    }
+
+    /** caller must hold the write lock; recomputes all index entries for the given symbolic name
+     * from {@link #localRegisteredTypesAndContainingBundles} */
+    private void reindexLocalTypes(String symbolicName) {
+        Set<String> namesChanged = MutableSet.of(symbolicName);
+        List<RegisteredType> oldTypes = localTypesBySymbolicNameBestFirst.remove(symbolicName);
+        if (oldTypes!=null) {
+            for (RegisteredType t: oldTypes) {
+                namesChanged.addAll(t.getAliases());
+                for (String alias: t.getAliases()) localSymbolicNamesByAlias.remove(alias, symbolicName);
+                String bundle = containingBundleIndexKey(t);
+                if (bundle!=null) localSymbolicNamesByContainingBundle.remove(bundle, symbolicName);
+            }
+        }
+
+        List<RegisteredType> types = MutableList.of();
+        for (String id: localIdsBySymbolicName.getOrDefault(symbolicName, Collections.emptySet())) {
+            Map<String, RegisteredType> m = localRegisteredTypesAndContainingBundles.get(id);
+            if (m!=null) types.addAll(m.values());
+        }
+        if (!types.isEmpty()) {
+            types.sort(RegisteredTypeNameThenBestFirstComparator.INSTANCE);
+            localTypesBySymbolicNameBestFirst.put(symbolicName, Collections.unmodifiableList(types));
+            for (RegisteredType t: types) {
+                namesChanged.addAll(t.getAliases());
+                for (String alias: t.getAliases()) localSymbolicNamesByAlias.put(alias, symbolicName);
+                String bundle = containingBundleIndexKey(t);
+                if (bundle!=null) localSymbolicNamesByContainingBundle.put(bundle, symbolicName);
+            }
+        }
+        if (reindexSuperTypeClasses(symbolicName, types)) {
+            // the types depending on these may also have changed
+            localSuperTypeIndexStale = true;
+        }
+        invalidateSpecsDependingOn(namesChanged);
+    }
+
+    /** caller must hold the write lock; replaces the super-type index entries for the given symbolic name,
+     * returning true if its types were already indexed and their super-types have changed */
+    private boolean reindexSuperTypeClasses(String symbolicName, @Nullable List<RegisteredType> types) {
+        Set<Class<?>> oldClasses = localSuperTypeClassesBySymbolicName.remove(symbolicName);
+        if (oldClasses!=null) {
+            for (Class<?> c: oldClasses) localSymbolicNamesBySuperTypeClass.remove(c, symbolicName);
+        }
+        Set<Class<?>> classes = MutableSet.of();
+        if (types!=null && !types.isEmpty()) {
+            for (RegisteredType t: types) classes.addAll(superTypeClasses(t));
+            for (Class<?> c: classes) localSymbolicNamesBySuperTypeClass.put(c, symbolicName);
+            localSuperTypeClassesBySymbolicName.put(symbolicName, classes);
+        }
+        return oldClasses!=null && !classes.isEmpty() && !oldClasses.equals(classes);
+    }
+
+    private void invalidateSpecsDependingOn(Iterable<String> symbolicNamesOrAliases) {
+        if (mgmt.getCatalog() instanceof BasicBrooklynCatalog) {
+            ((BasicBrooklynCatalog)mgmt.getCatalog()).invalidateSpecsDependingOn(symbolicNamesOrAliases);
+        }
+    }
+
+    private static String containingBundleIndexKey(RegisteredType type) {
+        return type.getContainingBundle()==null ? null : VersionedName.fromString(type.getContainingBundle()).toOsgiString();
+    }
+
+    /** all java classes among the super-types, including those of registered super-types (recursively),
+     * as checked by {@link RegisteredTypePredicates#subtypeOf(Class)} */
+    private static Set<Class<?>> superTypeClasses(RegisteredType type) {
+        Set<Class<?>> result = MutableSet.of();
+        collectSuperTypeClasses(type.getSuperTypes(), result);
+        return result;
+    }
+    private static void collectSuperTypeClasses(Set<Object> superTypes, Set<Class<?>> result) {
+        for (Object st: superTypes) {
+            if (st instanceof Class) result.add((Class<?>)st);
+            else if (st instanceof RegisteredType) collectSuperTypeClasses(((RegisteredType)st).getSuperTypes(), result);
+        }
+    }
+
     private boolean isWrapperBundle(String bundleNameVersion) { 
         if (bundleNameVersion==null) return true;
         Maybe<OsgiManager> osgi = ((ManagementContextInternal)mgmt).getOsgiManager();
@@ -618,6 +800,7 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
             () -> {
                 boolean changed = (localRegisteredTypesAndContainingBundles.remove(type.toString()) != null);
                 if (changed) {
+                    removeFromLocalIndexes(type.getSymbolicName(), type.toString());
                     CatalogUpgrades.clearTypeInStoredUpgrades(mgmt, type);
                 }
                 return changed;
@@ -652,7 +835,10 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
                 RegisteredType removedItem = m.remove(type.getContainingBundle());
                 if (m.isEmpty()) {
                     localRegisteredTypesAndContainingBundles.remove(type.getId());
+                    removeFromLocalIndexes(type.getSymbolicName(), type.getId());
                     CatalogUpgrades.clearTypeInStoredUpgrades(mgmt, type.getVersionedName());
+                } else if (removedItem!=null) {
+                    reindexLocalTypes(type.getSymbolicName());
                 }
                 if (removedItem==null) {
                     throw new NoSuchElementException("Requested to delete "+type+" from "+type.getContainingBundle()+", "
@@ -672,7 +858,15 @@ public class BasicBrooklynTypeRegistry implements BrooklynTypeRegistry {
     /** Deletes all items, for use when resetting management context */
     public void clear() {
         Locks.withLock(localRegistryLock.writeLock(), () -> {
+            invalidateSpecsDependingOn(MutableSet.copyOf(localTypesBySymbolicNameBestFirst.keySet()).putAll(localSymbolicNamesByAlias.keySet()));
             localRegisteredTypesAndContainingBundles.clear();
+            localIdsBySymbolicName.clear();
+            localTypesBySymbolicNameBestFirst.clear();
+            localSymbolicNamesByAlias.clear();
+            localSymbolicNamesBySuperTypeClass.clear();
+            localSuperTypeClassesBySymbolicName.clear();
+            localSuperTypeIndexStale = false;
+            localSymbolicNamesByContainingBundle.clear();
             catalogUpgrades = null;
         });
     }
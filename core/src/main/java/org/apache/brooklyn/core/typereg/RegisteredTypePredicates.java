@@ -36,6 +36,7 @@ import org.apache.brooklyn.api.typereg.RegisteredTypeLoadingContext;
 import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.util.collections.CollectionFunctionals;
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.osgi.VersionedName;
 import org.apache.brooklyn.util.text.BrooklynVersionSyntax;
 import org.slf4j.Logger;
@@ -312,6 +313,10 @@ public class RegisteredTypePredicates {
         private AnySuperTypeSatisfies(Predicate<Object> filter) {
             this.filter = filter;
         }
+        Maybe<Class<?>> getSubtypeOfClass() {
+            if (filter instanceof IsSubtypeOfClass) return Maybe.of(((IsSubtypeOfClass)filter).filter);
+            return Maybe.absent();
+        }
         @Override
         public boolean apply(@Nullable RegisteredType item) {
             if (item==null) return false;
@@ -402,6 +407,20 @@ public class RegisteredTypePredicates {
         }
     }
 
+    /** If the given filter is one created by {@link #containingBundle(VersionedName)},
+     * returns the bundle it requires, so that callers such as {@link BasicBrooklynTypeRegistry} can use an index. */
+    static Maybe<VersionedName> getContainingBundleRequired(Predicate<?> filter) {
+        if (filter instanceof ContainingBundle) return Maybe.of(((ContainingBundle)filter).bundle);
+        return Maybe.absent();
+    }
+
+    /** If the given filter is one created by {@link #subtypeOf(Class)} (including {@link #IS_ENTITY} etc),
+     * returns the class it requires, so that callers such as {@link BasicBrooklynTypeRegistry} can use an index. */
+    static Maybe<Class<?>> getSubtypeOfClassRequired(Predicate<?> filter) {
+        if (filter instanceof AnySuperTypeSatisfies) return ((AnySuperTypeSatisfies)filter).getSubtypeOfClass();
+        return Maybe.absent();
+    }
+
     @Beta // expensive way to compare everything; API likely to change to be clearer
     public static Predicate<RegisteredType> stringRepresentationMatches(Predicate<? super String> filter) {
         return new StringRepresentationMatches<>(checkNotNull(filter, "filter"));
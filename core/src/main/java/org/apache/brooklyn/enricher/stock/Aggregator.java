@@ -83,6 +83,11 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
             "quorum.total.size", 
             "The total size to consider when determining if quorate (used with transformation of type 'isQuorate')", 1);
 
+    public static final ConfigKey<Boolean> INCREMENTAL = ConfigKeys.newBooleanConfigKey(
+            "enricher.aggregating.incremental",
+            "Whether to maintain the result as values change, rather than recomputing it from all values on every change, "
+            + "where the transformation supports it (the sum, average, min and max transformations)", true);
+
     protected Sensor<T> sourceSensor;
     protected Function<? super Collection<T>, ? extends U> transformation;
     
@@ -93,6 +98,9 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     // We use a synchronizedMap over a ConcurrentHashMap for entities that store null values.
     protected final Map<Entity, T> values = Collections.synchronizedMap(new LinkedHashMap<Entity, T>());
 
+    /** Maintains the result as {@link #values} change, if the transformation supports it; access synchronized on values. */
+    protected transient MathAggregatorFunctions.IncrementalComputingNumber<?> incrementalComputation;
+
     public Aggregator() {}
 
     @Override
@@ -122,6 +130,9 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         } else if (t1!=null && !Objects.equals(t2, this.transformation)) {
             throw new IllegalStateException("Cannot supply both "+TRANSFORMATION_UNTYPED+" and "+TRANSFORMATION+" unless they are equal.");
         }
+        
+        this.incrementalComputation = Boolean.FALSE.equals(config().get(INCREMENTAL)) ? null
+                : MathAggregatorFunctions.newIncrementalComputation(transformation);
     }
         
     @SuppressWarnings({ "rawtypes", "unchecked" })
@@ -204,6 +215,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
                     initialVal = null;
                 }
                 values.put(producer, initialVal != null ? initialVal : defaultMemberValue);
+                updateIncrementalComputation(producer);
                 //we might skip in onEvent in the short window while !values.containsKey(producer)
                 //but that's okay because the put which would have been done there is done here now
             } else {
@@ -216,7 +228,10 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
     
     @Override
     protected void onProducerRemoved(Entity producer) {
-        values.remove(producer);
+        synchronized (values) {
+            values.remove(producer);
+            updateIncrementalComputation(producer);
+        }
         onUpdated();
     }
 
@@ -226,6 +241,7 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         synchronized (values) {
             if (values.containsKey(e)) {
                 values.put(e, event.getValue());
+                updateIncrementalComputation(e);
             } else {
                 if (LOG.isDebugEnabled()) LOG.debug("{} received event for unknown producer ({}); presumably that producer has recently been removed", this, e);
             }
@@ -243,9 +259,21 @@ public class Aggregator<T,U> extends AbstractAggregator<T,U> implements SensorEv
         }
     }
     
+    /** Updates the incremental computation (if used) for the current value of the given producer; caller must hold the lock on values. */
+    protected void updateIncrementalComputation(Entity producer) {
+        if (incrementalComputation != null) {
+            if (values.containsKey(producer) && valueFilter.apply(values.get(producer))) {
+                incrementalComputation.put(producer, values.get(producer));
+            } else {
+                incrementalComputation.remove(producer);
+            }
+        }
+    }
+
     @Override
     protected Object compute() {
         synchronized (values) {
+            if (incrementalComputation != null) return incrementalComputation.get();
             // TODO Could avoid copying when filter not needed
             List<T> vs = MutableList.copyOf(Iterables.filter(values.values(), valueFilter));
             if (transformation==null) return vs;
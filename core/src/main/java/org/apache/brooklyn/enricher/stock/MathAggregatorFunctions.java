@@ -20,10 +20,16 @@ package org.apache.brooklyn.enricher.stock;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
 
 import javax.annotation.Nullable;
 
+import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.slf4j.Logger;
@@ -221,6 +227,192 @@ public class MathAggregatorFunctions {
         }
     }
 
+    /**
+     * Returns an {@link IncrementalComputingNumber} which maintains the result of the given function as individual values change,
+     * if the function is one of the sum, average, min or max functions created here (or the older sum and average functions
+     * in {@link Enrichers}, which compute the same for numbers); otherwise returns null.
+     * Subclasses of those functions are not supported, as they may compute differently.
+     */
+    @Beta
+    @SuppressWarnings({ "unchecked", "rawtypes", "deprecation" })
+    public static <T extends Number> IncrementalComputingNumber<T> newIncrementalComputation(@Nullable Function<?, ?> function) {
+        if (function == null) return null;
+        Class<?> type = function.getClass();
+        if (type == ComputingSum.class || type == ComputingAverage.class || type == ComputingMin.class || type == ComputingMax.class) {
+            BasicComputingNumber<T> f = (BasicComputingNumber<T>) function;
+            if (type == ComputingMin.class || type == ComputingMax.class) {
+                return new IncrementalExtreme<T>(f.defaultValueForUnreportedSensors, f.valueToReportIfNoSensors, f.typeToken, type == ComputingMax.class);
+            }
+            return new IncrementalSum<T>(f.defaultValueForUnreportedSensors, f.valueToReportIfNoSensors, f.typeToken, type == ComputingAverage.class);
+        }
+        if (type == Enrichers.ComputingSum.class) {
+            Enrichers.ComputingSum f = (Enrichers.ComputingSum) function;
+            return new IncrementalSum<T>(f.defaultValueForUnreportedSensors, f.valueToReportIfNoSensors, f.typeToken, false);
+        }
+        if (type == Enrichers.ComputingAverage.class) {
+            Enrichers.ComputingAverage f = (Enrichers.ComputingAverage) function;
+            return new IncrementalSum<T>(f.defaultValueForUnreportedSensors, f.valueToReportIfNoSensors, f.typeToken, true);
+        }
+        return null;
+    }
+
+    /**
+     * Maintains the result of one of the {@link BasicComputingNumber} functions for a changing collection of keyed values
+     * (e.g. a sensor value per entity), doing work proportional to each change rather than to the size of the collection.
+     * Each value is coerced once when put, and contributes in the same way as when passed to the function
+     * (including use of the default value for unreported and non-numeric values).
+     */
+    @Beta
+    public abstract static class IncrementalComputingNumber<T extends Number> {
+        protected final Number defaultValueForUnreportedSensors;
+        protected final Number valueToReportIfNoSensors;
+        protected final TypeToken<T> typeToken;
+        private final Map<Object, Double> contributions = new HashMap<>();
+        private final Set<Object> nonNumbers = MutableSet.of();
+        private boolean loggedNonNumber;
+
+        protected IncrementalComputingNumber(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken) {
+            this.defaultValueForUnreportedSensors = defaultValueForUnreportedSensors;
+            this.valueToReportIfNoSensors = valueToReportIfNoSensors;
+            this.typeToken = typeToken;
+        }
+
+        /** Sets the value for the given key, replacing any previous value. */
+        public synchronized void put(Object key, @Nullable Object value) {
+            remove(key);
+            Double contribution = null;
+            Maybe<Number> coercedVal = TypeCoercions.tryCoerce(value, Number.class);
+            if (coercedVal.isPresentAndNonNull()) {
+                contribution = coercedVal.get().doubleValue();
+            } else {
+                if (value != null) {
+                    // as for BasicComputingNumber, log at warn only once until there are no non-numbers
+                    nonNumbers.add(key);
+                    if (loggedNonNumber) {
+                        if (LOG.isTraceEnabled()) LOG.trace("Input to numeric aggregator is not a number (again): "+value+" ("+value.getClass()+")");
+                    } else {
+                        loggedNonNumber = true;
+                        LOG.warn("Input to numeric aggregator is not a number: "+value+" ("+value.getClass()+")");
+                    }
+                }
+                if (defaultValueForUnreportedSensors != null) {
+                    contribution = defaultValueForUnreportedSensors.doubleValue();
+                }
+            }
+            if (contribution != null) {
+                contributions.put(key, contribution);
+                added(key, contribution);
+            }
+        }
+
+        /** Removes the value for the given key, if present. */
+        public synchronized void remove(Object key) {
+            if (nonNumbers.remove(key) && nonNumbers.isEmpty()) loggedNonNumber = false;
+            Double old = contributions.remove(key);
+            if (old != null) removed(key, old);
+        }
+
+        /** Returns the result of the function applied to the current values. */
+        public synchronized T get() {
+            if (contributions.isEmpty()) return cast(valueToReportIfNoSensors, typeToken);
+            return cast(result(), typeToken);
+        }
+
+        /** the current contribution of each key, excluding those which are not counted */
+        protected Map<Object, Double> getContributions() {
+            return contributions;
+        }
+
+        protected abstract void added(Object key, double value);
+        protected abstract void removed(Object key, double value);
+        /** the result, only called when there are contributions */
+        protected abstract Number result();
+    }
+
+    /** Running sum, used for sum and average; repaired periodically to avoid accumulating rounding errors. */
+    protected static class IncrementalSum<T extends Number> extends IncrementalComputingNumber<T> {
+        private final boolean average;
+        private double sum;
+        private int updatesSinceRepair;
+
+        protected IncrementalSum(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken, boolean average) {
+            super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
+            this.average = average;
+        }
+        @Override
+        protected void added(Object key, double value) {
+            sum += value;
+            updated();
+        }
+        @Override
+        protected void removed(Object key, double value) {
+            sum -= value;
+            updated();
+        }
+        private void updated() {
+            // exact for integers; for other values, resum occasionally (amortized constant time per update)
+            if (++updatesSinceRepair > Math.max(64, getContributions().size())) {
+                double total = 0d;
+                for (double v : getContributions().values()) total += v;
+                sum = total;
+                updatesSinceRepair = 0;
+            }
+        }
+        @Override
+        protected Number result() {
+            return average ? sum / getContributions().size() : sum;
+        }
+    }
+
+    /**
+     * Heap of contributions, used for min and max; entries for values which have since been changed or removed
+     * are discarded lazily when they reach the top, and the heap is rebuilt if too many accumulate.
+     */
+    protected static class IncrementalExtreme<T extends Number> extends IncrementalComputingNumber<T> {
+        private static class Entry {
+            final Object key;
+            final double value;
+            Entry(Object key, double value) {
+                this.key = key;
+                this.value = value;
+            }
+        }
+        private final PriorityQueue<Entry> heap;
+
+        protected IncrementalExtreme(Number defaultValueForUnreportedSensors, Number valueToReportIfNoSensors, TypeToken<T> typeToken, final boolean max) {
+            super(defaultValueForUnreportedSensors, valueToReportIfNoSensors, typeToken);
+            this.heap = new PriorityQueue<Entry>(11, new Comparator<Entry>() {
+                @Override
+                public int compare(Entry o1, Entry o2) {
+                    return max ? Double.compare(o2.value, o1.value) : Double.compare(o1.value, o2.value);
+                }
+            });
+        }
+        @Override
+        protected void added(Object key, double value) {
+            heap.add(new Entry(key, value));
+            if (heap.size() > 2 * getContributions().size() + 16) {
+                heap.clear();
+                for (Map.Entry<Object, Double> c : getContributions().entrySet()) {
+                    heap.add(new Entry(c.getKey(), c.getValue()));
+                }
+            }
+        }
+        @Override
+        protected void removed(Object key, double value) {
+            // stale entry discarded lazily
+        }
+        @Override
+        protected Number result() {
+            while (true) {
+                Entry top = heap.peek();
+                Double current = getContributions().get(top.key);
+                if (current != null && Double.compare(current, top.value) == 0) return top.value;
+                heap.poll();
+            }
+        }
+    }
+
     protected static <N extends Number> N cast(Number n, TypeToken<? extends N> numberType) {
         return (N) TypeCoercions.coerce(n, numberType);
     }
@@ -21,6 +21,7 @@ package org.apache.brooklyn.entity.group;
 import java.util.Collection;
 
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.EntityManager;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
@@ -29,13 +30,16 @@ import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.BrooklynLogging.LoggingLevel;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.entity.EntityPredicates;
-import org.apache.brooklyn.core.mgmt.internal.CollectionChangeListener;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.mgmt.internal.EntityFilterIndex;
+import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.Iterables;
@@ -47,7 +51,10 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
 
     protected final Object memberChangeMutex = new Object();
 
-    private volatile MyEntitySetChangeListener setChangeListener = null;
+    /** whether we are master, so should track the entities matching our filter; guarded by {@link #memberChangeMutex} */
+    private boolean master = false;
+    /** our filter as registered with the management context, while master and running; guarded by {@link #memberChangeMutex} */
+    private EntityFilterIndex.Registration filterRegistration = null;
 
     @Override
     public void init() {
@@ -92,6 +99,16 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         return ancestor;
     }
 
+    /**
+     * The id of the application containing all entities which can match, so that our filter need only be applied
+     * to entities in that application; or null if not known, in which case it is applied to all entities.
+     * This may block until the {@link #ANCESTOR} is available.
+     */
+    protected String getApplicationIdToScan() {
+        Entity ancestor = getAncestorToScan();
+        return (ancestor==null) ? null : ancestor.getApplicationId();
+    }
+
     private boolean isRunning() {
         return Boolean.TRUE.equals(getAttribute(RUNNING));
     }
@@ -99,8 +116,8 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
     @Override
     public void stop() {
         sensors().set(RUNNING, false);
-        if (setChangeListener != null) {
-            ((ManagementContextInternal) getManagementContext()).removeEntitySetListener(setChangeListener);
+        synchronized (memberChangeMutex) {
+            unregisterFilter();
         }
     }
 
@@ -154,53 +171,147 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         }
     }
 
-    private class MyEntitySetChangeListener implements CollectionChangeListener.ListenerWithErrorHandler<Entity> {
+    /**
+     * Brings the members into line with the given entities, which matched our filter when our filter was registered
+     * (so may be out of date, as changes to entities since may already have been applied: members which match now
+     * are kept, and entities which are no longer managed or no longer match are not added).
+     */
+    protected void onInitialMatches(Collection<Entity> matches) {
+        synchronized (memberChangeMutex) {
+            if (!isRunning() || !getManagementSupport().isDeployed()) {
+                if (log.isDebugEnabled()) log.debug("{} not updating members from initial matches: stopped", this);
+                return;
+            }
+            boolean changed = false;
+            Collection<Entity> toRemove = Sets.newLinkedHashSet(getMembers());
+            for (Entity it : matches) {
+                if (toRemove.remove(it)) continue;
+                if (!Entities.isManaged(it) || !acceptsEntity(it)) continue;
+                if (log.isDebugEnabled()) log.debug("{} detected initial item {}", this, it);
+                addMember(it);
+                changed = true;
+            }
+            for (Entity it : toRemove) {
+                if (acceptsEntity(it)) continue;
+                if (log.isDebugEnabled()) log.debug("{} detected vanished item {}", this, it);
+                removeMember(it);
+                changed = true;
+            }
+            if (changed && log.isDebugEnabled())
+                log.debug("{} initial matches applied, members now {}", this, getMembers());
+        }
+    }
+
+    private class MyEntityFilterListener implements EntityFilterIndex.Listener {
+        @Override
+        public void onInitialMatches(Collection<Entity> matches) {
+            // in our own context, as the old full rescan was, so that entity changes are not held up behind it;
+            // changes may therefore be applied first, so the matches are checked again when applied
+            getExecutionContext().submit(Tasks.builder().displayName("update members from initial matches")
+                    .body(() -> DynamicGroupImpl.this.onInitialMatches(matches)).build());
+        }
+        @Override
+        public void onEntityMatched(Entity entity) { onEntityAdded(entity); }
         @Override
-        public void onItemAdded(Entity item) { onEntityAdded(item); }
+        public void onEntityNoLongerMatched(Entity entity) { onEntityChanged(entity); }
         @Override
-        public void onItemRemoved(Entity item) { onEntityRemoved(item); }
+        public void onEntityUnmanaged(Entity entity) { onEntityRemoved(entity); }
 
         @Override
-        public void onError(String msg, Throwable trace) {
-            // log debug if shutting down
-            BrooklynLogging.log(log, Entities.isManagedActive(DynamicGroupImpl.this) ? BrooklynLogging.LoggingLevel.WARN : BrooklynLogging.LoggingLevel.DEBUG,
-                    msg, trace);
-            throw Exceptions.propagate(trace);
+        public String toString() {
+            return DynamicGroupImpl.this.toString();
         }
     }
 
     @Override
     public void onManagementBecomingMaster() {
-        if (setChangeListener != null) {
-            log.warn("{} becoming master twice", this);
-            return;
+        synchronized (memberChangeMutex) {
+            if (master) {
+                log.warn("{} becoming master twice", this);
+                return;
+            }
+            master = true;
         }
-        setChangeListener = new MyEntitySetChangeListener();
-        ((ManagementContextInternal) getManagementContext()).addEntitySetListener(setChangeListener);
-        Task<Object> rescan = Tasks.builder().displayName("rescan entities").body(
+        submitRegisterFilter(false);
+    }
+
+    @Override
+    public void onManagementNoLongerMaster() {
+        synchronized (memberChangeMutex) {
+            if (!master) {
+                log.warn("{} no longer master twice", this);
+                return;
+            }
+            master = false;
+            unregisterFilter();
+        }
+    }
+
+    @Override
+    protected void onConfigChanged(ConfigKey<?> key, Object val) {
+        super.onConfigChanged(key, val);
+        if (ANCESTOR.getName().equals(key.getName()) || ENTITY_FILTER.getName().equals(key.getName())) {
+            // may now need to look at a different application, and the matches will be different
+            boolean needsRegistering;
+            synchronized (memberChangeMutex) {
+                needsRegistering = master;
+            }
+            if (needsRegistering) submitRegisterFilter(true);
+        }
+    }
+
+    /** registers our filter, in a task as resolving the ancestor may block */
+    private void submitRegisterFilter(final boolean reregister) {
+        Task<Object> task = Tasks.builder().displayName("register entity filter").body(
             new Runnable() {
                 @Override
                 public void run() {
                     try {
-                        rescanEntities();
+                        registerFilter(reregister);
                     } catch (Exception e) {
-                        log.warn("Error rescanning entities on management of "+DynamicGroupImpl.this+"; may be a group set against an unknown entity: "+e);
-                        log.debug("Trace for rescan entities error", e);
+                        log.warn("Error registering entity filter on management of "+DynamicGroupImpl.this+"; may be a group set against an unknown entity: "+e);
+                        log.debug("Trace for register entity filter error", e);
                         Exceptions.propagateIfFatal(e);
                     }
                 }
             }).build();
-        getExecutionContext().submit(rescan);
+        getExecutionContext().submit(task);
     }
 
-    @Override
-    public void onManagementNoLongerMaster() {
-        if (setChangeListener == null) {
-            log.warn("{} no longer master twice", this);
-            return;
+    /**
+     * Registers our filter with the management context against the application we scan, unless already registered
+     * against that application and not told to re-register (e.g. as the filter has changed); the members are then
+     * updated from the initial matches, and subsequently as entities change.
+     */
+    protected void registerFilter(boolean reregister) {
+        String applicationId = getApplicationIdToScan();
+        synchronized (memberChangeMutex) {
+            if (!master || !isRunning()) return;
+            if (filterRegistration != null) {
+                if (!reregister && Objects.equal(filterRegistration.getApplicationId(), applicationId)) return;
+                unregisterFilter();
+            }
+            filterRegistration = ((ManagementContextInternal) getManagementContext()).addEntityFilter(applicationId,
+                    new Predicate<Entity>() {
+                        @Override
+                        public boolean apply(Entity input) {
+                            return acceptsEntity(input);
+                        }
+                        @Override
+                        public String toString() {
+                            return "acceptsEntity("+DynamicGroupImpl.this+")";
+                        }
+                    },
+                    new MyEntityFilterListener());
+        }
+    }
+
+    /** caller must hold {@link #memberChangeMutex} */
+    private void unregisterFilter() {
+        if (filterRegistration != null) {
+            ((ManagementContextInternal) getManagementContext()).removeEntityFilter(filterRegistration);
+            filterRegistration = null;
         }
-        ((ManagementContextInternal) getManagementContext()).removeEntitySetListener(setChangeListener);
-        setChangeListener = null;
     }
 
     @Override
@@ -212,6 +323,18 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         return rescanEntitiesInternal(false);
     }
 
+    /**
+     * The ancestor and its descendants; for an application, these are looked up from the entity manager's index
+     * of entities by application rather than by walking the tree.
+     */
+    protected Iterable<Entity> getEntitiesToScan(Entity ancestor) {
+        EntityManager entityManager = getManagementContext().getEntityManager();
+        if (ancestor.getId().equals(ancestor.getApplicationId()) && entityManager instanceof EntityManagerInternal) {
+            return ((EntityManagerInternal)entityManager).getEntitiesInApplication(ancestor.getId());
+        }
+        return Entities.descendantsAndSelf(ancestor);
+    }
+
     protected boolean rescanEntitiesInternal(boolean makeChanges) {
         synchronized (memberChangeMutex) {
             if (!isRunning() || !getManagementSupport().isDeployed()) {
@@ -227,7 +350,7 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
             Collection<Entity> currentMembers = getMembers();
             Collection<Entity> toRemove = Sets.newLinkedHashSet(currentMembers);
 
-            final Iterable<Entity> unfiltered = Entities.descendantsAndSelf(getAncestorToScan());
+            final Iterable<Entity> unfiltered = getEntitiesToScan(getAncestorToScan());
             log.debug("{} filtering {} with {}", new Object[]{this, unfiltered, entityFilter()});
             for (Entity it : Iterables.filter(unfiltered, entityFilter())) {
                 toRemove.remove(it);
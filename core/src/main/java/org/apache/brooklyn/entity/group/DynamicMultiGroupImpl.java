@@ -220,6 +220,14 @@ public class DynamicMultiGroupImpl extends DynamicGroupImpl implements DynamicMu
         }
     }
 
+    @Override
+    protected void onInitialMatches(Collection<Entity> matches) {
+        synchronized (memberChangeMutex) {
+            super.onInitialMatches(matches);
+            distributeEntities();
+        }
+    }
+
     @Override
     public void distributeEntities() {
         try {
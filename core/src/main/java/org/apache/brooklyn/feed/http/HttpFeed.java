@@ -18,15 +18,21 @@
  */
 package org.apache.brooklyn.feed.http;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.*;
 import com.google.common.collect.*;
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteStreams;
 import com.google.common.reflect.TypeToken;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.location.MachineLocation;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
@@ -64,7 +70,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -121,6 +130,18 @@ public class HttpFeed extends AbstractFeed {
             new TypeToken<SetMultimap<HttpPollIdentifier, HttpPollConfig<?>>>() {},
             "polls");
 
+    public static final ConfigKey<Boolean> ASYNC = ConfigKeys.newBooleanConfigKey("async",
+            "Whether requests should be made asynchronously, on a shared pool of threads, rather than by the poll task itself; "
+            + "a poll is skipped if the previous request to the same endpoint has not completed", false);
+
+    @Beta
+    public static final ConfigKey<Integer> ASYNC_POLL_THREADS = ConfigKeys.newIntegerConfigKey("brooklyn.feed.http.async.threads",
+            "Maximum number of threads making requests for all asynchronous http feeds of a management context "
+            + "(read from brooklyn properties when first needed)", 32);
+
+    private static final ConfigKey<AsyncPollExecutor> ASYNC_POLL_EXECUTOR = ConfigKeys.newConfigKey(AsyncPollExecutor.class,
+            "internals.brooklyn.feed.http.async_poll_executor");
+
     public static Builder builder() {
         return new Builder();
     }
@@ -140,6 +161,7 @@ public class HttpFeed extends AbstractFeed {
         private String uniqueTag;
         private HttpExecutor httpExecutor;
         private Boolean preemptiveBasicAuth;
+        private boolean async = false;
         private volatile boolean built;
 
         public Builder name(String val) {
@@ -232,6 +254,14 @@ public class HttpFeed extends AbstractFeed {
             this.httpExecutor = val;
             return this;
         }
+        /** see {@link HttpFeed#ASYNC} */
+        public Builder async() {
+            return async(true);
+        }
+        public Builder async(boolean val) {
+            this.async = val;
+            return this;
+        }
         public Map<String, String> buildBaseHeaders() {
             if (Boolean.TRUE.equals(preemptiveBasicAuth)) {
                 Credentials creds = credentials;
@@ -339,6 +369,7 @@ public class HttpFeed extends AbstractFeed {
         if (builder.name!=null) setDisplayName(builder.name);
 
         config().set(ONLY_IF_SERVICE_UP, builder.onlyIfServiceUp);
+        config().set(ASYNC, builder.async);
         Map<String,String> baseHeaders = builder.buildBaseHeaders();
 
         HttpExecutor httpExecutor;
@@ -392,27 +423,99 @@ public class HttpFeed extends AbstractFeed {
 
     @Override
     protected void preStart() {
-        getPoller().scheduleFeed(this, getConfig(POLLS), pollInfo -> () -> {
+        final boolean async = Boolean.TRUE.equals(config().get(ASYNC));
+        getPoller().scheduleFeed(this, getConfig(POLLS), pollInfo -> {
+            if (async) return newAsyncPollJob(pollInfo);
+            return () -> {
                 if (log.isTraceEnabled()) log.trace("http polling for {} sensors at {}", entity, pollInfo);
+                return execute(pollInfo, newRequest(pollInfo));
+            };
+        });
+    }
 
-                UsernamePassword creds = null;
-                if (pollInfo.credentials.isPresent()) {
-                    creds = new UsernamePassword(
-                            pollInfo.credentials.get().getUserPrincipal().getName(),
-                            pollInfo.credentials.get().getPassword());
+    /**
+     * Creates a job which builds the request in the poll task (so in the context of the entity),
+     * and makes it on the shared pool for asynchronous feeds; the result is passed to the handlers when it completes.
+     */
+    private Poller.AsyncPollJob<HttpToolResponse> newAsyncPollJob(final HttpPollIdentifier pollInfo) {
+        final AtomicBoolean inFlight = new AtomicBoolean();
+        return () -> {
+            if (!inFlight.compareAndSet(false, true)) {
+                if (log.isTraceEnabled()) log.trace("http polling for {} sensors at {}: skipping as previous request not complete", entity, pollInfo);
+                return null;
+            }
+            try {
+                if (log.isTraceEnabled()) log.trace("http polling (async) for {} sensors at {}", entity, pollInfo);
+                final HttpRequest request = newRequest(pollInfo);
+                ListenableFuture<HttpToolResponse> result = getAsyncPollExecutor().submit(() -> execute(pollInfo, request));
+                result.addListener(() -> inFlight.set(false), MoreExecutors.directExecutor());
+                return result;
+            } catch (RuntimeException e) {
+                inFlight.set(false);
+                throw e;
+            }
+        };
+    }
+
+    private HttpRequest newRequest(HttpPollIdentifier pollInfo) {
+        UsernamePassword creds = null;
+        if (pollInfo.credentials.isPresent()) {
+            creds = new UsernamePassword(
+                    pollInfo.credentials.get().getUserPrincipal().getName(),
+                    pollInfo.credentials.get().getPassword());
+        }
+
+        return new HttpRequest.Builder()
+                .headers(pollInfo.headers)
+                .uri(pollInfo.uriProvider.get())
+                .credentials(creds)
+                .method(pollInfo.method)
+                .body(pollInfo.body)
+                .config(BrooklynHttpConfig.httpConfigBuilder(getEntity())
+                        .connectionTimeout(pollInfo.connectionTimeout)
+                        .socketTimeout(pollInfo.socketTimeout)
+                        .build())
+                .build();
+    }
+
+    private HttpToolResponse execute(HttpPollIdentifier pollInfo, HttpRequest request) throws IOException {
+        final long startTime = System.currentTimeMillis();
+        HttpResponse response = pollInfo.httpExecutor.execute(request);
+        return createHttpToolRespose(response, startTime);
+    }
+
+    /** Returns the pool for asynchronous requests, shared by the feeds of the management context and shut down with it. */
+    private ListeningExecutorService getAsyncPollExecutor() {
+        ManagementContext mgmt = getManagementContext();
+        AsyncPollExecutor result = mgmt.getScratchpad().get(ASYNC_POLL_EXECUTOR);
+        if (result == null) {
+            synchronized (ASYNC_POLL_EXECUTOR) {
+                result = mgmt.getScratchpad().get(ASYNC_POLL_EXECUTOR);
+                if (result == null) {
+                    result = new AsyncPollExecutor(mgmt.getConfig().getConfig(ASYNC_POLL_THREADS));
+                    mgmt.getScratchpad().put(ASYNC_POLL_EXECUTOR, result);
                 }
+            }
+        }
+        return result.executor;
+    }
 
-                final long startTime = System.currentTimeMillis();
-                HttpResponse response = pollInfo.httpExecutor.execute(new HttpRequest.Builder()
-                        .headers(pollInfo.headers)
-                        .uri(pollInfo.uriProvider.get())
-                        .credentials(creds)
-                        .method(pollInfo.method)
-                        .body(pollInfo.body)
-                        .config(BrooklynHttpConfig.httpConfigBuilder(getEntity()).build())
-                        .build());
-                return createHttpToolRespose(response, startTime);
-        });
+    /** Closed when the management context is terminated, as an {@link AutoCloseable} in its scratchpad. */
+    private static class AsyncPollExecutor implements AutoCloseable {
+        final ListeningExecutorService executor;
+
+        AsyncPollExecutor(int maxThreads) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(),
+                    new ThreadFactoryBuilder().setNameFormat("brooklyn-http-feed-%d").setDaemon(true).build());
+            pool.allowCoreThreadTimeOut(true);
+            executor = MoreExecutors.listeningDecorator(pool);
+        }
+
+        @Override
+        public void close() {
+            executor.shutdownNow();
+        }
     }
 
     @Override
@@ -339,7 +339,7 @@ public class TypeCoercions {
                             return (Maybe) Maybe.of(((WrappedValue<?>) input).get());
                         }
                     });
-            registerAdapter("99-wrap-to-wrapped-value", new TryCoercer() {
+            registerAdapter("99-wrap-to-wrapped-value", new TryCoercer.TryCoercerApplicableByType() {
                 @Override
                 public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> type) {
                     if (!TypeTokens.equalsRaw(WrappedValue.class, type)) {
@@ -382,7 +382,7 @@ public class TypeCoercions {
                 }
             });
 
-            registerAdapter("-20-wrong-bean-to-map-or-bean", new TryCoercer() {
+            registerAdapter("-20-wrong-bean-to-map-or-bean", new TryCoercer.TryCoercerApplicableByType() {
 
                 @Override
                 public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> type) {
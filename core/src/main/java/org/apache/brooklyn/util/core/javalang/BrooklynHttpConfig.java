@@ -29,6 +29,7 @@ import org.apache.brooklyn.util.http.HttpTool;
 import org.apache.brooklyn.util.http.executor.HttpConfig;
 import org.apache.brooklyn.util.http.executor.HttpExecutor;
 import org.apache.brooklyn.util.http.executor.apacheclient.HttpExecutorImpl;
+import org.apache.brooklyn.util.http.executor.apacheclient.PooledHttpExecutorImpl;
 
 import java.util.function.Consumer;
 import java.util.function.Function;
@@ -43,6 +44,10 @@ public class BrooklynHttpConfig {
     public static final ConfigKey<Boolean> LAX_REDIRECT = ConfigKeys.newBooleanConfigKey(HTTPS_CONFIG + "laxRedirect",
             "Whether HTTPS and TLS connections should be lax about redirecting");
 
+    public static final ConfigKey<Boolean> POOLED_CONNECTIONS = ConfigKeys.newBooleanConfigKey("brooklyn.http.executor.pooled",
+            "Whether HTTP executors created for entities (e.g. for http feeds and workflow steps) should reuse connections from a shared pool, "
+            + "rather than opening a new connection for each request (default false)");
+
     private static final boolean DEFAULT_FOR_MGMT_LAX_AND_TRUSTING = true;
 
     public static HttpConfig.Builder httpConfigBuilder(ManagementContext mgmt, boolean lookForContextEntity) {
@@ -138,18 +143,33 @@ public class BrooklynHttpConfig {
     }
 
     public static HttpExecutor newHttpExecutor(BrooklynObject entity) {
-        return HttpExecutorImpl.newInstance().withConfig(httpConfigBuilder(entity, false).build());
+        return newHttpExecutorImpl(isPooled(entity)).withConfig(httpConfigBuilder(entity, false).build());
     }
 
     public static HttpExecutor newHttpExecutorDefault() {
-        return HttpExecutorImpl.newInstance().withConfig(httpConfigBuilderDefault(false, true).build());
+        BrooklynObject entity = BrooklynTaskTags.getContextEntity(Tasks.current());
+        return newHttpExecutorImpl(entity != null && isPooled(entity)).withConfig(httpConfigBuilderDefault(false, true).build());
+    }
+
+    /** Whether {@link #POOLED_CONNECTIONS} is set on the entity or, if not set there, on its management context */
+    private static boolean isPooled(BrooklynObject entity) {
+        Boolean pooled = entity.config().get(POOLED_CONNECTIONS);
+        if (pooled == null) {
+            ManagementContext mgmt = ((BrooklynObjectInternal)entity).getManagementContext();
+            if (mgmt != null) pooled = mgmt.getConfig().getConfig(POOLED_CONNECTIONS);
+        }
+        return Boolean.TRUE.equals(pooled);
+    }
+
+    private static HttpExecutorImpl newHttpExecutorImpl(boolean pooled) {
+        return pooled ? PooledHttpExecutorImpl.newInstance() : HttpExecutorImpl.newInstance();
     }
 
     // SslTrustUtils.trustAll and TRUST_ALL -- only used in unsafe methods
     // TrustingSslSocketFactory - only used in unsafe methods
     // HttpTool and HttpTestUtils methods -- only used in tests and check code, methods marked unsafe, not for content
     // HttpTool.TrustAllStrategy -- only used in unsafe methods above and by HttpClientBuilder which is routed above in production code
-    // HttpExecutorImpl -- only used with config supplied by above
+    // HttpExecutorImpl and PooledHttpExecutorImpl -- only used with config supplied by above
     // HttpExecutorFactory not set, except in tests; our HttpExecutorFactoryImpl only used in tests
     // HttpConfig.Builder -- all uses routed through here
 
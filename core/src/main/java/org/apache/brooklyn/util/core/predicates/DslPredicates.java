@@ -104,7 +104,7 @@ public class DslPredicates {
         TypeCoercions.registerAdapter(Boolean.class, DslPredicate.class, DslPredicates::always);
 
         // use this to map more types of objects
-        TypeCoercions.registerAdapter("60-expression-to-predicate", new TryCoercer() {
+        TypeCoercions.registerAdapter("60-expression-to-predicate", new TryCoercer.TryCoercerApplicableByType() {
             @Override
             public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> type) {
                 if (!(input instanceof DeferredSupplier)) return null;
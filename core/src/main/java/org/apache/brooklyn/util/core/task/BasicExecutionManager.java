@@ -32,6 +32,7 @@ import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
@@ -44,6 +45,8 @@ import java.util.concurrent.atomic.AtomicLong;
 
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
+
 import com.google.common.collect.MapMaker;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.internal.BrooklynLoggingCategories;
@@ -53,9 +56,12 @@ import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.TaskAdaptable;
 import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.BrooklynLogging.LoggingLevel;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.Sanitizer;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
@@ -72,6 +78,7 @@ import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.RuntimeInterruptedException;
 import org.apache.brooklyn.util.guava.Maybe;
 import org.apache.brooklyn.util.javalang.JavaClassNames;
+import org.apache.brooklyn.util.javalang.Threads;
 import org.apache.brooklyn.util.text.Identifiers;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.CountdownTimer;
@@ -84,6 +91,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Sets;
@@ -111,6 +120,107 @@ public class BasicExecutionManager implements ExecutionManager {
 
     private static final boolean SCHEDULED_TASKS_COUNT_AS_ACTIVE = true;
 
+    /** How tasks are run; see {@link #EXECUTOR_MODE}. */
+    @Beta
+    public enum ExecutorMode {
+        /** a cached thread pool which starts a new thread whenever none is free (the default) */
+        UNBOUNDED,
+        /** a bounded, prioritized pool with backpressure; see {@link PrioritizedTaskExecutor} */
+        BOUNDED
+    }
+
+    @Beta
+    public static final ConfigKey<ExecutorMode> EXECUTOR_MODE = ConfigKeys.newConfigKey(ExecutorMode.class,
+            "brooklyn.executionManager.mode",
+            "how tasks are run: UNBOUNDED (start a thread whenever needed) or BOUNDED (a fixed-size prioritized pool)",
+            ExecutorMode.UNBOUNDED);
+
+    @Beta
+    public static final ConfigKey<Integer> BOUNDED_CORE_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.bounded.coreThreads",
+            "in BOUNDED mode, the number of pool threads (excluding overflow threads)",
+            256);
+
+    @Beta
+    public static final ConfigKey<Integer> BOUNDED_QUEUE_CAPACITY = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.bounded.queueCapacity",
+            "in BOUNDED mode, the number of tasks which can be queued before submitters are blocked",
+            10000);
+
+    @Beta
+    public static final ConfigKey<Duration> BOUNDED_BACKPRESSURE_TIMEOUT = ConfigKeys.newDurationConfigKey(
+            "brooklyn.executionManager.bounded.backpressureTimeout",
+            "in BOUNDED mode, how long a submitter is blocked when the queue is full before the task is run on an overflow thread",
+            Duration.seconds(1));
+
+    @Beta
+    public static final ConfigKey<Integer> BOUNDED_MAX_OVERFLOW_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.bounded.maxOverflowThreads",
+            "in BOUNDED mode, the maximum number of overflow threads (used when the queue is full or the pool is starved); "
+            + "once all are busy, further overflow work is queued for them",
+            256);
+
+    @Beta
+    public static final ConfigKey<Duration> BOUNDED_STARVATION_THRESHOLD = ConfigKeys.newDurationConfigKey(
+            "brooklyn.executionManager.bounded.starvationThreshold",
+            "in BOUNDED mode, how long queued tasks can wait with no task being started, while all pool threads are blocked or waiting "
+            + "(e.g. on queued tasks), before they are run on overflow threads",
+            Duration.seconds(5));
+
+    @Beta
+    public static final ConfigKey<Boolean> VIRTUAL_THREADS_ENABLED = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.executionManager.virtualThreads.enabled",
+            "whether to run tasks in the categories given by brooklyn.executionManager.virtualThreads.categories on virtual threads; "
+            + "ignored (with a warning) if the JVM does not support virtual threads",
+            false);
+
+    @Beta
+    public static final ConfigKey<String> VIRTUAL_THREADS_CATEGORIES = ConfigKeys.newStringConfigKey(
+            "brooklyn.executionManager.virtualThreads.categories",
+            "comma-separated list of task categories (EFFECTOR, WORKFLOW, OTHER, BACKGROUND) to run on virtual threads, if enabled",
+            "EFFECTOR,WORKFLOW,OTHER,BACKGROUND");
+
+    /** How scheduled tasks are timed; see {@link #SCHEDULER_MODE}. */
+    @Beta
+    public enum SchedulerMode {
+        /** a single-threaded {@link ScheduledThreadPoolExecutor} (the default) */
+        SINGLE_THREAD,
+        /** a hashed timer wheel with a pool of dispatch threads; see {@link HashedWheelScheduledExecutor} */
+        TIMER_WHEEL
+    }
+
+    @Beta
+    public static final ConfigKey<SchedulerMode> SCHEDULER_MODE = ConfigKeys.newConfigKey(SchedulerMode.class,
+            "brooklyn.executionManager.scheduler.mode",
+            "how scheduled tasks are timed: SINGLE_THREAD (a scheduled thread pool executor) or TIMER_WHEEL "
+            + "(a hashed timer wheel, with O(1) schedule and cancel, better for very many scheduled tasks)",
+            SchedulerMode.SINGLE_THREAD);
+
+    @Beta
+    public static final ConfigKey<Duration> SCHEDULER_TICK = ConfigKeys.newDurationConfigKey(
+            "brooklyn.executionManager.scheduler.tick",
+            "in TIMER_WHEEL mode, the resolution of the wheel",
+            Duration.millis(10));
+
+    @Beta
+    public static final ConfigKey<Integer> SCHEDULER_WHEEL_SIZE = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.scheduler.wheelSize",
+            "in TIMER_WHEEL mode, the number of buckets in the wheel (rounded up to a power of 2)",
+            512);
+
+    @Beta
+    public static final ConfigKey<Integer> SCHEDULER_DISPATCH_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.scheduler.dispatchThreads",
+            "in TIMER_WHEEL mode, the number of threads used to run jobs when they are due",
+            2);
+
+    @Beta
+    public static final ConfigKey<Duration> SCHEDULER_COALESCE_WINDOW = ConfigKeys.newDurationConfigKey(
+            "brooklyn.executionManager.scheduler.coalesceWindow",
+            "in TIMER_WHEEL mode, if positive, deadlines are rounded up to a multiple of this so that polls with equal periods "
+            + "are run together; zero (the default) to run each job as close as possible to its deadline",
+            Duration.ZERO);
+
     private boolean jitterThreads = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_JITTER_THREADS);
     private int jitterThreadsMaxDelay = Integer.getInteger(JITTER_THREADS_MAX_DELAY_PROPERTY, 200);
 
@@ -259,16 +369,20 @@ public class BasicExecutionManager implements ExecutionManager {
 
     private final ScheduledExecutorService delayedRunner;
 
+    private final ExecutorMode executorMode;
+
+    /** runs tasks accepted by {@link #virtualThreadRouting} on virtual threads; null if not enabled or not supported */
+    private final ExecutorService virtualRunner;
+    private volatile Predicate<? super Task<?>> virtualThreadRouting;
+    private final AtomicLong virtualTaskCount = new AtomicLong();
+
     // inefficient having so many records, and also doing searches through ...
     // many things in here could be more efficient however (different types of lookup etc),
     // do that when we need to.
 
-    //access to this field AND to members in this field is synchronized, 
-    //to allow us to preserve order while guaranteeing thread-safe
-    //(but more testing is needed before we are completely sure it is thread-safe!)
-    //synch blocks are as finely grained as possible for efficiency;
-    //NB CopyOnWriteArraySet is a perf bottleneck, and the simple map makes it easier to remove when a tag is empty
-    private Map<Object, Set<Task<?>>> tasksByTag = new HashMap<Object, Set<Task<?>>>();
+    //concurrent and (other than when a tag is removed) lock-free, preserving order per tag;
+    //previously a synchronized map of synchronized sets, which was a contention point with many tasks
+    private final TaskTagIndex tasksByTag = new TaskTagIndex();
 
     private Map<String, Task<?>> tasksById = new ConcurrentHashMap<String, Task<?>>();
     private Map<String, Task<?>> tasksByIdWeak = Collections.synchronizedMap(new MapMaker().weakValues().makeMap());
@@ -302,23 +416,77 @@ public class BasicExecutionManager implements ExecutionManager {
     };
 
     public BasicExecutionManager(String contextid) {
+        this(contextid, null);
+    }
+
+    /** Creates an execution manager configured (e.g. {@link #EXECUTOR_MODE}) from the given properties, if not null. */
+    public BasicExecutionManager(String contextid, @Nullable StringConfigMap config) {
         threadFactory = newThreadFactory(contextid);
         daemonThreadFactory = new ThreadFactoryBuilder()
                 .setThreadFactory(threadFactory)
                 .setDaemon(true)
                 .build();
 
-        // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
-        runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
-                daemonThreadFactory);
+        delayedRunner = newScheduler(contextid, config);
 
-        delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+        executorMode = config != null ? config.getConfig(EXECUTOR_MODE) : EXECUTOR_MODE.getDefaultValue();
+        if (executorMode == ExecutorMode.BOUNDED) {
+            runner = new PrioritizedTaskExecutor(config.getConfig(BOUNDED_CORE_THREADS), config.getConfig(BOUNDED_QUEUE_CAPACITY),
+                    config.getConfig(BOUNDED_BACKPRESSURE_TIMEOUT), config.getConfig(BOUNDED_STARVATION_THRESHOLD),
+                    daemonThreadFactory, newOverflowExecutor(config.getConfig(BOUNDED_MAX_OVERFLOW_THREADS)), delayedRunner);
+            log.debug("Execution manager " + contextid + " using bounded executor with " + config.getConfig(BOUNDED_CORE_THREADS) + " threads");
+        } else {
+            runner = newUnboundedExecutor();
+        }
+
+        virtualRunner = config != null && Boolean.TRUE.equals(config.getConfig(VIRTUAL_THREADS_ENABLED)) ? newVirtualThreadExecutor(contextid) : null;
+        if (virtualRunner != null) {
+            final Set<PrioritizedTaskExecutor.TaskCategory> categories = EnumSet.noneOf(PrioritizedTaskExecutor.TaskCategory.class);
+            for (String category : Splitter.on(',').trimResults().omitEmptyStrings().split(config.getConfig(VIRTUAL_THREADS_CATEGORIES))) {
+                categories.add(PrioritizedTaskExecutor.TaskCategory.valueOf(category.toUpperCase()));
+            }
+            virtualThreadRouting = t -> categories.contains(PrioritizedTaskExecutor.TaskCategory.of(t));
+            log.debug("Execution manager " + contextid + " running tasks in categories " + categories + " on virtual threads");
+        }
 
         if (jitterThreads) {
             log.info("Task startup jittering enabled with a maximum of " + jitterThreadsMaxDelay + " delay.");
         }
     }
 
+    private ExecutorService newUnboundedExecutor() {
+        // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
+        return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                daemonThreadFactory);
+    }
+
+    /** Starts threads up to the given maximum, then queues work until one is free. */
+    private ExecutorService newOverflowExecutor(int maxThreads) {
+        ThreadPoolExecutor result = new ThreadPoolExecutor(maxThreads, maxThreads, 10L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                daemonThreadFactory);
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    private ScheduledExecutorService newScheduler(String contextid, @Nullable StringConfigMap config) {
+        if (config == null || config.getConfig(SCHEDULER_MODE) != SchedulerMode.TIMER_WHEEL) {
+            return new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+        }
+        log.debug("Execution manager " + contextid + " using timer wheel scheduler with tick " + config.getConfig(SCHEDULER_TICK));
+        return new HashedWheelScheduledExecutor(config.getConfig(SCHEDULER_TICK), config.getConfig(SCHEDULER_WHEEL_SIZE),
+                config.getConfig(SCHEDULER_DISPATCH_THREADS), config.getConfig(SCHEDULER_COALESCE_WINDOW), daemonThreadFactory);
+    }
+
+    private ExecutorService newVirtualThreadExecutor(String contextid) {
+        Maybe<ExecutorService> result = Threads.newVirtualThreadPerTaskExecutor("brooklyn-execmanager-" + contextid + "-virtual-",
+                new UncaughtExceptionHandlerImplementation());
+        if (result.isAbsent()) {
+            log.warn("Virtual threads requested for execution manager " + contextid + " but not supported in this JVM (requires Java 21+); using platform threads");
+            return null;
+        }
+        return result.get();
+    }
+
     private final static class UncaughtExceptionHandlerImplementation implements Thread.UncaughtExceptionHandler {
         @Override
         public void uncaughtException(Thread t, Throwable e) {
@@ -351,17 +519,20 @@ public class BasicExecutionManager implements ExecutionManager {
     public boolean shutdownNow(Duration howLongToWaitForTermination) {
         runner.shutdownNow();
         delayedRunner.shutdownNow();
+        if (virtualRunner != null) virtualRunner.shutdownNow();
         if (howLongToWaitForTermination != null) {
             CountdownTimer timer = howLongToWaitForTermination.countdownTimer();
             try {
                 runner.awaitTermination(timer.getDurationRemaining().toMilliseconds(), TimeUnit.MILLISECONDS);
                 if (timer.isLive())
                     delayedRunner.awaitTermination(timer.getDurationRemaining().toMilliseconds(), TimeUnit.MILLISECONDS);
+                if (virtualRunner != null && timer.isLive())
+                    virtualRunner.awaitTermination(timer.getDurationRemaining().toMilliseconds(), TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
                 throw Exceptions.propagate(e);
             }
         }
-        return runner.isTerminated() && delayedRunner.isTerminated();
+        return runner.isTerminated() && delayedRunner.isTerminated() && (virtualRunner == null || virtualRunner.isTerminated());
     }
 
     public void addListener(ExecutionListener listener) {
@@ -381,10 +552,7 @@ public class BasicExecutionManager implements ExecutionManager {
      */
     @Deprecated
     public void deleteTag(Object tag) {
-        Set<Task<?>> tasks;
-        synchronized (tasksByTag) {
-            tasks = tasksByTag.remove(tag);
-        }
+        List<Task<?>> tasks = tasksByTag.removeTag(tag);
         if (tasks != null) {
             for (Task<?> task : tasks) {
                 deleteTask(task);
@@ -397,11 +565,8 @@ public class BasicExecutionManager implements ExecutionManager {
      * @return if all tasks were done and the tag has been deleted
      */
     public boolean deleteDoneInTag(Object tag) {
-        Set<Task<?>> tasks;
+        List<Task<?>> tasks = tasksByTag.getCopy(tag);
         boolean tagEmpty = true;
-        synchronized (tasksByTag) {
-            tasks = MutableSet.copyOf(tasksByTag.get(tag));
-        }
         if (tasks != null) {
             for (Task<?> task : tasks) {
                 if (task.isDone(true)) {
@@ -412,7 +577,7 @@ public class BasicExecutionManager implements ExecutionManager {
             }
         }
         if (tagEmpty) {
-            if (!tasksByTag.containsKey(tag)) {
+            if (!tasksByTag.containsTag(tag)) {
                 return true;
             }
         }
@@ -458,16 +623,8 @@ public class BasicExecutionManager implements ExecutionManager {
         Set<?> tags = TaskTags.getTagsFast(checkNotNull(task, "task"));
         int removedByTagCount = 0;
         for (Object tag : tags) {
-            synchronized (tasksByTag) {
-                Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
-                if (tasks != null) {
-                    if (tasks.remove(task)) {
-                        removedByTagCount++;
-                        if (tasks.isEmpty()) {
-                            tasksByTag.remove(tag);
-                        }
-                    }
-                }
+            if (tasksByTag.remove(tag, task)) {
+                removedByTagCount++;
             }
         }
         int removedByTagMissingCount = tags.size() - removedByTagCount;
@@ -551,6 +708,24 @@ public class BasicExecutionManager implements ExecutionManager {
         return runner.isShutdown();
     }
 
+    /** Returns metrics on the executor, including (in BOUNDED mode) queue depth and per-category wait and run times. */
+    @Beta
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> result = MutableMap.of();
+        result.put("mode", executorMode);
+        result.put("totalTasksSubmitted", getTotalTasksSubmitted());
+        result.put("numIncompleteTasks", getNumIncompleteTasks());
+        result.put("numActiveTasks", getNumActiveTasks());
+        if (runner instanceof PrioritizedTaskExecutor) {
+            result.put("executor", ((PrioritizedTaskExecutor) runner).getMetrics());
+        }
+        result.put("virtualThreads", MutableMap.of("enabled", virtualRunner != null, "tasksSubmitted", virtualTaskCount.get()));
+        if (delayedRunner instanceof HashedWheelScheduledExecutor) {
+            result.put("scheduler", ((HashedWheelScheduledExecutor) delayedRunner).getMetrics());
+        }
+        return result;
+    }
+
     /**
      * count of all tasks submitted
      */
@@ -579,27 +754,13 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksById.size();
     }
 
-    private Set<Task<?>> tasksWithTagCreating(Object tag) {
-        Preconditions.checkNotNull(tag);
-        synchronized (tasksByTag) {
-            Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
-            if (result == null) {
-                result = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
-                tasksByTag.put(tag, result);
-            }
-            return result;
-        }
-    }
-
     /**
-     * exposes live view, for internal use only
+     * exposes live (unordered) view, for internal use only
      */
     @Beta
     public Set<Task<?>>
     tasksWithTagLiveOrNull(Object tag) {
-        synchronized (tasksByTag) {
-            return tasksByTag.get(tag);
-        }
+        return tasksByTag.getLiveOrNull(tag);
     }
 
     @Override
@@ -622,26 +783,14 @@ public class BasicExecutionManager implements ExecutionManager {
 
     @Override
     public Set<Task<?>> getTasksWithTag(Object tag) {
-        Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
-        if (result == null) return Collections.emptySet();
-        synchronized (result) {
-            return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
-        }
+        List<Task<?>> result = tasksByTag.getCopy(tag);
+        if (result.isEmpty()) return Collections.emptySet();
+        return Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
     }
 
     @Override
     public Set<Task<?>> getTasksWithAnyTag(Iterable<?> tags) {
-        Set<Task<?>> result = new LinkedHashSet<Task<?>>();
-        Iterator<?> ti = tags.iterator();
-        while (ti.hasNext()) {
-            Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(ti.next());
-            if (tasksForTag != null) {
-                synchronized (tasksForTag) {
-                    result.addAll(tasksForTag);
-                }
-            }
-        }
-        return Collections.unmodifiableSet(result);
+        return Collections.unmodifiableSet(tasksByTag.getCopyWithAnyTag(tags));
     }
 
     /**
@@ -677,9 +826,7 @@ public class BasicExecutionManager implements ExecutionManager {
 
     @Override
     public Set<Object> getTaskTags() {
-        synchronized (tasksByTag) {
-            return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet()));
-        }
+        return Collections.unmodifiableSet(tasksByTag.getTags());
     }
 
     @Override
@@ -914,7 +1061,7 @@ public class BasicExecutionManager implements ExecutionManager {
         }
     }
 
-    private final class SubmissionCallable<T> implements Callable<T> {
+    private final class SubmissionCallable<T> implements Callable<T>, PrioritizedTaskExecutor.HasTask {
         private final Map<?, ?> flags;
         private final Task<T> task;
 
@@ -946,6 +1093,11 @@ public class BasicExecutionManager implements ExecutionManager {
         public String toString() {
             return "BEM.call(" + task + "," + flags + ")";
         }
+
+        @Override
+        public Task<?> getTask() {
+            return task;
+        }
     }
 
     final static class CancellingListenableForwardingFutureForTask<T> extends SimpleForwardingFuture<T> implements ListenableFuture<T>, TaskInternalCancellableWithMode {
@@ -1093,13 +1245,45 @@ public class BasicExecutionManager implements ExecutionManager {
                 log.warn("multiple schedulers detected, using only the first, for " + task + ": " + schedulers);
             future = schedulers.iterator().next().submit(job);
         } else {
-            future = runner.submit(job);
+            future = getExecutorForTask(task).submit(job);
         }
         afterSubmitRecordFuture(task, future);
 
         return task;
     }
 
+    /**
+     * Returns the executor to run the given task (when it has no {@link TaskScheduler}):
+     * the virtual thread executor if enabled and the routing policy accepts the task, otherwise the main pool.
+     */
+    protected ExecutorService getExecutorForTask(Task<?> task) {
+        if (virtualRunner != null) {
+            Predicate<? super Task<?>> routing = virtualThreadRouting;
+            if (routing != null && routing.apply(task)) {
+                virtualTaskCount.incrementAndGet();
+                return virtualRunner;
+            }
+        }
+        return runner;
+    }
+
+    public boolean isVirtualThreadsEnabled() {
+        return virtualRunner != null;
+    }
+
+    /**
+     * Sets the policy for which tasks run on virtual threads, replacing the policy from
+     * {@link #VIRTUAL_THREADS_CATEGORIES}; null means none.
+     * Has no effect (other than a warning) if virtual threads are not enabled.
+     */
+    @Beta
+    public void setVirtualThreadRouting(@Nullable Predicate<? super Task<?>> routing) {
+        if (virtualRunner == null && routing != null) {
+            log.warn("Ignoring virtual thread routing for " + this + "; virtual threads not enabled or not supported");
+        }
+        virtualThreadRouting = routing;
+    }
+
     protected <T> void afterSubmitRecordFuture(final Task<T> task, Future<T> future) {
         // SubmissionCallable (above) invokes the listeners on completion;
         // this future allows a caller to add custom listeners
@@ -1153,7 +1337,7 @@ public class BasicExecutionManager implements ExecutionManager {
             ((TaskInternal<?>) task).getMutableTags().addAll((Collection<?>) flags.remove("tags"));
 
         for (Object tag : BrooklynTaskTags.getTagsFast(task)) {
-            tasksWithTagCreating(tag).add(task);
+            tasksByTag.add(tag, task);
         }
 
         tasksById.put(task.getId(), task);
@@ -19,10 +19,12 @@
 package org.apache.brooklyn.util.core.task;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.ConcurrentModificationException;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Stream;
 
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Streams;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.util.collections.ThreadLocalStack;
@@ -38,20 +40,22 @@ public class CrossTaskThreadLocalStack<T> extends ThreadLocalStack<T> {
     }
     public CrossTaskThreadLocalStack() { super(); }
 
-    // override since we cannot access another thread's thread local
-    final WeakHashMap<Thread,Collection<T>> backingOverride = new WeakHashMap<>();
+    // override since we cannot access another thread's thread local;
+    // concurrent (and identity-keyed) rather than a synchronized WeakHashMap, as with virtual threads there can be very many threads
+    final ConcurrentMap<Thread,Collection<T>> backingOverride = new MapMaker().weakKeys().makeMap();
 
     @Override protected Collection<T> get() {
         return get(Thread.currentThread());
     }
     protected Collection<T> get(Thread t) {
-        synchronized (backingOverride) { return backingOverride.get(t); }
+        if (t==null) return null;
+        return backingOverride.get(t);
     }
     @Override protected void set(Collection<T> value) {
-        synchronized (backingOverride) { backingOverride.put(Thread.currentThread(), value); }
+        backingOverride.put(Thread.currentThread(), value);
     }
     @Override protected void remove() {
-        synchronized (backingOverride) { backingOverride.remove(Thread.currentThread()); }
+        backingOverride.remove(Thread.currentThread());
     }
     @Override protected Collection<T> getCopyReversed() {
         return getCopyReversed(Thread.currentThread());
@@ -60,7 +64,9 @@ public class CrossTaskThreadLocalStack<T> extends ThreadLocalStack<T> {
         int retries = 0;
         while (true) {
             try {
-                synchronized (backingOverride) {return copyReversed(get(t));}
+                Collection<T> c = get(t);
+                if (c==null) return Collections.emptyList();
+                return copyReversed(c);
             } catch (ConcurrentModificationException cme) {
                 // can happen as the collections within the map are not synchronized. simply retry.
                 // unusual if it loops
@@ -0,0 +1,418 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * A {@link ScheduledExecutorService} backed by a hashed timer wheel, for use as the delayed-runner
+ * of {@link BasicExecutionManager} when there are very many scheduled tasks (e.g. feed polls).
+ * <p>
+ * Scheduling and cancelling are O(1): new and cancelled timeouts are put on lock-free queues,
+ * and a single wheel thread moves them into (or out of) the bucket for their deadline at each tick.
+ * Expired timeouts are run on a pool of dispatch threads, so one slow job does not delay others.
+ * Timing resolution is the tick duration.
+ * <p>
+ * Optionally deadlines are rounded up to a multiple of a coalescing window, so that jobs with the same period
+ * fire in the same tick rather than being spread across ticks.
+ * <p>
+ * Records scheduling lag (time between deadline and the job starting), exposed by {@link #getMetrics()}.
+ */
+@Beta
+public class HashedWheelScheduledExecutor extends AbstractExecutorService implements ScheduledExecutorService {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelScheduledExecutor.class);
+
+    private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    private final long coalesceNanos;
+    private final ExecutorService dispatcher;
+    private final Thread worker;
+    private final long startTime;
+
+    private final Queue<Timeout<?>> newTimeouts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout<?>> cancelledTimeouts = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    private volatile boolean shutdown = false;
+    private long tick = 0;
+    /** jobs still on the wheel when it stopped, set by the wheel thread as it exits */
+    private volatile List<Runnable> undispatched = Collections.emptyList();
+
+    private final AtomicLong pending = new AtomicLong();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder lagNanosTotal = new LongAdder();
+    private final AtomicLong lagNanosMax = new AtomicLong();
+    private volatile long lagNanosLast = 0;
+
+    /**
+     * @param tick resolution of the wheel
+     * @param wheelSize number of buckets, rounded up to a power of 2
+     * @param dispatchThreads threads to run expired jobs
+     * @param coalesceWindow if positive, deadlines are rounded up to a multiple of this
+     */
+    public HashedWheelScheduledExecutor(Duration tick, int wheelSize, int dispatchThreads, Duration coalesceWindow, ThreadFactory threadFactory) {
+        Preconditions.checkArgument(tick.isPositive(), "tick must be positive");
+        Preconditions.checkArgument(wheelSize > 0, "wheelSize must be positive");
+        Preconditions.checkArgument(dispatchThreads > 0, "dispatchThreads must be positive");
+        this.tickNanos = tick.toNanoseconds();
+        int size = 1;
+        while (size < wheelSize) size <<= 1;
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+        this.coalesceNanos = coalesceWindow == null ? 0 : Math.max(0, coalesceWindow.toNanoseconds());
+        this.dispatcher = Executors.newFixedThreadPool(dispatchThreads, threadFactory);
+        this.startTime = System.nanoTime();
+        this.worker = threadFactory.newThread(this::runWheel);
+        this.worker.start();
+    }
+
+    // --- scheduling
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new Timeout<Void>(command, null, deadline(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new Timeout<V>(callable, deadline(delay, unit)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        Preconditions.checkArgument(period > 0, "period must be positive");
+        return enqueue(new Timeout<Void>(command, null, deadline(initialDelay, unit), unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        Preconditions.checkArgument(delay > 0, "delay must be positive");
+        return enqueue(new Timeout<Void>(command, null, deadline(initialDelay, unit), -unit.toNanos(delay)));
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    private long deadline(long delay, TimeUnit unit) {
+        return coalesce(System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+    }
+
+    private long coalesce(long deadline) {
+        if (coalesceNanos <= 0) return deadline;
+        long offset = deadline - startTime;
+        return startTime + ((offset + coalesceNanos - 1) / coalesceNanos) * coalesceNanos;
+    }
+
+    private <V> Timeout<V> enqueue(Timeout<V> timeout) {
+        if (shutdown) throw new RejectedExecutionException("Scheduler has been shut down");
+        pending.incrementAndGet();
+        newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    // --- wheel
+
+    private void runWheel() {
+        try {
+            while (!shutdown) {
+                long deadline = startTime + tickNanos * (tick + 1);
+                long sleep;
+                while (!shutdown && (sleep = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, sleep);
+                }
+                if (shutdown) break;
+                removeCancelled();
+                transferNew();
+                expire(wheel[(int) (tick & mask)]);
+                tick++;
+            }
+        } catch (Throwable t) {
+            log.error("Timer wheel thread failed; scheduled jobs will no longer run", t);
+            throw t;
+        } finally {
+            undispatched = drainWheel();
+        }
+    }
+
+    /** Removes and returns all timeouts not yet dispatched, excluding those that were cancelled. */
+    private List<Runnable> drainWheel() {
+        List<Runnable> result = new ArrayList<>();
+        for (Bucket bucket : wheel) {
+            Timeout<?> timeout;
+            while ((timeout = bucket.head) != null) {
+                bucket.remove(timeout);
+                if (!timeout.isCancelled()) result.add(timeout);
+            }
+        }
+        drainNew(result);
+        cancelledTimeouts.clear();
+        pending.set(0);
+        return result;
+    }
+
+    private void drainNew(List<Runnable> result) {
+        Timeout<?> timeout;
+        while ((timeout = newTimeouts.poll()) != null) {
+            if (!timeout.isCancelled()) result.add(timeout);
+        }
+    }
+
+    private void transferNew() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout<?> timeout = newTimeouts.poll();
+            if (timeout == null) return;
+            if (timeout.isCancelled()) {
+                pending.decrementAndGet();
+                continue;
+            }
+            long ticks = Math.max(0, (timeout.deadline - startTime + tickNanos - 1) / tickNanos - 1);
+            long targetTick = Math.max(ticks, tick);
+            timeout.remainingRounds = (targetTick - tick) / wheel.length;
+            wheel[(int) (targetTick & mask)].add(timeout);
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout<?> timeout;
+        while ((timeout = cancelledTimeouts.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                pending.decrementAndGet();
+            }
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Timeout<?> timeout = bucket.head;
+        while (timeout != null) {
+            Timeout<?> next = timeout.next;
+            if (timeout.isCancelled()) {
+                bucket.remove(timeout);
+                pending.decrementAndGet();
+            } else if (timeout.remainingRounds <= 0) {
+                bucket.remove(timeout);
+                pending.decrementAndGet();
+                dispatch(timeout);
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void dispatch(Timeout<?> timeout) {
+        try {
+            dispatcher.execute(timeout);
+        } catch (RejectedExecutionException e) {
+            if (!shutdown) throw e;
+        }
+    }
+
+    private void recordLag(long deadline) {
+        long lag = Math.max(0, System.nanoTime() - deadline);
+        fired.increment();
+        lagNanosTotal.add(lag);
+        lagNanosLast = lag;
+        lagNanosMax.accumulateAndGet(lag, Math::max);
+    }
+
+    /** Doubly-linked list of timeouts, only accessed by the wheel thread. */
+    private static class Bucket {
+        Timeout<?> head, tail;
+
+        void add(Timeout<?> timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout<?> timeout) {
+            if (timeout.prev != null) timeout.prev.next = timeout.next;
+            else head = timeout.next;
+            if (timeout.next != null) timeout.next.prev = timeout.prev;
+            else tail = timeout.prev;
+            timeout.prev = timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    private class Timeout<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        private final long seq = sequence.incrementAndGet();
+        /** positive for fixed rate, negative for fixed delay, zero for one-shot */
+        private final long period;
+        private volatile long deadline;
+
+        // owned by the wheel thread
+        long remainingRounds;
+        Bucket bucket;
+        Timeout<?> prev, next;
+
+        Timeout(Callable<V> callable, long deadline) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = 0;
+        }
+
+        Timeout(Runnable runnable, V result, long deadline, long period) {
+            super(runnable, result);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) return 0;
+            if (other instanceof Timeout) {
+                Timeout<?> o = (Timeout<?>) other;
+                int result = Long.compare(deadline, o.deadline);
+                return result != 0 ? result : Long.compare(seq, o.seq);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public void run() {
+            recordLag(deadline);
+            if (!isPeriodic()) {
+                super.run();
+            } else if (super.runAndReset() && !shutdown) {
+                deadline = coalesce(period > 0 ? deadline + period : System.nanoTime() - period);
+                try {
+                    enqueue(this);
+                } catch (RejectedExecutionException e) {
+                    // shut down concurrently
+                    cancel(false);
+                }
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean result = super.cancel(mayInterruptIfRunning);
+            if (result) cancelledTimeouts.add(this);
+            return result;
+        }
+    }
+
+    // --- lifecycle
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        LockSupport.unpark(worker);
+        dispatcher.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> result = new ArrayList<>(dispatcher.shutdownNow());
+        if (worker != Thread.currentThread()) {
+            worker.interrupt();
+            Uninterruptibles.joinUninterruptibly(worker);
+            result.addAll(undispatched);
+            undispatched = Collections.emptyList();
+        }
+        // periodic jobs that finished a run concurrently may have re-enqueued themselves
+        drainNew(result);
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && !worker.isAlive() && dispatcher.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        return dispatcher.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS) && !worker.isAlive();
+    }
+
+    public Map<String, Object> getMetrics() {
+        long count = fired.sum();
+        Map<String, Object> result = MutableMap.of();
+        result.put("tickMillis", TimeUnit.NANOSECONDS.toMillis(tickNanos));
+        result.put("wheelSize", wheel.length);
+        result.put("coalesceWindowMillis", TimeUnit.NANOSECONDS.toMillis(coalesceNanos));
+        result.put("pending", pending.get());
+        result.put("fired", count);
+        result.put("meanLagMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(lagNanosTotal.sum() / count));
+        result.put("maxLagMillis", TimeUnit.NANOSECONDS.toMillis(lagNanosMax.get()));
+        result.put("lastLagMillis", TimeUnit.NANOSECONDS.toMillis(lagNanosLast));
+        return result;
+    }
+}
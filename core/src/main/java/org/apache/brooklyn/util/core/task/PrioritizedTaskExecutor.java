@@ -0,0 +1,445 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * A bounded thread pool for {@link BasicExecutionManager}, used when the manager is configured
+ * in {@link BasicExecutionManager.ExecutorMode#BOUNDED} mode.
+ * <p>
+ * Work is queued in priority order (see {@link TaskCategory}), FIFO within a category.
+ * When the queue is at capacity, submitters outside the pool are blocked for up to the
+ * backpressure timeout; if there is still no room, or if the submitter is itself a pool thread
+ * (where blocking could deadlock), the work is run on the overflow executor instead. The overflow
+ * executor should itself be bounded (see {@link BasicExecutionManager#BOUNDED_MAX_OVERFLOW_THREADS}),
+ * queueing work once all its threads are busy, so that the total number of threads stays bounded.
+ * <p>
+ * Brooklyn tasks frequently block waiting on other tasks, so a pool where every worker is waiting
+ * on queued work would otherwise never make progress. A watchdog therefore moves queued work onto
+ * the overflow executor if nothing has been started for longer than the starvation threshold and
+ * none of the pool threads is runnable (i.e. all are blocked or waiting, rather than busy with
+ * long-running work). The queued tasks which pool threads are waiting on are moved first.
+ * <p>
+ * Wait and run times are recorded per {@link TaskCategory} and per string tag of the task (e.g.
+ * {@link BrooklynTaskTags#EFFECTOR_TAG}), and are exposed by {@link #getMetrics()}.
+ */
+@Beta
+public class PrioritizedTaskExecutor extends ThreadPoolExecutor {
+
+    private static final Logger log = LoggerFactory.getLogger(PrioritizedTaskExecutor.class);
+
+    /** Categories of work, in priority order, as determined from {@link BrooklynTaskTags}. */
+    public enum TaskCategory {
+        EFFECTOR, WORKFLOW, OTHER, BACKGROUND;
+
+        public static TaskCategory of(Task<?> task) {
+            if (task == null) return OTHER;
+            if (BrooklynTaskTags.isEffectorTask(task)) return EFFECTOR;
+            if (BrooklynTaskTags.hasTag(task, BrooklynTaskTags.WORKFLOW_TAG)) return WORKFLOW;
+            if (BrooklynTaskTags.hasTag(task, BrooklynTaskTags.SENSOR_TAG) || BrooklynTaskTags.isTransient(task)) return BACKGROUND;
+            return OTHER;
+        }
+    }
+
+    /** Implemented by callables which know the task they are running, so that they can be prioritized. */
+    public interface HasTask {
+        Task<?> getTask();
+    }
+
+    interface PrioritizedCommand extends Runnable {
+        /** The task being run, if known */
+        Task<?> getTask();
+        TaskCategory getCategory();
+        /** String tags of the task being run, for metrics */
+        Set<String> getTags();
+        long getSequence();
+        long getEnqueuedNanos();
+        void setStartedNanos(long nanos);
+        long getStartedNanos();
+    }
+
+    private static final Comparator<Runnable> PRIORITY_COMPARATOR = (r1, r2) -> {
+        PrioritizedCommand c1 = (PrioritizedCommand) r1;
+        PrioritizedCommand c2 = (PrioritizedCommand) r2;
+        int result = c1.getCategory().compareTo(c2.getCategory());
+        if (result != 0) return result;
+        return Long.compare(c1.getSequence(), c2.getSequence());
+    };
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private class PrioritizedFutureTask<T> extends FutureTask<T> implements PrioritizedCommand {
+        private final Task<?> task;
+        private final TaskCategory category;
+        private final Set<String> tags;
+        private final long seq = sequence.incrementAndGet();
+        private final long enqueuedNanos = System.nanoTime();
+        private volatile long startedNanos;
+
+        PrioritizedFutureTask(Callable<T> callable, Task<?> task) {
+            super(callable);
+            this.task = task;
+            this.category = TaskCategory.of(task);
+            this.tags = stringTags(task);
+        }
+        PrioritizedFutureTask(Runnable runnable, T value) {
+            super(runnable, value);
+            this.task = null;
+            this.category = TaskCategory.OTHER;
+            this.tags = ImmutableSet.of();
+        }
+        @Override public Task<?> getTask() { return task; }
+        @Override public TaskCategory getCategory() { return category; }
+        @Override public Set<String> getTags() { return tags; }
+        @Override public long getSequence() { return seq; }
+        @Override public long getEnqueuedNanos() { return enqueuedNanos; }
+        @Override public void setStartedNanos(long nanos) { startedNanos = nanos; }
+        @Override public long getStartedNanos() { return startedNanos; }
+    }
+
+    /** Wraps plain runnables (e.g. listeners) passed to {@link #execute(Runnable)} without changing their error handling. */
+    private class PrioritizedRunnable implements PrioritizedCommand {
+        private final Runnable delegate;
+        private final long seq = sequence.incrementAndGet();
+        private final long enqueuedNanos = System.nanoTime();
+        private volatile long startedNanos;
+
+        PrioritizedRunnable(Runnable delegate) {
+            this.delegate = delegate;
+        }
+        @Override public void run() { delegate.run(); }
+        @Override public Task<?> getTask() { return null; }
+        @Override public TaskCategory getCategory() { return TaskCategory.OTHER; }
+        @Override public Set<String> getTags() { return ImmutableSet.of(); }
+        @Override public long getSequence() { return seq; }
+        @Override public long getEnqueuedNanos() { return enqueuedNanos; }
+        @Override public void setStartedNanos(long nanos) { startedNanos = nanos; }
+        @Override public long getStartedNanos() { return startedNanos; }
+        @Override public String toString() { return "Prioritized[" + delegate + "]"; }
+    }
+
+    private static Set<String> stringTags(Task<?> task) {
+        if (task == null) return ImmutableSet.of();
+        ImmutableSet.Builder<String> result = ImmutableSet.builder();
+        for (Object tag : task.getTags()) {
+            if (tag instanceof String) result.add((String) tag);
+        }
+        return result.build();
+    }
+
+    private static class Stats {
+        final LongAdder submitted = new LongAdder();
+        final LongAdder completed = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder runNanos = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+
+        Map<String, Object> asMap() {
+            long count = completed.sum();
+            return MutableMap.<String, Object>of(
+                    "submitted", submitted.sum(),
+                    "completed", count,
+                    "meanWaitMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(waitNanos.sum() / count),
+                    "maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()),
+                    "meanRunMillis", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(runNanos.sum() / count));
+        }
+    }
+
+    /** Limits the tags tracked in {@link #statsByTag}, as callers can use arbitrary string tags */
+    private static final int MAX_TRACKED_TAGS = 100;
+
+    private final Map<TaskCategory, Stats> statsByCategory;
+    private final ConcurrentMap<String, Stats> statsByTag = new ConcurrentHashMap<>();
+    private final int queueCapacity;
+    private final Duration backpressureTimeout;
+    private final Duration starvationThreshold;
+    private final ExecutorService overflow;
+    private final ThreadLocal<Boolean> isPoolThread = new ThreadLocal<>();
+    /** work being run by each pool thread (excluding overflow threads), for the starvation check */
+    private final ConcurrentMap<Thread, PrioritizedCommand> running = new ConcurrentHashMap<>();
+
+    private final Object capacityMonitor = new Object();
+    private final AtomicInteger waitingForCapacity = new AtomicInteger();
+    private volatile long lastStartedNanos = System.nanoTime();
+
+    private final LongAdder backpressureWaits = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private final LongAdder starvationRescues = new LongAdder();
+
+    public PrioritizedTaskExecutor(int coreThreads, int queueCapacity, Duration backpressureTimeout, Duration starvationThreshold,
+            ThreadFactory threadFactory, ExecutorService overflow, ScheduledExecutorService watchdogScheduler) {
+        super(coreThreads, coreThreads, 10L, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(64, PRIORITY_COMPARATOR), threadFactory);
+        allowCoreThreadTimeOut(true);
+        this.queueCapacity = queueCapacity;
+        this.backpressureTimeout = backpressureTimeout;
+        this.starvationThreshold = starvationThreshold;
+        this.overflow = overflow;
+
+        this.statsByCategory = new EnumMap<>(TaskCategory.class);
+        for (TaskCategory c : TaskCategory.values()) statsByCategory.put(c, new Stats());
+
+        long checkMillis = Math.max(10, starvationThreshold.toMilliseconds() / 2);
+        watchdogScheduler.scheduleWithFixedDelay(this::rescueIfStarved, checkMillis, checkMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new PrioritizedFutureTask<T>(callable, callable instanceof HasTask ? ((HasTask) callable).getTask() : null);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new PrioritizedFutureTask<T>(runnable, value);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        PrioritizedCommand pc = command instanceof PrioritizedCommand ? (PrioritizedCommand) command : new PrioritizedRunnable(command);
+        for (Stats stats : statsFor(pc)) stats.submitted.increment();
+        if (isShutdown() || getQueue().size() < queueCapacity || awaitCapacity()) {
+            super.execute(pc);
+        } else {
+            runOnOverflow(pc);
+        }
+    }
+
+    /** Blocks a non-pool submitter until there is room in the queue or the backpressure timeout expires. */
+    private boolean awaitCapacity() {
+        if (Boolean.TRUE.equals(isPoolThread.get())) return false;
+        backpressureWaits.increment();
+        long deadline = System.nanoTime() + backpressureTimeout.toNanoseconds();
+        waitingForCapacity.incrementAndGet();
+        try {
+            synchronized (capacityMonitor) {
+                while (getQueue().size() >= queueCapacity) {
+                    long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remainingMillis <= 0) return false;
+                    capacityMonitor.wait(remainingMillis);
+                }
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waitingForCapacity.decrementAndGet();
+        }
+    }
+
+    private void runOnOverflow(PrioritizedCommand command) {
+        overflowed.increment();
+        if (log.isTraceEnabled()) log.trace("Bounded executor saturated (queue size " + getQueue().size() + "); running " + command + " on overflow thread");
+        overflow.execute(() -> {
+            isPoolThread.set(true);
+            onStart(command);
+            try {
+                command.run();
+            } finally {
+                onEnd(command);
+                isPoolThread.remove();
+            }
+        });
+    }
+
+    /**
+     * If the pool has not started any work for longer than the starvation threshold, and all its threads are blocked
+     * or waiting, moves a batch of queued work (up to the number of core threads) onto the overflow executor:
+     * first the queued tasks which pool threads are waiting on, then others in priority order.
+     * Work run on the overflow executor does not count as the pool making progress, so further batches are rescued
+     * at each check until the pool starts work again.
+     * <p>
+     * A pool thread which is runnable is taken to be making progress (e.g. a long computation or I/O),
+     * so the pool is not rescued however long that takes.
+     */
+    private void rescueIfStarved() {
+        try {
+            if (getQueue().peek() == null || System.nanoTime() - lastStartedNanos <= starvationThreshold.toNanoseconds()) return;
+            Set<Task<?>> awaited = MutableSet.of();
+            for (Map.Entry<Thread, PrioritizedCommand> entry : running.entrySet()) {
+                Thread.State state = entry.getKey().getState();
+                if (state != Thread.State.BLOCKED && state != Thread.State.WAITING && state != Thread.State.TIMED_WAITING) {
+                    // still working, or just finished and about to take queued work
+                    return;
+                }
+                Task<?> task = entry.getValue().getTask();
+                Task<?> blockingTask = (task instanceof TaskInternal) ? ((TaskInternal<?>) task).getBlockingTask() : null;
+                if (blockingTask != null) awaited.add(blockingTask);
+            }
+
+            int batch = Math.max(1, getCorePoolSize());
+            List<Runnable> rescued = MutableList.of();
+            if (!awaited.isEmpty()) {
+                for (Runnable r : getQueue()) {
+                    if (rescued.size() >= batch) break;
+                    if (awaited.contains(((PrioritizedCommand) r).getTask()) && getQueue().remove(r)) rescued.add(r);
+                }
+            }
+            while (rescued.size() < batch) {
+                Runnable r = getQueue().poll();
+                if (r == null) break;
+                rescued.add(r);
+            }
+            if (rescued.isEmpty()) return;
+            starvationRescues.add(rescued.size());
+            log.debug("Bounded executor has not started any work for " + starvationThreshold + " and all its threads are waiting; "
+                    + "running " + rescued.size() + " queued item(s) on overflow threads");
+            for (Runnable r : rescued) {
+                runOnOverflow((PrioritizedCommand) r);
+            }
+        } catch (Throwable t) {
+            log.warn("Error in bounded executor starvation check (continuing)", t);
+        }
+    }
+
+    private List<Stats> statsFor(PrioritizedCommand command) {
+        List<Stats> result = MutableList.of(statsByCategory.get(command.getCategory()));
+        for (String tag : command.getTags()) {
+            Stats stats = statsByTag.get(tag);
+            if (stats == null && statsByTag.size() < MAX_TRACKED_TAGS) {
+                stats = statsByTag.computeIfAbsent(tag, k -> new Stats());
+            }
+            if (stats != null) result.add(stats);
+        }
+        return result;
+    }
+
+    private void onStart(PrioritizedCommand command) {
+        long now = System.nanoTime();
+        command.setStartedNanos(now);
+        long wait = now - command.getEnqueuedNanos();
+        for (Stats stats : statsFor(command)) {
+            stats.waitNanos.add(wait);
+            stats.maxWaitNanos.accumulateAndGet(wait, Math::max);
+        }
+        if (waitingForCapacity.get() > 0) {
+            synchronized (capacityMonitor) {
+                capacityMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void onEnd(PrioritizedCommand command) {
+        long run = System.nanoTime() - command.getStartedNanos();
+        for (Stats stats : statsFor(command)) {
+            stats.runNanos.add(run);
+            stats.completed.increment();
+        }
+    }
+
+    @Override
+    protected void beforeExecute(Thread t, Runnable r) {
+        isPoolThread.set(true);
+        running.put(t, (PrioritizedCommand) r);
+        // only work started by the pool itself shows that it is not starved
+        lastStartedNanos = System.nanoTime();
+        onStart((PrioritizedCommand) r);
+        super.beforeExecute(t, r);
+    }
+
+    @Override
+    protected void afterExecute(Runnable r, Throwable t) {
+        super.afterExecute(r, t);
+        running.remove(Thread.currentThread());
+        onEnd((PrioritizedCommand) r);
+        isPoolThread.remove();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        overflow.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = MutableList.copyOf(super.shutdownNow());
+        result.addAll(overflow.shutdownNow());
+        return result;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return super.awaitTermination(timeout, unit) && overflow.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return super.isTerminated() && overflow.isTerminated();
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> byCategory = MutableMap.of();
+        for (Map.Entry<TaskCategory, Stats> entry : statsByCategory.entrySet()) {
+            byCategory.put(entry.getKey().name().toLowerCase(), entry.getValue().asMap());
+        }
+        Map<String, Object> byTag = MutableMap.of();
+        for (Map.Entry<String, Stats> entry : statsByTag.entrySet()) {
+            byTag.put(entry.getKey(), entry.getValue().asMap());
+        }
+        Map<String, Object> result = MutableMap.of();
+        result.put("coreThreads", getCorePoolSize());
+        result.put("poolSize", getPoolSize());
+        result.put("activeThreads", getActiveCount());
+        result.put("queueDepth", getQueue().size());
+        result.put("queueCapacity", queueCapacity);
+        result.put("backpressureWaits", backpressureWaits.sum());
+        result.put("overflowed", overflowed.sum());
+        result.put("starvationRescues", starvationRescues.sum());
+        if (overflow instanceof ThreadPoolExecutor) {
+            result.put("overflowThreads", ((ThreadPoolExecutor) overflow).getPoolSize());
+            result.put("overflowQueueDepth", ((ThreadPoolExecutor) overflow).getQueue().size());
+        }
+        result.put("byCategory", byCategory);
+        result.put("byTag", byTag);
+        return result;
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.mgmt.Task;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+
+/**
+ * Concurrent index of tasks by tag, used by {@link BasicExecutionManager}.
+ * <p>
+ * Adding, removing and reading do not lock, even for a tag shared by very many tasks
+ * (such as {@link org.apache.brooklyn.core.mgmt.BrooklynTaskTags#TRANSIENT_TASK_TAG}).
+ * A tag's bucket is removed when it becomes empty; to ensure a task added concurrently is not lost,
+ * the bucket is marked as retired before it is checked for emptiness (under the hash bin lock of the tag),
+ * and an add which finds its bucket retired withdraws and retries.
+ * <p>
+ * Copies returned for a tag are in the order the tasks were added.
+ */
+@Beta
+public class TaskTagIndex {
+
+    private static final class Bucket {
+        final ConcurrentMap<Task<?>, Long> tasks = new ConcurrentHashMap<>();
+        volatile boolean retired = false;
+    }
+
+    private final ConcurrentMap<Object, Bucket> tasksByTag = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public void add(Object tag, Task<?> task) {
+        Preconditions.checkNotNull(tag);
+        Long seq = sequence.incrementAndGet();
+        while (true) {
+            Bucket bucket = tasksByTag.get(tag);
+            if (bucket == null) bucket = tasksByTag.computeIfAbsent(tag, k -> new Bucket());
+            bucket.tasks.putIfAbsent(task, seq);
+            if (!bucket.retired) return;
+            // bucket is being removed; withdraw (only if we added it) and retry
+            bucket.tasks.remove(task, seq);
+        }
+    }
+
+    /** @return whether the task was present for the tag */
+    public boolean remove(Object tag, Task<?> task) {
+        final Bucket bucket = tasksByTag.get(tag);
+        if (bucket == null) return false;
+        boolean removed = bucket.tasks.remove(task) != null;
+        if (removed && bucket.tasks.isEmpty()) {
+            tasksByTag.computeIfPresent(tag, (k, current) -> {
+                if (current != bucket) return current;
+                current.retired = true;
+                if (!current.tasks.isEmpty()) {
+                    current.retired = false;
+                    return current;
+                }
+                return null;
+            });
+        }
+        return removed;
+    }
+
+    /** Removes the tag, returning the tasks it had (in order), or null if not present. */
+    public List<Task<?>> removeTag(Object tag) {
+        Bucket bucket = tasksByTag.remove(tag);
+        if (bucket == null) return null;
+        bucket.retired = true;
+        return ordered(bucket);
+    }
+
+    public boolean containsTag(Object tag) {
+        return tasksByTag.containsKey(tag);
+    }
+
+    /** Live, unordered view of the tasks with the given tag, or null if none; not to be modified. */
+    public Set<Task<?>> getLiveOrNull(Object tag) {
+        Bucket bucket = tasksByTag.get(tag);
+        return bucket == null ? null : Collections.unmodifiableSet(bucket.tasks.keySet());
+    }
+
+    /** Copy of the tasks with the given tag, in the order added; empty if none. */
+    public List<Task<?>> getCopy(Object tag) {
+        Bucket bucket = tasksByTag.get(tag);
+        return bucket == null ? Collections.<Task<?>>emptyList() : ordered(bucket);
+    }
+
+    /** Copy of the tasks with any of the given tags, grouped by tag in the order given, and within that in the order added. */
+    public Set<Task<?>> getCopyWithAnyTag(Iterable<?> tags) {
+        Set<Task<?>> result = new LinkedHashSet<>();
+        for (Object tag : tags) {
+            result.addAll(getCopy(tag));
+        }
+        return result;
+    }
+
+    public Set<Object> getTags() {
+        return new LinkedHashSet<>(tasksByTag.keySet());
+    }
+
+    private static List<Task<?>> ordered(Bucket bucket) {
+        List<Map.Entry<Task<?>, Long>> entries = new ArrayList<>(bucket.tasks.entrySet());
+        if (entries.size() > 1) entries.sort(Map.Entry.comparingByValue());
+        List<Task<?>> result = new ArrayList<>(entries.size());
+        for (Map.Entry<Task<?>, Long> entry : entries) {
+            result.add(entry.getKey());
+        }
+        return result;
+    }
+}
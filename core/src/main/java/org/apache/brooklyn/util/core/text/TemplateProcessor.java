@@ -19,11 +19,14 @@
 package org.apache.brooklyn.util.core.text;
 
 import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
-import freemarker.cache.StringTemplateLoader;
 import freemarker.core.Environment;
 import freemarker.core.Expression;
 import freemarker.core.TemplateElement;
@@ -63,6 +66,9 @@ import java.io.*;
 import java.lang.reflect.Method;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -935,14 +941,17 @@ public class TemplateProcessor {
     }
     public static Object processTemplateContents(String context, String templateContents, final TemplateHashModel substitutions, boolean allowSingleVariableObject, boolean logErrors, InterpolationErrorMode errorMode) {
         try {
-            Configuration cfg = new Configuration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS);
-            cfg.setLogTemplateExceptions(logErrors);
-            cfg.setNumberFormat("computer");
+            if (!mightContainFreemarkerSyntax(templateContents)) {
+                templateFastPathPlain.incrementAndGet();
+                return templateContents;
+            }
+            Maybe<Object> fastResult = processSingleVariableFastPath(templateContents, substitutions, allowSingleVariableObject, errorMode);
+            if (fastResult.isPresent()) {
+                templateFastPathVariable.incrementAndGet();
+                return fastResult.get();
+            }
 
-            StringTemplateLoader templateLoader = new StringTemplateLoader();
-            templateLoader.putTemplate(context, templateContents);
-            cfg.setTemplateLoader(templateLoader);
-            Template template = cfg.getTemplate(context);
+            Template template = getParsedTemplate(context, templateContents, logErrors);
 
             if (allowSingleVariableObject && template.getRootTreeNode().getClass().getName().equals("freemarker.core.DollarVariable")) {
                 Object dollarVariable = template.getRootTreeNode();
@@ -988,8 +997,10 @@ public class TemplateProcessor {
             // TODO could expose CAMP '$brooklyn:' style dsl, based on template.createProcessingEnvironment
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
             Writer out = new OutputStreamWriter(baos);
-            template.setTemplateExceptionHandler(new ForgivingFreemarkerTemplateExceptionHandler(errorMode));
-            template.process(substitutions, out);
+            // template may be shared, so set the handler on the environment rather than on the template
+            Environment env = template.createProcessingEnvironment(substitutions, out);
+            env.setTemplateExceptionHandler(new ForgivingFreemarkerTemplateExceptionHandler(errorMode));
+            env.process();
             out.flush();
 
             return new String(baos.toByteArray());
@@ -1007,6 +1018,140 @@ public class TemplateProcessor {
         }
     }
 
+    /** Maximum number of parsed templates kept by {@link #getParsedTemplate(String, String, boolean)};
+     * set with system property {@code brooklyn.template.cache.size}, or 0 to disable caching. */
+    private static final int TEMPLATE_CACHE_SIZE = Integer.getInteger("brooklyn.template.cache.size", 1000);
+
+    private static final Configuration TEMPLATE_CONFIG_LOGGING_ERRORS = newTemplateConfiguration(true);
+    private static final Configuration TEMPLATE_CONFIG_NOT_LOGGING_ERRORS = newTemplateConfiguration(false);
+
+    /** Parsed templates, keyed by {@link TemplateCacheKey}; templates are not modified once parsed so can be used concurrently. */
+    private static final Cache<TemplateCacheKey, Template> TEMPLATE_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(Math.max(0, TEMPLATE_CACHE_SIZE))
+            .build();
+
+    private static final AtomicLong templateCacheHits = new AtomicLong();
+    private static final AtomicLong templateCacheMisses = new AtomicLong();
+    private static final AtomicLong templateFastPathPlain = new AtomicLong();
+    private static final AtomicLong templateFastPathVariable = new AtomicLong();
+
+    private static final Pattern SINGLE_VARIABLE_PATTERN = Pattern.compile("\\$\\{([A-Za-z_][A-Za-z0-9_]*(\\.[A-Za-z_][A-Za-z0-9_]*)*)\\}");
+    private static final Set<String> FREEMARKER_RESERVED_WORDS = ImmutableSet.of("true", "false", "gt", "gte", "lt", "lte", "as", "in", "using");
+
+    private static Configuration newTemplateConfiguration(boolean logErrors) {
+        Configuration cfg = new Configuration(Configuration.DEFAULT_INCOMPATIBLE_IMPROVEMENTS);
+        cfg.setLogTemplateExceptions(logErrors);
+        cfg.setNumberFormat("computer");
+        return cfg;
+    }
+
+    private static final class TemplateCacheKey {
+        final String context;
+        final String templateContents;
+        final boolean logErrors;
+
+        TemplateCacheKey(String context, String templateContents, boolean logErrors) {
+            this.context = context;
+            this.templateContents = templateContents;
+            this.logErrors = logErrors;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TemplateCacheKey)) return false;
+            TemplateCacheKey other = (TemplateCacheKey) o;
+            return logErrors == other.logErrors && Objects.equals(context, other.context) && templateContents.equals(other.templateContents);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hash(context, templateContents, logErrors);
+        }
+    }
+
+    /** Returns the parsed template, from the cache if it has been parsed before with the same name and settings. */
+    private static Template getParsedTemplate(String context, String templateContents, boolean logErrors) throws IOException {
+        TemplateCacheKey key = new TemplateCacheKey(context, templateContents, logErrors);
+        Template template = TEMPLATE_CACHE.getIfPresent(key);
+        if (template != null) {
+            templateCacheHits.incrementAndGet();
+            return template;
+        }
+        templateCacheMisses.incrementAndGet();
+        template = new Template(context, templateContents, logErrors ? TEMPLATE_CONFIG_LOGGING_ERRORS : TEMPLATE_CONFIG_NOT_LOGGING_ERRORS);
+        if (TEMPLATE_CACHE_SIZE > 0) TEMPLATE_CACHE.put(key, template);
+        return template;
+    }
+
+    /** Whether the text might contain an interpolation, directive or comment; if not, freemarker would return it unchanged. */
+    private static boolean mightContainFreemarkerSyntax(String templateContents) {
+        return templateContents.contains("${") || templateContents.contains("#{")
+                || templateContents.contains("<#") || templateContents.contains("</#")
+                || templateContents.contains("<@") || templateContents.contains("</@")
+                || templateContents.contains("[#") || templateContents.contains("[/#")
+                || templateContents.contains("[@") || templateContents.contains("[/@")
+                || templateContents.contains("[=");
+    }
+
+    /**
+     * Resolves templates which are a single reference to a variable, optionally with dotted keys (eg <code>${entity.name}</code>),
+     * directly against the model, without freemarker. Returns absent if the template is not of that form or if the reference
+     * cannot be resolved simply (eg is missing, or is not a plain string where a string is required), in which case the caller
+     * should process the template with freemarker so that errors and formatting are handled in the usual way.
+     */
+    private static Maybe<Object> processSingleVariableFastPath(String templateContents, TemplateHashModel substitutions, boolean allowSingleVariableObject, InterpolationErrorMode errorMode) throws TemplateException {
+        if (substitutions == null || !templateContents.startsWith("${")) return Maybe.absent();
+        Matcher m = SINGLE_VARIABLE_PATTERN.matcher(templateContents);
+        if (!m.matches()) return Maybe.absent();
+        List<String> path = Arrays.asList(m.group(1).split("\\."));
+        for (String segment : path) {
+            if (FREEMARKER_RESERVED_WORDS.contains(segment)) return Maybe.absent();
+        }
+
+        try {
+            openLocalTemplateModelCache();
+            TemplateModel model;
+            try {
+                model = substitutions;
+                for (String segment : path) {
+                    if (!(model instanceof TemplateHashModel)) return Maybe.absent();
+                    model = ((TemplateHashModel) model).get(segment);
+                    if (model == null) return Maybe.absent();
+                }
+            } catch (TemplateException te) {
+                // as for the single variable handling in freemarker below
+                if (!allowSingleVariableObject) return Maybe.absent();
+                model = new ForgivingFreemarkerTemplateExceptionHandler(errorMode).handleSingleVariableExpressionTemplate(te, templateContents);
+            }
+
+            if (allowSingleVariableObject) return Maybe.ofAllowingNull(unwrapTemplateModelMaybe(model).get());
+            if (model instanceof TemplateScalarModel && !(model instanceof TemplateNumberModel) && !(model instanceof TemplateDateModel)
+                    && !(model instanceof TemplateBooleanModel)) {
+                String result = ((TemplateScalarModel) model).getAsString();
+                if (result != null) return Maybe.of(result);
+            }
+            return Maybe.absent();
+        } finally {
+            closeLocalTemplateModelCache();
+        }
+    }
+
+    /** Counts of template processing by how the result was obtained: whether from plain text or a single variable
+     * without parsing, or by processing a template which had previously been parsed (a cache hit) or not (a miss). */
+    @Beta
+    public static Map<String, Long> getTemplateCacheMetrics() {
+        return MutableMap.of(
+                "hits", templateCacheHits.get(),
+                "misses", templateCacheMisses.get(),
+                "fastPathPlain", templateFastPathPlain.get(),
+                "fastPathVariable", templateFastPathVariable.get(),
+                "size", TEMPLATE_CACHE.size());
+    }
+
+    @VisibleForTesting
+    static void clearTemplateCache() {
+        TEMPLATE_CACHE.invalidateAll();
+    }
+
     public static Object processTemplateContentsForWorkflow(String context, String templateContents, final TemplateHashModel substitutions, boolean allowSingleVariableObject, boolean logErrors, InterpolationErrorMode errorMode) {
         try {
             IS_FOR_WORKFLOW.push(true);
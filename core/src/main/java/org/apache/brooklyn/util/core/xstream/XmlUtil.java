@@ -20,11 +20,18 @@ package org.apache.brooklyn.util.core.xstream;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpression;
 import javax.xml.xpath.XPathExpressionException;
@@ -32,6 +39,8 @@ import javax.xml.xpath.XPathFactory;
 
 import com.sun.org.apache.xerces.internal.xni.parser.XMLErrorHandler;
 import com.sun.org.apache.xml.internal.utils.DefaultErrorHandler;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.w3c.dom.Document;
 import org.xml.sax.ErrorHandler;
@@ -153,6 +162,112 @@ public class XmlUtil {
         }
     }
 
+    private static final XMLInputFactory STREAMING_INPUT_FACTORY = newStreamingInputFactory();
+
+    private static XMLInputFactory newStreamingInputFactory() {
+        XMLInputFactory result = XMLInputFactory.newInstance();
+        // as for the (default) document builder, so that element names with undeclared prefixes are accepted
+        result.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        result.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        result.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        result.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return result;
+    }
+
+    /**
+     * Reads the given children of the root element in a single streaming pass, without building a DOM,
+     * as a cheaper alternative to calling {@link #xpath(String, String)} once for each of them.
+     * <p>
+     * For each name in {@code textElements} the value is the text of the first such child, as with the xpath
+     * {@code /root/name} (so including the text of any nested elements).
+     * For each name in {@code stringListElements} the value is a list of the text of the {@code string} elements
+     * within the first such child, as with the xpath {@code /root/name//string}.
+     * Children which are not present are not included in the result.
+     * <p>
+     * Illegal characters are handled as in {@link #xpathHandlingIllegalChars(String, String, QName)}.
+     */
+    @Beta
+    public static Map<String,Object> readRootChildrenHandlingIllegalChars(String xml, Set<String> textElements, Set<String> stringListElements) {
+        try {
+            return readRootChildren(xml, textElements, stringListElements, null);
+        } catch (XMLStreamException e) {
+            if (e.toString().contains("&#")) {
+                // as for xpath, try again with illegal chars escaped
+                Escaper escaper = new Escaper();
+                try {
+                    return readRootChildren(escaper.escape(xml), textElements, stringListElements, escaper);
+                } catch (XMLStreamException e2) {
+                    // fall through to report the original
+                }
+            }
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static Map<String,Object> readRootChildren(String xml, Set<String> textElements, Set<String> stringListElements, Escaper escaper) throws XMLStreamException {
+        Map<String,Object> result = MutableMap.of();
+        XMLStreamReader reader = STREAMING_INPUT_FACTORY.createXMLStreamReader(new StringReader(xml));
+        try {
+            int depth = 0;
+            String current = null;
+            StringBuilder text = null;
+            List<String> strings = null;
+            StringBuilder stringText = null;
+            while (reader.hasNext()) {
+                switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (depth == 2) {
+                        String name = reader.getLocalName();
+                        if (!result.containsKey(name)) {
+                            if (textElements.contains(name)) {
+                                current = name;
+                                text = new StringBuilder();
+                            } else if (stringListElements.contains(name)) {
+                                current = name;
+                                strings = MutableList.of();
+                            }
+                        }
+                    } else if (strings != null && stringText == null && "string".equals(reader.getLocalName())) {
+                        stringText = new StringBuilder();
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (text != null) text.append(reader.getText());
+                    if (stringText != null) stringText.append(reader.getText());
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 2 && current != null) {
+                        if (text != null) {
+                            result.put(current, unescape(escaper, text.toString()));
+                        } else {
+                            result.put(current, strings);
+                        }
+                        current = null;
+                        text = null;
+                        strings = null;
+                    } else if (stringText != null && "string".equals(reader.getLocalName())) {
+                        strings.add(unescape(escaper, stringText.toString()));
+                        stringText = null;
+                    }
+                    depth--;
+                    break;
+                default:
+                    break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return result;
+    }
+
+    private static String unescape(Escaper escaper, String value) {
+        return escaper == null ? value : escaper.unescape(value);
+    }
+
     /**
      * Replaces things like "&#x1b;" with "BR_UNICODE_x1b". This is because xstream happily writes 
      * out such characters (which are not valid in xml), but xpath fails when parsing them.
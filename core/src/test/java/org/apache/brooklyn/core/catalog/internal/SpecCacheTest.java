@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.catalog.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.catalog.CatalogItem;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.internal.AbstractBrooklynObjectSpec;
+import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry.RegisteredTypeKind;
+import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.typereg.BasicBrooklynTypeRegistry;
+import org.apache.brooklyn.core.typereg.BasicTypeImplementationPlan;
+import org.apache.brooklyn.core.typereg.RegisteredTypes;
+import org.apache.brooklyn.entity.stock.BasicApplication;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class SpecCacheTest extends BrooklynMgmtUnitTestSupport {
+
+    private final AtomicInteger creations = new AtomicInteger();
+
+    private AbstractBrooklynObjectSpec<?,?> getOrCreate(SpecCache cache, String name, String ...dependencies) {
+        return cache.getOrCreate(name+":1.0", name, () -> {
+            creations.incrementAndGet();
+            for (String dependency: dependencies) SpecCache.recordDependency(dependency);
+            return EntitySpec.create(TestEntity.class);
+        });
+    }
+
+    @Test
+    public void testInvalidatesOnlyDependents() {
+        creations.set(0);
+        SpecCache cache = new SpecCache();
+        AbstractBrooklynObjectSpec<?,?> a = getOrCreate(cache, "a", "x");
+        AbstractBrooklynObjectSpec<?,?> b = getOrCreate(cache, "b", "y");
+        assertSame(getOrCreate(cache, "a"), a);
+        assertSame(getOrCreate(cache, "b"), b);
+        assertEquals(creations.get(), 2);
+        
+        cache.invalidate(ImmutableList.of("x"));
+        assertNotSame(getOrCreate(cache, "a", "x"), a);
+        assertSame(getOrCreate(cache, "b"), b);
+        assertEquals(creations.get(), 3);
+        
+        // own name is a dependency
+        cache.invalidate(ImmutableList.of("b"));
+        assertNotSame(getOrCreate(cache, "b", "y"), b);
+        assertEquals(creations.get(), 4);
+        
+        cache.invalidate();
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getMetrics().get("hits"), (Long) 3L);
+        assertEquals(cache.getMetrics().get("misses"), (Long) 4L);
+        assertEquals(cache.getMetrics().get("invalidations"), (Long) 4L);
+    }
+
+    @Test
+    public void testNestedSpecDependenciesRecordedInOuter() {
+        SpecCache cache = new SpecCache();
+        AbstractBrooklynObjectSpec<?,?> outer = cache.getOrCreate("outer:1.0", "outer", () -> {
+            getOrCreate(cache, "inner", "x");
+            return EntitySpec.create(TestEntity.class);
+        });
+        // also when the nested spec is cached
+        AbstractBrooklynObjectSpec<?,?> outer2 = cache.getOrCreate("outer2:1.0", "outer2", () -> {
+            getOrCreate(cache, "inner");
+            return EntitySpec.create(TestEntity.class);
+        });
+        assertEquals(cache.size(), 3);
+        
+        cache.invalidate(ImmutableList.of("x"));
+        assertEquals(cache.size(), 0);
+        assertNotSame(cache.getOrCreate("outer:1.0", "outer", () -> EntitySpec.create(TestEntity.class)), outer);
+        assertNotSame(cache.getOrCreate("outer2:1.0", "outer2", () -> EntitySpec.create(TestEntity.class)), outer2);
+    }
+
+    @Test
+    public void testNotCachedIfDependsOnAllOrInvalidatedDuringCreation() {
+        SpecCache cache = new SpecCache();
+        cache.getOrCreate("a:1.0", "a", () -> {
+            SpecCache.recordDependencyOnAll();
+            return EntitySpec.create(TestEntity.class);
+        });
+        cache.getOrCreate("b:1.0", "b", () -> {
+            cache.invalidate(ImmutableList.of("unrelated"));
+            return EntitySpec.create(TestEntity.class);
+        });
+        assertEquals(cache.size(), 0);
+        
+        // recording stops after creation
+        SpecCache.recordDependency("x");
+        getOrCreate(cache, "c");
+        cache.invalidate(ImmutableList.of("x"));
+        assertEquals(cache.size(), 1);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedWhenFull() {
+        SpecCache cache = new SpecCache(2);
+        getOrCreate(cache, "a", "x");
+        getOrCreate(cache, "b", "x");
+        getOrCreate(cache, "a");
+        getOrCreate(cache, "c", "x");
+        assertEquals(cache.size(), 2);
+        assertTrue(cache.getSpec("a:1.0").isPresent());
+        assertFalse(cache.getSpec("b:1.0").isPresent());
+        assertEquals(cache.getMetrics().get("evictions"), (Long) 1L);
+        
+        cache.invalidate(ImmutableList.of("x"));
+        assertEquals(cache.size(), 0);
+        assertEquals(cache.getMetrics().get("invalidations"), (Long) 2L);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testPeekSpecInvalidatedByTypeRegistryChanges() {
+        BasicBrooklynCatalog catalog = (BasicBrooklynCatalog) mgmt.getCatalog();
+        CatalogItem<?, ?> item = catalog.addItem(BasicApplication.class);
+        AbstractBrooklynObjectSpec<?,?> spec = catalog.peekSpec(item);
+        assertSame(catalog.peekSpec(item), spec);
+        
+        // changes to types the spec did not look up leave it cached
+        ((BasicBrooklynTypeRegistry) mgmt.getTypeRegistry()).addToLocalUnpersistedTypeRegistry(
+            RegisteredTypes.bean("unrelated", "1.0", new BasicTypeImplementationPlan("ignore", null)), false);
+        assertSame(catalog.peekSpec(item), spec);
+        
+        // changes to a type aliased as the item's name invalidate it
+        ((BasicBrooklynTypeRegistry) mgmt.getTypeRegistry()).addToLocalUnpersistedTypeRegistry(
+            RegisteredTypes.newInstance(RegisteredTypeKind.BEAN, "other", "1.0", new BasicTypeImplementationPlan("ignore", null),
+                ImmutableList.of(), ImmutableList.of(item.getSymbolicName()), ImmutableList.of(), null, ImmutableList.of(),
+                null, null, null, null, null), false);
+        assertNotSame(catalog.peekSpec(item), spec);
+        assertEquals(catalog.getSpecCacheMetrics().get("invalidations"), (Long) 1L);
+    }
+}
@@ -21,6 +21,9 @@ package org.apache.brooklyn.core.entity.lifecycle;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.brooklyn.api.entity.Entity;
@@ -30,6 +33,7 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.EnricherSpec;
 import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.entity.Attributes;
 import org.apache.brooklyn.core.entity.Dumper;
 import org.apache.brooklyn.core.entity.Entities;
@@ -45,7 +49,9 @@ import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.core.test.entity.TestEntityImpl.TestEntityWithoutEnrichers;
 import org.apache.brooklyn.entity.group.DynamicCluster;
+import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.test.support.FlakyRetryAnalyser;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.QuorumCheck.QuorumChecks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
@@ -315,6 +321,76 @@ public class ServiceStateLogicTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsContinually(cluster, Attributes.SERVICE_STATE_ACTUAL, Lifecycle.RUNNING);
     }
 
+    @Test
+    public void testChildrenQuorumUpdatedAsChildrenChange() {
+        // only count the children created here
+        Entities.unmanage(entity);
+        Enricher appChildrenBasedEnricher = EntityAdjuncts.tryFindWithUniqueTag(app.enrichers(), ComputeServiceIndicatorsFromChildrenAndMembers.DEFAULT_UNIQUE_TAG).get();
+        appChildrenBasedEnricher.config().set(ComputeServiceIndicatorsFromChildrenAndMembers.UP_QUORUM_CHECK, QuorumChecks.all());
+        
+        List<Entity> children = MutableList.of();
+        for (int i=0; i<3; i++) {
+            Entity child = app.createAndManageChild(EntitySpec.create(TestEntity.class).impl(TestEntityWithoutEnrichers.class));
+            child.sensors().set(Attributes.SERVICE_UP, true);
+            child.sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.RUNNING);
+            children.add(child);
+        }
+        assertIndicatorsFromChildrenEventually(null, null);
+        
+        children.get(1).sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.ON_FIRE);
+        assertIndicatorsFromChildrenEventually(null, "Required entity not healthy: "+children.get(1).getDisplayName()+" ("+children.get(1).getId()+") (on-fire)");
+        
+        children.get(0).sensors().set(Attributes.SERVICE_UP, false);
+        children.get(0).sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.ON_FIRE);
+        assertIndicatorsFromChildrenEventually(children.get(0)+" is not up", "Required entities not healthy: "
+                +children.get(0).getDisplayName()+" ("+children.get(0).getId()+") (on-fire), "
+                +children.get(1).getDisplayName()+" ("+children.get(1).getId()+") (on-fire)");
+        
+        children.get(1).sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.RUNNING);
+        Entities.unmanage(children.get(0));
+        assertIndicatorsFromChildrenEventually(null, null);
+        
+        // the config used when counting can be changed, so that stopped children are counted as not healthy
+        children.get(2).sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.STOPPED);
+        assertIndicatorsFromChildrenEventually(null, null);
+        appChildrenBasedEnricher.config().set(ComputeServiceIndicatorsFromChildrenAndMembers.IGNORE_ENTITIES_WITH_THESE_SERVICE_STATES, ImmutableSet.<Lifecycle>of());
+        assertIndicatorsFromChildrenEventually(null, "Required entity not healthy: "+children.get(2).getDisplayName()+" ("+children.get(2).getId()+") (stopped)");
+    }
+
+    @Test
+    public void testChildrenQuorumPublishedAtMostOncePerMinPeriod() {
+        Enricher appChildrenBasedEnricher = EntityAdjuncts.tryFindWithUniqueTag(app.enrichers(), ComputeServiceIndicatorsFromChildrenAndMembers.DEFAULT_UNIQUE_TAG).get();
+        appChildrenBasedEnricher.config().set(ComputeServiceIndicatorsFromChildrenAndMembers.PUBLISH_MIN_PERIOD, Duration.millis(500));
+        Entity child = app.createAndManageChild(EntitySpec.create(TestEntity.class).impl(TestEntityWithoutEnrichers.class));
+        child.sensors().set(Attributes.SERVICE_UP, true);
+        child.sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.RUNNING);
+        assertIndicatorsFromChildrenEventually(null, null);
+        
+        final List<Object> published = Collections.synchronizedList(MutableList.of());
+        app.subscriptions().subscribe(app, Attributes.SERVICE_PROBLEMS, new SensorEventListener<Map<String, Object>>() {
+            @Override
+            public void onEvent(SensorEvent<Map<String, Object>> event) {
+                published.add(event.getValue());
+            }});
+        for (int i=0; i<10; i++) {
+            child.sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.ON_FIRE);
+            child.sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.RUNNING);
+        }
+        child.sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.ON_FIRE);
+        
+        assertIndicatorsFromChildrenEventually(null, "Required entity not healthy: "+child.getDisplayName()+" ("+child.getId()+") (on-fire)");
+        assertTrue(published.size() < 10, "published="+published);
+    }
+
+    private void assertIndicatorsFromChildrenEventually(final Object notUp, final Object problem) {
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(ServiceStateLogic.getMapSensorEntry(app, Attributes.SERVICE_NOT_UP_INDICATORS, ComputeServiceIndicatorsFromChildrenAndMembers.DEFAULT_UNIQUE_TAG), notUp);
+                assertEquals(ServiceStateLogic.getMapSensorEntry(app, Attributes.SERVICE_PROBLEMS, ComputeServiceIndicatorsFromChildrenAndMembers.DEFAULT_UNIQUE_TAG), problem);
+            }});
+    }
+
     public static class CountingComputeServiceState extends ComputeServiceState {
         AtomicInteger cntCalled = new AtomicInteger();
         AtomicInteger cntCalledWithNull = new AtomicInteger();
@@ -34,6 +34,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.mgmt.EntityManager;
+import org.apache.brooklyn.core.entity.BrooklynConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.internal.*;
 import org.apache.brooklyn.core.objs.proxy.EntityProxy;
@@ -152,6 +153,40 @@ public class EntityManagerTest extends BrooklynAppUnitTestSupport {
         Asserts.assertEqualsIgnoringOrder(entityManager.findEntitiesInApplication(app, Predicates.instanceOf(TestApplication.class)), ImmutableList.of(app));
     }
     
+    @Test
+    public void testFindEntitiesUsingIndexes() {
+        EntityManagerInternal entityManagerInternal = (EntityManagerInternal) entityManager;
+        TestApplication app2 = mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .catalogItemId("my-item:1.0")
+                .tag("my-tag")
+                .configure(BrooklynConfigKeys.PLAN_ID, "my-plan-id"));
+        TestEntity entity2 = app2.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(BrooklynConfigKeys.PLAN_ID, "my-plan-id"));
+        
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.getEntitiesInApplication(app2.getId()), ImmutableList.of(app2, entity2));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesOfType(TestApplication.class), ImmutableList.of(app, app2));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesOfType(TestEntityImpl.class), ImmutableList.of(entity, entity2));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithCatalogItemId("my-item:1.0"), ImmutableList.of(entity));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithTag("my-tag"), ImmutableList.of(entity));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithPlanId("my-plan-id"), ImmutableList.of(entity, entity2));
+        
+        // indexes follow changes to tags and plan id
+        entity.tags().removeTag("my-tag");
+        entity2.tags().addTag("my-tag");
+        entity2.config().set(BrooklynConfigKeys.PLAN_ID, "my-other-plan-id");
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithTag("my-tag"), ImmutableList.of(entity2));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithPlanId("my-plan-id"), ImmutableList.of(entity));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithPlanId("my-other-plan-id"), ImmutableList.of(entity2));
+        
+        // and unmanagement
+        Entities.unmanage(app2);
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.getEntitiesInApplication(app2.getId()), ImmutableList.of());
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesOfType(TestApplication.class), ImmutableList.of(app));
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithTag("my-tag"), ImmutableList.of());
+        Asserts.assertEqualsIgnoringOrder(entityManagerInternal.findEntitiesWithPlanId("my-other-plan-id"), ImmutableList.of());
+    }
+    
     @Test
     public void testCreateEntitiesWithDuplicateIdFails() {
         TestApplication origApp = app;
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Runs the {@link LocalSubscriptionManagerTest} tests with {@link LocalSubscriptionManager#BATCHED_DELIVERY},
+ * and tests ordering and (when requested by the subscription) conflation in that mode.
+ */
+public class BatchedLocalSubscriptionManagerTest extends LocalSubscriptionManagerTest {
+
+    @Override
+    protected BrooklynProperties getBrooklynProperties() {
+        BrooklynProperties result = BrooklynProperties.Factory.newEmpty();
+        result.put(LocalSubscriptionManager.BATCHED_DELIVERY, true);
+        result.put(LocalSubscriptionManager.BATCHED_DELIVERY_MAX_BATCH_SIZE, 3);
+        return result;
+    }
+
+    private LocalSubscriptionManager subscriptionManager() {
+        return (LocalSubscriptionManager) mgmt.getSubscriptionManager();
+    }
+
+    @Test
+    public void testDeliversInOrderAcrossBatches() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final List<Object> values = new CopyOnWriteArrayList<Object>();
+        app.subscriptions().subscribe(entity, TestEntity.SEQUENCE, event -> values.add(event.getValue()));
+        app.subscriptions().subscribe(entity, TestEntity.NAME, event -> values.add(event.getValue()));
+
+        // alternating sensors so nothing is conflated
+        for (int i = 0; i < 10; i++) {
+            entity.sensors().set(TestEntity.SEQUENCE, i);
+            entity.sensors().set(TestEntity.NAME, "n" + i);
+        }
+        Asserts.eventually(() -> values.size(), s -> s == 20);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(values.get(2*i), i);
+            assertEquals(values.get(2*i+1), "n" + i);
+        }
+        Asserts.eventually(() -> subscriptionManager().getNumEventsQueued(), n -> n == 0);
+    }
+
+    @Test
+    public void testConflatesQueuedValuesForSameSensor() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final CountDownLatch firstDelivered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Integer> values = new CopyOnWriteArrayList<Integer>();
+        long conflatedBefore = subscriptionManager().getTotalEventsConflated();
+        long deliveredBefore = subscriptionManager().getTotalEventsDeliveredInBatches();
+
+        app.subscriptions().subscribe(ImmutableMap.of("conflate", true), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+            @Override public void onEvent(SensorEvent<Integer> event) {
+                values.add(event.getValue());
+                firstDelivered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw Exceptions.propagate(e);
+                }
+            }});
+
+        entity.sensors().set(TestEntity.SEQUENCE, 1);
+        firstDelivered.await();
+        // listener is blocked, so these are queued and conflated into one
+        for (int i = 2; i <= 10; i++) {
+            entity.sensors().set(TestEntity.SEQUENCE, i);
+        }
+        assertEquals(subscriptionManager().getTotalEventsConflated() - conflatedBefore, 8);
+        release.countDown();
+
+        Asserts.eventually(() -> ImmutableList.copyOf(values), v -> v.equals(ImmutableList.of(1, 10)));
+        Asserts.eventually(() -> subscriptionManager().getTotalEventsDeliveredInBatches() - deliveredBefore, n -> n == 2);
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class EntityFilterIndexTest extends BrooklynAppUnitTestSupport {
+
+    private static class RecordingListener implements EntityFilterIndex.Listener {
+        final List<String> events = new CopyOnWriteArrayList<String>();
+
+        @Override
+        public void onInitialMatches(Collection<Entity> matches) {
+            List<String> ids = MutableList.of();
+            for (Entity e : matches) ids.add(e.getId());
+            events.add("initial"+ImmutableSet.copyOf(ids));
+        }
+        @Override
+        public void onEntityMatched(Entity entity) {
+            events.add("matched:"+entity.getId());
+        }
+        @Override
+        public void onEntityNoLongerMatched(Entity entity) {
+            events.add("noLongerMatched:"+entity.getId());
+        }
+        @Override
+        public void onEntityUnmanaged(Entity entity) {
+            events.add("unmanaged:"+entity.getId());
+        }
+    }
+
+    private EntityFilterIndex index() {
+        return ((LocalEntityManager) mgmt.getEntityManager()).getFilterIndex();
+    }
+
+    @Test
+    public void testToldOfInitialMatchesThenChangesInApplication() throws Exception {
+        final TestEntity e1 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final RecordingListener listener = new RecordingListener();
+        EntityFilterIndex.Registration registration = mgmt.addEntityFilter(app.getId(),
+                Predicates.instanceOf(TestEntity.class), listener);
+        assertEquals(registration.getApplicationId(), app.getId());
+
+        Asserts.eventually(() -> ImmutableList.copyOf(listener.events),
+                Predicates.<List<String>>equalTo(ImmutableList.of("initial["+e1.getId()+"]")));
+
+        final TestEntity e2 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        Entities.unmanage(e1);
+        Asserts.eventually(() -> ImmutableList.copyOf(listener.events),
+                Predicates.<List<String>>equalTo(ImmutableList.of("initial["+e1.getId()+"]", "matched:"+e2.getId(), "unmanaged:"+e1.getId())));
+
+        mgmt.removeEntityFilter(registration);
+        app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        Entities.unmanage(e2);
+        Asserts.succeedsContinually(() -> assertEquals(listener.events.size(), 3, "events="+listener.events));
+    }
+
+    @Test
+    public void testNotToldOfEntitiesInOtherApplications() throws Exception {
+        final RecordingListener listener = new RecordingListener();
+        mgmt.addEntityFilter(app.getId(), Predicates.alwaysTrue(), listener);
+        Asserts.eventually(() -> listener.events.size(), Predicates.equalTo(1));
+
+        TestApplication app2 = mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+        app2.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final TestEntity e1 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+
+        // changes are handled in order, so once told of the later entity we would have been told of the earlier
+        Asserts.eventually(() -> ImmutableList.copyOf(listener.events), events -> events.contains("matched:"+e1.getId()));
+        assertEquals(listener.events.size(), 2, "events="+listener.events);
+    }
+
+    @Test
+    public void testToldWhenEntityNoLongerMatchesAfterTagChange() throws Exception {
+        final TestEntity e1 = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final RecordingListener listener = new RecordingListener();
+        mgmt.addEntityFilter(app.getId(), new Predicate<Entity>() {
+            @Override public boolean apply(Entity input) {
+                return input.tags().containsTag("wanted");
+            }}, listener);
+        Asserts.eventually(() -> listener.events.size(), Predicates.equalTo(1));
+
+        e1.tags().addTag("wanted");
+        Asserts.eventually(() -> ImmutableList.copyOf(listener.events), events -> events.contains("matched:"+e1.getId()));
+        e1.tags().removeTag("wanted");
+        Asserts.eventually(() -> ImmutableList.copyOf(listener.events), events -> events.contains("noLongerMatched:"+e1.getId()));
+    }
+
+    @Test
+    public void testInitialMatchesOfFiltersRegisteredTogetherFoundInOnePass() throws Exception {
+        app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final CountDownLatch firstPassReached = new CountDownLatch(1);
+        final CountDownLatch firstPassContinue = new CountDownLatch(1);
+        long passesBefore = (Long) index().getMetrics().get("initialMatchPasses");
+
+        RecordingListener first = new RecordingListener();
+        mgmt.addEntityFilter(app.getId(), new Predicate<Entity>() {
+            @Override public boolean apply(Entity input) {
+                firstPassReached.countDown();
+                try {
+                    firstPassContinue.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return true;
+            }}, first);
+        assertTrue(firstPassReached.await(10, TimeUnit.SECONDS));
+
+        // registered while the first pass is in progress, so their initial matches are found together
+        List<RecordingListener> others = MutableList.of();
+        for (int i = 0; i < 5; i++) {
+            RecordingListener other = new RecordingListener();
+            mgmt.addEntityFilter(app.getId(), Predicates.alwaysTrue(), other);
+            others.add(other);
+        }
+        firstPassContinue.countDown();
+
+        for (final RecordingListener listener : MutableList.of(first).appendAll(others)) {
+            Asserts.eventually(() -> listener.events.size(), Predicates.equalTo(1));
+        }
+        assertEquals(index().getMetrics().get("initialMatchPasses"), passesBefore + 2);
+    }
+}
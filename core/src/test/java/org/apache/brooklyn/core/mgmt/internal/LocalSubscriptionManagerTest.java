@@ -275,4 +275,26 @@ public class LocalSubscriptionManagerTest extends BrooklynAppUnitTestSupport {
         }
         Assert.assertEquals(result.get(), app.getExecutionContext());
     }
+
+    @Test
+    public void testGetSubscriptionsForEntitySensorIncludesWildcardsAndRemovesOnUnsubscribe() throws Exception {
+        SubscriptionManager subs = mgmt.getSubscriptionManager();
+        SensorEventListener<Object> listener = event -> {};
+        SubscriptionHandle exact = subs.subscribe(entity, TestEntity.SEQUENCE, listener);
+        SubscriptionHandle anyProducer = subs.subscribe(null, TestEntity.SEQUENCE, listener);
+        SubscriptionHandle anySensor = subs.subscribe(entity, null, listener);
+        SubscriptionHandle other = subs.subscribe(app, TestEntity.SEQUENCE, listener);
+
+        Asserts.assertEquals(ImmutableList.copyOf(subs.getSubscriptionsForEntitySensor(entity, TestEntity.SEQUENCE)),
+                ImmutableList.of(exact, anyProducer, anySensor));
+        Asserts.assertEquals(ImmutableList.copyOf(subs.getSubscriptionsForEntitySensor(entity, TestEntity.NAME)),
+                ImmutableList.of(anySensor));
+
+        subs.unsubscribe(exact);
+        subs.unsubscribe(anySensor);
+        Asserts.assertEquals(ImmutableList.copyOf(subs.getSubscriptionsForEntitySensor(entity, TestEntity.SEQUENCE)),
+                ImmutableList.of(anyProducer));
+        Asserts.assertEquals(ImmutableList.copyOf(subs.getSubscriptionsForEntitySensor(app, TestEntity.SEQUENCE)),
+                ImmutableList.of(other, anyProducer));
+    }
 }
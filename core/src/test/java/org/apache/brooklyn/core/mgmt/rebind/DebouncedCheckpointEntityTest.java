@@ -0,0 +1,87 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.rebind.RebindEntityTest.MyEntity;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
+
+public class DebouncedCheckpointEntityTest extends RebindTestFixtureWithApp {
+
+    @Override
+    protected int getPersistPeriodMillis() {
+        return 10;
+    }
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(PeriodicDeltaChangeListener.debounceMinDelayKey(BrooklynObjectType.ENTITY), Duration.millis(200));
+        result.put(PeriodicDeltaChangeListener.debounceMaxStalenessKey(BrooklynObjectType.ENTITY), Duration.seconds(30));
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> persistMetrics() {
+        return (Map<String, Object>) origManagementContext.getRebindManager().getMetrics().get("persist");
+    }
+
+    @Test
+    public void testCoalescesWritesForFrequentlyChangingEntity() throws Exception {
+        MyEntity origE = origApp.createAndManageChild(EntitySpec.create(MyEntity.class));
+
+        // changes more often than the min delay, over many persistence periods
+        for (int i = 0; i < 20; i++) {
+            origE.sensors().set(MyEntity.MY_SENSOR, "val" + i);
+            Time.sleep(Duration.millis(20));
+        }
+        assertTrue((Long) persistMetrics().get("writesDeferred") > 0, "metrics=" + persistMetrics());
+
+        // once quiet, it is written, saving the writes for the other periods
+        Asserts.eventually(() -> (Long) persistMetrics().get("writesSaved"), saved -> saved >= 5);
+
+        newApp = rebind();
+        MyEntity newE = (MyEntity) Iterables.find(newApp.getChildren(), Predicates.instanceOf(MyEntity.class));
+        assertEquals(newE.getAttribute(MyEntity.MY_SENSOR), "val19");
+    }
+
+    @Test
+    public void testForcedPersistWritesDeferredChanges() throws Exception {
+        MyEntity origE = origApp.createAndManageChild(EntitySpec.create(MyEntity.class));
+        origE.sensors().set(MyEntity.MY_SENSOR, "myval");
+
+        // rebind forces persistence, so the change is written without waiting for the min delay
+        newApp = rebind();
+        MyEntity newE = (MyEntity) Iterables.find(newApp.getChildren(), Predicates.instanceOf(MyEntity.class));
+        assertEquals(newE.getAttribute(MyEntity.MY_SENSOR), "myval");
+    }
+}
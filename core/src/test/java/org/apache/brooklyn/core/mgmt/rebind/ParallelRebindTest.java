@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.api.policy.PolicySpec;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.entity.TestEntityImpl;
+import org.apache.brooklyn.core.test.policy.TestPolicy;
+import org.apache.brooklyn.entity.group.BasicGroup;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
+
+public class ParallelRebindTest extends RebindTestFixtureWithApp {
+
+    private static final int NUM_APPS = 10;
+    private static final int NUM_CHILDREN = 5;
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(RebindManagerImpl.REBIND_PARALLELISM, 4);
+        return result;
+    }
+
+    @Test
+    public void testRebindsManyAppsConcurrently() throws Exception {
+        List<String> appIds = MutableList.of(origApp.getId());
+        BasicGroup origGroup = origApp.createAndManageChild(EntitySpec.create(BasicGroup.class));
+        for (int i = 0; i < NUM_APPS; i++) {
+            TestApplication app = origManagementContext.getEntityManager().createEntity(EntitySpec.create(TestApplication.class)
+                    .displayName("app-"+i));
+            appIds.add(app.getId());
+            for (int j = 0; j < NUM_CHILDREN; j++) {
+                TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                        .configure(TestEntity.CONF_NAME, "name-"+i+"-"+j)
+                        .child(EntitySpec.create(TestEntity.class)));
+                child.sensors().set(TestEntity.SEQUENCE, j);
+                child.policies().add(PolicySpec.create(TestPolicy.class));
+                // members in other apps link their groups for reconstruction
+                if (j == 0) origGroup.addMember(child);
+            }
+        }
+
+        newApp = rebind();
+
+        for (String appId : appIds) {
+            assertNotNull(newManagementContext.getEntityManager().getEntity(appId), "app "+appId);
+        }
+        for (int i = 0; i < NUM_APPS; i++) {
+            TestApplication app = (TestApplication) newManagementContext.getEntityManager().getEntity(appIds.get(i+1));
+            assertEquals(app.getDisplayName(), "app-"+i);
+            assertEquals(app.getChildren().size(), NUM_CHILDREN);
+            for (Entity child : app.getChildren()) {
+                assertEquals(child.getChildren().size(), 1, "children of "+child);
+                assertEquals(child.getConfig(TestEntity.CONF_NAME), "name-"+i+"-"+child.getAttribute(TestEntity.SEQUENCE));
+                assertEquals(Iterables.size(Iterables.filter(child.policies(), Predicates.instanceOf(TestPolicy.class))), 1);
+            }
+        }
+        BasicGroup newGroup = (BasicGroup) newManagementContext.getEntityManager().getEntity(origGroup.getId());
+        assertEquals(newGroup.getMembers().size(), NUM_APPS);
+        for (Entity member : newGroup.getMembers()) {
+            assertEquals(member.getAttribute(TestEntity.SEQUENCE), (Integer) 0);
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> phases = (Map<String, Object>) ((Map<String, Object>) newManagementContext.getRebindManager().getMetrics().get("rebind")).get("lastPhaseDurations");
+        assertNotNull(phases);
+        assertTrue(phases.containsKey("reconstructEverything"), "phases="+phases);
+        assertTrue(phases.containsKey("manageTheObjects"), "phases="+phases);
+    }
+
+    @Test
+    public void testJobsRunInRebindTaskContext() throws Exception {
+        for (int i = 0; i < NUM_APPS; i++) {
+            TestApplication app = origManagementContext.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+            app.createAndManageChild(EntitySpec.create(TestEntity.class).impl(ContextRecordingEntityImpl.class));
+        }
+        ContextRecordingEntityImpl.tasksWhenRebinding.clear();
+
+        newApp = rebind();
+
+        assertEquals(ContextRecordingEntityImpl.tasksWhenRebinding.size(), NUM_APPS);
+        for (Task<?> task : ContextRecordingEntityImpl.tasksWhenRebinding) {
+            assertNotNull(task);
+            assertTrue(task.getTags().contains(BrooklynTaskTags.BROOKLYN_SERVER_TASK_TAG), "tags="+task.getTags());
+        }
+    }
+
+    public static class ContextRecordingEntityImpl extends TestEntityImpl {
+        static final List<Task<?>> tasksWhenRebinding = Collections.synchronizedList(MutableList.<Task<?>>of());
+
+        @Override
+        public void rebind() {
+            super.rebind();
+            tasksWhenRebinding.add(Tasks.current());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.rebind.RebindEntityTest.MyEntity;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Iterables;
+
+public class SkipUnchangedMementoWritesTest extends RebindTestFixtureWithApp {
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(BrooklynMementoPersisterToObjectStore.PERSISTER_SKIP_UNCHANGED_WRITES, true);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> persistMetrics() {
+        return (Map<String, Object>) origManagementContext.getRebindManager().getMetrics().get("persist");
+    }
+
+    private void persistNow() {
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+    }
+
+    @Test
+    public void testSkipsWriteWhenMementoUnchanged() throws Exception {
+        MyEntity origE = origApp.createAndManageChild(EntitySpec.create(MyEntity.class));
+        origE.sensors().set(MyEntity.MY_SENSOR, "myval");
+        persistNow();
+        long skippedBefore = (Long) persistMetrics().get("writesSkippedUnchanged");
+
+        // marked as changed, but the memento is identical to what was last written
+        ((EntityInternal)origE).getManagementSupport().getEntityChangeListener().onChanged();
+        persistNow();
+        assertTrue((Long) persistMetrics().get("writesSkippedUnchanged") > skippedBefore, "metrics=" + persistMetrics());
+
+        // a real change is still written
+        origE.sensors().set(MyEntity.MY_SENSOR, "myval2");
+        newApp = rebind();
+        MyEntity newE = (MyEntity) Iterables.find(newApp.getChildren(), Predicates.instanceOf(MyEntity.class));
+        assertEquals(newE.getAttribute(MyEntity.MY_SENSOR), "myval2");
+    }
+
+    @Test
+    public void testDisabledByDefault() throws Exception {
+        assertFalse(BrooklynMementoPersisterToObjectStore.PERSISTER_SKIP_UNCHANGED_WRITES.getDefaultValue());
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.sensor.BasicSensorEvent;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.enricher.stock.Aggregator;
+import org.apache.brooklyn.enricher.stock.Enrichers;
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions;
+import org.apache.brooklyn.entity.group.BasicGroup;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Measures how quickly an {@link Aggregator} over a large group handles changes to a single member's value,
+ * with the result maintained incrementally and with it recomputed from all values.
+ */
+public class AggregatorPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AggregatorPerformanceTest.class);
+
+    private static final AttributeSensor<Integer> TOTAL = Sensors.newIntegerSensor("test.total");
+    private static final AttributeSensor<Integer> HIGHEST = Sensors.newIntegerSensor("test.highest");
+
+    protected int numMembers() {
+        return 1000;
+    }
+
+    protected int numIterations() {
+        return 10000;
+    }
+
+    BasicGroup group;
+    List<TestEntity> members;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        group = app.createAndManageChild(EntitySpec.create(BasicGroup.class));
+        members = Lists.newArrayList();
+        for (int i = 0; i < numMembers(); i++) {
+            TestEntity member = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+            member.sensors().set(TestEntity.SEQUENCE, i);
+            group.addMember(member);
+            members.add(member);
+        }
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testIncrementalSumAndMax() {
+        runAggregation(true);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRecomputedSumAndMax() {
+        runAggregation(false);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void runAggregation(boolean incremental) {
+        final Aggregator<Integer, Integer> sum = (Aggregator<Integer, Integer>) group.enrichers().add(Enrichers.builder()
+                .aggregating(TestEntity.SEQUENCE)
+                .publishing(TOTAL)
+                .fromMembers()
+                .computing(MathAggregatorFunctions.computingSum(null, null, Integer.class))
+                .build()
+                .configure(Aggregator.INCREMENTAL, incremental));
+        final Aggregator<Integer, Integer> max = (Aggregator<Integer, Integer>) group.enrichers().add(Enrichers.builder()
+                .aggregating(TestEntity.SEQUENCE)
+                .publishing(HIGHEST)
+                .fromMembers()
+                .computing(MathAggregatorFunctions.computingMax(null, null, Integer.class))
+                .build()
+                .configure(Aggregator.INCREMENTAL, incremental));
+
+        int n = numMembers();
+        EntityAsserts.assertAttributeEqualsEventually(group, TOTAL, n*(n-1)/2);
+        EntityAsserts.assertAttributeEqualsEventually(group, HIGHEST, n-1);
+
+        // deliver the events directly, so that we measure the aggregation rather than subscription delivery
+        final AtomicInteger counter = new AtomicInteger();
+        String summary = "AggregatorPerformanceTest."+(incremental ? "incremental" : "recomputed")+"SumAndMax";
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary(summary)
+                .iterations(numIterations())
+                .minAcceptablePerSecond((incremental ? 10000 : 100) * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        int i = counter.incrementAndGet();
+                        TestEntity member = members.get(i % members.size());
+                        BasicSensorEvent<Integer> event = new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, member, i);
+                        sum.onEvent(event);
+                        max.onEvent(event);
+                    }}));
+
+        LOG.info(summary+" with "+n+" members at "+result.ratePerSecond+"/s");
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.EntityPredicates;
+import org.apache.brooklyn.core.mgmt.internal.LocalEntityManager;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.entity.group.DynamicGroup;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Measures how quickly many {@link DynamicGroup}s over several applications are populated,
+ * and how quickly they are told of a newly managed entity, with their filters registered
+ * against the management context's entity filter index.
+ */
+public class DynamicGroupPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DynamicGroupPerformanceTest.class);
+
+    protected int numApps() {
+        return 5;
+    }
+
+    protected int numEntitiesPerApp() {
+        return 100;
+    }
+
+    protected int numGroupsPerApp() {
+        return 10;
+    }
+
+    protected int numIterations() {
+        return 200;
+    }
+
+    List<TestApplication> apps;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        apps = Lists.newArrayList();
+        apps.add(app);
+        for (int i = 1; i < numApps(); i++) {
+            apps.add(mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class)));
+        }
+        for (TestApplication a : apps) {
+            for (int i = 0; i < numEntitiesPerApp(); i++) {
+                a.createAndManageChild(EntitySpec.create(TestEntity.class).displayName("entity-"+i));
+            }
+        }
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testPopulateGroups() {
+        final AtomicInteger counter = new AtomicInteger();
+        final List<DynamicGroup> groups = Lists.newArrayList();
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary("DynamicGroupPerformanceTest.populateGroups")
+                .iterations(numApps() * numGroupsPerApp())
+                .minAcceptablePerSecond(100 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        int i = counter.getAndIncrement();
+                        TestApplication a = apps.get(i % apps.size());
+                        groups.add(a.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                                .configure(DynamicGroup.ENTITY_FILTER, EntityPredicates.displayNameEqualTo("entity-"+(i % numEntitiesPerApp())))));
+                    }}));
+
+        for (final DynamicGroup group : groups) {
+            Asserts.eventually(() -> group.getMembers().size(), size -> size == 1);
+        }
+        LOG.info("DynamicGroupPerformanceTest.populateGroups with "+groups.size()+" groups over "+(numApps()*numEntitiesPerApp())+" entities "
+                + "at "+result.ratePerSecond+"/s; index "+getIndexMetrics());
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testIncrementalMembership() {
+        final List<DynamicGroup> groups = Lists.newArrayList();
+        for (TestApplication a : apps) {
+            for (int i = 0; i < numGroupsPerApp(); i++) {
+                groups.add(a.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                        .configure(DynamicGroup.ENTITY_FILTER, EntityPredicates.displayNameEqualTo("new-"+i))));
+            }
+        }
+
+        final AtomicInteger counter = new AtomicInteger();
+        final List<Entity> added = Lists.newArrayList();
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary("DynamicGroupPerformanceTest.incrementalMembership")
+                .iterations(numIterations())
+                .minAcceptablePerSecond(100 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        int i = counter.getAndIncrement();
+                        TestApplication a = apps.get(i % apps.size());
+                        added.add(a.createAndManageChild(EntitySpec.create(TestEntity.class).displayName("new-"+(i % numGroupsPerApp()))));
+                    }}));
+
+        // each new entity matches exactly one group in its application
+        Asserts.eventually(() -> countMembers(groups), count -> count == added.size());
+        LOG.info("DynamicGroupPerformanceTest.incrementalMembership with "+groups.size()+" groups over "+(numApps()*numEntitiesPerApp())+" entities "
+                + "at "+result.ratePerSecond+"/s; index "+getIndexMetrics());
+    }
+
+    private int countMembers(List<DynamicGroup> groups) {
+        int result = 0;
+        for (DynamicGroup group : groups) {
+            result += group.getMembers().size();
+        }
+        return result;
+    }
+
+    private Object getIndexMetrics() {
+        return ((LocalEntityManager) mgmt.getEntityManager()).getFilterIndex().getMetrics();
+    }
+}
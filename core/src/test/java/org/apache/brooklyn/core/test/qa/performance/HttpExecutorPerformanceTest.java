@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import java.net.URI;
+
+import org.apache.brooklyn.core.location.PortRanges;
+import org.apache.brooklyn.core.test.HttpService;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.http.executor.HttpConfig;
+import org.apache.brooklyn.util.http.executor.HttpExecutor;
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.http.executor.HttpResponse;
+import org.apache.brooklyn.util.http.executor.apacheclient.HttpExecutorImpl;
+import org.apache.brooklyn.util.http.executor.apacheclient.PooledHttpExecutorImpl;
+import org.apache.brooklyn.util.stream.Streams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Compares the request rate of {@link HttpExecutorImpl}, which opens a new connection for each request,
+ * with {@link PooledHttpExecutorImpl}, against a local (jetty) web server, over http and https.
+ */
+public class HttpExecutorPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HttpExecutorPerformanceTest.class);
+
+    private HttpService httpService;
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            if (httpService != null) httpService.shutdown();
+            PooledHttpExecutorImpl.shutdownConnectionPools();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @DataProvider(name = "https")
+    public Object[][] https() {
+        return new Object[][] { {false}, {true} };
+    }
+
+    @Test(groups={"Integration", "Acceptance"}, dataProvider="https")
+    public void testRequestRate(boolean https) throws Exception {
+        httpService = new HttpService(PortRanges.fromString("9000+"), https).start();
+        final URI uri = URI.create(httpService.getUrl());
+        HttpConfig config = HttpConfig.builder().trustAll(true).build();
+
+        double unpooled = measureExecutor("unpooled", HttpExecutorImpl.newInstance().withConfig(config), uri, https);
+        double pooled = measureExecutor("pooled", PooledHttpExecutorImpl.newInstance().withConfig(config), uri, https);
+        LOG.info("HTTP executor requests to "+uri+": unpooled="+(int)unpooled+"/s; pooled="+(int)pooled+"/s; pools "
+                + PooledHttpExecutorImpl.getConnectionPoolMetrics());
+    }
+
+    protected double measureExecutor(String name, final HttpExecutor executor, final URI uri, boolean https) {
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary("HttpExecutorPerformanceTest."+name+(https ? ".https" : ".http"))
+                .iterations(1000)
+                .minAcceptablePerSecond(10 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            HttpResponse response = executor.execute(new HttpRequest.Builder().method("GET").uri(uri).build());
+                            assertEquals(response.code(), 200);
+                            Streams.readFullyAndClose(response.getContent());
+                        } catch (Exception e) {
+                            throw Exceptions.propagate(e);
+                        }
+                    }}));
+        return result.ratePerSecond;
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Map;
+
+import javax.xml.xpath.XPathConstants;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoManifest;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
+import org.apache.brooklyn.api.mgmt.ha.MementoCopyMode;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
+import org.apache.brooklyn.core.mgmt.persist.InMemoryObjectStore;
+import org.apache.brooklyn.core.mgmt.rebind.RebindExceptionHandlerImpl;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.core.xstream.XmlUtil;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+/**
+ * Measures extracting the rebind manifest (id, type, parent, catalog item and search path of each object)
+ * from persisted state, comparing the single-pass streaming reader used by
+ * {@link BrooklynMementoPersisterToObjectStore#loadMementoManifest(BrooklynMementoRawData, RebindExceptionHandler)}
+ * with the previous approach of evaluating an xpath for each field.
+ */
+public class RebindManifestPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RebindManifestPerformanceTest.class);
+
+    private static final int NUM_ENTITIES = 500;
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testLoadMementoManifest() throws Exception {
+        for (int i = 0; i < NUM_ENTITIES; i++) {
+            TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                    .configure(TestEntity.CONF_NAME, "name-"+i));
+            entity.sensors().set(TestEntity.SEQUENCE, i);
+            entity.sensors().set(TestEntity.NAME, "entity-"+i);
+        }
+        final BrooklynMementoRawData rawData = BrooklynPersistenceUtils.newStateMemento(mgmt, MementoCopyMode.LOCAL);
+        final Map<String, String> entities = rawData.getEntities();
+        assertEquals(entities.size(), NUM_ENTITIES+1);
+
+        final BrooklynMementoPersisterToObjectStore persister = new BrooklynMementoPersisterToObjectStore(new InMemoryObjectStore(), mgmt);
+        final RebindExceptionHandler exceptionHandler = RebindExceptionHandlerImpl.builder().strict().build();
+        try {
+            BrooklynMementoManifest manifest = persister.loadMementoManifest(rawData, exceptionHandler);
+            assertEquals(manifest.getEntityIdToManifest().size(), NUM_ENTITIES+1);
+
+            PerformanceTestResult streaming = measure(PerformanceTestDescriptor.create()
+                    .summary("RebindManifestPerformanceTest.streaming")
+                    .iterations(20)
+                    .minAcceptablePerSecond(PERFORMANCE_EXPECTATION)
+                    .job(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                persister.loadMementoManifest(rawData, exceptionHandler);
+                            } catch (Exception e) {
+                                throw Exceptions.propagate(e);
+                            }
+                        }}));
+
+            PerformanceTestResult xpath = measure(PerformanceTestDescriptor.create()
+                    .summary("RebindManifestPerformanceTest.xpath")
+                    .iterations(20)
+                    .job(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (String contents : entities.values()) {
+                                XmlUtil.xpathHandlingIllegalChars(contents, "/entity/id");
+                                XmlUtil.xpathHandlingIllegalChars(contents, "/entity/type");
+                                XmlUtil.xpathHandlingIllegalChars(contents, "/entity/parent");
+                                XmlUtil.xpathHandlingIllegalChars(contents, "/entity/catalogItemId");
+                                XmlUtil.xpathHandlingIllegalChars(contents, "/entity/searchPath//string", XPathConstants.NODESET);
+                            }
+                        }}));
+
+            LOG.info("Rebind manifest of "+entities.size()+" entities: streaming="+streaming.ratePerSecond+"/s; xpath="+xpath.ratePerSecond+"/s");
+        } finally {
+            persister.stop(false);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.Sensor;
+import org.apache.brooklyn.api.sensor.SensorEvent;
+import org.apache.brooklyn.core.entity.Attributes;
+import org.apache.brooklyn.core.entity.EntityAdjuncts;
+import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
+import org.apache.brooklyn.core.entity.lifecycle.ServiceStateLogic.ComputeServiceIndicatorsFromChildrenAndMembers;
+import org.apache.brooklyn.core.sensor.BasicSensorEvent;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.core.test.entity.TestEntityImpl.TestEntityWithoutEnrichers;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Measures how quickly the service indicators of an application with many children are updated
+ * as individual children flap between healthy and unhealthy.
+ */
+public class ServiceStateLogicPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ServiceStateLogicPerformanceTest.class);
+
+    protected int numChildren() {
+        return 1000;
+    }
+
+    protected int numIterations() {
+        return 10000;
+    }
+
+    List<TestEntity> children;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+
+        children = Lists.newArrayList();
+        for (int i = 0; i < numChildren(); i++) {
+            TestEntity child = app.createAndManageChild(EntitySpec.create(TestEntity.class).impl(TestEntityWithoutEnrichers.class));
+            child.sensors().set(Attributes.SERVICE_UP, true);
+            child.sensors().set(Attributes.SERVICE_STATE_ACTUAL, Lifecycle.RUNNING);
+            children.add(child);
+        }
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testChildrenFlapping() {
+        final ComputeServiceIndicatorsFromChildrenAndMembers enricher = (ComputeServiceIndicatorsFromChildrenAndMembers) EntityAdjuncts.tryFindWithUniqueTag(
+                app.enrichers(), ComputeServiceIndicatorsFromChildrenAndMembers.DEFAULT_UNIQUE_TAG).get();
+
+        // deliver the events directly, so that we measure the enricher rather than subscription delivery
+        final AtomicInteger counter = new AtomicInteger();
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary("ServiceStateLogicPerformanceTest.childrenFlapping")
+                .iterations(numIterations())
+                .minAcceptablePerSecond(1000 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        int i = counter.incrementAndGet();
+                        TestEntity child = children.get(i % children.size());
+                        boolean healthy = (i / children.size()) % 2 == 1;
+                        enricher.onEvent(newEvent(Attributes.SERVICE_UP, child, healthy));
+                        enricher.onEvent(newEvent(Attributes.SERVICE_STATE_ACTUAL, child, healthy ? Lifecycle.RUNNING : Lifecycle.ON_FIRE));
+                    }}));
+
+        LOG.info("Children flapping with "+numChildren()+" children at "+result.ratePerSecond+"/s");
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static SensorEvent<Object> newEvent(Sensor<?> sensor, Entity source, Object value) {
+        return new BasicSensorEvent(sensor, source, value);
+    }
+}
@@ -24,9 +24,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.SubscriptionManager;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -39,6 +42,7 @@ import com.google.common.collect.Lists;
 public class SubscriptionPerformanceTest extends AbstractPerformanceTest {
 
     private static final int NUM_ITERATIONS = 10000;
+    private static final int NUM_SUBSCRIPTIONS_AT_SCALE = 200000;
     
     TestEntity entity;
     List<TestEntity> entities;
@@ -158,4 +162,68 @@ public class SubscriptionPerformanceTest extends AbstractPerformanceTest {
             throw exception.get();
         }
     }
+
+    /** Subscribes to many distinct sensors on each entity, so that there are very many subscriptions none of which match {@link TestEntity#SEQUENCE}. */
+    private void subscribeManyUnrelated(int numSubscriptions) {
+        SensorEventListener<Object> listener = event -> {};
+        int perEntity = numSubscriptions / entities.size();
+        for (int i = 0; i < perEntity; i++) {
+            AttributeSensor<Integer> sensor = Sensors.newIntegerSensor("perf.unrelated." + i);
+            for (TestEntity e : entities) {
+                subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "unrelated-" + (i % 1000)), e, sensor, listener);
+            }
+        }
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testPublishWithManySubscriptionsAtScale() throws Exception {
+        int numIterations = NUM_ITERATIONS;
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger iter = new AtomicInteger();
+        final AtomicInteger listenerCount = new AtomicInteger();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+
+        subscribeManyUnrelated(NUM_SUBSCRIPTIONS_AT_SCALE);
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "related"), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+            @Override
+            public void onEvent(SensorEvent<Integer> event) {
+                if (listenerCount.incrementAndGet() >= numIterations) completionLatch.countDown();
+            }});
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("SubscriptionPerformanceTest.testPublishWithManySubscriptionsAtScale")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        entity.sensors().set(TestEntity.SEQUENCE, (iter.getAndIncrement()));
+                    }})
+                .completionLatch(completionLatch));
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testConcurrentSubscribeAndUnsubscribeAtScale() throws Exception {
+        int numIterations = NUM_ITERATIONS;
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger iter = new AtomicInteger();
+        final SensorEventListener<Object> listener = event -> {};
+
+        subscribeManyUnrelated(NUM_SUBSCRIPTIONS_AT_SCALE);
+
+        // like group members joining and leaving: each job subscribes to and unsubscribes from a member's sensor,
+        // while other jobs are doing the same and events are being published
+        measure(PerformanceTestDescriptor.create()
+                .summary("SubscriptionPerformanceTest.testConcurrentSubscribeAndUnsubscribeAtScale")
+                .iterations(numIterations)
+                .numConcurrentJobs(8)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    @Override public void run() {
+                        int i = iter.getAndIncrement();
+                        TestEntity member = entities.get(i % entities.size());
+                        SubscriptionHandle handle = subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "member-" + (i % 100)), member, TestEntity.SEQUENCE, listener);
+                        member.sensors().set(TestEntity.SEQUENCE, i);
+                        subscriptionManager.unsubscribe(handle);
+                    }}));
+    }
 }
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.task.BasicTask;
+import org.apache.brooklyn.util.core.task.TaskTagIndex;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Compares submit-and-query throughput of the concurrent {@link TaskTagIndex} used by
+ * {@link org.apache.brooklyn.util.core.task.BasicExecutionManager} against the previous approach
+ * (a synchronized map of synchronized sets), at different numbers of concurrent threads.
+ */
+public class TaskTagIndexPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TaskTagIndexPerformanceTest.class);
+
+    private static final int NUM_TASKS = 10000;
+    private static final int NUM_ENTITY_TAGS = 100;
+    private static final String SHARED_TAG = "shared";
+    private static final int ITERATIONS_PER_THREAD = 100000;
+
+    interface TagIndex {
+        void add(Object tag, Task<?> task);
+        boolean remove(Object tag, Task<?> task);
+        Collection<Task<?>> getCopy(Object tag);
+    }
+
+    /** The approach previously used in BasicExecutionManager. */
+    static class SynchronizedTagIndex implements TagIndex {
+        private final Map<Object, Set<Task<?>>> tasksByTag = new HashMap<Object, Set<Task<?>>>();
+
+        @Override
+        public void add(Object tag, Task<?> task) {
+            Set<Task<?>> tasks;
+            synchronized (tasksByTag) {
+                tasks = tasksByTag.get(tag);
+                if (tasks == null) {
+                    tasks = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
+                    tasksByTag.put(tag, tasks);
+                }
+            }
+            tasks.add(task);
+        }
+        @Override
+        public boolean remove(Object tag, Task<?> task) {
+            synchronized (tasksByTag) {
+                Set<Task<?>> tasks = tasksByTag.get(tag);
+                if (tasks != null && tasks.remove(task)) {
+                    if (tasks.isEmpty()) tasksByTag.remove(tag);
+                    return true;
+                }
+                return false;
+            }
+        }
+        @Override
+        public Collection<Task<?>> getCopy(Object tag) {
+            Set<Task<?>> tasks;
+            synchronized (tasksByTag) {
+                tasks = tasksByTag.get(tag);
+            }
+            if (tasks == null) return Collections.emptySet();
+            synchronized (tasks) {
+                return new LinkedHashSet<Task<?>>(tasks);
+            }
+        }
+    }
+
+    static class ConcurrentTagIndex implements TagIndex {
+        private final TaskTagIndex index = new TaskTagIndex();
+
+        @Override public void add(Object tag, Task<?> task) { index.add(tag, task); }
+        @Override public boolean remove(Object tag, Task<?> task) { return index.remove(tag, task); }
+        @Override public Collection<Task<?>> getCopy(Object tag) { return index.getCopy(tag); }
+    }
+
+    @DataProvider(name = "threads")
+    public Object[][] threads() {
+        return new Object[][] { {1}, {8}, {32} };
+    }
+
+    @Test(groups={"Integration", "Acceptance"}, dataProvider="threads")
+    public void testSubmitAndQueryThroughput(int numThreads) throws Exception {
+        double legacy = measureIndex(new SynchronizedTagIndex(), numThreads);
+        double concurrent = measureIndex(new ConcurrentTagIndex(), numThreads);
+        LOG.info("TaskTagIndex with " + numThreads + " threads: synchronized=" + (int) legacy + "/s; concurrent=" + (int) concurrent + "/s");
+        assertTrue(concurrent > 1000 * PERFORMANCE_EXPECTATION, "rate=" + concurrent);
+    }
+
+    /**
+     * Runs the given number of threads concurrently, each repeatedly adding a task with an entity tag and a shared tag,
+     * querying the entity tag, and removing the task; returns the rate of iterations per second across all threads.
+     * (Not using {@link #measure(org.apache.brooklyn.test.performance.PerformanceTestDescriptor)} as that waits
+     * for all concurrent jobs at each iteration, so does not measure contention.)
+     */
+    protected double measureIndex(final TagIndex index, int numThreads) throws Exception {
+        final List<Task<?>> tasks = MutableList.of();
+        for (int i = 0; i < NUM_TASKS; i++) {
+            tasks.add(new BasicTask<Void>(() -> {}));
+        }
+        // pre-populate so queries have something to copy
+        for (int i = 0; i < NUM_TASKS / 2; i++) {
+            index.add("entity-" + (i % NUM_ENTITY_TAGS), tasks.get(i));
+        }
+        final AtomicInteger counter = new AtomicInteger(NUM_TASKS / 2);
+        final Runnable job = () -> {
+            int i = counter.getAndIncrement();
+            Task<?> task = tasks.get(i % NUM_TASKS);
+            Object tag = "entity-" + (i % NUM_ENTITY_TAGS);
+            index.add(tag, task);
+            index.add(SHARED_TAG, task);
+            index.getCopy(tag);
+            index.remove(SHARED_TAG, task);
+            index.remove(tag, task);
+        };
+
+        // warm up
+        for (int i = 0; i < ITERATIONS_PER_THREAD; i++) job.run();
+
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = MutableList.of();
+        for (int t = 0; t < numThreads; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    throw Exceptions.propagate(e);
+                }
+                for (int i = 0; i < ITERATIONS_PER_THREAD; i++) job.run();
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        start.countDown();
+        for (Thread thread : threads) thread.join();
+        return (double) numThreads * ITERATIONS_PER_THREAD * 1000 / Math.max(1, stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    }
+}
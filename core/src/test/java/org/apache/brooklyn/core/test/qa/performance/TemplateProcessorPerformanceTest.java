@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.core.text.TemplateProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Measures repeatedly processing the same small templates, as is done for expressions in workflow steps
+ * (eg in a foreach over many items), where parsed templates are cached and simple references need no parsing.
+ */
+public class TemplateProcessorPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TemplateProcessorPerformanceTest.class);
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testProcessRepeatedTemplates() {
+        final ImmutableMap<String, Object> substitutions = ImmutableMap.<String,Object>of(
+                "item", "myitem", "index", 3, "output", ImmutableMap.of("name", "myname"));
+        assertEquals(TemplateProcessor.processTemplateContents("server-${index}-${item}", substitutions), "server-3-myitem");
+
+        final int numIterations = 10000;
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary("TemplateProcessorPerformanceTest.processRepeatedTemplates")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(1000 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        TemplateProcessor.processTemplateContents("plain text", substitutions);
+                        TemplateProcessor.processTemplateContents("${item}", substitutions);
+                        TemplateProcessor.processTemplateContents("${output.name}", substitutions);
+                        TemplateProcessor.processTemplateContents("server-${index}-${item}", substitutions);
+                    }}));
+
+        LOG.info("Processed repeated templates at "+result.ratePerSecond+"/s; cache metrics "+TemplateProcessor.getTemplateCacheMetrics());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
+import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * Measures repeated common coercions, as done when reading config and sensor values,
+ * where the coercers which apply for a given pair of types are remembered.
+ */
+public class TypeCoercionPerformanceTest extends AbstractPerformanceTest {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TypeCoercionPerformanceTest.class);
+
+    public static class MyBean {
+        public int x;
+        public String y;
+    }
+
+    @SuppressWarnings("serial")
+    private static final TypeToken<List<Integer>> LIST_OF_INTEGER = new TypeToken<List<Integer>>() {};
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRepeatedCoercions() {
+        assertEquals(TypeCoercions.coerce("1m", Duration.class), Duration.ONE_MINUTE);
+        assertEquals(TypeCoercions.coerce(1, Long.class), (Long) 1L);
+        assertEquals(TypeCoercions.coerce("seconds", TimeUnit.class), TimeUnit.SECONDS);
+        assertEquals(TypeCoercions.coerce(ImmutableList.of("1", "2"), LIST_OF_INTEGER), ImmutableList.of(1, 2));
+        assertEquals(TypeCoercions.coerce(ImmutableMap.of("x", 1, "y", "a"), MyBean.class).y, "a");
+
+        final int numIterations = 10000;
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary("TypeCoercionPerformanceTest.repeatedCoercions")
+                .iterations(numIterations)
+                .minAcceptablePerSecond(1000 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        TypeCoercions.coerce("1m", Duration.class);
+                        TypeCoercions.coerce(1, Long.class);
+                        TypeCoercions.coerce("seconds", TimeUnit.class);
+                        TypeCoercions.coerce(ImmutableList.of("1", "2"), LIST_OF_INTEGER);
+                        TypeCoercions.coerce(ImmutableMap.of("x", 1, "y", "a"), MyBean.class);
+                    }}));
+
+        LOG.info("Repeated coercions at "+result.ratePerSecond+"/s");
+    }
+}
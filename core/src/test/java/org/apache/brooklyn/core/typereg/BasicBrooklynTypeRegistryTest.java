@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.typereg;
 
 import javax.annotation.Nonnull;
 
+import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry.RegisteredTypeKind;
 import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.api.typereg.RegisteredType.TypeImplementationPlan;
 import org.apache.brooklyn.core.test.BrooklynMgmtUnitTestSupport;
@@ -191,4 +192,70 @@ public class BasicBrooklynTypeRegistryTest extends BrooklynMgmtUnitTestSupport {
         
     }
 
+    @Test
+    public void testIndexedLookupsUpdatedOnChange() {
+        add(SAMPLE_TYPE);
+        RegisteredType sampleType2WithAliasInBundle = RegisteredTypes.newInstance(RegisteredTypeKind.BEAN, "item.A", "2",
+            new BasicTypeImplementationPlan("ignore", null), MutableList.of(Integer.class), MutableList.of("the_a"), null,
+            "my.bundle:1.0.0-SNAPSHOT", MutableList.of(), null, null, null, null, null);
+        add(sampleType2WithAliasInBundle);
+        
+        Assert.assertEquals( registry().get("item.A"), sampleType2WithAliasInBundle );
+        Assert.assertEquals( registry().get("the_a"), sampleType2WithAliasInBundle );
+        Assert.assertEquals( MutableList.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(Number.class))),
+            MutableList.of(sampleType2WithAliasInBundle) );
+        Assert.assertEquals( MutableList.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(CharSequence.class))),
+            MutableList.of(SAMPLE_TYPE) );
+        // osgi-equivalent bundle name also matches
+        Assert.assertEquals( MutableList.copyOf(registry().getMatching(RegisteredTypePredicates.containingBundle("my.bundle:1.0.0.SNAPSHOT"))),
+            MutableList.of(sampleType2WithAliasInBundle) );
+        
+        registry().delete(sampleType2WithAliasInBundle);
+        Assert.assertEquals( registry().get("item.A"), SAMPLE_TYPE );
+        Assert.assertNull( registry().get("the_a") );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.subtypeOf(Number.class))) );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.containingBundle("my.bundle:1.0.0-SNAPSHOT"))) );
+        
+        registry().clear();
+        Assert.assertNull( registry().get("item.A") );
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.subtypeOf(CharSequence.class))) );
+    }
+
+    @Test
+    public void testIndexedSubtypeLookupSeesSuperTypesAddedInPlace() {
+        RegisteredType typeB = beanWithSuper("item.B", "1", new BasicTypeImplementationPlan("ignore", null), String.class);
+        RegisteredType typeC = RegisteredTypes.addSuperType(
+            RegisteredTypes.bean("item.C", "1", new BasicTypeImplementationPlan("ignore", null)), typeB);
+        add(typeB);
+        add(typeC);
+        Assert.assertTrue( Iterables.isEmpty(registry().getMatching(RegisteredTypePredicates.subtypeOf(Number.class))) );
+
+        // as done when validating, which changes the super-types of the registered type (and so of its dependent)
+        // then replaces it in the registry
+        RegisteredTypes.addSuperType(typeB, Integer.class);
+        add(typeB, true);
+        Assert.assertEquals( MutableSet.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(Number.class))),
+            MutableSet.of(typeB, typeC) );
+        Assert.assertEquals( MutableSet.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(Number.class))),
+            MutableSet.copyOf(Iterables.filter(registry().getAll(), RegisteredTypePredicates.subtypeOf(Number.class))) );
+
+        // and entries are removed from the index on delete, even though the super-types changed after indexing
+        registry().delete(typeC);
+        Assert.assertEquals( MutableList.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(Number.class))),
+            MutableList.of(typeB) );
+    }
+
+    @Test
+    public void testIndexedSubtypeLookupSortedByNameThenBestFirst() {
+        RegisteredType typeZ = beanWithSuper("item.Z", "1", new BasicTypeImplementationPlan("ignore", null), Integer.class);
+        RegisteredType typeY1 = beanWithSuper("item.Y", "1", new BasicTypeImplementationPlan("ignore", null), Long.class);
+        RegisteredType typeY2 = beanWithSuper("item.Y", "2", new BasicTypeImplementationPlan("ignore", null), Integer.class);
+        add(typeZ);
+        add(typeY1);
+        add(typeY2);
+
+        Assert.assertEquals( MutableList.copyOf(registry().getMatching(RegisteredTypePredicates.subtypeOf(Number.class))),
+            MutableList.of(typeY2, typeY1, typeZ) );
+    }
+
 }
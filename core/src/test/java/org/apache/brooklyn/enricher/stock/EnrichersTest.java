@@ -301,6 +301,41 @@ public class EnrichersTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 5);
     }
     
+    @Test
+    public void testAggregatingGroupSumAndMaxAsMembersChange() {
+        group.addMember(entity);
+        group.addMember(entity2);
+        group.enrichers().add(Enrichers.builder()
+                .aggregating(NUM1)
+                .publishing(NUM2)
+                .fromMembers()
+                .computingSum()
+                .build());
+        group.enrichers().add(Enrichers.builder()
+                .aggregating(NUM1)
+                .publishing(NUM3)
+                .fromMembers()
+                .computing(MathAggregatorFunctions.computingMax(null, null, Integer.class))
+                .build());
+        
+        entity.sensors().set(NUM1, 2);
+        entity2.sensors().set(NUM1, 3);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 5);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM3, 3);
+        
+        entity2.sensors().set(NUM1, 1);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 3);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM3, 2);
+        
+        group.removeMember(entity);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, 1);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM3, 1);
+        
+        group.removeMember(entity2);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM2, null);
+        EntityAsserts.assertAttributeEqualsEventually(group, NUM3, null);
+    }
+    
     @Test
     public void testAggregatingChildrenSum() {
         group.addMember(entity);
@@ -20,14 +20,20 @@ package org.apache.brooklyn.enricher.stock;
 
 import static org.apache.brooklyn.test.LogWatcher.EventPredicates.containsMessage;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import org.apache.brooklyn.test.LogWatcher;
+import org.apache.brooklyn.enricher.stock.MathAggregatorFunctions.IncrementalComputingNumber;
 import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
@@ -160,4 +166,50 @@ public class MathAggregatorFunctionsTest {
         assertEquals(func.apply(MutableList.<Number>of(1, 3, 5)), (Integer)5);
         assertEquals(func.apply(MutableList.<Number>of(3, null, 1)), (Integer)3);
     }
+
+    @Test
+    public void testIncrementalComputationMatchesFunction() throws Exception {
+        List<Function<Collection<? extends Number>, Double>> funcs = new ArrayList<>();
+        for (Number defaultValue : new Number[] {null, 7}) {
+            funcs.add(MathAggregatorFunctions.computingSum(defaultValue, 999, Double.class));
+            funcs.add(MathAggregatorFunctions.computingAverage(defaultValue, 999, Double.class));
+            funcs.add(MathAggregatorFunctions.computingMin(defaultValue, 999, Double.class));
+            funcs.add(MathAggregatorFunctions.computingMax(defaultValue, 999, Double.class));
+        }
+        Object[] possibleValues = new Object[] {null, 1, 2L, -3, 4.5d, 0.1d, "6", 1e6};
+        
+        for (Function<Collection<? extends Number>, Double> func : funcs) {
+            IncrementalComputingNumber<Double> incremental = MathAggregatorFunctions.newIncrementalComputation(func);
+            assertNotNull(incremental, "func="+func);
+            Map<Integer, Object> values = MutableMap.of();
+            Random random = new Random(0);
+            for (int i = 0; i < 2000; i++) {
+                Integer key = random.nextInt(20);
+                if (random.nextInt(5) == 0) {
+                    values.remove(key);
+                    incremental.remove(key);
+                } else {
+                    Object value = possibleValues[random.nextInt(possibleValues.length)];
+                    values.put(key, value);
+                    incremental.put(key, value);
+                }
+                @SuppressWarnings({ "rawtypes", "unchecked" })
+                Double expected = func.apply((Collection<Number>) (Collection) values.values());
+                assertEquals(incremental.get(), expected, 1e-6, "func="+func+"; values="+values);
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalComputationNotUsedForOtherFunctions() throws Exception {
+        assertNull(MathAggregatorFunctions.newIncrementalComputation(null));
+        assertNull(MathAggregatorFunctions.newIncrementalComputation(new Function<Collection<? extends Number>, Integer>() {
+            @Override public Integer apply(Collection<? extends Number> input) {
+                return input.size();
+            }}));
+        assertNull(MathAggregatorFunctions.newIncrementalComputation(new MathAggregatorFunctions.ComputingSum<Integer>(null, null, TypeToken.of(Integer.class)) {
+            @Override public Number applyImpl(Collection<Number> vals) {
+                return 42;
+            }}));
+    }
 }
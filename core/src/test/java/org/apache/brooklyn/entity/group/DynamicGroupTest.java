@@ -482,14 +482,14 @@ public class DynamicGroupTest extends BrooklynAppUnitTestSupport {
             entityAddedLatch = config().get(ENTITY_ADDED_LATCH);
         }
         
-        @Override public void rescanEntities() {
+        @Override protected void onInitialMatches(Collection<Entity> matches) {
             rescanReachedLatch.countDown();
             try {
                 rescanLatch.await();
             } catch (InterruptedException e) {
                 Exceptions.propagate(e);
             }
-            super.rescanEntities();
+            super.onInitialMatches(matches);
         }
         @Override protected void onEntityAdded(Entity item) {
             entityAddedReachedLatch.countDown();
@@ -591,6 +591,55 @@ public class DynamicGroupTest extends BrooklynAppUnitTestSupport {
         }
     };
 
+    @Test
+    public void testEntityNoLongerMatchingWhileInitialMatchesInFlightNotAdded() throws Exception {
+        e1.tags().addTag("wanted");
+        final DynamicGroup group2 = app.addChild(EntitySpec.create(DynamicGroup.class)
+                .impl(DynamicGroupTestingChangeDuringInitialMatches.class)
+                .configure(DynamicGroup.ENTITY_FILTER, new Predicate<Entity>() {
+                    @Override public boolean apply(Entity input) {
+                        return input.tags().containsTag("wanted");
+                    }}));
+        DynamicGroupTestingChangeDuringInitialMatches group2impl =
+                (DynamicGroupTestingChangeDuringInitialMatches) Entities.deproxy(group2);
+
+        try {
+            // the initial matches (including e1) have been found but not yet applied when e1 stops matching,
+            // and that change is applied first
+            assertTrue(group2impl.initialMatchesReachedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+            e1.tags().removeTag("wanted");
+            assertTrue(group2impl.entityChangedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        } finally {
+            group2impl.initialMatchesContinueLatch.countDown();
+        }
+
+        assertTrue(group2impl.initialMatchesAppliedLatch.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of());
+    }
+    public static class DynamicGroupTestingChangeDuringInitialMatches extends DynamicGroupImpl {
+        final CountDownLatch initialMatchesReachedLatch = new CountDownLatch(1);
+        final CountDownLatch initialMatchesContinueLatch = new CountDownLatch(1);
+        final CountDownLatch initialMatchesAppliedLatch = new CountDownLatch(1);
+        final CountDownLatch entityChangedLatch = new CountDownLatch(1);
+
+        @Override
+        protected void onInitialMatches(Collection<Entity> matches) {
+            initialMatchesReachedLatch.countDown();
+            try {
+                initialMatchesContinueLatch.await();
+            } catch (InterruptedException e) {
+                throw Exceptions.propagate(e);
+            }
+            super.onInitialMatches(matches);
+            initialMatchesAppliedLatch.countDown();
+        }
+        @Override
+        protected void onEntityChanged(Entity item) {
+            super.onEntityChanged(item);
+            entityChangedLatch.countDown();
+        }
+    };
+
     @Test
     public void testOnlyMatchesEntitiesInSameApplication() {
         TestApplication app2 = TestApplication.Factory.newManagedInstanceForTests(app.getManagementContext());
@@ -600,6 +649,105 @@ public class DynamicGroupTest extends BrooklynAppUnitTestSupport {
         assertFalse(members.contains(irrelevant), "collection should not contain " + irrelevant + ": " + members);
     }
 
+    @Test
+    public void testGroupWithAncestorInOtherApplicationDetectsNewlyManagedEntities() {
+        TestApplication app2 = TestApplication.Factory.newManagedInstanceForTests(app.getManagementContext());
+        final DynamicGroup group2 = app.addChild(EntitySpec.create(DynamicGroup.class)
+                .configure(DynamicGroup.ANCESTOR, app2)
+                .configure(DynamicGroup.ENTITY_FILTER, Predicates.instanceOf(TestEntity.class)));
+        final TestEntity e3 = app2.createAndManageChild(EntitySpec.create(TestEntity.class));
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of(e3));
+            }});
+    }
+
+    @Test
+    public void testGroupNotNotifiedOfEntitiesInOtherApplications() {
+        DynamicGroup group2 = app.addChild(EntitySpec.create(DynamicGroup.class)
+                .impl(DynamicGroupRecordingEntitiesAdded.class)
+                .configure(DynamicGroup.ENTITY_FILTER, Predicates.instanceOf(TestEntity.class)));
+        final DynamicGroupRecordingEntitiesAdded group2impl = (DynamicGroupRecordingEntitiesAdded) Entities.deproxy(group2);
+        
+        TestApplication app2 = TestApplication.Factory.newManagedInstanceForTests(app.getManagementContext());
+        TestEntity irrelevant = app2.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity relevant = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        
+        // notifications are delivered in order, so once told of the later entity we would have been told of the earlier
+        assertContainsEventually(group2impl.entitiesAdded, relevant);
+        assertFalse(group2impl.entitiesAdded.contains(irrelevant), "entitiesAdded="+group2impl.entitiesAdded);
+        assertTrue(group2.getMembers().contains(relevant));
+    }
+
+    @Test
+    public void testGroupTracksApplicationOfChangedAncestor() {
+        final DynamicGroup group2 = app.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                .configure(DynamicGroup.ENTITY_FILTER, Predicates.instanceOf(TestEntity.class)));
+        TestApplication app2 = TestApplication.Factory.newManagedInstanceForTests(app.getManagementContext());
+        final TestEntity e3 = app2.createAndManageChild(EntitySpec.create(TestEntity.class));
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of(e1, e2));
+            }});
+
+        group2.config().set(DynamicGroup.ANCESTOR, app2);
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of(e3));
+            }});
+
+        // now told of changes in the new ancestor's application, and not the old
+        final TestEntity e4 = app2.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity irrelevant = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of(e3, e4));
+            }});
+        assertFalse(group2.getMembers().contains(irrelevant));
+    }
+
+    @Test
+    public void testGroupAddsMemberWhenTagChangeMakesItMatch() {
+        final DynamicGroup group2 = app.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                .configure(DynamicGroup.ENTITY_FILTER, new Predicate<Entity>() {
+                    @Override public boolean apply(Entity input) {
+                        return input.tags().containsTag("wanted");
+                    }}));
+        Asserts.succeedsContinually(ImmutableMap.of("timeout", VERY_SHORT_WAIT_MS), new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(group2.getMembers().isEmpty());
+            }});
+
+        e1.tags().addTag("wanted");
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of(e1));
+            }});
+        e1.tags().removeTag("wanted");
+        Asserts.succeedsEventually(new Runnable() {
+            @Override
+            public void run() {
+                assertTrue(group2.getMembers().isEmpty());
+            }});
+    }
+
+    public static class DynamicGroupRecordingEntitiesAdded extends DynamicGroupImpl {
+        final Set<Entity> entitiesAdded = Sets.newConcurrentHashSet();
+
+        @Override
+        protected void onEntityAdded(Entity item) {
+            entitiesAdded.add(item);
+            super.onEntityAdded(item);
+        }
+    }
+
     private <T> void assertContainsEventually(final Collection<? extends T> vals, final T val) {
         Asserts.succeedsEventually(new Runnable() {
             @Override
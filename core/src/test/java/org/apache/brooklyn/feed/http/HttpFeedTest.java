@@ -21,6 +21,8 @@ package org.apache.brooklyn.feed.http;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
+import java.net.InetAddress;
+import java.net.ServerSocket;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
@@ -72,7 +74,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     final static AttributeSensor<String> SENSOR_STRING = Sensors.newStringSensor("aString", "");
     final static AttributeSensor<Integer> SENSOR_INT = Sensors.newIntegerSensor( "aLong", "");
 
-    private static final long TIMEOUT_MS = 10*1000;
+    protected static final long TIMEOUT_MS = 10*1000;
     
     protected BetterMockWebServer server;
     protected URL baseUrl;
@@ -101,6 +103,10 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
         return app.newLocalhostProvisioningLocation();
     }
 
+    protected HttpFeed.Builder newFeedBuilder() {
+        return HttpFeed.builder();
+    }
+
     @AfterMethod(alwaysRun=true)
     @Override
     public void tearDown() throws Exception {
@@ -112,7 +118,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     
     @Test
     public void testPollsAndParsesHttpGetResponse() throws Exception {
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(baseUrl)
                 .poll(HttpPollConfig.forSensor(SENSOR_INT)
@@ -143,7 +149,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     
     @Test
     public void testSetsConnectionTimeout() throws Exception {
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(baseUrl)
                 .poll(new HttpPollConfig<Integer>(SENSOR_INT)
@@ -167,7 +173,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
         server.play();
         baseUrl = server.getUrl("/");
 
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(baseUrl)
                 .poll(new HttpPollConfig<Integer>(SENSOR_INT)
@@ -184,7 +190,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     
     @Test
     public void testPollsAndParsesHttpPostResponse() throws Exception {
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(baseUrl)
                 .poll(new HttpPollConfig<Integer>(SENSOR_INT)
@@ -211,7 +217,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
                     .setBody("Unauthorised"));
         }
         server.play();
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(server.getUrl("/"))
                 .poll(new HttpPollConfig<Integer>(SENSOR_INT)
@@ -240,7 +246,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
                     .setBody("Unauthorised"));
         }
         server.play();
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(server.getUrl("/"))
                 .poll(new HttpPollConfig<Integer>(SENSOR_INT)
@@ -257,7 +263,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     @Test(groups="Integration")
     // marked integration as it takes a wee while
     public void testSuspendResume() throws Exception {
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(baseUrl)
                 .poll(new HttpPollConfig<Integer>(SENSOR_INT)
@@ -288,7 +294,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     @Test(groups="Integration")
     // marked integration as it takes a wee while
     public void testStartSuspended() throws Exception {
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(baseUrl)
                 .poll(HttpPollConfig.forSensor(SENSOR_INT)
@@ -312,7 +318,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     @Test
     public void testPollsAndParsesHttpErrorResponseLocal() throws Exception {
         int unboundPort = Networking.nextAvailablePort(10000);
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUri("http://localhost:" + unboundPort + "/path/should/not/exist")
                 .poll(new HttpPollConfig<String>(SENSOR_STRING)
@@ -370,7 +376,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     @Test
     public void testFailsIfUsernameNull() throws Exception {
         try {
-            feed = HttpFeed.builder()
+            feed = newFeedBuilder()
                     .entity(entity)
                     .baseUrl(new URL("http://shouldNeverBeCalled.org"))
                     .credentials(null, "Pa55w0rd")
@@ -401,7 +407,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     }
     
     protected void runPreemptiveBasicAuth(String username, String password) throws Exception {
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(server.getUrl("/"))
                 .credentials(username, password)
@@ -422,7 +428,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     @Test
     public void testPreemptiveBasicAuthFailsIfNoCredentials() throws Exception {
         try {
-            feed = HttpFeed.builder()
+            feed = newFeedBuilder()
                     .entity(entity)
                     .baseUrl(new URL("http://shouldNeverBeCalled.org"))
                     .preemptiveBasicAuth(true)
@@ -440,7 +446,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     @Test
     public void testPreemptiveBasicAuthFailsIfUserContainsColon() throws Exception {
         try {
-            feed = HttpFeed.builder()
+            feed = newFeedBuilder()
                     .entity(entity)
                     .baseUrl(new URL("http://shouldNeverBeCalled.org"))
                     .credentials("userWith:colon", "Pa55w0rd")
@@ -473,7 +479,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
                 .setBody("Hello World"));
         server.play();
 
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(server.getUrl("/"))
                 .credentials(username, password)
@@ -499,7 +505,7 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     }
     
     private void newMultiFeed(URL baseUrl) {
-        feed = HttpFeed.builder()
+        feed = newFeedBuilder()
                 .entity(entity)
                 .baseUrl(baseUrl)
                 
@@ -521,7 +527,26 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
     }
     
 
-    private <T> void assertSensorEventually(final AttributeSensor<T> sensor, final T expectedVal, long timeout) {
+    @Test
+    public void testSocketTimeoutWhenServerDoesNotRespond() throws Exception {
+        // accepts connections (in the backlog) but never reads or responds
+        try (ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            feed = newFeedBuilder()
+                    .entity(entity)
+                    .baseUri("http://"+serverSocket.getInetAddress().getHostAddress()+":"+serverSocket.getLocalPort()+"/")
+                    .poll(new HttpPollConfig<Integer>(SENSOR_INT)
+                            .period(100)
+                            .connectionTimeout(Duration.ONE_SECOND)
+                            .socketTimeout(Duration.ONE_SECOND)
+                            .onSuccess(HttpValueFunctions.responseCode())
+                            .onException(Functions.constant(-1)))
+                    .build();
+
+            assertSensorEventually(SENSOR_INT, -1, TIMEOUT_MS);
+        }
+    }
+
+    protected <T> void assertSensorEventually(final AttributeSensor<T> sensor, final T expectedVal, long timeout) {
         Asserts.succeedsEventually(ImmutableMap.of("timeout", timeout), new Callable<Void>() {
             @Override
             public Void call() {
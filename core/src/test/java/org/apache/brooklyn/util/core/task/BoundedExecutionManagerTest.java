@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+public class BoundedExecutionManagerTest {
+
+    private BasicExecutionManager em;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.EXECUTOR_MODE, BasicExecutionManager.ExecutorMode.BOUNDED);
+        props.put(BasicExecutionManager.BOUNDED_CORE_THREADS, 1);
+        props.put(BasicExecutionManager.BOUNDED_STARVATION_THRESHOLD, Duration.millis(200));
+        em = new BasicExecutionManager("mycontext", props);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (em != null) em.shutdownNow();
+    }
+
+    @Test
+    public void testEffectorsRunBeforeBackgroundTasks() throws Exception {
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(MutableList.<String>of());
+
+        // occupy the only thread so that subsequent submissions are queued
+        Task<?> blocking = em.submit(MutableMap.of(), new BasicTask<Void>(() -> { blocker.await(); return null; }));
+        Task<?> background = em.submit(MutableMap.of("tags", MutableList.of(BrooklynTaskTags.TRANSIENT_TASK_TAG)),
+                new BasicTask<Void>(() -> { order.add("background"); return null; }));
+        Task<?> effector = em.submit(MutableMap.of("tags", MutableList.of(BrooklynTaskTags.EFFECTOR_TAG)),
+                new BasicTask<Void>(() -> { order.add("effector"); return null; }));
+
+        blocker.countDown();
+        blocking.get(Duration.TEN_SECONDS);
+        background.get(Duration.TEN_SECONDS);
+        effector.get(Duration.TEN_SECONDS);
+
+        assertEquals(order, ImmutableList.of("effector", "background"));
+    }
+
+    @Test
+    public void testTaskWaitingOnQueuedTaskDoesNotDeadlock() throws Exception {
+        Task<String> parent = em.submit(new BasicTask<String>(() -> {
+            Task<String> child = em.submit(new BasicTask<String>(() -> "done"));
+            return child.get();
+        }));
+        assertEquals(parent.get(Duration.TEN_SECONDS), "done");
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> executorMetrics = (Map<String, Object>) em.getMetrics().get("executor");
+        assertTrue((Long) executorMetrics.get("starvationRescues") >= 1, "metrics="+executorMetrics);
+    }
+
+    @Test
+    public void testMetricsRecordCompletedTasks() throws Exception {
+        em.submit(new BasicTask<Void>(() -> null)).get(Duration.TEN_SECONDS);
+
+        // completion is recorded after the future is done, and task listeners are also counted
+        Asserts.succeedsEventually(() -> {
+            Map<String, Object> metrics = em.getMetrics();
+            assertEquals(metrics.get("mode"), BasicExecutionManager.ExecutorMode.BOUNDED);
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> byCategory = (Map<String, Map<String, Object>>) ((Map<String, Object>) metrics.get("executor")).get("byCategory");
+            assertTrue((Long) byCategory.get("other").get("completed") >= 1, "metrics="+metrics);
+        });
+    }
+
+    @Test
+    public void testRescuesAllQueuedTasksWhilePoolIsStarved() throws Exception {
+        final int numQueued = 5;
+        final CountDownLatch queuedDone = new CountDownLatch(numQueued);
+
+        // the only pool thread waits for work that is queued behind it
+        Task<Boolean> blocking = em.submit(new BasicTask<Boolean>(() -> queuedDone.await(30, TimeUnit.SECONDS)));
+        for (int i = 0; i < numQueued; i++) {
+            em.submit(new BasicTask<Void>(() -> { queuedDone.countDown(); return null; }));
+        }
+        assertTrue(blocking.get(Duration.THIRTY_SECONDS));
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> executorMetrics = (Map<String, Object>) em.getMetrics().get("executor");
+        assertTrue((Long) executorMetrics.get("starvationRescues") >= numQueued, "metrics="+executorMetrics);
+    }
+
+    @Test
+    public void testLongRunningTasksSaturatingPoolDoNotCauseRescue() throws Exception {
+        final AtomicBoolean keepRunning = new AtomicBoolean(true);
+        final CountDownLatch queuedDone = new CountDownLatch(5);
+
+        // the only pool thread is busy (runnable) for several starvation thresholds, rather than waiting
+        Task<?> longRunning = em.submit(new BasicTask<Void>(() -> {
+            while (keepRunning.get()) {
+                // busy
+            }
+            return null;
+        }));
+        for (int i = 0; i < 5; i++) {
+            em.submit(new BasicTask<Void>(() -> { queuedDone.countDown(); return null; }));
+        }
+        Thread.sleep(1000);
+        assertEquals(queuedDone.getCount(), 5);
+        assertEquals(getExecutorMetrics(em).get("starvationRescues"), 0L);
+
+        keepRunning.set(false);
+        longRunning.get(Duration.TEN_SECONDS);
+        assertTrue(queuedDone.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testThreadCountBoundedWhenLongRunningTasksSaturatePool() throws Exception {
+        final String contextId = "bounded-saturation";
+        final int coreThreads = 2;
+        final int maxOverflowThreads = 2;
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.EXECUTOR_MODE, BasicExecutionManager.ExecutorMode.BOUNDED);
+        props.put(BasicExecutionManager.BOUNDED_CORE_THREADS, coreThreads);
+        props.put(BasicExecutionManager.BOUNDED_MAX_OVERFLOW_THREADS, maxOverflowThreads);
+        props.put(BasicExecutionManager.BOUNDED_QUEUE_CAPACITY, 5);
+        props.put(BasicExecutionManager.BOUNDED_BACKPRESSURE_TIMEOUT, Duration.millis(20));
+        props.put(BasicExecutionManager.BOUNDED_STARVATION_THRESHOLD, Duration.millis(100));
+        final BasicExecutionManager saturated = new BasicExecutionManager(contextId, props);
+        try {
+            final CountDownLatch release = new CountDownLatch(1);
+            final int numTasks = 30;
+            List<Task<?>> tasks = MutableList.of();
+            // more long-running tasks than pool threads, overflowing the queue and starving the pool
+            for (int i = 0; i < numTasks; i++) {
+                tasks.add(saturated.submit(new BasicTask<Boolean>(() -> release.await(30, TimeUnit.SECONDS))));
+            }
+
+            // pool and overflow threads, plus the scheduler thread
+            final int maxThreads = coreThreads + maxOverflowThreads + 1;
+            Asserts.succeedsContinually(MutableMap.of("timeout", Duration.ONE_SECOND), () -> {
+                int count = countThreads("brooklyn-execmanager-" + contextId + "-");
+                assertTrue(count <= maxThreads, "threads="+count+"; metrics="+getExecutorMetrics(saturated));
+            });
+            Map<String, Object> metrics = getExecutorMetrics(saturated);
+            assertTrue((Long) metrics.get("overflowed") > 0, "metrics="+metrics);
+            assertTrue((Integer) metrics.get("overflowThreads") <= maxOverflowThreads, "metrics="+metrics);
+
+            release.countDown();
+            for (Task<?> task : tasks) {
+                task.get(Duration.THIRTY_SECONDS);
+            }
+        } finally {
+            saturated.shutdownNow();
+        }
+    }
+
+    private static int countThreads(String namePrefix) {
+        int result = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (t.isAlive() && t.getName().startsWith(namePrefix)) result++;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> getExecutorMetrics(BasicExecutionManager em) {
+        return (Map<String, Object>) em.getMetrics().get("executor");
+    }
+
+    @Test
+    public void testMetricsRecordedPerTag() throws Exception {
+        em.submit(MutableMap.of("tags", MutableList.of(BrooklynTaskTags.EFFECTOR_TAG)), new BasicTask<Void>(() -> null))
+                .get(Duration.TEN_SECONDS);
+
+        Asserts.succeedsEventually(() -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Map<String, Object>> byTag = (Map<String, Map<String, Object>>) ((Map<String, Object>) em.getMetrics().get("executor")).get("byTag");
+            assertTrue((Long) byTag.get(BrooklynTaskTags.EFFECTOR_TAG).get("completed") >= 1, "byTag="+byTag);
+        });
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+public class HashedWheelScheduledExecutorTest {
+
+    private HashedWheelScheduledExecutor scheduler;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        // small wheel so that deadlines span several rounds
+        scheduler = new HashedWheelScheduledExecutor(Duration.millis(5), 8, 2, Duration.ZERO,
+                new ThreadFactoryBuilder().setDaemon(true).build());
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testRunsInDeadlineOrder() throws Exception {
+        final List<Integer> order = Collections.synchronizedList(MutableList.<Integer>of());
+        ScheduledFuture<?> last = scheduler.schedule(() -> order.add(3), 150, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> order.add(1), 10, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> order.add(2), 80, TimeUnit.MILLISECONDS);
+
+        assertTrue(last.getDelay(TimeUnit.MILLISECONDS) > 0);
+        last.get(10, TimeUnit.SECONDS);
+        assertEquals(order, ImmutableList.of(1, 2, 3));
+        assertTrue(last.isDone());
+        assertEquals(scheduler.getMetrics().get("fired"), 3L);
+    }
+
+    @Test
+    public void testCallableResult() throws Exception {
+        assertEquals(scheduler.schedule(() -> "done", 20, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS), "done");
+    }
+
+    @Test
+    public void testCancelledDoesNotRun() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        ScheduledFuture<?> future = scheduler.schedule(count::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+
+        scheduler.schedule(() -> {}, 100, TimeUnit.MILLISECONDS).get(10, TimeUnit.SECONDS);
+        assertEquals(count.get(), 0);
+        Asserts.eventually(() -> scheduler.getMetrics().get("pending"), p -> p.equals(0L));
+    }
+
+    @Test
+    public void testFixedDelayRepeatsUntilCancelled() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(count::incrementAndGet, 0, 10, TimeUnit.MILLISECONDS);
+        Asserts.eventually(count::get, c -> c >= 3);
+        future.cancel(false);
+        int afterCancel = count.get();
+        Asserts.succeedsContinually(() -> assertTrue(count.get() <= afterCancel + 1, "count=" + count.get()));
+    }
+
+    @Test
+    public void testCoalescesDeadlinesToWindow() throws Exception {
+        scheduler.shutdownNow();
+        scheduler = new HashedWheelScheduledExecutor(Duration.millis(5), 8, 2, Duration.millis(100),
+                new ThreadFactoryBuilder().setDaemon(true).build());
+        ScheduledFuture<?> f1 = scheduler.schedule(() -> {}, 1, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> f2 = scheduler.schedule(() -> {}, 30, TimeUnit.MILLISECONDS);
+        // both rounded up to the same window boundary
+        assertTrue(Math.abs(f1.getDelay(TimeUnit.MILLISECONDS) - f2.getDelay(TimeUnit.MILLISECONDS)) <= 1);
+        f1.get(10, TimeUnit.SECONDS);
+        f2.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testShutdownRejectsNewJobs() throws Exception {
+        scheduler.shutdown();
+        assertTrue(scheduler.isShutdown());
+        Asserts.assertFailsWith((Runnable) () -> scheduler.schedule(() -> {}, 1, TimeUnit.MILLISECONDS),
+                RejectedExecutionException.class);
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(scheduler.isTerminated());
+    }
+
+    @Test
+    public void testShutdownNowReturnsUndispatchedJobs() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        ScheduledFuture<?> later = scheduler.schedule(() -> runs.incrementAndGet(), 1, TimeUnit.HOURS);
+        ScheduledFuture<?> cancelled = scheduler.schedule(() -> runs.incrementAndGet(), 1, TimeUnit.HOURS);
+        cancelled.cancel(false);
+        // give the wheel a tick to move the jobs into their buckets
+        Thread.sleep(50);
+
+        List<Runnable> result = scheduler.shutdownNow();
+        assertEquals(result, ImmutableList.of(later));
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(runs.get(), 0);
+    }
+
+    @Test
+    public void testScheduledTasksInExecutionManager() throws Exception {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.SCHEDULER_MODE, BasicExecutionManager.SchedulerMode.TIMER_WHEEL);
+        BasicExecutionManager em = new BasicExecutionManager("mycontext", props);
+        try {
+            final AtomicInteger i = new AtomicInteger();
+            ScheduledTask t = ScheduledTask.builder(() -> new BasicTask<Integer>(i::incrementAndGet))
+                    .displayName("test-wheel")
+                    .period(Duration.millis(20))
+                    .maxIterations(5)
+                    .build();
+            em.submit(t);
+            t.blockUntilEnded(Duration.TEN_SECONDS);
+            assertEquals(i.get(), 5);
+            assertFalse(t.isError());
+
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metrics = (Map<String, Object>) em.getMetrics().get("scheduler");
+            assertTrue((Long) metrics.get("fired") >= 5, "metrics=" + metrics);
+        } finally {
+            em.shutdownNow();
+        }
+    }
+}
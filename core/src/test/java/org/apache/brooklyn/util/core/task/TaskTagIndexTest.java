@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+public class TaskTagIndexTest {
+
+    @Test
+    public void testPreservesOrderPerTag() {
+        TaskTagIndex index = new TaskTagIndex();
+        Task<?> t1 = new BasicTask<Void>(() -> {});
+        Task<?> t2 = new BasicTask<Void>(() -> {});
+        Task<?> t3 = new BasicTask<Void>(() -> {});
+        index.add("a", t2);
+        index.add("b", t3);
+        index.add("a", t1);
+        index.add("b", t1);
+
+        assertEquals(index.getCopy("a"), ImmutableList.of(t2, t1));
+        assertEquals(index.getCopyWithAnyTag(ImmutableList.of("b", "a")), ImmutableSet.of(t3, t1, t2));
+        assertEquals(index.getTags(), ImmutableSet.of("a", "b"));
+    }
+
+    @Test
+    public void testRemovesTagWhenEmpty() {
+        TaskTagIndex index = new TaskTagIndex();
+        Task<?> t1 = new BasicTask<Void>(() -> {});
+        index.add("a", t1);
+
+        assertFalse(index.remove("b", t1));
+        assertTrue(index.remove("a", t1));
+        assertFalse(index.containsTag("a"));
+        assertNull(index.getLiveOrNull("a"));
+        assertTrue(index.getCopy("a").isEmpty());
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.javalang.Threads;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class VirtualThreadExecutionManagerTest {
+
+    private BasicExecutionManager em;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.VIRTUAL_THREADS_ENABLED, true);
+        props.put(BasicExecutionManager.VIRTUAL_THREADS_CATEGORIES, "background");
+        em = new BasicExecutionManager("mycontext", props);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (em != null) em.shutdownNow();
+    }
+
+    @Test
+    public void testRoutesConfiguredCategoriesToVirtualThreads() throws Exception {
+        assertEquals(em.isVirtualThreadsEnabled(), Threads.isVirtualThreadSupported());
+
+        Task<Boolean> background = em.submit(MutableMap.of("tags", MutableList.of(BrooklynTaskTags.TRANSIENT_TASK_TAG)),
+                new BasicTask<Boolean>(() -> Threads.isVirtual(Thread.currentThread())));
+        Task<Boolean> other = em.submit(new BasicTask<Boolean>(() -> Threads.isVirtual(Thread.currentThread())));
+
+        assertEquals(background.get(Duration.TEN_SECONDS), (Boolean) Threads.isVirtualThreadSupported());
+        assertFalse(other.get(Duration.TEN_SECONDS));
+    }
+
+    @Test
+    public void testCurrentTaskAndSubmitterStackOnVirtualThread() throws Exception {
+        final CrossTaskThreadLocalStack<String> stack = new CrossTaskThreadLocalStack<>();
+        em.setVirtualThreadRouting(t -> true);
+
+        Task<Boolean> parent = em.submit(new BasicTask<Boolean>(() -> {
+            final Task<?> self = Tasks.current();
+            stack.push("outer");
+            try {
+                Task<Boolean> child = em.submit(new BasicTask<Boolean>(() ->
+                        self.equals(Tasks.current().getSubmittedByTask()) && stack.stream().anyMatch("outer"::equals)));
+                return self != null && child.get();
+            } finally {
+                stack.pop();
+            }
+        }));
+        assertTrue(parent.get(Duration.TEN_SECONDS));
+    }
+}
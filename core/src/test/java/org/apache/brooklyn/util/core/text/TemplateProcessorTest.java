@@ -19,9 +19,11 @@
 package org.apache.brooklyn.util.core.text;
 
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 import freemarker.core.InvalidReferenceException;
+import freemarker.template.TemplateHashModel;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.entity.Group;
 import org.apache.brooklyn.api.location.LocationSpec;
@@ -46,6 +48,8 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.util.Map;
+
 import static org.testng.Assert.assertEquals;
 
 public class TemplateProcessorTest extends BrooklynAppUnitTestSupport {
@@ -321,4 +325,41 @@ public class TemplateProcessorTest extends BrooklynAppUnitTestSupport {
         assertEquals(result, "war = peace");
     }
 
+
+    @Test
+    public void testTemplateCacheAndFastPaths() throws Exception {
+        TemplateProcessor.clearTemplateCache();
+        Map<String, Long> before = TemplateProcessor.getTemplateCacheMetrics();
+        Map<String, Object> subs = ImmutableMap.<String,Object>of("mykey", "myval", "h", ImmutableMap.of("k", 42));
+
+        assertEquals(TemplateProcessor.processTemplateContents("plain text, with $ and # and <b>", subs), "plain text, with $ and # and <b>");
+        assertEquals(TemplateProcessor.processTemplateContents("${mykey}", subs), "myval");
+        assertEquals(TemplateProcessor.processTemplateContents("${h.k}", subs), "42");
+        for (int i = 0; i < 3; i++) {
+            assertEquals(TemplateProcessor.processTemplateContents("a ${mykey} b", subs), "a myval b");
+        }
+
+        Map<String, Long> after = TemplateProcessor.getTemplateCacheMetrics();
+        assertEquals(after.get("fastPathPlain") - before.get("fastPathPlain"), 1L);
+        assertEquals(after.get("fastPathVariable") - before.get("fastPathVariable"), 1L);
+        // number is not a plain string, so is formatted by freemarker
+        assertEquals(after.get("misses") - before.get("misses"), 2L);
+        assertEquals(after.get("hits") - before.get("hits"), 2L);
+    }
+
+    @Test
+    public void testSingleVariableObjectFastPath() throws Exception {
+        TemplateHashModel subs = (TemplateHashModel) TemplateProcessor.wrapAsTemplateModel(
+                ImmutableMap.<String,Object>of("list", ImmutableList.of(1, 2), "m", ImmutableMap.of("n", 3)));
+        assertEquals(TemplateProcessor.processTemplateContents("test", "${list}", subs, true, false), ImmutableList.of(1, 2));
+        assertEquals(TemplateProcessor.processTemplateContents("test", "${m.n}", subs, true, false), 3);
+        assertEquals(TemplateProcessor.processTemplateContents("test", "${missing}", subs, true, false, TemplateProcessor.InterpolationErrorMode.IGNORE), "${missing}");
+        assertEquals(TemplateProcessor.processTemplateContents("test", "${m.missing}", subs, true, false, TemplateProcessor.InterpolationErrorMode.BLANK), "");
+        try {
+            TemplateProcessor.processTemplateContents("test", "${missing}", subs, true, false, TemplateProcessor.InterpolationErrorMode.FAIL);
+            Asserts.shouldHaveFailedPreviously();
+        } catch (Exception e) {
+            Asserts.expectedFailureContains(e, "missing");
+        }
+    }
 }
@@ -23,6 +23,7 @@ import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 
 import java.util.List;
+import java.util.Map;
 
 import javax.xml.xpath.XPathConstants;
 
@@ -38,6 +39,7 @@ import com.google.common.annotations.Beta;
 import com.google.common.base.Joiner;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 
 public class XmlUtilTest {
@@ -135,6 +137,31 @@ public class XmlUtilTest {
         assertEquals(XmlUtil.xpathHandlingIllegalChars(xml.toString(), "/a/b[text()]"), "myb");
     }
 
+    @Test
+    public void testReadRootChildren() throws Exception {
+        String xml = "<entity><id>myid</id><type>mytype</type><config><id>nested</id></config>"
+                + "<searchPath><string>a</string><list><string>b</string></list></searchPath>"
+                + "<parent><a>x</a>y</parent><id>second</id></entity>";
+        Map<String, Object> result = XmlUtil.readRootChildrenHandlingIllegalChars(xml,
+                ImmutableSet.of("id", "type", "parent", "catalogItemId"), ImmutableSet.of("searchPath"));
+        
+        // same as the corresponding xpath
+        assertEquals(result.get("id"), XmlUtil.xpath(xml, "/entity/id"));
+        assertEquals(result.get("id"), "myid");
+        assertEquals(result.get("type"), "mytype");
+        assertEquals(result.get("parent"), XmlUtil.xpath(xml, "/entity/parent"));
+        assertEquals(result.get("searchPath"), ImmutableList.of("a", "b"));
+        assertFalse(result.containsKey("catalogItemId"), "result="+result);
+    }
+
+    @Test
+    public void testReadRootChildrenHandlingIllegalChars() throws Exception {
+        String xml = "<x><y>a&#x1b;b</y><z><string>&#x1b;</string></z></x>";
+        Map<String, Object> result = XmlUtil.readRootChildrenHandlingIllegalChars(xml, ImmutableSet.of("y"), ImmutableSet.of("z"));
+        assertEquals(result.get("y"), XmlUtil.xpathHandlingIllegalChars(xml, "/x/y"));
+        assertEquals(result.get("z"), ImmutableList.of("&#x1b;"));
+    }
+
     @Test
     public void testEscaper() throws Exception {
         // Escapes unicode char, ignoring things around it
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.executor;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.util.core.javalang.BrooklynHttpConfig;
+import org.apache.brooklyn.util.http.executor.HttpExecutor;
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.http.executor.HttpResponse;
+import org.apache.brooklyn.util.http.executor.apacheclient.PooledHttpExecutorImpl;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.mockwebserver.MockResponse;
+
+/** Runs the {@link HttpExecutorImplTest} tests against {@link PooledHttpExecutorImpl}, and checks connections are reused. */
+public class PooledHttpExecutorImplTest extends HttpExecutorImplTest {
+
+    @AfterClass(alwaysRun=true)
+    public void shutdownPools() {
+        PooledHttpExecutorImpl.shutdownConnectionPools();
+    }
+
+    @Override
+    protected Map<?, ?> getProps() {
+        return ImmutableMap.of(
+                HttpExecutorFactory.HTTP_EXECUTOR_CLASS_CONFIG, PooledHttpExecutorImpl.class.getName(),
+                HttpExecutorFactory.HTTP_EXECUTOR_CLASS_CONFIG_PREFIX + PooledHttpExecutorImpl.MAX_PER_ROUTE, "5");
+    }
+
+    @Test
+    public void testConnectionReusedAcrossExecutors() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            server.enqueue(new MockResponse().setResponseCode(200).setBody(HTTP_BODY));
+        }
+        for (int i = 0; i < 3; i++) {
+            HttpExecutor executor = factory.getHttpExecutor(getProps());
+            assertTrue(executor instanceof PooledHttpExecutorImpl, "executor="+executor);
+            HttpResponse response = executor.execute(new HttpRequest.Builder()
+                    .method("GET")
+                    .uri(baseUrl.toURI())
+                    .build());
+            assertEquals(new String(ByteStreams.toByteArray(response.getContent())), HTTP_BODY);
+            // sequence number is the index of the request on its connection
+            assertEquals(server.takeRequest().getSequenceNumber(), i);
+        }
+
+        Map<String, Map<String, Integer>> metrics = PooledHttpExecutorImpl.getConnectionPoolMetrics();
+        assertTrue(metrics.values().stream().anyMatch(m -> m.get("available") >= 1 && m.get("leased") == 0), "metrics="+metrics);
+    }
+
+    @Test
+    public void testPooledSettingFromManagementContextUsedByAllFactoryMethods() throws Exception {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BrooklynHttpConfig.POOLED_CONNECTIONS, true);
+        LocalManagementContext mgmt = LocalManagementContextForTests.newInstance(props);
+        try {
+            TestApplication app = mgmt.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+            assertTrue(BrooklynHttpConfig.newHttpExecutor(app) instanceof PooledHttpExecutorImpl);
+            HttpExecutor executor = app.getExecutionContext().submit("get executor", () -> BrooklynHttpConfig.newHttpExecutorDefault()).get();
+            assertTrue(executor instanceof PooledHttpExecutorImpl, "executor="+executor);
+        } finally {
+            Entities.destroyAll(mgmt);
+        }
+    }
+}
@@ -696,7 +696,12 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
 
         final ComputeService computeService = getComputeService(setup);
         CloudMachineNamer cloudMachineNamer = getCloudMachineNamer(setup);
-        String groupId = elvis(setup.get(GROUP_ID), cloudMachineNamer.generateNewGroupId(setup));
+        Duration batchWindow = setup.get(MACHINE_CREATION_BATCH_WINDOW);
+        boolean batching = batchWindow != null && batchWindow.isPositive();
+        String groupId = setup.get(GROUP_ID);
+        if (Strings.isBlank(groupId)) {
+            groupId = batching ? generateSharedGroupIdForBatching(cloudMachineNamer, setup) : cloudMachineNamer.generateNewGroupId(setup);
+        }
         NodeMetadata node = null;
         JcloudsMachineLocation machineLocation = null;
         Duration semaphoreTimestamp = null;
@@ -724,6 +729,9 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
             semaphoreTimestamp = Duration.of(provisioningStopwatch);
 
             LoginCredentials userCredentials = null;
+            Statement userCreationScript = null;
+            // a password is generated for the created user unless one is configured
+            boolean userPasswordGenerated = Strings.isBlank(setup.get(PASSWORD));
             Set<? extends NodeMetadata> nodes;
             Template template;
 
@@ -744,7 +752,11 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
                                 .skipJcloudsSshing(true)
                                 .build();
                     } else if (options.waitForConnectable()) {
+                        Statement previousScript = template.getOptions().getRunScript();
                         userCredentials = initTemplateForCreateUser(template, setup);
+                        if (template.getOptions().getRunScript() != previousScript) {
+                            userCreationScript = template.getOptions().getRunScript();
+                        }
                     }
                 }
 
@@ -773,7 +785,18 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
                 LOG.debug("jclouds using template {} / options {} to provision machine in {}",
                         new Object[] {template, template.getOptions(), getCreationString(setup)});
 
-                nodes = computeService.createNodesInGroup(groupId, 1, template);
+                if (batching) {
+                    // created with other concurrent requests with an equivalent template, differing only in user metadata and tags
+                    JcloudsMachineCreationBatcher.CreatedNode created = JcloudsMachineCreationBatcher.get(getManagementContext())
+                            .createNode(computeService, groupId, template, userCredentials, userCreationScript, userPasswordGenerated,
+                                    batchWindow, setup.get(MACHINE_CREATION_BATCH_MAX_SIZE));
+                    LOG.debug("jclouds created {} in batch of {} for {}", new Object[] {created.getNode(), created.getBatchSize(), getCreationString(setup)});
+                    nodes = ImmutableSet.of(created.getNode());
+                    // the user created by the batch's script, whose generated password may differ from that generated here
+                    userCredentials = created.getUserCredentials();
+                } else {
+                    nodes = computeService.createNodesInGroup(groupId, 1, template);
+                }
                 provisionTimestamp = Duration.of(provisioningStopwatch);
             } finally {
                 machineCreationSemaphore.release();
@@ -1520,7 +1543,41 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
                 templateBuilder.minCores(2);
             }
 
-            template = templateBuilder.build();
+            // reuse the image/hardware/location previously chosen for the same constraints, if known;
+            // only for portable template builders, where we know the constraints
+            Stopwatch resolveStopwatch = Stopwatch.createStarted();
+            JcloudsTemplateResolutionCache templateCache = null;
+            List<Object> templateCacheKey = null;
+            Duration templateCacheTtl = config.get(TEMPLATE_RESOLUTION_CACHE_TTL);
+            if (templateBuilder instanceof PortableTemplateBuilder<?> && templateCacheTtl != null && templateCacheTtl.isPositive()) {
+                templateCache = JcloudsTemplateResolutionCache.get(getManagementContext());
+                templateCacheKey = JcloudsTemplateResolutionCache.key(computeService, getProvider(),
+                        ((PortableTemplateBuilder<?>)templateBuilder).getConstraintsDescription(),
+                        config.getStringKey(JcloudsLocationConfig.IMAGE_CHOOSER.getName()));
+                JcloudsTemplateResolutionCache.ResolvedTemplate resolved = templateCache.lookup(templateCacheKey);
+                if (resolved != null) {
+                    try {
+                        template = ((PortableTemplateBuilder<?>)templateBuilder).buildResolved(resolved.getImageId(), resolved.getHardwareId(), resolved.getLocationId());
+                        templateCache.recordHit(resolved, Duration.of(resolveStopwatch));
+                        LOG.debug("jclouds using cached choice {} for provisioning in {} for {}; built in {} (originally resolved in {})", new Object[] {
+                                resolved, this, getCreationString(config), Duration.of(resolveStopwatch), resolved.getResolutionTime()});
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        LOG.debug("jclouds unable to use cached choice "+resolved+" for provisioning in "+this+"; resolving again: "+e);
+                        templateCache.recordStale(templateCacheKey);
+                        template = null;
+                        resolveStopwatch.reset().start();
+                    }
+                }
+            }
+
+            if (template == null) {
+                template = templateBuilder.build();
+                if (templateCache != null && template != null && template.getImage() != null && template.getHardware() != null) {
+                    templateCache.put(templateCacheKey, template.getImage().getId(), template.getHardware().getId(),
+                            (template.getLocation() != null ? template.getLocation().getId() : null), Duration.of(resolveStopwatch), templateCacheTtl);
+                }
+            }
             if (template==null) throw new IllegalStateException("No matching template; check image and hardware constraints (e.g. OS, RAM); using "+templateBuilder);
 
             image = template.getImage();
@@ -1847,6 +1904,30 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
         return userCreation.credentials();
     }
 
+    /**
+     * The group id used when batching machine creation (see {@link JcloudsLocationConfig#MACHINE_CREATION_BATCH_WINDOW}):
+     * that generated for the parent of the requesting entity, shared by its siblings (e.g. the members of a cluster)
+     * so that their machines can be created together. It is generated once and reused, as generated ids include a timestamp.
+     */
+    protected String generateSharedGroupIdForBatching(final CloudMachineNamer cloudMachineNamer, final ConfigBag setup) {
+        Object context = setup.get(CALLER_CONTEXT);
+        Entity entity = (context instanceof Entity) ? (Entity)context : null;
+        final Entity parent = (entity != null) ? entity.getParent() : null;
+        List<Object> key;
+        if (parent != null) {
+            key = ImmutableList.<Object>of(getId(), parent.getId());
+        } else if (entity != null) {
+            key = ImmutableList.<Object>of(getId(), entity.getId());
+        } else {
+            key = ImmutableList.<Object>of(getId());
+        }
+        return JcloudsMachineCreationBatcher.get(getManagementContext()).getSharedGroupId(key, new Callable<String>() {
+            @Override
+            public String call() {
+                return cloudMachineNamer.generateNewGroupId(parent == null ? setup : ConfigBag.newInstanceCopying(setup).configure(CALLER_CONTEXT, parent));
+            }});
+    }
+
     /**
      * Set up the TemplateOptions to create the user.
      */
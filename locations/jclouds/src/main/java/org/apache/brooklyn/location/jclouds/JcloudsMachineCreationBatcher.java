@@ -0,0 +1,412 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.NodeMetadataBuilder;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.domain.internal.TemplateImpl;
+import org.jclouds.compute.options.TemplateOptions;
+import org.jclouds.domain.LoginCredentials;
+import org.jclouds.scriptbuilder.domain.OsFamily;
+import org.jclouds.scriptbuilder.domain.Statement;
+import org.jclouds.scriptbuilder.domain.Statements;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Predicates;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Coalesces concurrent machine creations with equivalent templates into a single
+ * {@link ComputeService#createNodesInGroup(String, int, Template)} call,
+ * as used by {@link JcloudsLocation} when {@link JcloudsLocationConfig#MACHINE_CREATION_BATCH_WINDOW} is set.
+ * <p>
+ * The first request for a given template opens a batch and waits for the window (or until the batch is full)
+ * before creating all the machines requested in the meantime; the nodes created are then handed out one per request.
+ * Only requests in the same group whose templates are identical, other than user metadata and tags (which are usually
+ * specific to the requesting entity), are batched (see {@link #batchKey(ComputeService, String, Template, LoginCredentials, Statement, boolean)});
+ * each request's machine name is given to jclouds as one of the {@link TemplateOptions#nodeNames(Iterable) node names},
+ * and the node with that name handed to the request. Where only some of the nodes could be created, the others' requests fail individually.
+ * <p>
+ * Only the user metadata and tags common to all requests in a batch are given to the cloud; each request's own metadata and tags
+ * are applied to the {@link NodeMetadata} handed to it, but are not set on the machine in the cloud.
+ * As the group id generated by default is specific to the requesting entity, {@link JcloudsLocation} uses a group shared
+ * by the siblings of the requesting entity (see {@link #getSharedGroupId(List, Callable)}) when batching.
+ */
+@Beta
+public class JcloudsMachineCreationBatcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcloudsMachineCreationBatcher.class);
+
+    public static final ConfigKey<JcloudsMachineCreationBatcher> MACHINE_CREATION_BATCHER = ConfigKeys.newConfigKey(JcloudsMachineCreationBatcher.class, "internals.brooklyn.jclouds.machine_creation_batcher");
+
+    /** user metadata set by {@link JcloudsLocation} for the machine's name, given to each node as its node name */
+    private static final String NAME_USER_METADATA = "Name";
+
+    /** stands in for the script in the key, which compares the rendered script instead */
+    private static final Statement SCRIPT_IN_KEY = Statements.exec("# script");
+
+    public static JcloudsMachineCreationBatcher get(ManagementContext mgmt) {
+        JcloudsMachineCreationBatcher batcher = mgmt.getScratchpad().get(MACHINE_CREATION_BATCHER);
+        if (batcher==null) {
+            synchronized (MACHINE_CREATION_BATCHER) {
+                batcher = mgmt.getScratchpad().get(MACHINE_CREATION_BATCHER);
+                if (batcher==null) {
+                    batcher = new JcloudsMachineCreationBatcher();
+                    mgmt.getScratchpad().put(MACHINE_CREATION_BATCHER, batcher);
+                }
+            }
+        }
+        return batcher;
+    }
+
+    /** The result of a request to create a machine: the node, and the template and created-user credentials it was created with. */
+    public static class CreatedNode {
+        private final NodeMetadata node;
+        private final Template template;
+        private final LoginCredentials userCredentials;
+        private final int batchSize;
+
+        protected CreatedNode(NodeMetadata node, Template template, LoginCredentials userCredentials, int batchSize) {
+            this.node = node;
+            this.template = template;
+            this.userCredentials = userCredentials;
+            this.batchSize = batchSize;
+        }
+        public NodeMetadata getNode() {
+            return node;
+        }
+        /** the template requested; the node was created with an equivalent template, differing only in user metadata and tags */
+        public Template getTemplate() {
+            return template;
+        }
+        /**
+         * credentials of the user created by the script, if any; the same for all machines in the batch, so where the password
+         * was generated this is the password generated for the first request in the batch
+         */
+        public LoginCredentials getUserCredentials() {
+            return userCredentials;
+        }
+        /** the number of machines created in the same call */
+        public int getBatchSize() {
+            return batchSize;
+        }
+    }
+
+    private static class Batch {
+        final List<Object> key;
+        final ComputeService computeService;
+        final String groupId;
+        /** the first request's template and created-user credentials, used for all machines in the batch */
+        final Template template;
+        final LoginCredentials userCredentials;
+        final int maxSize;
+        /** the template of each request, in order */
+        final List<Template> templates = MutableList.of();
+        /** the machine name of each request, in order, or null where not set */
+        final List<String> names = MutableList.of();
+        final CountDownLatch full = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        boolean closed;
+        List<Maybe<NodeMetadata>> results;
+
+        Batch(List<Object> key, ComputeService computeService, String groupId, Template template, LoginCredentials userCredentials, int maxSize) {
+            this.key = key;
+            this.computeService = computeService;
+            this.groupId = groupId;
+            this.template = template;
+            this.userCredentials = userCredentials;
+            this.maxSize = maxSize;
+        }
+    }
+
+    private final Map<List<Object>, Batch> openBatches = MutableMap.of();
+    /** group ids shared by requests with the same key, kept while requests keep coming so that later batches use the same group */
+    private final Cache<List<Object>, String> sharedGroupIds = CacheBuilder.newBuilder()
+            .expireAfterAccess(1, TimeUnit.HOURS)
+            .maximumSize(10000)
+            .build();
+    private long batchesCreated, nodesRequested, nodesFailed, nodesDestroyed;
+
+    protected JcloudsMachineCreationBatcher() {}
+
+    /**
+     * Creates a machine from the given template, together with any other machines requested in the same group
+     * with an equivalent template within the given window. Blocks until the batch has been created.
+     *
+     * @param userCredentials credentials of the user created by the template's script (if any); the node is returned with
+     *        the credentials of the first request in the batch, which are the same unless the password was generated
+     * @param userCreationScript the script which creates that user, if it is the template's script; this differs between requests
+     *        only in values which are not used afterwards (other than the credentials), so is not compared
+     * @param userPasswordGenerated whether the created user's password was generated for this request, rather than configured,
+     *        in which case it is not compared (and the password generated for the first request is used for the batch)
+     * @throws IllegalStateException if this request's node could not be created (other nodes in the batch may have been)
+     */
+    public CreatedNode createNode(ComputeService computeService, String groupId, Template template, LoginCredentials userCredentials,
+            @Nullable Statement userCreationScript, boolean userPasswordGenerated, Duration window, int maxBatchSize) {
+        List<Object> key = batchKey(computeService, groupId, template, userCredentials, userCreationScript, userPasswordGenerated);
+        Batch batch;
+        int index;
+        boolean leader = false;
+        synchronized (this) {
+            batch = openBatches.get(key);
+            if (batch == null) {
+                batch = new Batch(key, computeService, groupId, template, userCredentials, Math.max(1, maxBatchSize));
+                openBatches.put(key, batch);
+                leader = true;
+            }
+            index = batch.names.size();
+            batch.templates.add(template);
+            batch.names.add(template.getOptions().getUserMetadata().get(NAME_USER_METADATA));
+            nodesRequested++;
+            if (batch.names.size() >= batch.maxSize) {
+                close(batch);
+            }
+        }
+
+        // waits are uninterruptible so that others' machines are always created, and our machine is always returned
+        // (so the caller can release it); creation is bounded by jclouds' own timeouts
+        if (leader) {
+            Uninterruptibles.awaitUninterruptibly(batch.full, window.toMilliseconds(), TimeUnit.MILLISECONDS);
+            synchronized (this) {
+                close(batch);
+            }
+            create(batch);
+        } else {
+            LOG.debug("Joined batch to create machines in group {} ({} requested so far)", batch.groupId, index+1);
+            Uninterruptibles.awaitUninterruptibly(batch.done);
+        }
+
+        Maybe<NodeMetadata> result = batch.results.get(index);
+        if (result.isAbsent()) {
+            synchronized (this) {
+                nodesFailed++;
+            }
+        }
+        return new CreatedNode(withRequestedMetadata(result.get(), template), template, batch.userCredentials, batch.results.size());
+    }
+
+    /**
+     * Returns the group id to use for requests with the given key (e.g. the location and the requesting entity's parent),
+     * generating it with the given generator the first time; the same id is returned for the same key while it continues
+     * to be requested, so that requests from sibling entities (such as members of a cluster) can be batched in the same group.
+     */
+    public String getSharedGroupId(List<Object> key, Callable<String> generator) {
+        try {
+            return sharedGroupIds.get(key, generator);
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        }
+    }
+
+    /** Returns counts of batches created, nodes requested, nodes which could not be created, and extra nodes destroyed. */
+    public synchronized Map<String, Long> getMetrics() {
+        return MutableMap.of("batches", batchesCreated, "nodesRequested", nodesRequested, "nodesFailed", nodesFailed, "nodesDestroyed", nodesDestroyed);
+    }
+
+    /**
+     * Returns the key identifying requests which can be created together: the compute service, the group, the resolved image,
+     * hardware and location, the template options other than user metadata and tags, the rendered script
+     * (unless it is the given script to create the user), and the created user's credentials (other than a generated password).
+     */
+    protected List<Object> batchKey(ComputeService computeService, String groupId, Template template, LoginCredentials userCredentials,
+            @Nullable Statement userCreationScript, boolean userPasswordGenerated) {
+        TemplateOptions options = template.getOptions().clone();
+        // applied per request, to the node returned (see withRequestedMetadata)
+        options.getUserMetadata().clear();
+        options.tags(ImmutableSet.<String>of());
+        Object script = null;
+        if (options.getRunScript() != null && options.getRunScript() == userCreationScript) {
+            // determined by the user's credentials, which are compared
+            options.runScript(SCRIPT_IN_KEY);
+        } else if (options.getRunScript() != null) {
+            try {
+                script = options.getRunScript().render(OsFamily.UNIX);
+                options.runScript(SCRIPT_IN_KEY);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                // not renderable here; only batched with requests sharing the same script instance
+                script = options.getRunScript();
+            }
+        }
+        return MutableList.<Object>of(
+                computeService,
+                groupId,
+                template.getImage() == null ? null : template.getImage().getId(),
+                template.getHardware() == null ? null : template.getHardware().getId(),
+                template.getLocation() == null ? null : template.getLocation().getId(),
+                options.getClass(),
+                options,
+                script,
+                options.getLoginUser(),
+                options.getLoginPassword(),
+                options.getLoginPrivateKey(),
+                options.shouldBlockUntilRunning(),
+                userCredentials == null ? null : userCredentials.getUser(),
+                userCredentials == null || userPasswordGenerated ? null : userCredentials.getOptionalPassword().orNull(),
+                userCredentials == null ? null : userCredentials.getOptionalPrivateKey().orNull());
+    }
+
+    /** stops further requests joining the batch; must be called holding the lock on this */
+    private void close(Batch batch) {
+        if (!batch.closed) {
+            batch.closed = true;
+            openBatches.remove(batch.key);
+            batch.full.countDown();
+        }
+    }
+
+    private void create(Batch batch) {
+        List<String> names;
+        int size;
+        synchronized (this) {
+            names = ImmutableList.copyOf(Iterables.filter(batch.names, Predicates.notNull()));
+            size = batch.names.size();
+            batchesCreated++;
+        }
+        Map<Integer, Maybe<NodeMetadata>> results = MutableMap.of();
+        try {
+            LOG.info("Creating {} machine{} in group {} in a single batch", new Object[] {size, (size == 1 ? "" : "s"), batch.groupId});
+            Set<? extends NodeMetadata> nodes;
+            Map<?, ? extends Throwable> nodeErrors;
+            try {
+                nodes = batch.computeService.createNodesInGroup(batch.groupId, size, templateForBatch(batch, names));
+                nodeErrors = MutableMap.of();
+            } catch (RunNodesException e) {
+                // some nodes may have been created; give those out and fail the remaining requests
+                LOG.warn("Failed to create "+e.getNodeErrors().size()+" of "+size+" machines in batch in group "+batch.groupId
+                        +"; "+e.getSuccessfulNodes().size()+" created: "+e.getMessage());
+                nodes = e.getSuccessfulNodes();
+                nodeErrors = e.getNodeErrors();
+            }
+
+            // give each request the node with its name, where jclouds used the names given, then the others in order
+            List<NodeMetadata> unassigned = MutableList.of();
+            for (NodeMetadata node : nodes) {
+                int index = (node.getName() == null) ? -1 : batch.names.indexOf(node.getName());
+                if (index >= 0 && !results.containsKey(index)) {
+                    results.put(index, Maybe.of(node));
+                } else {
+                    unassigned.add(node);
+                }
+            }
+            List<Throwable> errors = MutableList.<Throwable>copyOf(nodeErrors.values());
+            for (int i = 0; i < size; i++) {
+                if (results.containsKey(i)) continue;
+                if (!unassigned.isEmpty()) {
+                    results.put(i, Maybe.<NodeMetadata>of(unassigned.remove(0)));
+                } else {
+                    Throwable error = errors.isEmpty() ? null : errors.remove(0);
+                    String message = "Machine not created in batch of "+size+" in group "+batch.groupId+" ("+nodes.size()+" created)";
+                    results.put(i, error == null ? Maybe.<NodeMetadata>absent(message) : Maybe.<NodeMetadata>absent(message, error));
+                }
+            }
+            if (!unassigned.isEmpty()) {
+                LOG.warn("Created more machines ("+nodes.size()+") than requested ("+size+") in batch in group "+batch.groupId+"; destroying extra machines "+unassigned);
+                destroy(batch, unassigned);
+            }
+        } catch (Throwable e) {
+            Exceptions.propagateIfFatal(e);
+            results.clear();
+            for (int i = 0; i < size; i++) {
+                results.put(i, Maybe.<NodeMetadata>absent("Failed to create batch of "+size+" machines in group "+batch.groupId, e));
+            }
+        } finally {
+            List<Maybe<NodeMetadata>> resultsInOrder = MutableList.of();
+            for (int i = 0; i < size; i++) {
+                resultsInOrder.add(results.get(i));
+            }
+            batch.results = resultsInOrder;
+            batch.done.countDown();
+        }
+    }
+
+    /**
+     * the first request's template, with only the user metadata and tags common to all requests (so not the machine name),
+     * and with all requests' names as the node names
+     */
+    private Template templateForBatch(Batch batch, List<String> names) {
+        TemplateOptions options = batch.template.getOptions().clone();
+        Set<String> tags = Sets.newLinkedHashSet(options.getTags());
+        for (Template template : batch.templates) {
+            options.getUserMetadata().entrySet().retainAll(template.getOptions().getUserMetadata().entrySet());
+            tags.retainAll(template.getOptions().getTags());
+        }
+        options.getUserMetadata().remove(NAME_USER_METADATA);
+        options.tags(tags);
+        if (!names.isEmpty()) {
+            options.nodeNames(names);
+        }
+        return new TemplateImpl(batch.template.getImage(), batch.template.getHardware(), batch.template.getLocation(), options);
+    }
+
+    /** the node with the user metadata and tags of the request's template, as if it had been created individually */
+    private NodeMetadata withRequestedMetadata(NodeMetadata node, Template template) {
+        Map<String, String> userMetadata = MutableMap.copyOf(node.getUserMetadata());
+        userMetadata.putAll(template.getOptions().getUserMetadata());
+        Set<String> tags = Sets.newLinkedHashSet(node.getTags());
+        tags.addAll(template.getOptions().getTags());
+        return NodeMetadataBuilder.fromNodeMetadata(node)
+                .userMetadata(userMetadata)
+                .tags(tags)
+                .build();
+    }
+
+    private void destroy(Batch batch, List<NodeMetadata> nodes) {
+        for (NodeMetadata node : nodes) {
+            try {
+                batch.computeService.destroyNode(node.getId());
+                synchronized (this) {
+                    nodesDestroyed++;
+                }
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.warn("Failed to destroy extra machine "+node+" created in batch in group "+batch.groupId+"; it may need to be destroyed manually", e);
+            }
+        }
+    }
+}
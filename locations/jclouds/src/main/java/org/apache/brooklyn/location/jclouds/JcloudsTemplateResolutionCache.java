@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Remembers the image, hardware and location chosen by jclouds for a set of template constraints,
+ * so that {@link JcloudsLocation#buildTemplate(org.jclouds.compute.ComputeService, org.apache.brooklyn.util.core.config.ConfigBag, JcloudsLocationCustomizer)}
+ * does not have to list, filter and sort all the images and hardware profiles of the cloud for every machine provisioned.
+ * <p>
+ * There is one cache per management context, shared by all {@link JcloudsLocation}s; entries are keyed by the compute service
+ * (see {@link #key(Object, Object...)}), so children of a location using the same compute service share entries.
+ * Entries expire after the {@link JcloudsLocationConfig#TEMPLATE_RESOLUTION_CACHE_TTL} of the location which added them,
+ * and can be invalidated explicitly, e.g. when new images are known to have been published.
+ */
+@Beta
+public class JcloudsTemplateResolutionCache {
+
+    public static final ConfigKey<JcloudsTemplateResolutionCache> TEMPLATE_RESOLUTION_CACHE = ConfigKeys.newConfigKey(JcloudsTemplateResolutionCache.class, "internals.brooklyn.jclouds.template_resolution_cache");
+
+    /** the maximum number of entries kept; the oldest are discarded beyond this */
+    @VisibleForTesting
+    static final int MAX_ENTRIES = 1000;
+
+    public static JcloudsTemplateResolutionCache get(ManagementContext mgmt) {
+        JcloudsTemplateResolutionCache cache = mgmt.getScratchpad().get(TEMPLATE_RESOLUTION_CACHE);
+        if (cache==null) {
+            synchronized (TEMPLATE_RESOLUTION_CACHE) {
+                cache = mgmt.getScratchpad().get(TEMPLATE_RESOLUTION_CACHE);
+                if (cache==null) {
+                    cache = new JcloudsTemplateResolutionCache();
+                    mgmt.getScratchpad().put(TEMPLATE_RESOLUTION_CACHE, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /** Returns a key for the given compute service and the constraints which determine the template chosen. */
+    public static List<Object> key(Object computeService, Object ...constraints) {
+        return MutableList.<Object>of(computeService).appendAll(Arrays.asList(constraints)).asUnmodifiable();
+    }
+
+    /** The image, hardware and location chosen for a set of constraints. */
+    public static class ResolvedTemplate {
+        private final String imageId;
+        private final String hardwareId;
+        private final String locationId;
+        private final Duration resolutionTime;
+        private final long expiry;
+
+        protected ResolvedTemplate(String imageId, String hardwareId, String locationId, Duration resolutionTime, long expiry) {
+            this.imageId = imageId;
+            this.hardwareId = hardwareId;
+            this.locationId = locationId;
+            this.resolutionTime = resolutionTime;
+            this.expiry = expiry;
+        }
+        public String getImageId() {
+            return imageId;
+        }
+        public String getHardwareId() {
+            return hardwareId;
+        }
+        public String getLocationId() {
+            return locationId;
+        }
+        /** how long it took to resolve the template when it was not cached */
+        public Duration getResolutionTime() {
+            return resolutionTime;
+        }
+        @Override
+        public String toString() {
+            return "ResolvedTemplate[image="+imageId+", hardware="+hardwareId+", location="+locationId+"]";
+        }
+    }
+
+    private final Map<List<Object>, ResolvedTemplate> entries = MutableMap.of();
+    private long hits, misses, stale, invalidations, timeSavedMillis;
+
+    protected JcloudsTemplateResolutionCache() {}
+
+    /** Returns the template resolved for the given key, if cached and not expired, or null. */
+    public synchronized ResolvedTemplate lookup(List<Object> key) {
+        ResolvedTemplate result = entries.get(key);
+        if (result != null && result.expiry <= System.currentTimeMillis()) {
+            entries.remove(key);
+            result = null;
+        }
+        if (result == null) misses++;
+        return result;
+    }
+
+    /** Records that a template was built from the given cached choice, taking the given time. */
+    public synchronized void recordHit(ResolvedTemplate resolved, Duration timeTaken) {
+        hits++;
+        timeSavedMillis += Math.max(0, resolved.getResolutionTime().toMilliseconds() - timeTaken.toMilliseconds());
+    }
+
+    /** Records that the given cached choice could not be used (e.g. the image has been deleted), and removes it. */
+    public synchronized void recordStale(List<Object> key) {
+        stale++;
+        entries.remove(key);
+    }
+
+    /** Caches the choice made for the given key, for the given time-to-live. */
+    public synchronized void put(List<Object> key, String imageId, String hardwareId, String locationId, Duration resolutionTime, Duration ttl) {
+        long now = System.currentTimeMillis();
+        entries.remove(key);
+        entries.put(key, new ResolvedTemplate(imageId, hardwareId, locationId, resolutionTime, now + ttl.toMilliseconds()));
+        Iterator<ResolvedTemplate> ri = entries.values().iterator();
+        while (ri.hasNext()) {
+            ResolvedTemplate r = ri.next();
+            if (r.expiry <= now || entries.size() > MAX_ENTRIES) ri.remove();
+        }
+    }
+
+    /** Removes all cached choices for the given compute service. */
+    public synchronized void invalidate(Object computeService) {
+        Iterator<List<Object>> ki = entries.keySet().iterator();
+        while (ki.hasNext()) {
+            if (ki.next().get(0) == computeService) {
+                ki.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /** Removes all cached choices. */
+    public synchronized void invalidateAll() {
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    /**
+     * Returns the number of entries; the number of hits, misses, cached choices which could not be used (stale) and entries invalidated;
+     * and the total time saved by hits (in milliseconds, compared with the time taken to resolve each template originally).
+     */
+    public synchronized Map<String, Long> getMetrics() {
+        return MutableMap.<String, Long>of(
+                "size", (long) entries.size(),
+                "hits", hits,
+                "misses", misses,
+                "stale", stale,
+                "invalidations", invalidations)
+            .add("timeSavedMillis", timeSavedMillis);
+    }
+}
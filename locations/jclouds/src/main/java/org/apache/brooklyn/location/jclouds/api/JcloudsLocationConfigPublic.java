@@ -30,6 +30,7 @@ import org.apache.brooklyn.core.location.access.BrooklynAccessUtils;
 import org.apache.brooklyn.core.location.access.PortForwardManager;
 import org.apache.brooklyn.core.location.cloud.CloudLocationConfig;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.time.Duration;
 import org.jclouds.Constants;
 
 import com.google.common.annotations.Beta;
@@ -221,7 +222,33 @@ public interface JcloudsLocationConfigPublic extends CloudLocationConfig {
     
     public static final ConfigKey<Semaphore> MACHINE_DELETION_SEMAPHORE = ConfigKeys.newConfigKey(
             Semaphore.class, "machineDeletionSemaphore", "Semaphore for controlling concurrent machine deletion", null);
-    
+
+    @Beta
+    public static final ConfigKey<Duration> MACHINE_CREATION_BATCH_WINDOW = ConfigKeys.newDurationConfigKey(
+            "machineCreationBatchWindow",
+            "If set, concurrent requests for machines with identical templates (other than user metadata, tags and generated passwords) "
+            + "arriving within this window are created in a single jclouds call (e.g. when resizing a cluster). "
+            + "Unless groupId is set, the group is generated for the requesting entity's parent, so is shared by its siblings "
+            + "(e.g. the members of a cluster). Only the user metadata and tags common to the batch (so not those set per entity, "
+            + "such as by includeBrooklynUserMetadata) are set on the machines in the cloud; all machines in a batch are given "
+            + "the same generated password. Default (null) is to create machines individually.",
+            null);
+
+    @Beta
+    public static final ConfigKey<Integer> MACHINE_CREATION_BATCH_MAX_SIZE = ConfigKeys.newIntegerConfigKey(
+            "machineCreationBatchMaxSize",
+            "Maximum number of machines to create in a single batch, when "+MACHINE_CREATION_BATCH_WINDOW.getName()+" is set; "
+            + "a full batch is created without waiting for the rest of the window",
+            50);
+
+    @Beta
+    public static final ConfigKey<Duration> TEMPLATE_RESOLUTION_CACHE_TTL = ConfigKeys.newDurationConfigKey(
+            "templateResolutionCacheTtl",
+            "How long to remember the image, hardware and location chosen for a set of template constraints, "
+            + "so that subsequent machines with the same constraints need not search all images and hardware; "
+            + "applies only where the template builder is not supplied explicitly (set to 0 to disable)",
+            Duration.FIVE_MINUTES);
+
     @SuppressWarnings("serial")
     public static final ConfigKey<Map<String,Object>> TEMPLATE_OPTIONS = ConfigKeys.newConfigKey(
             new TypeToken<Map<String, Object>>() {}, "templateOptions", "Additional jclouds template options");
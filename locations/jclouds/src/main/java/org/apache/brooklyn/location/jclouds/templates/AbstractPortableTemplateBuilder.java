@@ -60,6 +60,8 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
     private Double minDisk;
     private Predicate<Image> imageCondition;
     private Function<Iterable<? extends Image>, Image> imageChooserFunction;
+    /** calls to any, smallest, fastest and biggest, in order, as these also affect the choice made */
+    private List<String> preferences = new ArrayList<String>();
     /** this is the last options instance set by a call to options(TemplateOptions) */
     private TemplateOptions options;
     /** these are extra options that we want _added_, in order, on top of the last options set */
@@ -69,6 +71,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
     
     @Override
     public T any() {
+        preferences.add("any");
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.any(); }});
@@ -116,6 +119,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
 
     @Override
     public T smallest() {
+        preferences.add("smallest");
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.smallest(); }});
@@ -124,6 +128,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
 
     @Override
     public T fastest() {
+        preferences.add("fastest");
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.fastest(); }});
@@ -132,6 +137,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
 
     @Override
     public T biggest() {
+        preferences.add("biggest");
         commands.add(new Function<TemplateBuilder,TemplateBuilder>() { 
             @Override
             public TemplateBuilder apply(TemplateBuilder b) { return b.biggest(); }});
@@ -400,6 +406,7 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
         additionalOptions.clear();
 
         // clear all fields, and commands
+        preferences.clear();
         commands.clear();
         // then add a command to clear osName + Version + 64bit
         osFamily(null);
@@ -517,7 +524,21 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
         return getClass().getSimpleName()+"["+makeNonTrivialArgumentsString()+"]";
     }
 
+    /**
+     * Describes the constraints which determine the image, hardware and location chosen when building,
+     * including any preference for the smallest, fastest or biggest, but
+     * excluding the image chooser function (which typically does not implement toString or equals) and the options;
+     * for use in caching the choice made.
+     */
+    public String getConstraintsDescription() {
+        return makeNonTrivialArgumentsString(false);
+    }
+
     protected String makeNonTrivialArgumentsString() {
+        return makeNonTrivialArgumentsString(true);
+    }
+
+    private String makeNonTrivialArgumentsString(boolean includeImageChooser) {
         String s =
                   (hardware != null ? "hardware=" + hardware + ", " : "")
                 + (image != null ? "image=" + image + ", " : "")
@@ -545,11 +566,12 @@ public abstract class AbstractPortableTemplateBuilder<T extends AbstractPortable
                         + imageVersionRegex + ", " : "")
                 + (imageCondition != null ? "imageCondition=" + imageCondition
                         + ", " : "")
-                + (imageChooserFunction != null ? "imageChooserFunction=" + imageChooserFunction
+                + (includeImageChooser && imageChooserFunction != null ? "imageChooserFunction=" + imageChooserFunction
                         + ", " : "")
                 + (minCores != null ? "minCores=" + minCores + ", " : "")
                 + (minRam != null ? "minRam=" + minRam + ", " : "")
-                + (minDisk != null ? "minDisk=" + minDisk + ", " : "");
+                + (minDisk != null ? "minDisk=" + minDisk + ", " : "")
+                + (!preferences.isEmpty() ? "preferences=" + preferences + ", " : "");
         if (s.endsWith(", ")) s = s.substring(0, s.length()-2);
         return s;
     }    
@@ -76,6 +76,18 @@ public class PortableTemplateBuilder<T extends PortableTemplateBuilder<?>> exten
         return newJcloudsTemplateBuilder(svc).build();
     }
 
+    /**
+     * Builds a template for the given image, hardware and (optionally) location, e.g. as previously chosen by {@link #build()},
+     * with the options of this builder; this avoids filtering and sorting all the images and hardware of the cloud.
+     */
+    public synchronized Template buildResolved(String imageId, String hardwareId, String locationId) {
+        if (svc==null) throw new IllegalStateException("Cannot build a portable template until a compute service is attached");
+        TemplateBuilder tb = svc.templateBuilder().imageId(imageId).hardwareId(hardwareId);
+        if (locationId!=null) tb.locationId(locationId);
+        tb.options(computeAggregatedOptions(true));
+        return tb.build();
+    }
+
     /** Adds template options which are used for building, but not for matching/filtering. 
      * (eg tags added here will be set on any machine created by this template,
      * but will not be required when matching this template to existing machines) */
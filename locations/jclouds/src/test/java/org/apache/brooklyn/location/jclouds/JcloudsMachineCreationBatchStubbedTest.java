@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.location.cloud.CloudLocationConfig;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.location.jclouds.StubbedComputeServiceRegistry.BasicNodeCreator;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.domain.TemplateBuilder;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class JcloudsMachineCreationBatchStubbedTest extends AbstractJcloudsStubbedUnitTest {
+
+    /** Records the number of nodes requested in each call; creates at most {@link #maxPerCall} nodes per call. */
+    private static class CountingNodeCreator extends BasicNodeCreator {
+        final List<Integer> counts = Lists.newCopyOnWriteArrayList();
+        final List<String> groups = Lists.newCopyOnWriteArrayList();
+        final List<Template> templates = Lists.newCopyOnWriteArrayList();
+        volatile int maxPerCall = Integer.MAX_VALUE;
+
+        @Override
+        public Set<? extends NodeMetadata> createNodesInGroup(String group, int count, Template template) throws RunNodesException {
+            counts.add(count);
+            groups.add(group);
+            templates.add(template);
+            Set<NodeMetadata> result = Sets.newLinkedHashSet();
+            for (int i = 0; i < Math.min(count, maxPerCall); i++) {
+                NodeMetadata node = newNode(group, template);
+                created.add(node);
+                result.add(node);
+            }
+            return result;
+        }
+    }
+
+    private ListeningExecutorService executor;
+    private CountingNodeCreator nodeCreator;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        executor = MoreExecutors.listeningDecorator(Executors.newCachedThreadPool());
+        nodeCreator = new CountingNodeCreator();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            super.tearDown();
+        } finally {
+            if (executor != null) executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConcurrentObtainsCreatedInOneBatch() throws Exception {
+        initNodeCreatorAndJcloudsLocation(nodeCreator, ImmutableMap.of(JcloudsLocation.MACHINE_CREATION_BATCH_WINDOW, Duration.seconds(2)));
+
+        List<ListenableFuture<JcloudsSshMachineLocation>> futures = obtainConcurrently(3);
+        Set<String> ids = MutableSet.of();
+        for (ListenableFuture<JcloudsSshMachineLocation> future : futures) {
+            ids.add(future.get().getJcloudsId());
+        }
+        
+        assertEquals(nodeCreator.counts, ImmutableList.of(3));
+        assertEquals(ids.size(), 3, "ids="+ids);
+        assertEquals(machines.size(), 3, "machines="+machines);
+    }
+
+    @Test
+    public void testConcurrentObtainsForSiblingEntitiesCreatedInOneBatch() throws Exception {
+        initNodeCreatorAndJcloudsLocation(nodeCreator, ImmutableMap.of(JcloudsLocation.MACHINE_CREATION_BATCH_WINDOW, Duration.seconds(2)));
+        TestApplication app = managementContext.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+        TestEntity cluster = app.addChild(EntitySpec.create(TestEntity.class));
+        List<Entity> members = MutableList.of();
+        for (int i = 0; i < 3; i++) {
+            members.add(cluster.addChild(EntitySpec.create(TestEntity.class)));
+        }
+
+        // each with its own (default) brooklyn user metadata, and generated password
+        List<ListenableFuture<JcloudsSshMachineLocation>> futures = MutableList.of();
+        for (final Entity member : members) {
+            futures.add(executor.submit(new Callable<JcloudsSshMachineLocation>() {
+                @Override
+                public JcloudsSshMachineLocation call() throws Exception {
+                    return obtainMachine(ImmutableMap.of(CloudLocationConfig.CALLER_CONTEXT, member, JcloudsLocationConfig.TEMPLATE_BUILDER, newTemplateBuilder()));
+                }}));
+        }
+        for (ListenableFuture<JcloudsSshMachineLocation> future : futures) {
+            future.get();
+        }
+
+        assertEquals(nodeCreator.counts, ImmutableList.of(3));
+        // the group generated for the cluster, whose name ends with the (shortened) cluster id
+        String clusterIdPrefix = cluster.getId().substring(0, 4).toLowerCase();
+        assertTrue(nodeCreator.groups.get(0).endsWith("-"+clusterIdPrefix), "group="+nodeCreator.groups.get(0)+"; cluster="+cluster);
+        assertFalse(nodeCreator.templates.get(0).getOptions().getUserMetadata().containsKey("brooklyn-entity-id"),
+                "metadata="+nodeCreator.templates.get(0).getOptions().getUserMetadata());
+        assertEquals(machines.size(), 3, "machines="+machines);
+    }
+
+    @Test
+    public void testBatchFullCreatedBeforeWindowEnds() throws Exception {
+        initNodeCreatorAndJcloudsLocation(nodeCreator, ImmutableMap.of(
+                JcloudsLocation.MACHINE_CREATION_BATCH_WINDOW, Duration.ONE_MINUTE,
+                JcloudsLocation.MACHINE_CREATION_BATCH_MAX_SIZE, 2));
+
+        for (ListenableFuture<JcloudsSshMachineLocation> future : obtainConcurrently(2)) {
+            future.get(Asserts.DEFAULT_LONG_TIMEOUT.toMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+        assertEquals(nodeCreator.counts, ImmutableList.of(2));
+    }
+
+    @Test
+    public void testMachinesNotCreatedInBatchFailIndividually() throws Exception {
+        nodeCreator.maxPerCall = 2;
+        initNodeCreatorAndJcloudsLocation(nodeCreator, ImmutableMap.of(
+                JcloudsLocation.MACHINE_CREATION_BATCH_WINDOW, Duration.seconds(2),
+                JcloudsLocation.MACHINE_CREATE_ATTEMPTS, 1));
+
+        int succeeded = 0;
+        List<Exception> failures = MutableList.of();
+        for (ListenableFuture<JcloudsSshMachineLocation> future : obtainConcurrently(3)) {
+            try {
+                future.get();
+                succeeded++;
+            } catch (ExecutionException e) {
+                failures.add(e);
+            }
+        }
+        
+        assertEquals(succeeded, 2);
+        assertEquals(failures.size(), 1, "failures="+failures);
+        Asserts.expectedFailureContains(failures.get(0), "not created in batch");
+        assertEquals(nodeCreator.counts.get(0), (Integer) 3);
+    }
+
+    @Test
+    public void testNoBatchingByDefault() throws Exception {
+        initNodeCreatorAndJcloudsLocation(nodeCreator, ImmutableMap.of());
+
+        for (ListenableFuture<JcloudsSshMachineLocation> future : obtainConcurrently(2)) {
+            future.get();
+        }
+        assertEquals(nodeCreator.counts, ImmutableList.of(1, 1));
+    }
+
+    private List<ListenableFuture<JcloudsSshMachineLocation>> obtainConcurrently(int count) {
+        List<ListenableFuture<JcloudsSshMachineLocation>> futures = MutableList.of();
+        for (int i = 0; i < count; i++) {
+            futures.add(executor.submit(new Callable<JcloudsSshMachineLocation>() {
+                @Override
+                public JcloudsSshMachineLocation call() throws Exception {
+                    return obtainMachine(ImmutableMap.of(JcloudsLocationConfig.TEMPLATE_BUILDER, newTemplateBuilder()));
+                }}));
+        }
+        return futures;
+    }
+
+    /** a template builder for each request, as the builder configured on the location is not safe to use concurrently */
+    private TemplateBuilder newTemplateBuilder() {
+        return JcloudsStubTemplateBuilder.create(getProvider(), getRegion());
+    }
+}
@@ -19,8 +19,6 @@
 package org.apache.brooklyn.location.jclouds;
 
 import static org.jclouds.ec2.compute.domain.EC2HardwareBuilder.t3_small;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
@@ -104,14 +102,18 @@ public class JcloudsStubTemplateBuilder {
      * Used source from jclouds project.
      * {@link org.jclouds.ec2.compute.EC2TemplateBuilderTest#newTemplateBuilder}
      */
-    @SuppressWarnings("unchecked")
     protected TemplateBuilder newTemplateBuilder(Supplier<Set<? extends Image>> images, Supplier<LoadingCache<RegionAndName, ? extends Image>> imageCache) {
-        Provider<TemplateOptions> optionsProvider = mock(Provider.class);
-        Provider<TemplateBuilder> templateBuilderProvider = mock(Provider.class);
-        TemplateOptions defaultOptions = newTemplateOptions();
-        final GetImageStrategy getImageStrategy = mock(GetImageStrategy.class);
-
-        when(optionsProvider.get()).thenReturn(defaultOptions);
+        // plain implementations rather than mocks, which cannot be created on newer JVMs with the version of mockito used;
+        // new options each time as in jclouds, so that concurrently built templates do not share options
+        Provider<TemplateOptions> optionsProvider = new Provider<TemplateOptions>() {
+            @Override public TemplateOptions get() { return newTemplateOptions(); }
+        };
+        Provider<TemplateBuilder> templateBuilderProvider = new Provider<TemplateBuilder>() {
+            @Override public TemplateBuilder get() { return null; }
+        };
+        final GetImageStrategy getImageStrategy = new GetImageStrategy() {
+            @Override public Image getImage(String id) { return null; }
+        };
 
         Supplier<Set<? extends Location>> locations = Suppliers.<Set<? extends Location>> ofInstance(ImmutableSet
                 .of(jcloudsDomainLocation));
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertNull;
+
+import java.util.List;
+
+import org.apache.brooklyn.location.jclouds.JcloudsTemplateResolutionCache.ResolvedTemplate;
+import org.apache.brooklyn.location.jclouds.templates.PortableTemplateBuilder;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class JcloudsTemplateResolutionCacheTest {
+
+    private JcloudsTemplateResolutionCache cache;
+    private Object computeService1;
+    private Object computeService2;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        cache = new JcloudsTemplateResolutionCache();
+        computeService1 = new Object();
+        computeService2 = new Object();
+    }
+
+    @Test
+    public void testLookupReturnsCachedChoice() throws Exception {
+        List<Object> key = JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", "osFamily=ubuntu, minRam=2048", null);
+        assertNull(cache.lookup(key));
+        cache.put(key, "us-east-1/ami-1234", "t3.small", "us-east-1", Duration.seconds(3), Duration.ONE_MINUTE);
+
+        ResolvedTemplate resolved = cache.lookup(JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", "osFamily=ubuntu, minRam=2048", null));
+        assertNotNull(resolved);
+        assertEquals(resolved.getImageId(), "us-east-1/ami-1234");
+        assertEquals(resolved.getHardwareId(), "t3.small");
+        assertEquals(resolved.getLocationId(), "us-east-1");
+        cache.recordHit(resolved, Duration.millis(500));
+
+        assertEquals(cache.getMetrics().get("hits"), (Long) 1L);
+        assertEquals(cache.getMetrics().get("misses"), (Long) 1L);
+        assertEquals(cache.getMetrics().get("timeSavedMillis"), (Long) 2500L);
+    }
+
+    @Test
+    public void testDifferentConstraintsOrComputeServiceNotShared() throws Exception {
+        cache.put(JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", "minRam=2048", null), "image", "hardware", null, Duration.ONE_SECOND, Duration.ONE_MINUTE);
+
+        assertNull(cache.lookup(JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", "minRam=4096", null)));
+        assertNull(cache.lookup(JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", "minRam=2048", "MyImageChooser")));
+        assertNull(cache.lookup(JcloudsTemplateResolutionCache.key(computeService2, "aws-ec2", "minRam=2048", null)));
+        assertNotNull(cache.lookup(JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", "minRam=2048", null)));
+    }
+
+    @Test
+    public void testEntriesExpire() throws Exception {
+        List<Object> key = JcloudsTemplateResolutionCache.key(computeService1, "minRam=2048");
+        cache.put(key, "image", "hardware", null, Duration.ONE_SECOND, Duration.millis(10));
+        Time.sleep(Duration.millis(20));
+
+        assertNull(cache.lookup(key));
+        assertEquals(cache.getMetrics().get("size"), (Long) 0L);
+    }
+
+    @Test
+    public void testInvalidateByComputeService() throws Exception {
+        List<Object> key1 = JcloudsTemplateResolutionCache.key(computeService1, "minRam=2048");
+        List<Object> key2 = JcloudsTemplateResolutionCache.key(computeService2, "minRam=2048");
+        cache.put(key1, "image1", "hardware", null, Duration.ONE_SECOND, Duration.ONE_MINUTE);
+        cache.put(key2, "image2", "hardware", null, Duration.ONE_SECOND, Duration.ONE_MINUTE);
+
+        cache.invalidate(computeService1);
+        assertNull(cache.lookup(key1));
+        assertNotNull(cache.lookup(key2));
+
+        cache.invalidateAll();
+        assertNull(cache.lookup(key2));
+        assertEquals(cache.getMetrics().get("invalidations"), (Long) 2L);
+    }
+
+    @Test
+    public void testRecordStaleRemovesEntry() throws Exception {
+        List<Object> key = JcloudsTemplateResolutionCache.key(computeService1, "minRam=2048");
+        cache.put(key, "deleted-image", "hardware", null, Duration.ONE_SECOND, Duration.ONE_MINUTE);
+
+        cache.recordStale(key);
+        assertNull(cache.lookup(key));
+        assertEquals(cache.getMetrics().get("stale"), (Long) 1L);
+    }
+
+    @Test
+    public void testOldestEntriesDiscardedWhenFull() throws Exception {
+        for (int i = 0; i <= JcloudsTemplateResolutionCache.MAX_ENTRIES; i++) {
+            cache.put(JcloudsTemplateResolutionCache.key(computeService1, "minRam="+i), "image"+i, "hardware", null, Duration.ONE_SECOND, Duration.ONE_MINUTE);
+        }
+        assertEquals(cache.getMetrics().get("size"), (Long) (long) JcloudsTemplateResolutionCache.MAX_ENTRIES);
+        assertNull(cache.lookup(JcloudsTemplateResolutionCache.key(computeService1, "minRam=0")));
+        assertNotNull(cache.lookup(JcloudsTemplateResolutionCache.key(computeService1, "minRam="+JcloudsTemplateResolutionCache.MAX_ENTRIES)));
+    }
+
+    @Test
+    public void testPreferencesDistinguishConstraints() throws Exception {
+        PortableTemplateBuilder<?> smallest = new PortableTemplateBuilder<>();
+        smallest.minRam(2048);
+        smallest.smallest();
+        PortableTemplateBuilder<?> biggest = new PortableTemplateBuilder<>();
+        biggest.minRam(2048);
+        biggest.biggest();
+        PortableTemplateBuilder<?> neither = new PortableTemplateBuilder<>();
+        neither.minRam(2048);
+
+        assertEquals(smallest.getConstraintsDescription(), "minRam=2048, preferences=[smallest]");
+        assertNotEquals(smallest.getConstraintsDescription(), biggest.getConstraintsDescription());
+        assertNotEquals(smallest.getConstraintsDescription(), neither.getConstraintsDescription());
+
+        cache.put(JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", smallest.getConstraintsDescription(), null), "image", "t3.nano", null, Duration.ONE_SECOND, Duration.ONE_MINUTE);
+        assertNull(cache.lookup(JcloudsTemplateResolutionCache.key(computeService1, "aws-ec2", biggest.getConstraintsDescription(), null)));
+    }
+}
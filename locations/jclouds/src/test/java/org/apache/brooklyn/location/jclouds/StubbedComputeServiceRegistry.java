@@ -205,6 +205,7 @@ public class StubbedComputeServiceRegistry implements ComputeServiceRegistry {
     
     private final NodeCreator nodeCreator;
     private final boolean allowCloudQueries;
+    private StubbedComputeService reusableComputeService;
     
     public StubbedComputeServiceRegistry(NodeMetadata node) throws Exception {
         this(new SingleNodeCreator(node));
@@ -232,6 +233,12 @@ public class StubbedComputeServiceRegistry implements ComputeServiceRegistry {
         if (allowCloudQueries) {
             ComputeService delegate = ComputeServiceRegistryImpl.INSTANCE.findComputeService(conf, allowReuse);
             return new MinimalComputeService(delegate, nodeCreator);
+        } else if (allowReuse) {
+            // reused, as jclouds' registry does, so that requests see the same compute service
+            synchronized (this) {
+                if (reusableComputeService == null) reusableComputeService = new StubbedComputeService(nodeCreator);
+                return reusableComputeService;
+            }
         } else {
             return new StubbedComputeService(nodeCreator);
         }
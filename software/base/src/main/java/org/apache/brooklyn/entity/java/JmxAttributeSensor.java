@@ -35,7 +35,6 @@ import org.apache.brooklyn.core.sensor.http.HttpRequestSensor;
 import org.apache.brooklyn.core.sensor.ssh.SshCommandSensor;
 import org.apache.brooklyn.feed.jmx.JmxAttributePollConfig;
 import org.apache.brooklyn.feed.jmx.JmxFeed;
-import org.apache.brooklyn.feed.jmx.JmxHelper;
 import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.core.task.DynamicTasks;
 import org.apache.brooklyn.util.core.task.Tasks;
@@ -96,12 +95,10 @@ public final class JmxAttributeSensor<T> extends AbstractAddSensorFeed<T> {
                     .body(new Callable<JmxFeed>() {
                         @Override
                         public JmxFeed call() throws Exception {
-                            JmxHelper helper = new JmxHelper(entity);
-
+                            // connection shared with other JMX feeds on the entity
                             JmxFeed feed = JmxFeed.builder()
                                     .entity(entity)
                                     .period(params.get(SENSOR_PERIOD))
-                                    .helper(helper)
                                     .pollAttribute(new JmxAttributePollConfig<T>(sensor)
                                             .objectName(objectName)
                                             .attributeName(attribute)
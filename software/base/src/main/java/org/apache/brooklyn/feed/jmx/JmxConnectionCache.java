@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.jmx;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.entity.java.UsesJmx;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Shares {@link JmxHelper} instances, and so JMX connections, across the feeds of a management context,
+ * so that one target process has one connection (and one reconnect back-off) however many feeds poll it.
+ * <p>
+ * Helpers are keyed by JMX URL and credentials (and by entity where SSL is used, as the keys come from the entity),
+ * and reference counted: {@link #acquire(Entity)} must be matched by {@link #release(JmxHelper)}.
+ * A helper no longer referenced is kept for {@link #IDLE_TIMEOUT} in case it is wanted again, then terminated.
+ * Connections are checked every {@link #HEALTH_CHECK_PERIOD} when acquired, and disconnected if unusable
+ * so that the next request reconnects.
+ */
+@Beta
+public class JmxConnectionCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JmxConnectionCache.class);
+
+    public static final ConfigKey<JmxConnectionCache> JMX_CONNECTION_CACHE = ConfigKeys.newConfigKey(JmxConnectionCache.class, "internals.brooklyn.jmx.connection_cache");
+
+    public static final ConfigKey<Duration> IDLE_TIMEOUT = ConfigKeys.newDurationConfigKey("brooklyn.jmx.connectionCache.idleTimeout",
+            "How long to keep a JMX connection which is no longer used by any feed, in case it is wanted again", Duration.ONE_MINUTE);
+
+    public static final ConfigKey<Duration> HEALTH_CHECK_PERIOD = ConfigKeys.newDurationConfigKey("brooklyn.jmx.connectionCache.healthCheckPeriod",
+            "Minimum time between checks that a shared JMX connection is usable, done when the connection is acquired", Duration.THIRTY_SECONDS);
+
+    public static JmxConnectionCache get(ManagementContext mgmt) {
+        JmxConnectionCache cache = mgmt.getScratchpad().get(JMX_CONNECTION_CACHE);
+        if (cache==null) {
+            synchronized (JMX_CONNECTION_CACHE) {
+                cache = mgmt.getScratchpad().get(JMX_CONNECTION_CACHE);
+                if (cache==null) {
+                    cache = new JmxConnectionCache(mgmt.getConfig().getConfig(IDLE_TIMEOUT), mgmt.getConfig().getConfig(HEALTH_CHECK_PERIOD));
+                    cache.scheduleEviction(mgmt);
+                    mgmt.getScratchpad().put(JMX_CONNECTION_CACHE, cache);
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static class CachedHelper {
+        final List<Object> key;
+        final JmxHelper helper;
+        int references;
+        long idleSince;
+        long lastHealthCheck;
+        
+        CachedHelper(List<Object> key, JmxHelper helper) {
+            this.key = key;
+            this.helper = helper;
+            this.lastHealthCheck = System.currentTimeMillis();
+        }
+    }
+
+    private final Duration idleTimeout;
+    private final Duration healthCheckPeriod;
+    private final Map<List<Object>, CachedHelper> helpersByKey = MutableMap.of();
+    private final Map<JmxHelper, CachedHelper> helpers = new IdentityHashMap<>();
+    private long created, evicted, healthCheckFailures;
+
+    protected JmxConnectionCache(Duration idleTimeout, Duration healthCheckPeriod) {
+        this.idleTimeout = idleTimeout;
+        this.healthCheckPeriod = healthCheckPeriod;
+    }
+
+    protected void scheduleEviction(ManagementContext mgmt) {
+        final String taskName = "JMX connection cache eviction";
+        Callable<Task<?>> taskFactory = new Callable<Task<?>>() {
+            @Override public Task<Void> call() {
+                return Tasks.<Void>builder().dynamic(false).displayName(taskName).body(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        try {
+                            evictIdle();
+                        } catch (Exception e) {
+                            // don't rethrow, as that would stop the scheduled task
+                            LOG.warn("Problem evicting idle JMX connections", e);
+                        }
+                        return null;
+                    }}).build();
+            }
+        };
+        Duration period = Duration.max(idleTimeout, Duration.ONE_SECOND);
+        mgmt.getExecutionManager().submit(
+            ScheduledTask.builder(taskFactory).displayName(ScheduledTask.prefixScheduledName(taskName)).tagTransient().period(period).delay(period).build() );
+    }
+
+    /**
+     * Returns a helper for connecting to the JMX server of the given entity, shared with other users of the same server.
+     * The caller may {@link JmxHelper#connect(long) connect} it, but must not disconnect or terminate it;
+     * instead it must call {@link #release(JmxHelper)} when done.
+     */
+    public JmxHelper acquire(Entity entity) {
+        String url = JmxHelper.toJmxUrl(entity);
+        boolean ssl = Boolean.TRUE.equals(entity.getConfig(UsesJmx.JMX_SSL_ENABLED));
+        List<Object> key = MutableList.<Object>of(url, entity.getAttribute(UsesJmx.JMX_USER), entity.getAttribute(UsesJmx.JMX_PASSWORD), ssl ? entity.getId() : null);
+        
+        CachedHelper cached;
+        boolean checkHealth = false;
+        List<JmxHelper> toTerminate;
+        synchronized (this) {
+            toTerminate = removeExpired();
+            cached = helpersByKey.get(key);
+            if (cached == null) {
+                cached = new CachedHelper(key, new JmxHelper(entity));
+                helpersByKey.put(key, cached);
+                helpers.put(cached.helper, cached);
+                created++;
+            } else {
+                if (entity.getAttribute(UsesJmx.JMX_URL) == null) {
+                    entity.sensors().set(UsesJmx.JMX_URL, url);
+                }
+                long now = System.currentTimeMillis();
+                if (now - cached.lastHealthCheck >= healthCheckPeriod.toMilliseconds()) {
+                    cached.lastHealthCheck = now;
+                    checkHealth = true;
+                }
+            }
+            cached.references++;
+        }
+        terminate(toTerminate);
+        
+        if (checkHealth && cached.helper.isConnected() && !cached.helper.checkConnection()) {
+            synchronized (this) {
+                healthCheckFailures++;
+            }
+        }
+        return cached.helper;
+    }
+
+    /** Indicates that a helper returned by {@link #acquire(Entity)} is no longer used by the caller. */
+    public void release(JmxHelper helper) {
+        List<JmxHelper> toTerminate;
+        synchronized (this) {
+            CachedHelper cached = helpers.get(helper);
+            if (cached == null) {
+                LOG.warn("Releasing JMX helper "+helper+" for "+helper.getUrl()+" which is not (or no longer) cached; ignoring");
+                return;
+            }
+            cached.references--;
+            if (cached.references <= 0) {
+                cached.idleSince = System.currentTimeMillis();
+            }
+            toTerminate = removeExpired();
+        }
+        terminate(toTerminate);
+    }
+
+    /**
+     * Returns counts of the shared connections: total cached, open (connected), in use, idle (not in use, awaiting eviction),
+     * failing (last reconnect attempt failed); and the number created, evicted and which failed a health check.
+     */
+    public Map<String, Long> getMetrics() {
+        List<JmxHelper> toTerminate;
+        Map<String, Long> result;
+        synchronized (this) {
+            toTerminate = removeExpired();
+            long open = 0, inUse = 0, idle = 0, failing = 0;
+            for (CachedHelper cached : helpers.values()) {
+                if (cached.helper.isConnected()) open++;
+                if (cached.references > 0) inUse++; else idle++;
+                if (cached.helper.isReconnectFailing()) failing++;
+            }
+            result = MutableMap.<String, Long>of(
+                    "total", (long) helpers.size(),
+                    "open", open,
+                    "inUse", inUse,
+                    "idle", idle,
+                    "failing", failing)
+                .add("created", created)
+                .add("evicted", evicted)
+                .add("healthCheckFailures", healthCheckFailures);
+        }
+        terminate(toTerminate);
+        return result;
+    }
+
+    /** Terminates helpers which have not been used for longer than {@link #IDLE_TIMEOUT}; done periodically, and when the cache is used. */
+    public void evictIdle() {
+        List<JmxHelper> toTerminate;
+        synchronized (this) {
+            toTerminate = removeExpired();
+        }
+        terminate(toTerminate);
+    }
+
+    /** removes helpers which have been idle for longer than the timeout, returning them so they can be terminated outside the lock */
+    private List<JmxHelper> removeExpired() {
+        List<JmxHelper> result = MutableList.of();
+        long now = System.currentTimeMillis();
+        for (CachedHelper cached : MutableList.copyOf(helpers.values())) {
+            if (cached.references <= 0 && now - cached.idleSince >= idleTimeout.toMilliseconds()) {
+                helpers.remove(cached.helper);
+                helpersByKey.remove(cached.key);
+                evicted++;
+                result.add(cached.helper);
+            }
+        }
+        return result;
+    }
+
+    private void terminate(List<JmxHelper> helpersToTerminate) {
+        for (JmxHelper helper : helpersToTerminate) {
+            if (LOG.isDebugEnabled()) LOG.debug("Terminating idle shared JMX connection to {}", helper.getUrl());
+            helper.terminate();
+        }
+    }
+}
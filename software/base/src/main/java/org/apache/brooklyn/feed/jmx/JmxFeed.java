@@ -40,15 +40,19 @@ import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
 import org.apache.brooklyn.core.feed.PollHandler;
 import org.apache.brooklyn.core.feed.Poller;
+import org.apache.brooklyn.entity.java.UsesJmx;
 import org.apache.brooklyn.entity.software.base.SoftwareProcessImpl;
 import org.apache.brooklyn.feed.windows.WindowsPerformanceCounterFeed;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
@@ -56,6 +60,10 @@ import com.google.common.reflect.TypeToken;
 
 /**
  * Provides a feed of attribute values, by polling or subscribing over jmx.
+ * Attributes of the same ObjectName which are polled at the same period are read together, in a single call.
+ * Unless a {@link Builder#helper(JmxHelper) helper} is supplied, the connection is shared with other feeds
+ * polling the same JMX server, using the {@link JmxConnectionCache}; notification subscriptions are re-added
+ * by the helper if the shared connection is re-established.
  * 
  * Example usage (e.g. in an entity that extends {@link SoftwareProcessImpl}):
  * <pre>
@@ -178,6 +186,9 @@ public class JmxFeed extends AbstractFeed {
 
     private final SetMultimap<ObjectName, NotificationListener> notificationListeners = HashMultimap.create();
 
+    /** helper from the {@link JmxConnectionCache}, used if no {@link #HELPER} is configured; acquired on start and released on stop */
+    private transient volatile JmxHelper sharedHelper;
+
     /**
      * For rebind; do not call directly; use builder
      */
@@ -226,10 +237,12 @@ public class JmxFeed extends AbstractFeed {
     @Override
     public void setEntity(EntityLocal entity) {
         if (getConfig(HELPER) == null) {
-            JmxHelper helper = new JmxHelper(entity);
-            config().set(HELPER, helper);
-            config().set(OWN_HELPER, true);
-            config().set(JMX_URI, helper.getUrl());
+            // helper is shared, acquired from the JmxConnectionCache when started
+            String url = JmxHelper.toJmxUrl(entity);
+            if (entity.getAttribute(UsesJmx.JMX_URL) == null) {
+                entity.sensors().set(UsesJmx.JMX_URL, url);
+            }
+            config().set(JMX_URI, url);
         }
         super.setEntity(entity);
     }
@@ -239,7 +252,8 @@ public class JmxFeed extends AbstractFeed {
     }
     
     protected JmxHelper getHelper() {
-        return getConfig(HELPER);
+        JmxHelper helper = getConfig(HELPER);
+        return helper != null ? helper : sharedHelper;
     }
     
     @Override
@@ -250,7 +264,8 @@ public class JmxFeed extends AbstractFeed {
     
     @Override
     protected boolean isConnected() {
-        return super.isConnected() && getHelper().isConnected();
+        JmxHelper helper = getHelper();
+        return super.isConnected() && helper != null && helper.isConnected();
     }
     
     @Override
@@ -264,6 +279,10 @@ public class JmxFeed extends AbstractFeed {
         final SetMultimap<List<?>, JmxOperationPollConfig<?>> operationPolls = getConfig(OPERATION_POLLS);
         final SetMultimap<String, JmxAttributePollConfig<?>> attributePolls = getConfig(ATTRIBUTE_POLLS);
         
+        if (getConfig(HELPER) == null && sharedHelper == null) {
+            sharedHelper = JmxConnectionCache.get(getManagementContext()).acquire(getEntity());
+        }
+        
         getPoller().submit(new Callable<Void>() {
                @Override public Void call() {
                    getHelper().connect(getConfig(JMX_CONNECTION_TIMEOUT));
@@ -286,9 +305,25 @@ public class JmxFeed extends AbstractFeed {
             });
         }
         
-        // Setup polling of sensors
-        for (final String jmxAttributeName : attributePolls.keys()) {
-            registerAttributePoller(attributePolls.get(jmxAttributeName));
+        // Setup polling of sensors; attributes of the same ObjectName polled at the same period are read with a single call
+        Map<List<Object>, Map<String, Set<JmxAttributePollConfig<?>>>> attributePollsByObjectNameAndPeriod = Maps.newLinkedHashMap();
+        for (final String jmxAttributeName : attributePolls.keySet()) {
+            Set<JmxAttributePollConfig<?>> configs = attributePolls.get(jmxAttributeName);
+            JmxAttributePollConfig<?> first = Iterables.get(configs, 0);
+            List<Object> key = ImmutableList.<Object>of(first.getObjectName(), getMinPeriod(configs));
+            Map<String, Set<JmxAttributePollConfig<?>>> configsByAttribute = attributePollsByObjectNameAndPeriod.get(key);
+            if (configsByAttribute == null) {
+                configsByAttribute = Maps.newLinkedHashMap();
+                attributePollsByObjectNameAndPeriod.put(key, configsByAttribute);
+            }
+            configsByAttribute.put(first.getAttributeName(), configs);
+        }
+        for (Map.Entry<List<Object>, Map<String, Set<JmxAttributePollConfig<?>>>> entry : attributePollsByObjectNameAndPeriod.entrySet()) {
+            if (entry.getValue().size() == 1) {
+                registerAttributePoller(Iterables.getOnlyElement(entry.getValue().values()));
+            } else {
+                registerAttributesPoller((ObjectName) entry.getKey().get(0), entry.getValue(), (Long) entry.getKey().get(1));
+            }
         }
         
         // Setup polling of operations
@@ -310,9 +345,13 @@ public class JmxFeed extends AbstractFeed {
     @Override
     protected void postStop() {
         super.postStop();
-        JmxHelper helper = getHelper();
+        JmxHelper helper = getConfig(HELPER);
         Boolean ownHelper = getConfig(OWN_HELPER);
-        if (helper != null && ownHelper) helper.terminate();
+        if (helper != null && Boolean.TRUE.equals(ownHelper)) helper.terminate();
+        if (sharedHelper != null) {
+            JmxConnectionCache.get(getManagementContext()).release(sharedHelper);
+            sharedHelper = null;
+        }
     }
     
     /**
@@ -374,6 +413,115 @@ public class JmxFeed extends AbstractFeed {
                 new DelegatingPollHandler<Object>(handlers), minPeriod);
     }
 
+    /**
+     * Registers to poll several jmx-attributes for an ObjectName with a single call, where the given configs are keyed by attribute name,
+     * and all are for that same ObjectName and have the given period.
+     */
+    private void registerAttributesPoller(final ObjectName objectName, Map<String, Set<JmxAttributePollConfig<?>>> configsByAttribute, long period) {
+        final Map<String, PollHandler<Object>> handlersByAttribute = Maps.newLinkedHashMap();
+        for (Map.Entry<String, Set<JmxAttributePollConfig<?>>> entry : configsByAttribute.entrySet()) {
+            Set<AttributePollHandler<? super Object>> handlers = Sets.newLinkedHashSet();
+            for (JmxAttributePollConfig<?> config : entry.getValue()) {
+                handlers.add(new AttributePollHandler<Object>(config, getEntity(), this));
+            }
+            handlersByAttribute.put(entry.getKey(), new DelegatingPollHandler<Object>(handlers));
+        }
+        final List<String> jmxAttributeNames = ImmutableList.copyOf(handlersByAttribute.keySet());
+        
+        getPoller().scheduleAtFixedRate(
+                new Callable<Object>() {
+                    @Override
+                    public Object call() throws Exception {
+                        if (log.isTraceEnabled()) log.trace("jmx attributes polling for {} sensors at {} -> {}", new Object[] {getEntity(), getJmxUri(), jmxAttributeNames});
+                        return getHelper().getAttributes(objectName, jmxAttributeNames);
+                    }
+                }, 
+                new AttributesPollHandler(objectName, handlersByAttribute), period);
+    }
+
+    /**
+     * Passes each of the values read by {@link JmxHelper#getAttributes(ObjectName, java.util.Collection)} to the handler for that attribute.
+     * Attributes omitted by the server (e.g. because reading them failed) are read individually, so that their handlers see the error.
+     */
+    private class AttributesPollHandler implements PollHandler<Object> {
+        private final ObjectName objectName;
+        private final Map<String, PollHandler<Object>> handlersByAttribute;
+
+        AttributesPollHandler(ObjectName objectName, Map<String, PollHandler<Object>> handlersByAttribute) {
+            this.objectName = objectName;
+            this.handlersByAttribute = handlersByAttribute;
+        }
+
+        @Override
+        public boolean checkSuccess(Object val) {
+            // checked for each attribute in onSuccess
+            return true;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onSuccess(Object val) {
+            Map<String, Object> values = (Map<String, Object>) val;
+            for (Map.Entry<String, PollHandler<Object>> entry : handlersByAttribute.entrySet()) {
+                PollHandler<Object> handler = entry.getValue();
+                Object value;
+                if (values == null) {
+                    // mbean not found
+                    value = null;
+                } else if (values.containsKey(entry.getKey())) {
+                    value = values.get(entry.getKey());
+                } else {
+                    try {
+                        value = getHelper().getAttribute(objectName, entry.getKey());
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        handler.onException(e);
+                        continue;
+                    }
+                }
+                if (handler.checkSuccess(value)) {
+                    handler.onSuccess(value);
+                } else {
+                    handler.onFailure(value);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(Object val) {
+            onSuccess(val);
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            for (PollHandler<Object> handler : handlersByAttribute.values()) {
+                handler.onException(exception);
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            List<String> descriptions = Lists.newArrayList();
+            for (PollHandler<Object> handler : handlersByAttribute.values()) {
+                descriptions.add(handler.getDescription());
+            }
+            return descriptions.toString();
+        }
+
+        @Override
+        public String toString() {
+            return super.toString()+"["+getDescription()+"]";
+        }
+    }
+
+    private static long getMinPeriod(Set<JmxAttributePollConfig<?>> configs) {
+        long minPeriod = Integer.MAX_VALUE;
+        for (JmxAttributePollConfig<?> config : configs) {
+            if (config.getPeriod() > 0) minPeriod = Math.min(minPeriod, config.getPeriod());
+        }
+        return minPeriod;
+    }
+
     /**
      * Registers to subscribe to notifications for an ObjectName, where all the given configs are for that same ObjectName + filter.
      */
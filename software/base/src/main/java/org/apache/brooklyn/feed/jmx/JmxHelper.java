@@ -26,8 +26,11 @@ import java.security.KeyStore;
 import java.security.PrivateKey;
 import java.security.cert.Certificate;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.WeakHashMap;
@@ -36,6 +39,8 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.management.Attribute;
+import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.InstanceNotFoundException;
@@ -74,6 +79,7 @@ import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableMap;
@@ -165,6 +171,9 @@ public class JmxHelper {
     // Tracks the MBeans we have failed to find for this JmsHelper's connection URL (so can log just once for each)
     private final Set<ObjectName> notFoundMBeans;
 
+    // Notification listeners added through this helper, re-added on each new connection; see getNotificationListeners()
+    private transient Set<NotificationListenerRegistration> notificationListeners;
+
     public JmxHelper(Entity entity) {
         this(toJmxUrl(entity), entity, entity.getAttribute(UsesJmx.JMX_USER), entity.getAttribute(UsesJmx.JMX_PASSWORD));
         
@@ -227,6 +236,34 @@ public class JmxHelper {
         return connection!=null;
     }
 
+    /**
+     * Whether the most recent attempt to reconnect failed (reconnect attempts are then dampened, 
+     * see {@link #setMinTimeBetweenReconnectAttempts(int)}).
+     */
+    public boolean isReconnectFailing() {
+        return failedReconnecting;
+    }
+
+    /**
+     * Checks that the connection is usable, by querying the MBean count; if that fails then disconnects,
+     * so that the next request reconnects.
+     *
+     * @return true if connected and the connection is usable, false otherwise.
+     */
+    public boolean checkConnection() {
+        MBeanServerConnection conn = connection;
+        if (conn == null) return false;
+        try {
+            conn.getMBeanCount();
+            return true;
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            if (LOG.isDebugEnabled()) LOG.debug("JMX connection to {} failed health check; disconnecting: {}", url, e);
+            disconnect();
+            return false;
+        }
+    }
+
     /**
      * Reconnects. If it already is connected, it disconnects first.
      *
@@ -300,6 +337,23 @@ public class JmxHelper {
             disconnectNow();
             throw new IllegalStateException("JMX Helper "+this+" already terminated");
         }
+        
+        reregisterNotificationListeners();
+    }
+
+    /**
+     * Notification listeners are held by the connector, so are lost when it is closed; re-adds those
+     * previously added through this helper (possibly by other users of a shared helper) to the new connection.
+     */
+    private void reregisterNotificationListeners() {
+        for (NotificationListenerRegistration registration : getNotificationListeners()) {
+            try {
+                connection.addNotificationListener(registration.objectName, registration.listener, registration.filter, null);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.warn("Unable to re-add JMX notification listener for "+registration.objectName+" at "+url+" after connecting: "+e);
+            }
+        }
     }
 
     /**
@@ -659,6 +713,35 @@ public class JmxHelper {
         }
     }
 
+    /**
+     * Returns the values of several attributes of a JMX {@link ObjectName}, in a single call to the server.
+     * <p>
+     * As with {@link MBeanServerConnection#getAttributes(ObjectName, String[])}, attributes which could not be
+     * retrieved are omitted from the result, so callers needing the error should use {@link #getAttribute(ObjectName, String)}
+     * for those. As with {@link #getAttribute(ObjectName, String)}, returns null if the name is a pattern matching no MBean.
+     */
+    public Map<String, Object> getAttributes(ObjectName objectName, Collection<String> attributes) {
+        final ObjectName realObjectName = toLiteralObjectName(objectName);
+        final String[] attributesArray = attributes.toArray(new String[attributes.size()]);
+        
+        if (realObjectName != null) {
+            AttributeList attributeList = invokeWithReconnect(new Callable<AttributeList>() {
+                    @Override
+                    public AttributeList call() throws Exception {
+                        return getConnectionOrFail().getAttributes(realObjectName, attributesArray);
+                    }});
+
+            Map<String, Object> result = MutableMap.of();
+            for (Attribute attribute : attributeList.asList()) {
+                result.put(attribute.getName(), attribute.getValue());
+            }
+            if (LOG.isTraceEnabled()) LOG.trace("From {}, for jmx attributes {}.{}, got values {}", new Object[] {url, objectName.getCanonicalName(), attributes, result});
+            return result;
+        } else {
+            return null;
+        }
+    }
+
     public void setAttribute(String objectName, String attribute, Object val) {
         setAttribute(createObjectName(objectName), attribute, val);
     }
@@ -718,24 +801,44 @@ public class JmxHelper {
         addNotificationListener(objectName, listener, null);
     }
     
-    public void addNotificationListener(final ObjectName objectName, final NotificationListener listener, final NotificationFilter filter) {
+    /**
+     * Adds the listener, which remains registered if this helper reconnects, until it is
+     * {@link #removeNotificationListener(ObjectName, NotificationListener, NotificationFilter) removed}.
+     */
+    public synchronized void addNotificationListener(final ObjectName objectName, final NotificationListener listener, final NotificationFilter filter) {
         invokeWithReconnect(new Callable<Void>() {
                 @Override
                 public Void call() throws Exception {
                     getConnectionOrFail().addNotificationListener(objectName, listener, filter, null);
                     return null;
                 }});
+        getNotificationListeners().add(new NotificationListenerRegistration(objectName, listener, filter));
     }
 
     public void removeNotificationListener(String objectName, NotificationListener listener) {
         removeNotificationListener(createObjectName(objectName), listener);
     }
 
-    public void removeNotificationListener(final ObjectName objectName, final NotificationListener listener) {
-        removeNotificationListener(objectName, listener, null);
+    /**
+     * Removes all registrations of the listener for the given MBean, whatever their filter
+     * (as {@link MBeanServerConnection#removeNotificationListener(ObjectName, NotificationListener)}).
+     */
+    public synchronized void removeNotificationListener(final ObjectName objectName, final NotificationListener listener) {
+        Iterator<NotificationListenerRegistration> iter = getNotificationListeners().iterator();
+        while (iter.hasNext()) {
+            NotificationListenerRegistration registration = iter.next();
+            if (registration.objectName.equals(objectName) && registration.listener.equals(listener)) iter.remove();
+        }
+        if (isConnected()) invokeWithReconnect(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    getConnectionOrFail().removeNotificationListener(objectName, listener);
+                    return null;
+                }});
     }
     
-    public void removeNotificationListener(final ObjectName objectName, final NotificationListener listener, final NotificationFilter filter) {
+    public synchronized void removeNotificationListener(final ObjectName objectName, final NotificationListener listener, final NotificationFilter filter) {
+        getNotificationListeners().remove(new NotificationListenerRegistration(objectName, listener, filter));
         if (isConnected()) invokeWithReconnect(new Callable<Void>() {
                 @Override
                 public Void call() throws Exception {
@@ -744,6 +847,36 @@ public class JmxHelper {
                 }});
     }
 
+    private synchronized Set<NotificationListenerRegistration> getNotificationListeners() {
+        // not initialised in the constructor, as transient fields are null when a helper is deserialized
+        if (notificationListeners == null) notificationListeners = new LinkedHashSet<NotificationListenerRegistration>();
+        return notificationListeners;
+    }
+
+    private static class NotificationListenerRegistration {
+        final ObjectName objectName;
+        final NotificationListener listener;
+        final NotificationFilter filter;
+        
+        NotificationListenerRegistration(ObjectName objectName, NotificationListener listener, NotificationFilter filter) {
+            this.objectName = checkNotNull(objectName, "objectName");
+            this.listener = checkNotNull(listener, "listener");
+            this.filter = filter;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof NotificationListenerRegistration)) return false;
+            NotificationListenerRegistration o = (NotificationListenerRegistration) obj;
+            return objectName.equals(o.objectName) && listener.equals(o.listener) && Objects.equal(filter, o.filter);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(objectName, listener, filter);
+        }
+    }
+
     public <M> M getProxyObject(String objectName, Class<M> mbeanInterface) {
         return getProxyObject(createObjectName(objectName), mbeanInterface);
     }
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.jmx;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.Notification;
+import javax.management.StandardEmitterMBean;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.entity.EntityAsserts;
+import org.apache.brooklyn.core.location.SimulatedLocation;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.entity.java.UsesJmx;
+import org.apache.brooklyn.entity.software.base.test.jmx.JmxService;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class JmxConnectionCacheTest extends BrooklynAppUnitTestSupport {
+
+    private static final int TIMEOUT_MS = 5000;
+
+    private JmxService jmxService;
+    private TestEntity entity;
+    private JmxFeed feed1;
+    private JmxFeed feed2;
+    
+    private AttributeSensor<Integer> intAttribute = Sensors.newIntegerSensor("brooklyn.test.intAttribute");
+    private AttributeSensor<String> stringAttribute = Sensors.newStringSensor("brooklyn.test.stringAttribute");
+    private String objectName = "Brooklyn:type=MyTestMBean,name=myname";
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        entity = app.createAndManageChild(EntitySpec.create(TestEntity.class).impl(JmxFeedTest.TestEntityWithJmx.class).additionalInterfaces(UsesJmx.class));
+        app.start(ImmutableList.of(new SimulatedLocation()));
+        jmxService = new JmxService(entity);
+    }
+    
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            if (feed1 != null) feed1.stop();
+            if (feed2 != null) feed2.stop();
+            if (jmxService != null) jmxService.shutdown();
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    @Test
+    public void testFeedsForSameEntityShareConnection() throws Exception {
+        jmxService.registerMBean(ImmutableMap.of("myintattrib", 42, "mystringattrib", "abc"), objectName);
+
+        feed1 = JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName("myintattrib"))
+                .build();
+        feed2 = JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName("mystringattrib"))
+                .build();
+        
+        EntityAsserts.assertAttributeEqualsEventually(entity, intAttribute, 42);
+        EntityAsserts.assertAttributeEqualsEventually(entity, stringAttribute, "abc");
+        assertSame(feed1.getHelper(), feed2.getHelper());
+        
+        Map<String, Long> metrics = JmxConnectionCache.get(mgmt).getMetrics();
+        assertEquals(metrics.get("total"), (Long) 1L, "metrics="+metrics);
+        assertEquals(metrics.get("open"), (Long) 1L, "metrics="+metrics);
+        assertEquals(metrics.get("inUse"), (Long) 1L, "metrics="+metrics);
+        
+        feed1.stop();
+        feed2.stop();
+        metrics = JmxConnectionCache.get(mgmt).getMetrics();
+        assertEquals(metrics.get("inUse"), (Long) 0L, "metrics="+metrics);
+        assertEquals(metrics.get("idle"), (Long) 1L, "metrics="+metrics);
+    }
+
+    @Test
+    public void testNotificationSubscriptionSurvivesReconnectOfSharedHelper() throws Exception {
+        jmxService.registerMBean(ImmutableMap.of("myintattrib", 42), "Brooklyn:type=MyTestMBean,name=other");
+        final StandardEmitterMBean mbean = jmxService.registerMBean(ImmutableList.of("one"), objectName);
+        final AtomicInteger sequence = new AtomicInteger();
+
+        feed1 = JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName("Brooklyn:type=MyTestMBean,name=other")
+                        .period(50)
+                        .attributeName("myintattrib"))
+                .build();
+        feed2 = JmxFeed.builder()
+                .entity(entity)
+                .subscribeToNotification(new JmxNotificationSubscriptionConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .notificationFilter(JmxNotificationFilters.matchesType("one")))
+                .build();
+        assertSame(feed1.getHelper(), feed2.getHelper());
+        assertNotificationUpdatesSensorEventually(mbean, sequence, "abc");
+        
+        // as when another user of the helper finds the connection has failed
+        feed1.getHelper().reconnect();
+        assertNotificationUpdatesSensorEventually(mbean, sequence, "def");
+        
+        // listener removed when its feed stops, though the helper is still in use
+        feed2.stop();
+        sendNotification(mbean, sequence, "ghi");
+        Asserts.succeedsContinually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(entity.getAttribute(stringAttribute), "def");
+            }});
+        assertTrue(feed1.getHelper().isConnected());
+    }
+
+    private void assertNotificationUpdatesSensorEventually(final StandardEmitterMBean mbean, final AtomicInteger sequence, final String val) {
+        // subscription is done async, so keep sending until it is received
+        Asserts.succeedsEventually(ImmutableMap.of("timeout", TIMEOUT_MS), new Runnable() {
+            @Override
+            public void run() {
+                sendNotification(mbean, sequence, val);
+                assertEquals(entity.getAttribute(stringAttribute), val);
+            }});
+    }
+
+    private void sendNotification(StandardEmitterMBean mbean, AtomicInteger sequence, String userData) {
+        Notification notif = new Notification("one", mbean, sequence.getAndIncrement());
+        notif.setUserData(userData);
+        mbean.sendNotification(notif);
+    }
+
+    @Test
+    public void testIdleHelperTerminated() throws Exception {
+        JmxConnectionCache cache = new JmxConnectionCache(Duration.ZERO, Duration.ONE_MINUTE);
+        JmxHelper helper = cache.acquire(entity);
+        assertSame(cache.acquire(entity), helper);
+        assertTrue(helper.connect(TIMEOUT_MS));
+        
+        cache.release(helper);
+        assertEquals(cache.getMetrics().get("inUse"), (Long) 1L);
+        assertTrue(helper.isConnected());
+        
+        cache.release(helper);
+        Map<String, Long> metrics = cache.getMetrics();
+        assertEquals(metrics.get("total"), (Long) 0L, "metrics="+metrics);
+        assertEquals(metrics.get("evicted"), (Long) 1L, "metrics="+metrics);
+        assertFalse(helper.isConnected());
+        
+        JmxHelper helper2 = cache.acquire(entity);
+        assertNotSame(helper2, helper);
+        cache.release(helper2);
+    }
+
+    @Test
+    public void testHealthCheckDisconnectsUnusableConnection() throws Exception {
+        final JmxConnectionCache cache = new JmxConnectionCache(Duration.ONE_MINUTE, Duration.ZERO);
+        final JmxHelper helper = cache.acquire(entity);
+        assertTrue(helper.connect(TIMEOUT_MS));
+        
+        jmxService.shutdown();
+        jmxService = null;
+        
+        Asserts.succeedsEventually(ImmutableMap.of("timeout", TIMEOUT_MS), new Runnable() {
+            @Override
+            public void run() {
+                cache.release(cache.acquire(entity));
+                assertFalse(helper.isConnected());
+            }});
+        assertTrue(cache.getMetrics().get("healthCheckFailures") > 0);
+        cache.release(helper);
+    }
+}
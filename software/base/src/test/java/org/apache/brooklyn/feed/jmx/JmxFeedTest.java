@@ -77,6 +77,7 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -180,6 +181,76 @@ public class JmxFeedTest extends BrooklynAppUnitTestSupport {
         assertSensorEventually(intAttribute, 64, TIMEOUT_MS);
     }
 
+    @Test
+    public void testJmxAttributePollsForSameObjectNameReadTogether() throws Exception {
+        final GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42, "mystringattrib", "abc"), objectName);
+
+        feed = JmxFeed.builder()
+                .entity(entity)
+                .period(50)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .attributeName(attributeName))
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .attributeName("mystringattrib"))
+                .build();
+        
+        assertSensorEventually(intAttribute, 42, TIMEOUT_MS);
+        assertSensorEventually(stringAttribute, "abc", TIMEOUT_MS);
+
+        mbean.updateAttributeValue(attributeName, 64);
+        mbean.updateAttributeValue("mystringattrib", "def");
+        assertSensorEventually(intAttribute, 64, TIMEOUT_MS);
+        assertSensorEventually(stringAttribute, "def", TIMEOUT_MS);
+        
+        assertTrue(mbean.getAttributesCount() > 0, "getAttributesCount="+mbean.getAttributesCount());
+        assertEquals(mbean.getAttributeCount(), 0);
+    }
+
+    @Test
+    public void testJmxAttributePollsForSameObjectNameWildcardReadTogether() throws Exception {
+        final GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42, "mystringattrib", "abc"), objectName);
+        String objectNameWithWildcard = "Brooklyn:type=MyTestMBean,name=mynam*";
+
+        feed = JmxFeed.builder()
+                .entity(entity)
+                .period(50)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectNameWithWildcard)
+                        .attributeName(attributeName))
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectNameWithWildcard)
+                        .attributeName("mystringattrib"))
+                .build();
+
+        assertSensorEventually(intAttribute, 42, TIMEOUT_MS);
+        assertSensorEventually(stringAttribute, "abc", TIMEOUT_MS);
+        assertTrue(mbean.getAttributesCount() > 0, "getAttributesCount="+mbean.getAttributesCount());
+        assertEquals(mbean.getAttributeCount(), 0);
+    }
+
+    @Test
+    public void testJmxAttributePollsReadTogetherFallBackForAttributesNotReturned() throws Exception {
+        final GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42), objectName);
+
+        feed = JmxFeed.builder()
+                .entity(entity)
+                .period(50)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .attributeName(attributeName))
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .attributeName("notthere")
+                        .onSuccess(Functions.constant("read individually")))
+                .build();
+        
+        assertSensorEventually(intAttribute, 42, TIMEOUT_MS);
+        assertSensorEventually(stringAttribute, "read individually", TIMEOUT_MS);
+        assertTrue(mbean.getAttributeCount() > 0, "getAttributeCount="+mbean.getAttributeCount());
+    }
+
     @Test
     public void testJmxAttributeSensor() throws Exception {
         GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42), objectName);
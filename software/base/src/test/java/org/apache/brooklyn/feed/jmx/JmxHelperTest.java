@@ -20,6 +20,7 @@ package org.apache.brooklyn.feed.jmx;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.fail;
 
 import java.io.IOException;
@@ -101,6 +102,31 @@ public class JmxHelperTest {
         assertEquals(jmxHelper.getAttribute(jmxObjectNameWithWildcard, "myattr"), "myval");
     }
 
+    @Test
+    public void testGetAttributes() throws Exception {
+        GeneralisedDynamicMBean mbean = jmxService.registerMBean(MutableMap.of("myattr", "myval", "myattr2", 42, "other", "otherval"), objectName);
+        assertEquals(jmxHelper.getAttributes(jmxObjectName, ImmutableList.of("myattr", "myattr2")), ImmutableMap.of("myattr", "myval", "myattr2", 42));
+        assertEquals(mbean.getAttributesCount(), 1);
+        assertEquals(mbean.getAttributeCount(), 0);
+    }
+
+    @Test
+    public void testGetAttributesOmitsAttributesNotReturned() throws Exception {
+        jmxService.registerMBean(MutableMap.of("myattr", "myval"), objectName);
+        assertEquals(jmxHelper.getAttributes(jmxObjectName, ImmutableList.of("myattr", "notthere")), ImmutableMap.of("myattr", "myval"));
+    }
+
+    @Test
+    public void testGetAttributesUsingObjectNameWildcard() throws Exception {
+        jmxService.registerMBean(MutableMap.of("myattr", "myval"), objectName);
+        assertEquals(jmxHelper.getAttributes(jmxObjectNameWithWildcard, ImmutableList.of("myattr")), ImmutableMap.of("myattr", "myval"));
+    }
+
+    @Test
+    public void testGetAttributesReturnsNullIfObjectNameWildcardNotFound() throws Exception {
+        assertNull(jmxHelper.getAttributes(jmxObjectNameWithWildcard, ImmutableList.of("myattr")));
+    }
+
     @Test
     public void testSetAttribute() throws Exception {
         DynamicMBean mbean = jmxService.registerMBean(MutableMap.of("myattr", "myval"), objectName);
@@ -261,6 +287,52 @@ public class JmxHelperTest {
             }});
     }
 
+    @Test
+    public void testNotificationListenerReaddedOnReconnect() throws Exception {
+        StandardEmitterMBean mbean = jmxService.registerMBean(ImmutableList.of("one"), objectName);
+        int sequence = 0;
+        final List<Notification> received = Lists.newCopyOnWriteArrayList();
+
+        jmxHelper.addNotificationListener(jmxObjectName, new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notif, Object callback) {
+                received.add(notif);
+            }});
+        jmxHelper.reconnect();
+
+        final Notification notif = sendNotification(mbean, "one", sequence++, "abc");
+
+        Asserts.succeedsEventually(ImmutableMap.of("timeout", TIMEOUT_MS), new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(received.size(), 1);
+                assertNotificationsEqual(received.get(0), notif);
+            }});
+    }
+
+    @Test
+    public void testRemovedNotificationListenerNotReaddedOnReconnect() throws Exception {
+        StandardEmitterMBean mbean = jmxService.registerMBean(ImmutableList.of("one"), objectName);
+        int sequence = 0;
+        final List<Notification> received = Lists.newCopyOnWriteArrayList();
+        NotificationListener listener = new NotificationListener() {
+            @Override
+            public void handleNotification(Notification notif, Object callback) {
+                received.add(notif);
+            }};
+
+        jmxHelper.addNotificationListener(jmxObjectName, listener, JmxNotificationFilters.matchesType("one"));
+        jmxHelper.removeNotificationListener(jmxObjectName, listener);
+        jmxHelper.reconnect();
+
+        sendNotification(mbean, "one", sequence++, "abc");
+        Asserts.succeedsContinually(new Runnable() {
+            @Override
+            public void run() {
+                assertEquals(received.size(), 0);
+            }});
+    }
+
     // Visual-inspection test that LOG.warn happens only once; TODO setup a listener to the logging output
     @Test
     public void testMBeanNotFoundLoggedOnlyOncePerUrl() throws Exception {
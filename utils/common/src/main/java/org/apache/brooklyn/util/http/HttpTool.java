@@ -70,6 +70,7 @@ import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
 import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeSocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
@@ -265,6 +266,7 @@ public class HttpTool {
         private Boolean https;
         private SchemeSocketFactory socketFactory;
         private ConnectionReuseStrategy reuseStrategy;
+        private ConnectionKeepAliveStrategy keepAliveStrategy;
         private boolean trustAll;
         private boolean trustSelfSigned;
 
@@ -279,6 +281,7 @@ public class HttpTool {
             result.https = other.https;
             result.socketFactory = other.socketFactory;
             result.reuseStrategy = other.reuseStrategy;
+            result.keepAliveStrategy = other.keepAliveStrategy;
             result.trustAll = other.trustAll;
             result.trustSelfSigned = other.trustSelfSigned;
             return result;
@@ -310,6 +313,10 @@ public class HttpTool {
             this.reuseStrategy = checkNotNull(val, "reuseStrategy");
             return this;
         }
+        public HttpClientBuilder keepAliveStrategy(ConnectionKeepAliveStrategy val) {
+            this.keepAliveStrategy = checkNotNull(val, "keepAliveStrategy");
+            return this;
+        }
         public HttpClientBuilder uri(String val) {
             return uri(URI.create(checkNotNull(val, "uri")));
         }
@@ -369,6 +376,9 @@ public class HttpTool {
             if (reuseStrategy != null) {
                 httpClient.setReuseStrategy(reuseStrategy);
             }
+            if (keepAliveStrategy != null) {
+                httpClient.setKeepAliveStrategy(keepAliveStrategy);
+            }
             if (https == Boolean.TRUE || (uri!=null && uri.toString().startsWith("https:"))) {
                 try {
                     if (port == null) {
@@ -18,6 +18,8 @@
  */
 package org.apache.brooklyn.util.http.executor;
 
+import org.apache.brooklyn.util.time.Duration;
+
 import com.google.common.annotations.Beta;
 
 @Beta
@@ -28,6 +30,8 @@ public class HttpConfig {
         private boolean laxRedirect;
         private boolean trustAll;
         private boolean trustSelfSigned;
+        private Duration connectionTimeout;
+        private Duration socketTimeout;
         
         public Builder laxRedirect(boolean val) {
             laxRedirect = val;
@@ -44,6 +48,18 @@ public class HttpConfig {
             return this;
         }
         
+        /** Timeout for establishing a connection; null (the default) for no explicit timeout. */
+        public Builder connectionTimeout(Duration val) {
+            connectionTimeout = val;
+            return this;
+        }
+        
+        /** Timeout waiting for data on an established connection; null (the default) for no explicit timeout. */
+        public Builder socketTimeout(Duration val) {
+            socketTimeout = val;
+            return this;
+        }
+        
         public HttpConfig build() {
             return new HttpConfig(this);
         }
@@ -56,6 +72,8 @@ public class HttpConfig {
     private final boolean laxRedirect;
     private final boolean trustAll;
     private final boolean trustSelfSigned;
+    private final Duration connectionTimeout;
+    private final Duration socketTimeout;
 
     /** jackson provider */
     protected HttpConfig() {
@@ -66,6 +84,8 @@ public class HttpConfig {
         laxRedirect = builder.laxRedirect;
         trustAll = builder.trustAll;
         trustSelfSigned = builder.trustSelfSigned;
+        connectionTimeout = builder.connectionTimeout;
+        socketTimeout = builder.socketTimeout;
     }
     
     public boolean laxRedirect() {
@@ -79,4 +99,12 @@ public class HttpConfig {
     public boolean trustSelfSigned() {
         return trustSelfSigned;
     }
+    
+    public Duration connectionTimeout() {
+        return connectionTimeout;
+    }
+    
+    public Duration socketTimeout() {
+        return socketTimeout;
+    }
 }
@@ -70,14 +70,7 @@ public class HttpExecutorImpl implements HttpExecutor {
     @Override
     public HttpResponse execute(HttpRequest request) throws IOException {
         HttpConfig config = (request.config() != null) ? request.config() : this.config!=null ? this.config : DEFAULT_CONFIG;
-        Credentials creds = (request.credentials() != null) ? new UsernamePasswordCredentials(request.credentials().getUser(), request.credentials().getPassword()) : null;
-        HttpClient httpClient = HttpTool.httpClientBuilder()
-                .uri(request.uri())
-                .credential(Optional.fromNullable(creds))
-                .laxRedirect(config.laxRedirect())
-                .trustSelfSigned(config.trustSelfSigned())
-                .trustAll(config.trustAll())
-                .build();
+        HttpClient httpClient = newHttpClient(request, config);
         
         HttpToolResponse response;
         
@@ -106,6 +99,27 @@ public class HttpExecutorImpl implements HttpExecutor {
         return new HttpResponseWrapper(response);
     }
     
+    /** Creates the client to use for the given request; this implementation creates a new client, with its own connection, each time. */
+    protected HttpClient newHttpClient(HttpRequest request, HttpConfig config) {
+        return applyTimeouts(HttpTool.httpClientBuilder(), config)
+                .uri(request.uri())
+                .credential(Optional.fromNullable(toCredentials(request)))
+                .laxRedirect(config.laxRedirect())
+                .trustSelfSigned(config.trustSelfSigned())
+                .trustAll(config.trustAll())
+                .build();
+    }
+
+    protected HttpTool.HttpClientBuilder applyTimeouts(HttpTool.HttpClientBuilder builder, HttpConfig config) {
+        if (config.connectionTimeout() != null) builder.connectionTimeout(config.connectionTimeout());
+        if (config.socketTimeout() != null) builder.socketTimeout(config.socketTimeout());
+        return builder;
+    }
+
+    protected Credentials toCredentials(HttpRequest request) {
+        return (request.credentials() != null) ? new UsernamePasswordCredentials(request.credentials().getUser(), request.credentials().getPassword()) : null;
+    }
+
     protected byte[] orEmpty(byte[] val) {
         return (val != null) ? val : EMPTY_BYTE_ARRAY;
     }
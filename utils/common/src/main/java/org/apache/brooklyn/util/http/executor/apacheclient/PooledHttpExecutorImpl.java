@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.http.executor.apacheclient;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.http.HttpTool;
+import org.apache.brooklyn.util.http.executor.HttpConfig;
+import org.apache.brooklyn.util.http.executor.HttpRequest;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.client.HttpClient;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.impl.conn.SchemeRegistryFactory;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * An {@link org.apache.brooklyn.util.http.executor.HttpExecutor} which reuses connections,
+ * instead of opening a new connection (and doing a new TLS handshake) for every request as {@link HttpExecutorImpl} does.
+ * <p>
+ * Connections are held in pools shared by all instances, with one pool for each combination of trust settings
+ * (which determine how TLS connections are made) and pool settings. Redirect handling and credentials are applied
+ * per request, so do not need separate pools. Idle and expired connections are closed periodically by a daemon thread,
+ * which is stopped along with the pools by {@link #shutdownConnectionPools()} (called when the last management
+ * context in the JVM is terminated).
+ * <p>
+ * This can be selected through {@link org.apache.brooklyn.util.executor.HttpExecutorFactory} by setting
+ * {@code httpExecutorClass} to this class, with optional settings {@code httpExecutorClass.maxTotal} etc
+ * as per the constants below.
+ */
+@Beta
+public class PooledHttpExecutorImpl extends HttpExecutorImpl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PooledHttpExecutorImpl.class);
+
+    /** Maximum number of connections in a pool (default 200). */
+    public static final String MAX_TOTAL = "maxTotal";
+    /** Maximum number of connections in a pool to a single host and port (default 20). */
+    public static final String MAX_PER_ROUTE = "maxPerRoute";
+    /** Maximum time to keep a connection open for reuse, if the server does not say a shorter time (default 30s). */
+    public static final String KEEP_ALIVE = "keepAlive";
+    /** Time after which a connection not used is closed (default 30s). */
+    public static final String IDLE_TIMEOUT = "idleTimeout";
+
+    public static final int DEFAULT_MAX_TOTAL = 200;
+    public static final int DEFAULT_MAX_PER_ROUTE = 20;
+    public static final Duration DEFAULT_KEEP_ALIVE = Duration.THIRTY_SECONDS;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.THIRTY_SECONDS;
+
+    private static final Duration EVICTION_PERIOD = Duration.FIVE_SECONDS;
+
+    private static final ConcurrentMap<PoolKey, PoolingClientConnectionManager> POOLS = new ConcurrentHashMap<>();
+    private static ScheduledExecutorService evictor;
+
+    private final int maxTotal;
+    private final int maxPerRoute;
+    private final Duration idleTimeout;
+    private final ConnectionKeepAliveStrategy keepAliveStrategy;
+
+    public static PooledHttpExecutorImpl newInstance() {
+        return new PooledHttpExecutorImpl();
+    }
+
+    public PooledHttpExecutorImpl() {
+        this(MutableMap.of());
+    }
+
+    /**
+     * A must have constructor.
+     */
+    public PooledHttpExecutorImpl(Map<?, ?> props) {
+        super(props);
+        maxTotal = props.get(MAX_TOTAL) != null ? Integer.parseInt(props.get(MAX_TOTAL).toString()) : DEFAULT_MAX_TOTAL;
+        maxPerRoute = props.get(MAX_PER_ROUTE) != null ? Integer.parseInt(props.get(MAX_PER_ROUTE).toString()) : DEFAULT_MAX_PER_ROUTE;
+        idleTimeout = props.get(IDLE_TIMEOUT) != null ? Duration.of(props.get(IDLE_TIMEOUT)) : DEFAULT_IDLE_TIMEOUT;
+        final long maxKeepAliveMillis = (props.get(KEEP_ALIVE) != null ? Duration.of(props.get(KEEP_ALIVE)) : DEFAULT_KEEP_ALIVE).toMilliseconds();
+        keepAliveStrategy = new DefaultConnectionKeepAliveStrategy() {
+            @Override
+            public long getKeepAliveDuration(org.apache.http.HttpResponse response, HttpContext context) {
+                long duration = super.getKeepAliveDuration(response, context);
+                return (duration > 0 && duration < maxKeepAliveMillis) ? duration : maxKeepAliveMillis;
+            }
+        };
+    }
+
+    @Override
+    protected HttpClient newHttpClient(HttpRequest request, HttpConfig config) {
+        // the client is cheap to create; the connections, including their trust settings, come from the shared pool,
+        // so trust is not set here (the builder would otherwise register a scheme on the shared pool)
+        return applyTimeouts(HttpTool.httpClientBuilder(), config)
+                .clientConnectionManager(getConnectionManager(config))
+                .keepAliveStrategy(keepAliveStrategy)
+                .uri(request.uri())
+                .credential(Optional.fromNullable(toCredentials(request)))
+                .laxRedirect(config.laxRedirect())
+                .build();
+    }
+
+    protected PoolingClientConnectionManager getConnectionManager(HttpConfig config) {
+        PoolKey key = new PoolKey(config.trustAll(), config.trustSelfSigned(), maxTotal, maxPerRoute, idleTimeout);
+        PoolingClientConnectionManager result = POOLS.get(key);
+        if (result == null) {
+            result = POOLS.computeIfAbsent(key, PooledHttpExecutorImpl::newConnectionManager);
+        }
+        return result;
+    }
+
+    private static PoolingClientConnectionManager newConnectionManager(PoolKey key) {
+        SchemeRegistry schemeRegistry = SchemeRegistryFactory.createDefault();
+        try {
+            if (key.trustAll) {
+                schemeRegistry.register(new Scheme("https", 443, new SSLSocketFactory(new HttpTool.TrustAllStrategy(), SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER)));
+            } else if (key.trustSelfSigned) {
+                schemeRegistry.register(new Scheme("https", 443, new SSLSocketFactory(new TrustSelfSignedStrategy(), SSLSocketFactory.ALLOW_ALL_HOSTNAME_VERIFIER)));
+            }
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+        PoolingClientConnectionManager result = new PoolingClientConnectionManager(schemeRegistry);
+        result.setMaxTotal(key.maxTotal);
+        result.setDefaultMaxPerRoute(key.maxPerRoute);
+        startEvictor();
+        LOG.debug("Created HTTP connection pool {}", key);
+        return result;
+    }
+
+    private static synchronized void startEvictor() {
+        if (evictor != null) return;
+        evictor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("brooklyn-http-pool-evictor-%d")
+                .setDaemon(true)
+                .build());
+        evictor.scheduleWithFixedDelay(PooledHttpExecutorImpl::evictConnections,
+                EVICTION_PERIOD.toMilliseconds(), EVICTION_PERIOD.toMilliseconds(), TimeUnit.MILLISECONDS);
+    }
+
+    private static void evictConnections() {
+        for (Map.Entry<PoolKey, PoolingClientConnectionManager> entry : POOLS.entrySet()) {
+            try {
+                entry.getValue().closeExpiredConnections();
+                entry.getValue().closeIdleConnections(entry.getKey().idleTimeout.toMilliseconds(), TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                LOG.warn("Error closing idle connections in HTTP connection pool "+entry.getKey()+" (continuing)", e);
+            }
+        }
+    }
+
+    /** Returns the number of connections leased, available, pending and the maximum, for each pool. */
+    public static Map<String, Map<String, Integer>> getConnectionPoolMetrics() {
+        Map<String, Map<String, Integer>> result = MutableMap.of();
+        for (Map.Entry<PoolKey, PoolingClientConnectionManager> entry : POOLS.entrySet()) {
+            PoolStats stats = entry.getValue().getTotalStats();
+            result.put(entry.getKey().toString(), MutableMap.of(
+                    "leased", stats.getLeased(),
+                    "available", stats.getAvailable(),
+                    "pending", stats.getPending(),
+                    "max", stats.getMax()));
+        }
+        return result;
+    }
+
+    /** Closes all pooled connections; pools will be re-created as needed. */
+    public static synchronized void shutdownConnectionPools() {
+        for (PoolKey key : POOLS.keySet()) {
+            PoolingClientConnectionManager manager = POOLS.remove(key);
+            if (manager != null) manager.shutdown();
+        }
+        if (evictor != null) {
+            evictor.shutdownNow();
+            evictor = null;
+        }
+    }
+
+    private static final class PoolKey {
+        final boolean trustAll;
+        final boolean trustSelfSigned;
+        final int maxTotal;
+        final int maxPerRoute;
+        final Duration idleTimeout;
+
+        PoolKey(boolean trustAll, boolean trustSelfSigned, int maxTotal, int maxPerRoute, Duration idleTimeout) {
+            this.trustAll = trustAll;
+            this.trustSelfSigned = trustSelfSigned;
+            this.maxTotal = maxTotal;
+            this.maxPerRoute = maxPerRoute;
+            this.idleTimeout = idleTimeout;
+        }
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof PoolKey)) return false;
+            PoolKey other = (PoolKey) o;
+            return trustAll == other.trustAll && trustSelfSigned == other.trustSelfSigned
+                    && maxTotal == other.maxTotal && maxPerRoute == other.maxPerRoute
+                    && idleTimeout.equals(other.idleTimeout);
+        }
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(trustAll, trustSelfSigned, maxTotal, maxPerRoute, idleTimeout);
+        }
+        @Override
+        public String toString() {
+            return MoreObjects.toStringHelper(this)
+                    .add("trustAll", trustAll)
+                    .add("trustSelfSigned", trustSelfSigned)
+                    .add("maxTotal", maxTotal)
+                    .add("maxPerRoute", maxPerRoute)
+                    .add("idleTimeout", idleTimeout)
+                    .toString();
+        }
+    }
+}
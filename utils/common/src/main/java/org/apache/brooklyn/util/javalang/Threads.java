@@ -18,12 +18,17 @@
  */
 package org.apache.brooklyn.util.javalang;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
 import org.osgi.framework.FrameworkUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -125,4 +130,64 @@ public class Threads {
             throw Exceptions.propagate(e);
         }
     }
+
+    /** Whether this JVM supports virtual threads (Java 21 and later). */
+    public static boolean isVirtualThreadSupported() {
+        return VirtualThreadsReflection.INSTANCE.isPresent();
+    }
+
+    /** Whether the given thread is a virtual thread; always false if the JVM does not support them. */
+    public static boolean isVirtual(Thread t) {
+        Maybe<VirtualThreadsReflection> vt = VirtualThreadsReflection.INSTANCE;
+        if (t==null || vt.isAbsent()) return false;
+        try {
+            return (Boolean) vt.get().isVirtual.invoke(t);
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /**
+     * Returns an executor which starts a new virtual thread for each task, with threads named using the given prefix
+     * and a counter, or absent if the JVM does not support virtual threads.
+     * Accessed reflectively as we compile for older Java versions.
+     */
+    public static Maybe<ExecutorService> newVirtualThreadPerTaskExecutor(String namePrefix, Thread.UncaughtExceptionHandler handler) {
+        Maybe<VirtualThreadsReflection> vt = VirtualThreadsReflection.INSTANCE;
+        if (vt.isAbsent()) return Maybe.castAbsent(vt);
+        try {
+            Object builder = vt.get().ofVirtual.invoke(null);
+            builder = vt.get().builderName.invoke(builder, namePrefix, 0L);
+            if (handler!=null) builder = vt.get().builderUncaughtExceptionHandler.invoke(builder, handler);
+            ThreadFactory factory = (ThreadFactory) vt.get().builderFactory.invoke(builder);
+            return Maybe.of((ExecutorService) vt.get().newThreadPerTaskExecutor.invoke(null, factory));
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static class VirtualThreadsReflection {
+        static final Maybe<VirtualThreadsReflection> INSTANCE = load();
+
+        Method ofVirtual, isVirtual, builderName, builderUncaughtExceptionHandler, builderFactory, newThreadPerTaskExecutor;
+
+        private static Maybe<VirtualThreadsReflection> load() {
+            try {
+                VirtualThreadsReflection result = new VirtualThreadsReflection();
+                Class<?> builder = Class.forName("java.lang.Thread$Builder");
+                result.ofVirtual = Thread.class.getMethod("ofVirtual");
+                result.isVirtual = Thread.class.getMethod("isVirtual");
+                result.builderName = builder.getMethod("name", String.class, long.class);
+                result.builderUncaughtExceptionHandler = builder.getMethod("uncaughtExceptionHandler", Thread.UncaughtExceptionHandler.class);
+                result.builderFactory = builder.getMethod("factory");
+                result.newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+                // preview in java 19 and 20, where ofVirtual throws
+                result.ofVirtual.invoke(null);
+                return Maybe.of(result);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                return Maybe.absent(new UnsupportedOperationException("Virtual threads not supported in this JVM", e));
+            }
+        }
+    }
 }
@@ -59,7 +59,7 @@ public class CommonAdaptorTryCoercions {
         coercer.registerAdapter(nameAndOrder, fn);
     }
     
-    protected static class TryCoercerWithFromMethod implements TryCoercer {
+    protected static class TryCoercerWithFromMethod implements TryCoercer.TryCoercerApplicableByType {
         @Override
         @SuppressWarnings("unchecked")
         public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> targetType) {
@@ -91,7 +91,7 @@ public class CommonAdaptorTryCoercions {
         }
     }
     
-    protected static class TryCoercerToEnum implements TryCoercer {
+    protected static class TryCoercerToEnum implements TryCoercer.TryCoercerApplicableByType {
         @Override
         @SuppressWarnings("unchecked")
         public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> targetType) {
@@ -106,7 +106,7 @@ public class CommonAdaptorTryCoercions {
         }
     }
 
-    protected static class TryCoercerToArray implements TryCoercer {
+    protected static class TryCoercerToArray implements TryCoercer.TryCoercerApplicableByType {
         private final TypeCoercerExtensible coercer;
         
         public TryCoercerToArray(TypeCoercerExtensible coercer) {
@@ -142,7 +142,7 @@ public class CommonAdaptorTryCoercions {
         }
     }
 
-    protected static class TryCoercerForPrimitivesAndStrings implements TryCoercer {
+    protected static class TryCoercerForPrimitivesAndStrings implements TryCoercer.TryCoercerApplicableByType {
         @Override
         public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> targetType) {
             return PrimitiveStringTypeCoercions.tryCoerce(input, TypeTokens.getRawType(targetType, null));
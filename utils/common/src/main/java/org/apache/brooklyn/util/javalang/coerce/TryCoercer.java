@@ -43,4 +43,11 @@ public interface TryCoercer {
     <T> Maybe<T> tryCoerce(Object input, TypeToken<T> type);
 
     interface TryCoercerReturningNull extends TryCoercer {}
+
+    /**
+     * Marker for coercers where whether they apply (i.e. return non-null) depends only on the class of the input
+     * and the target type, not on the input value. {@link TypeCoercerExtensible} remembers when such a coercer
+     * returns null and does not call it again for the same input class and target type.
+     */
+    interface TryCoercerApplicableByType extends TryCoercer {}
 }
@@ -28,6 +28,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import com.google.common.annotations.Beta;
@@ -97,10 +98,79 @@ public class TypeCoercerExtensible implements TypeCoercer {
     }
 
     /** Store the coercion {@link Function functions} in a {@link Table table}. */
-    private Table<Class<?>, Class<?>, Function<?,?>> registry = HashBasedTable.create();
+    private volatile Table<Class<?>, Class<?>, Function<?,?>> registry = HashBasedTable.create();
 
     /** Store the generic coercers, ordered by the name; reset each time updated */
-    private SortedMap<String,TryCoercer> genericCoercersByName = Maps.newTreeMap(NaturalOrderComparator.INSTANCE);
+    private volatile SortedMap<String,TryCoercer> genericCoercersByName = Maps.newTreeMap(NaturalOrderComparator.INSTANCE);
+
+    /** Maximum number of {@link CoercionPlan}s remembered; if exceeded they are all discarded. */
+    private static final int MAX_COERCION_PLANS = 10000;
+    
+    /** Remembered {@link CoercionPlan}s for pairs of input class and target type; replaced whenever adapters are registered 
+     * (after the adapters are updated, so that a plan in the current map was never computed from older adapters) */
+    private volatile Map<CoercionPlanKey, CoercionPlan> coercionPlans = new ConcurrentHashMap<>();
+
+    private static class CoercionPlanKey {
+        final Class<?> inputType;
+        final TypeToken<?> targetType;
+        CoercionPlanKey(Class<?> inputType, TypeToken<?> targetType) {
+            this.inputType = inputType;
+            this.targetType = targetType;
+        }
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CoercionPlanKey)) return false;
+            CoercionPlanKey o = (CoercionPlanKey) obj;
+            return inputType==o.inputType && targetType.equals(o.targetType);
+        }
+        @Override
+        public int hashCode() {
+            return 31*inputType.hashCode() + targetType.hashCode();
+        }
+    }
+    
+    /**
+     * The coercion strategies which might apply when coercing an input of a given class to a given target type,
+     * in the order they are tried: generic coercers (those ordered before and after the registry adapters),
+     * and the registry adapters whose source type the input is an instance of.
+     * Generic coercers marked {@link TryCoercer.TryCoercerApplicableByType} are skipped once they have returned null;
+     * other strategies are always tried (as success can depend on the value), so results are the same as if no plan were used.
+     */
+    private static class CoercionPlan {
+        final List<Map.Entry<String,TryCoercer>> coercersBeforeRegistry;
+        final List<Map.Entry<String,TryCoercer>> coercersAfterRegistry;
+        /** set when a coercer applicable by type returned null; writes may not be seen immediately by other threads, which is harmless */
+        final boolean[] notApplicableBeforeRegistry, notApplicableAfterRegistry;
+        final List<Map.Entry<Class<?>, Function<?,?>>> adapters;
+        
+        CoercionPlan(Class<?> inputType, Class<?> targetType, SortedMap<String,TryCoercer> genericCoercers, Table<Class<?>, Class<?>, Function<?,?>> registry) {
+            coercersBeforeRegistry = MutableList.of();
+            coercersAfterRegistry = MutableList.of();
+            for (Entry<String, TryCoercer> mapEntry : genericCoercers.entrySet()) {
+                String coercerName = mapEntry.getKey();
+                if (coercerName == null) continue;
+                (coercerName.startsWith("-") ? coercersAfterRegistry : coercersBeforeRegistry).add(mapEntry);
+            }
+            notApplicableBeforeRegistry = new boolean[coercersBeforeRegistry.size()];
+            notApplicableAfterRegistry = new boolean[coercersAfterRegistry.size()];
+            adapters = MutableList.of();
+            for (Map.Entry<Class<?>, Function<?,?>> entry : registry.row(targetType).entrySet()) {
+                if (entry.getKey().isAssignableFrom(inputType)) adapters.add(entry);
+            }
+        }
+    }
+    
+    private CoercionPlan getCoercionPlan(Class<?> inputType, TypeToken<?> targetTypeToken, Class<?> targetType) {
+        Map<CoercionPlanKey, CoercionPlan> plans = coercionPlans;
+        CoercionPlanKey key = new CoercionPlanKey(inputType, targetTypeToken);
+        CoercionPlan plan = plans.get(key);
+        if (plan==null) {
+            if (plans.size() >= MAX_COERCION_PLANS) plans.clear();
+            plan = new CoercionPlan(inputType, targetType, genericCoercersByName, registry);
+            plans.put(key, plan);
+        }
+        return plan;
+    }
 
     @Override
     public <T> T coerce(Object value, Class<T> targetType) {
@@ -158,13 +228,9 @@ public class TypeCoercerExtensible implements TypeCoercer {
         if (targetType.isInstance(value)) return Maybe.of( (T) value );
 
         targetTypeToken = TypeTokens.getTypeToken(targetTypeToken, targetType);
-        for (Entry<String, TryCoercer> mapEntry : genericCoercersByName.entrySet()) {
-            String coercerName = mapEntry.getKey();
-            if (coercerName != null && !coercerName.startsWith("-")) {
-                Maybe<T> resultM = applyCoercer(value, targetTypeToken, errors, mapEntry.getValue(), coercerName);
-                if (resultM != null) return resultM;
-            }
-        }
+        CoercionPlan plan = getCoercionPlan(value.getClass(), targetTypeToken, targetType);
+        Maybe<T> resultFromCoercers = applyCoercers(value, targetTypeToken, errors, plan.coercersBeforeRegistry, plan.notApplicableBeforeRegistry);
+        if (resultFromCoercers != null) return resultFromCoercers;
 
         //ENHANCEMENT could look in type hierarchy of both types for a conversion method...
         
@@ -183,54 +249,47 @@ public class TypeCoercerExtensible implements TypeCoercer {
         
         //now look in registry
         //previously synched on registry; but now we make the registry immutable
-        Map<Class<?>, Function<?,?>> adapters = registry.row(targetType);
-        for (Map.Entry<Class<?>, Function<?,?>> entry : adapters.entrySet()) {
-            if (entry.getKey().isInstance(value)) {
-                try {
-                    T resultT = ((Function<Object,T>)entry.getValue()).apply(value);
+        // (the plan has those adapters from the registry which apply to the type of value)
+        for (Map.Entry<Class<?>, Function<?,?>> entry : plan.adapters) {
+            try {
+                T resultT = ((Function<Object,T>)entry.getValue()).apply(value);
 
-                    // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
-                    // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
-                    // First check that value has changed, to avoid stack overflow!
-                    if (!Objects.equal(value, resultT) && targetTypeToken.getType() instanceof ParameterizedType) {
-                        // Could duplicate check for `result instanceof Collection` etc; but recursive call
-                        // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
-                        // and just return the result.
-                        Maybe<T> resultM = tryCoerce(resultT, targetTypeToken);
-                        if (resultM!=null) {
-                            if (resultM.isPresent()) return resultM;
-                            // if couldn't coerce parameterized types then back out of this coercer
-                            // but remember the error if we were first
-                            errors.add(resultM);
-                        }
-                    } else {
-                        return Maybe.of(resultT);
-                    }
-                } catch (Exception e) {
-                    Exceptions.propagateIfFatal(e);
-                    if (log.isDebugEnabled()) {
-                        log.debug("When coercing, registry adapter "+entry+" gave error on "+value+" -> "+targetType+" "
-                            + (errors.isEmpty() ? "(rethrowing)" : "(adding as secondary error as there is already another)")
-                            + ": "+e, e);
-                    }
-                    if (e instanceof ClassCoercionException) {
-                        errors.add(Maybe.absent(e));
-                    } else {
-                        errors.add(Maybe.absent(new ClassCoercionException("Cannot coerce type "+value.getClass().getCanonicalName()+" to "+targetTypeToken+" ("+value+"): registered coercer failed", e)));
+                // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
+                // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
+                // First check that value has changed, to avoid stack overflow!
+                if (!Objects.equal(value, resultT) && targetTypeToken.getType() instanceof ParameterizedType) {
+                    // Could duplicate check for `result instanceof Collection` etc; but recursive call
+                    // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
+                    // and just return the result.
+                    Maybe<T> resultM = tryCoerce(resultT, targetTypeToken);
+                    if (resultM!=null) {
+                        if (resultM.isPresent()) return resultM;
+                        // if couldn't coerce parameterized types then back out of this coercer
+                        // but remember the error if we were first
+                        errors.add(resultM);
                     }
-                    continue;
+                } else {
+                    return Maybe.of(resultT);
+                }
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                if (log.isDebugEnabled()) {
+                    log.debug("When coercing, registry adapter "+entry+" gave error on "+value+" -> "+targetType+" "
+                        + (errors.isEmpty() ? "(rethrowing)" : "(adding as secondary error as there is already another)")
+                        + ": "+e, e);
                 }
+                if (e instanceof ClassCoercionException) {
+                    errors.add(Maybe.absent(e));
+                } else {
+                    errors.add(Maybe.absent(new ClassCoercionException("Cannot coerce type "+value.getClass().getCanonicalName()+" to "+targetTypeToken+" ("+value+"): registered coercer failed", e)));
+                }
+                continue;
             }
         }
 
         // now try negative ordered coercers
-        for (Entry<String, TryCoercer> mapEntry : genericCoercersByName.entrySet()) {
-            String coercerName = mapEntry.getKey();
-            if (coercerName != null && coercerName.startsWith("-")) {
-                Maybe<T> resultM = applyCoercer(value, targetTypeToken, errors, mapEntry.getValue(), coercerName);
-                if (resultM != null) return resultM;
-            }
-        }
+        resultFromCoercers = applyCoercers(value, targetTypeToken, errors, plan.coercersAfterRegistry, plan.notApplicableAfterRegistry);
+        if (resultFromCoercers != null) return resultFromCoercers;
 
         // not found
         if (!errors.isEmpty()) {
@@ -246,9 +305,22 @@ public class TypeCoercerExtensible implements TypeCoercer {
         return Maybe.absent(new ClassCoercionException("Cannot coerce type "+value.getClass().getCanonicalName()+" to "+targetTypeToken+" ("+value+"): no adapter known"));
     }
 
-    private <T> Maybe<T> applyCoercer(Object value, TypeToken<T> targetTypeToken, List<Maybe<T>> errors, TryCoercer coercer, String coercerName) {
-        Maybe<T> result;
-        result = coercer.tryCoerce(value, targetTypeToken);
+    private <T> Maybe<T> applyCoercers(Object value, TypeToken<T> targetTypeToken, List<Maybe<T>> errors, List<Map.Entry<String,TryCoercer>> coercers, boolean[] notApplicable) {
+        for (int i=0; i<coercers.size(); i++) {
+            if (notApplicable[i]) continue;
+            TryCoercer coercer = coercers.get(i).getValue();
+            Maybe<T> result = coercer.tryCoerce(value, targetTypeToken);
+            if (result == null) {
+                if (coercer instanceof TryCoercer.TryCoercerApplicableByType) notApplicable[i] = true;
+                continue;
+            }
+            Maybe<T> resultM = applyCoercerResult(value, targetTypeToken, errors, coercer, coercers.get(i).getKey(), result);
+            if (resultM != null) return resultM;
+        }
+        return null;
+    }
+
+    private <T> Maybe<T> applyCoercerResult(Object value, TypeToken<T> targetTypeToken, List<Maybe<T>> errors, TryCoercer coercer, String coercerName, Maybe<T> result) {
 
         if (result!=null && result.isPresentAndNonNull()) {
             // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
@@ -365,6 +437,7 @@ public class TypeCoercerExtensible implements TypeCoercer {
         HashBasedTable<Class<?>, Class<?>, Function<?, ?>> newRegistry = HashBasedTable.create(registry);
         Function<? super A, B> result = (Function<? super A, B>) newRegistry.put(targetType, sourceType, fn);
         registry = newRegistry;
+        coercionPlans = new ConcurrentHashMap<>();
         return result;
     }
     
@@ -374,6 +447,7 @@ public class TypeCoercerExtensible implements TypeCoercer {
         TreeMap<String, TryCoercer> gcn = Maps.newTreeMap(genericCoercersByName);
         gcn.put(nameAndOrder, fn);
         genericCoercersByName = gcn;
+        coercionPlans = new ConcurrentHashMap<>();
     }
 
     /** @deprecated since introduction, use {@link #registerAdapter(String, TryCoercer)} */
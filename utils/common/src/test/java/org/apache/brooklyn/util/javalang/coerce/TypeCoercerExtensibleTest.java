@@ -114,4 +114,26 @@ public class TypeCoercerExtensibleTest {
         assertEquals(coerce("33", Integer.class), (Integer) (302)); // coercer 3-33 applies before Integer.toString
         assertEquals(coerce("1122", Integer.class), (Integer) (1122)); // Integer.fromString coercion applies before negative coercers
     }
+
+    @Test
+    public void testAdaptersRegisteredAfterCoercionAreUsed() {
+        TypeCoercerExtensible coercer = TypeCoercerExtensible.newDefault();
+        // coerce first, so a coercion plan for String to MyClazz exists before the adapters are added
+        assertEquals(coercer.tryCoerce("abc", MyClazz.class).isPresent(), false);
+
+        coercer.registerAdapter(String.class, MyClazz.class, input -> new MyClazz("fromRegistry-"+input));
+        assertEquals(coercer.coerce("abc", MyClazz.class), new MyClazz("fromRegistry-abc"));
+
+        coercer.registerAdapter("1-test-"+Strings.makeRandomId(4), new TryCoercer() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> Maybe<T> tryCoerce(Object input, TypeToken<T> type) {
+                if (input instanceof String && TypeTokens.equalsRaw(MyClazz.class, type)) {
+                    return (Maybe<T>) Maybe.of(new MyClazz("fromGeneric-"+input));
+                }
+                return null;
+            }
+        });
+        assertEquals(coercer.coerce("abc", MyClazz.class), new MyClazz("fromGeneric-abc"));
+    }
 }